@@ -17,6 +17,7 @@
 package org.uberfire.backend.server;
 
 import java.util.Set;
+import javax.inject.Inject;
 import javax.servlet.annotation.WebListener;
 import javax.servlet.http.HttpSessionEvent;
 import javax.servlet.http.HttpSessionListener;
@@ -40,12 +41,36 @@ public class LockCleanupSessionListener implements HttpSessionListener {
 
     private static final Logger logger = LoggerFactory.getLogger(LockCleanupSessionListener.class);
 
+    //null if the container doesn't inject listeners, see UF-237
+    @Inject
+    private VFSLockServiceImpl injectedLockService;
+
+    public LockCleanupSessionListener() {
+    }
+
+    LockCleanupSessionListener(final VFSLockServiceImpl lockService) {
+        this.injectedLockService = lockService;
+    }
+
     @Override
     public void sessionCreated(HttpSessionEvent se) {
     }
 
     @Override
     public void sessionDestroyed(HttpSessionEvent se) {
+        final VFSLockServiceImpl lockService = injectedLockService != null ? injectedLockService : VFSLockServiceImpl.getInstance();
+        if (lockService != null) {
+            @SuppressWarnings("unchecked")
+            final Set<LockInfo> locks = (Set<LockInfo>) se.getSession()
+                    .getAttribute(VFSLockServiceImpl.LOCK_SESSION_ATTRIBUTE_NAME);
+            // The lock service holds the locks in memory, it has to forget them too
+            if (locks != null) {
+                lockService.releaseLocks(locks);
+            }
+            return;
+        }
+
+        // the lock service never started, so no lock is held in memory, only the lock files
         final ConfigIOServiceProducer ioServiceProducer = ConfigIOServiceProducer.getInstance();
         final IOService ioService = ioServiceProducer.configIOService();
         final FileSystem fileSystem = ioServiceProducer.configFileSystem();
@@ -54,29 +79,31 @@ public class LockCleanupSessionListener implements HttpSessionListener {
         final Set<LockInfo> locks = (Set<LockInfo>) se.getSession()
                 .getAttribute(VFSLockServiceImpl.LOCK_SESSION_ATTRIBUTE_NAME);
 
-        if (locks != null) {
-            try {
-                ioService.startBatch(fileSystem);
-                for (LockInfo lock : locks) {
-                    try {
-                        final Path lockPath = Paths.convert(PathFactory.newLock(lock.getFile()));
-                        // Lock could have change ownership due to a forced lock release
-                        if (ioService.readAllString(lockPath).equals(lock.lockedBy())) {
-                            ioService.delete(lockPath);
-                        }
-                    } catch (NoSuchFileException e) {
-                        // Logging this with a lower level as it can happen when a user triggers 
-                        // a forced lock release or when the locked file itself was deleted.
-                        logger.debug("Problem when releasing lock on session end (lock no longer exists): " + lock,
-                                     e);
-                    } catch (Throwable t) {
-                        logger.warn("Problem when releasing lock on session end: " + lock,
-                                    t);
+        if (locks == null) {
+            return;
+        }
+
+        try {
+            ioService.startBatch(fileSystem);
+            for (LockInfo lock : locks) {
+                try {
+                    final Path lockPath = Paths.convert(PathFactory.newLock(lock.getFile()));
+                    // Lock could have change ownership due to a forced lock release
+                    if (ioService.readAllString(lockPath).equals(lock.lockedBy())) {
+                        ioService.delete(lockPath);
                     }
+                } catch (NoSuchFileException e) {
+                    // Logging this with a lower level as it can happen when a user triggers 
+                    // a forced lock release or when the locked file itself was deleted.
+                    logger.debug("Problem when releasing lock on session end (lock no longer exists): " + lock,
+                                 e);
+                } catch (Throwable t) {
+                    logger.warn("Problem when releasing lock on session end: " + lock,
+                                t);
                 }
-            } finally {
-                ioService.endBatch();
             }
+        } finally {
+            ioService.endBatch();
         }
     }
 }
\ No newline at end of file
@@ -18,12 +18,22 @@ package org.uberfire.backend.server;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
@@ -40,6 +50,7 @@ import org.uberfire.backend.vfs.PathFactory;
 import org.uberfire.backend.vfs.VFSLockService;
 import org.uberfire.backend.vfs.impl.LockInfo;
 import org.uberfire.backend.vfs.impl.LockResult;
+import org.uberfire.commons.cluster.ClusterParameters;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.file.DirectoryStream.Filter;
@@ -52,14 +63,35 @@ import org.uberfire.workbench.events.ResourceRenamedEvent;
 
 /**
  * Errai RPC endpoint exposing a {@link VFSLockService}.
+ * <p>
+ * Locks are kept in memory, which is what every call reads and updates. Changes are written to the
+ * lock files of the system repository in the background: all the changes made during
+ * {@link #FLUSH_DELAY} milliseconds are persisted in a single batch, only in their last state. The
+ * table is recovered from the lock files on first use.
+ * <p>
+ * When clustered the table would only know the locks of this node, so the lock files stay the
+ * source of truth: every lock change is written in its own batch and every read checks the files.
  */
 @Service
 @ApplicationScoped
 public class VFSLockServiceImpl implements VFSLockService {
 
     public static final String LOCK_SESSION_ATTRIBUTE_NAME = "uf-locks";
+    public static final String FLUSH_DELAY = "org.uberfire.locks.flush.delay";
+    public static final String FLUSH_MAX_RETRY_DELAY = "org.uberfire.locks.flush.retry.max.delay";
+    private static final String LOCKS_ROOT = "default://locks@system/";
     private static final Logger logger = LoggerFactory.getLogger(VFSLockServiceImpl.class);
 
+    //for listeners the container doesn't inject, see UF-237
+    private static volatile VFSLockServiceImpl instance;
+
+    private static final ScheduledExecutorService FLUSH_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r,
+                                         "vfs-lock-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Inject
     @Named("configIO")
     private IOService ioService;
@@ -71,29 +103,73 @@ public class VFSLockServiceImpl implements VFSLockService {
     @Inject
     private SessionInfo sessionInfo;
 
+    //lock file uri -> lock
+    private final Map<String, LockInfo> locks = new ConcurrentHashMap<>();
+    //lock file uri -> lock file, of every lock changed since the last flush
+    private final Map<String, Path> changed = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicInteger failedFlushes = new AtomicInteger();
+    private final long flushDelay = Long.getLong(FLUSH_DELAY,
+                                                 200);
+    private final long maxRetryDelay = Long.getLong(FLUSH_MAX_RETRY_DELAY,
+                                                    60000);
+    private volatile boolean recovered;
+    private boolean clustered;
+
+    /**
+     * The started lock service, or null.
+     */
+    static VFSLockServiceImpl getInstance() {
+        return instance;
+    }
+
+    @PostConstruct
+    public void setup() {
+        clustered = new ClusterParameters().isAppFormerClustered();
+        instance = this;
+    }
+
+    /**
+     * Overrides the cluster detection done on startup.
+     */
+    void setClustered(final boolean clustered) {
+        this.clustered = clustered;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+        if (instance == this) {
+            instance = null;
+        }
+    }
+
     @Override
     public LockResult acquireLock(final Path path)
             throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        if (clustered) {
+            return acquireLockOnFile(path);
+        }
+        recover();
 
-        try {
-            ioService.startBatch(fileSystem);
-
-            final String userId = sessionInfo.getIdentity().getIdentifier();
-            final LockInfo lockInfo = retrieveLockInfo(path);
-            final LockResult result;
-            if (lockInfo.isLocked() && !lockInfo.lockedBy().equals(userId)) {
-                result = LockResult.failed(lockInfo);
-            } else {
-                ioService.write(Paths.convert(lockInfo.getLock()),
-                                userId);
-                result = LockResult.acquired(path,
-                                             userId);
-                updateSession(result.getLockInfo());
-            }
-            return result;
-        } finally {
-            ioService.endBatch();
+        final String userId = sessionInfo.getIdentity().getIdentifier();
+        final Path vfsLock = PathFactory.newLock(path);
+        final LockInfo lockInfo = new LockInfo(true,
+                                               userId,
+                                               path,
+                                               vfsLock);
+        final LockInfo current = locks.putIfAbsent(vfsLock.toURI(),
+                                                   lockInfo);
+        if (current != null && !current.lockedBy().equals(userId)) {
+            return LockResult.failed(current);
+        }
+        if (current == null) {
+            changed(vfsLock);
         }
+        final LockResult result = LockResult.acquired(path,
+                                                      userId);
+        updateSession(result.getLockInfo());
+        return result;
     }
 
     @Override
@@ -118,51 +194,63 @@ public class VFSLockServiceImpl implements VFSLockService {
     private LockResult releaseLock(final Path path,
                                    final boolean force)
             throws IllegalArgumentException, IOException {
+        if (clustered) {
+            return releaseLockOnFile(path,
+                                     force);
+        }
 
-        try {
-            ioService.startBatch(fileSystem);
+        final LockInfo lockInfo = retrieveLockInfo(path);
+        if (!lockInfo.isLocked()) {
+            return LockResult.failed(lockInfo);
+        }
+        if (!sessionInfo.getIdentity().getIdentifier().equals(lockInfo.lockedBy()) && !force) {
+            logger.error("Client requested to release a lock it doesn't hold: " + path.toURI());
+            throw new IOException("Not allowed");
+        }
+        if (!locks.remove(lockInfo.getLock().toURI(),
+                          lockInfo)) {
+            //released or taken over meanwhile
+            return LockResult.failed(retrieveLockInfo(path));
+        }
+        changed(lockInfo.getLock());
+        updateSession(lockInfo,
+                      true);
+        return LockResult.released(path);
+    }
 
-            final LockInfo lockInfo = retrieveLockInfo(path);
-            final LockResult result;
-            if (lockInfo.isLocked()) {
-                if (sessionInfo.getIdentity().getIdentifier().equals(lockInfo.lockedBy()) || force) {
-                    ioService.delete(Paths.convert(lockInfo.getLock()));
-                    updateSession(lockInfo,
-                                  true);
-                    result = LockResult.released(path);
-                } else {
-                    logger.error("Client requested to release a lock it doesn't hold: " + path.toURI());
-                    throw new IOException("Not allowed");
-                }
-            } else {
-                result = LockResult.failed(lockInfo);
+    /**
+     * Releases the given locks, unless they changed hands since.
+     */
+    public void releaseLocks(final Collection<LockInfo> sessionLocks) {
+        if (clustered) {
+            releaseLocksOnFile(sessionLocks);
+            return;
+        }
+        recover();
+
+        for (final LockInfo lock : sessionLocks) {
+            final Path vfsLock = PathFactory.newLock(lock.getFile());
+            final LockInfo current = locks.get(vfsLock.toURI());
+            // Lock could have change ownership due to a forced lock release
+            if (current != null && current.lockedBy().equals(lock.lockedBy()) && locks.remove(vfsLock.toURI(),
+                                                                                                current)) {
+                changed(vfsLock);
             }
-            return result;
-        } finally {
-            ioService.endBatch();
         }
     }
 
     @Override
     public LockInfo retrieveLockInfo(Path path)
             throws IllegalArgumentException, IOException {
+        if (clustered) {
+            return readLockInfo(path);
+        }
+        recover();
 
         final Path vfsLock = PathFactory.newLock(path);
-        final org.uberfire.java.nio.file.Path realLock = Paths.convert(vfsLock);
-
-        if (ioService.exists(realLock)) {
-            try {
-                final String lockedBy = ioService.readAllString(realLock);
-                return new LockInfo(true,
-                                    lockedBy,
-                                    path,
-                                    vfsLock);
-            } catch (NoSuchFileException nsfe) {
-                // We want to avoid starting a batch (to ensure cluster-wide consistent reads) here since 
-                // this method is invoked very frequently. Therefore it's possible that the lock file
-                // was deleted after the check to exists but before readAllString was invoked. There's
-                // no need for special exception handling as it simply means that file is no longer locked.
-            }
+        final LockInfo lockInfo = locks.get(vfsLock.toURI());
+        if (lockInfo != null) {
+            return lockInfo;
         }
         return new LockInfo(false,
                             null,
@@ -178,17 +266,21 @@ public class VFSLockServiceImpl implements VFSLockService {
         if (!Files.isDirectory(Paths.convert(path))) {
             return Collections.emptyList();
         }
+        if (clustered) {
+            return readLockInfos(path,
+                                 excludeOwnedLocks);
+        }
+        recover();
 
-        final Path lockPath = PathFactory.newLockPath(path);
-
-        final List<Path> locks = new ArrayList<Path>();
-        retrieveLocks(ioService.get(URI.create(lockPath.toURI())),
-                      locks);
+        final String lockPath = PathFactory.newLockPath(path).toURI();
+        final String prefix = lockPath.endsWith("/") ? lockPath : lockPath + "/";
 
         final List<LockInfo> lockInfos = new LinkedList<LockInfo>();
-        for (Path lock : locks) {
-            final LockInfo lockInfo = retrieveLockInfo(PathFactory.fromLock(lock));
-
+        for (final Map.Entry<String, LockInfo> entry : locks.entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            final LockInfo lockInfo = entry.getValue();
             if (!excludeOwnedLocks || !sessionInfo.getIdentity().getIdentifier().equals(lockInfo.lockedBy())) {
                 if (Files.exists(Paths.convert(lockInfo.getFile()))) {
                     lockInfos.add(lockInfo);
@@ -199,6 +291,44 @@ public class VFSLockServiceImpl implements VFSLockService {
         return lockInfos;
     }
 
+    /**
+     * Loads the locks persisted in the system repository, once.
+     */
+    private void recover() {
+        if (recovered) {
+            return;
+        }
+        synchronized (locks) {
+            if (recovered) {
+                return;
+            }
+            try {
+                final org.uberfire.java.nio.file.Path root = ioService.get(URI.create(LOCKS_ROOT));
+                if (root != null) {
+                    final List<Path> lockFiles = new ArrayList<Path>();
+                    retrieveLocks(root,
+                                  lockFiles);
+                    for (final Path lock : lockFiles) {
+                        try {
+                            final String lockedBy = ioService.readAllString(Paths.convert(lock));
+                            locks.putIfAbsent(lock.toURI(),
+                                              new LockInfo(true,
+                                                           lockedBy,
+                                                           PathFactory.fromLock(lock),
+                                                           lock));
+                        } catch (NoSuchFileException nsfe) {
+                            // released while recovering
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Can't recover the persisted locks",
+                             e);
+            }
+            recovered = true;
+        }
+    }
+
     private void retrieveLocks(final org.uberfire.java.nio.file.Path path,
                                final List<Path> accu) {
 
@@ -227,6 +357,169 @@ public class VFSLockServiceImpl implements VFSLockService {
         }
     }
 
+    private void changed(final Path vfsLock) {
+        changed.put(vfsLock.toURI(),
+                    vfsLock);
+        scheduleFlush(flushDelay);
+    }
+
+    private void scheduleFlush(final long delay) {
+        if (flushScheduled.compareAndSet(false,
+                                         true)) {
+            FLUSH_SCHEDULER.schedule(this::flush,
+                                     delay,
+                                     TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Persists the current state of every lock changed since the last flush, in a single batch.
+     */
+    void flush() {
+        //changes from now on need another flush
+        flushScheduled.set(false);
+        final List<Path> toFlush = new ArrayList<Path>();
+        for (final String uri : changed.keySet()) {
+            final Path vfsLock = changed.remove(uri);
+            if (vfsLock != null) {
+                toFlush.add(vfsLock);
+            }
+        }
+        if (toFlush.isEmpty()) {
+            return;
+        }
+
+        try {
+            ioService.startBatch(fileSystem);
+            for (final Path vfsLock : toFlush) {
+                final LockInfo lockInfo = locks.get(vfsLock.toURI());
+                if (lockInfo != null) {
+                    ioService.write(Paths.convert(vfsLock),
+                                    lockInfo.lockedBy());
+                } else {
+                    ioService.deleteIfExists(Paths.convert(vfsLock));
+                }
+            }
+            failedFlushes.set(0);
+        } catch (Exception e) {
+            //back off while the system repository keeps failing, the table stays authoritative meanwhile
+            final long retryDelay = retryDelay(failedFlushes.incrementAndGet());
+            logger.error("Can't persist " + toFlush.size() + " lock changes, retrying in " + retryDelay + "ms",
+                         e);
+            for (final Path vfsLock : toFlush) {
+                changed.putIfAbsent(vfsLock.toURI(),
+                                    vfsLock);
+            }
+            scheduleFlush(retryDelay);
+        } finally {
+            ioService.endBatch();
+        }
+    }
+
+    long retryDelay(final int failures) {
+        final long delay = Math.max(flushDelay,
+                                    1) << Math.min(failures,
+                                                   20);
+        return Math.min(delay,
+                        Math.max(maxRetryDelay,
+                                 flushDelay));
+    }
+
+    private LockResult acquireLockOnFile(final Path path) {
+        try {
+            ioService.startBatch(fileSystem);
+
+            final String userId = sessionInfo.getIdentity().getIdentifier();
+            final LockInfo lockInfo = readLockInfo(path);
+            if (lockInfo.isLocked() && !lockInfo.lockedBy().equals(userId)) {
+                return LockResult.failed(lockInfo);
+            }
+            ioService.write(Paths.convert(lockInfo.getLock()),
+                            userId);
+            final LockResult result = LockResult.acquired(path,
+                                                          userId);
+            updateSession(result.getLockInfo());
+            return result;
+        } finally {
+            ioService.endBatch();
+        }
+    }
+
+    private LockResult releaseLockOnFile(final Path path,
+                                         final boolean force) {
+        try {
+            ioService.startBatch(fileSystem);
+
+            final LockInfo lockInfo = readLockInfo(path);
+            if (!lockInfo.isLocked()) {
+                return LockResult.failed(lockInfo);
+            }
+            if (!sessionInfo.getIdentity().getIdentifier().equals(lockInfo.lockedBy()) && !force) {
+                logger.error("Client requested to release a lock it doesn't hold: " + path.toURI());
+                throw new IOException("Not allowed");
+            }
+            ioService.delete(Paths.convert(lockInfo.getLock()));
+            updateSession(lockInfo,
+                          true);
+            return LockResult.released(path);
+        } finally {
+            ioService.endBatch();
+        }
+    }
+
+    private void releaseLocksOnFile(final Collection<LockInfo> sessionLocks) {
+        try {
+            ioService.startBatch(fileSystem);
+            for (final LockInfo lock : sessionLocks) {
+                final LockInfo current = readLockInfo(lock.getFile());
+                // Lock could have change ownership due to a forced lock release
+                if (current.isLocked() && current.lockedBy().equals(lock.lockedBy())) {
+                    ioService.deleteIfExists(Paths.convert(current.getLock()));
+                }
+            }
+        } finally {
+            ioService.endBatch();
+        }
+    }
+
+    private LockInfo readLockInfo(final Path path) {
+        final Path vfsLock = PathFactory.newLock(path);
+        final org.uberfire.java.nio.file.Path realLock = Paths.convert(vfsLock);
+
+        if (ioService.exists(realLock)) {
+            try {
+                return new LockInfo(true,
+                                    ioService.readAllString(realLock),
+                                    path,
+                                    vfsLock);
+            } catch (NoSuchFileException nsfe) {
+                // released after the check, not locked anymore
+            }
+        }
+        return new LockInfo(false,
+                            null,
+                            path,
+                            vfsLock);
+    }
+
+    private List<LockInfo> readLockInfos(final Path path,
+                                         final boolean excludeOwnedLocks) {
+        final List<Path> lockFiles = new ArrayList<Path>();
+        retrieveLocks(ioService.get(URI.create(PathFactory.newLockPath(path).toURI())),
+                      lockFiles);
+
+        final List<LockInfo> lockInfos = new LinkedList<LockInfo>();
+        for (final Path lock : lockFiles) {
+            final LockInfo lockInfo = readLockInfo(PathFactory.fromLock(lock));
+            if (lockInfo.isLocked() && (!excludeOwnedLocks || !sessionInfo.getIdentity().getIdentifier().equals(lockInfo.lockedBy()))) {
+                if (Files.exists(Paths.convert(lockInfo.getFile()))) {
+                    lockInfos.add(lockInfo);
+                }
+            }
+        }
+        return lockInfos;
+    }
+
     /**
      * Updates the user's session to track all currently held locks so we can
      * release locks on session expiry.
@@ -270,15 +563,23 @@ public class VFSLockServiceImpl implements VFSLockService {
     }
 
     private void maybeDeleteLock(final Path path) {
-        try {
-            ioService.startBatch(fileSystem);
-
-            final LockInfo lockInfo = retrieveLockInfo(path);
-            if (lockInfo.isLocked()) {
-                ioService.delete(Paths.convert(lockInfo.getLock()));
+        if (clustered) {
+            try {
+                ioService.startBatch(fileSystem);
+                final LockInfo lockInfo = readLockInfo(path);
+                if (lockInfo.isLocked()) {
+                    ioService.deleteIfExists(Paths.convert(lockInfo.getLock()));
+                }
+            } finally {
+                ioService.endBatch();
             }
-        } finally {
-            ioService.endBatch();
+            return;
+        }
+        recover();
+
+        final Path vfsLock = PathFactory.newLock(path);
+        if (locks.remove(vfsLock.toURI()) != null) {
+            changed(vfsLock);
         }
     }
-}
\ No newline at end of file
+}
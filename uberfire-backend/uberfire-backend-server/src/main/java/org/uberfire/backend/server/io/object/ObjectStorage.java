@@ -51,6 +51,17 @@ public interface ObjectStorage {
     <T> void write(String path,
                    T value);
 
+    /**
+     * Starts a batch: everything written or deleted until {@link #endBatch()} is committed at once.
+     * Batches can be nested, only the outermost one commits.
+     */
+    void startBatch();
+
+    /**
+     * Ends the batch started by the last {@link #startBatch()}.
+     */
+    void endBatch();
+
     /**
      * Delete a path from the object storage if exists. That path contains the object stored.
      * @param path The path to delete
@@ -18,22 +18,61 @@ package org.uberfire.backend.server.io.object;
 
 import java.net.URI;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.jboss.errai.marshalling.server.MappingContextSingleton;
 import org.jboss.errai.marshalling.server.ServerMarshalling;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.WatchContext;
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.FileSystemAlreadyExistsException;
 import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.WatchEvent;
+import org.uberfire.java.nio.file.WatchKey;
+import org.uberfire.java.nio.file.WatchService;
 
+/**
+ * Stored objects are cached once read or written, including the paths found not to exist, so
+ * repeated reads don't touch the file system. Entries are dropped when the file system watch service
+ * reports a change of their path, wherever it comes from. Without a watch service nothing is cached.
+ * <p>
+ * Values of immutable types are returned as cached, any other value is unmarshalled again from the
+ * cached content on every read, as callers are free to modify what they get.
+ */
 public class ObjectStorageImpl implements ObjectStorage {
 
+    public static final String CACHE_SIZE = "org.uberfire.object.storage.cache.size";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectStorageImpl.class);
+    private static final CachedObject MISSING = new CachedObject(null,
+                                                                 null);
+
     private IOService ioService;
 
     private FileSystem fileSystem;
 
+    private WatchService watchService;
+
+    private final int cacheSize = Integer.getInteger(CACHE_SIZE,
+                                                     1000);
+    //path -> object, guarded by itself
+    private final Map<String, CachedObject> cache = new LinkedHashMap<String, CachedObject>(16,
+                                                                                            0.75f,
+                                                                                            true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedObject> eldest) {
+            return size() > cacheSize;
+        }
+    };
+    //changes on every invalidation, so reads started before one don't cache what they got
+    private long generation;
+
     @Inject
     public ObjectStorageImpl(@Named("configIO") final IOService ioService) {
         this.ioService = ioService;
@@ -43,12 +82,24 @@ public class ObjectStorageImpl implements ObjectStorage {
     public void init(String rootPath) {
         initializeMarshaller();
         initializeFileSystem(rootPath);
+        initializeCache();
+    }
+
+    @PreDestroy
+    public void dispose() {
+        if (watchService != null) {
+            watchService.close();
+        }
     }
 
     @Override
     public boolean exists(final String path) {
         Path fsPath = fileSystem.getPath(path);
 
+        final CachedObject cached = cached(fsPath);
+        if (cached != null) {
+            return cached != MISSING;
+        }
         try {
             return ioService.exists(fsPath);
         } catch (final Exception e) {
@@ -59,15 +110,29 @@ public class ObjectStorageImpl implements ObjectStorage {
     @Override
     public <T> T read(final String path) {
         Path fsPath = fileSystem.getPath(path);
+
+        final CachedObject cached = cached(fsPath);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        final long readGeneration = generation();
         try {
             if (ioService.exists(fsPath)) {
                 String content = ioService.readAllString(fsPath);
-                return (T) ServerMarshalling.fromJSON(content);
+                final Object value = ServerMarshalling.fromJSON(content);
+                cache(fsPath,
+                      new CachedObject(content,
+                                       isImmutable(value) ? value : null),
+                      readGeneration);
+                return (T) value;
             }
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
 
+        cache(fsPath,
+              MISSING,
+              readGeneration);
         return null;
     }
 
@@ -80,6 +145,11 @@ public class ObjectStorageImpl implements ObjectStorage {
             String content = ServerMarshalling.toJSON(value);
             ioService.write(fsPath,
                             content);
+            final long writeGeneration = invalidate(fsPath);
+            cache(fsPath,
+                  new CachedObject(content,
+                                   isImmutable(value) ? value : null),
+                  writeGeneration);
         } catch (final Exception e) {
             throw new RuntimeException(e);
         } finally {
@@ -87,9 +157,21 @@ public class ObjectStorageImpl implements ObjectStorage {
         }
     }
 
+    @Override
+    public void startBatch() {
+        ioService.startBatch(fileSystem);
+    }
+
+    @Override
+    public void endBatch() {
+        ioService.endBatch();
+    }
+
     @Override
     public void delete(final String path) {
-        ioService.deleteIfExists(fileSystem.getPath(path));
+        final Path fsPath = fileSystem.getPath(path);
+        ioService.deleteIfExists(fsPath);
+        invalidate(fsPath);
     }
 
     @Override
@@ -116,4 +198,126 @@ public class ObjectStorageImpl implements ObjectStorage {
             fileSystem = ioService.getFileSystem(URI.create(rootPath));
         }
     }
+
+    private void initializeCache() {
+        try {
+            watchService = fileSystem.newWatchService();
+        } catch (final Exception e) {
+            LOGGER.warn("Objects of " + fileSystem + " won't be cached, its changes can't be watched",
+                        e);
+        }
+        if (watchService == null) {
+            return;
+        }
+        final Thread watcher = new Thread(this::invalidateChanges,
+                                          "object-storage-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void invalidateChanges() {
+        while (true) {
+            final WatchKey wk;
+            try {
+                wk = watchService.take();
+            } catch (final Exception ex) {
+                break;
+            }
+
+            try {
+                for (final WatchEvent<?> event : wk.pollEvents()) {
+                    final Object context = event.context();
+                    if (context instanceof WatchContext) {
+                        invalidate(((WatchContext) context).getPath());
+                        invalidate(((WatchContext) context).getOldPath());
+                    } else {
+                        invalidateAll();
+                    }
+                }
+            } catch (final Exception e) {
+                LOGGER.warn("Can't process the changes of " + fileSystem,
+                            e);
+                invalidateAll();
+            }
+
+            if (!wk.reset()) {
+                break;
+            }
+        }
+        //no more notifications, nothing can be cached safely anymore
+        synchronized (cache) {
+            watchService = null;
+            cache.clear();
+            generation++;
+        }
+    }
+
+    private CachedObject cached(final Path path) {
+        synchronized (cache) {
+            return cache.get(key(path));
+        }
+    }
+
+    private long generation() {
+        synchronized (cache) {
+            return generation;
+        }
+    }
+
+    private void cache(final Path path,
+                       final CachedObject cached,
+                       final long expectedGeneration) {
+        synchronized (cache) {
+            if (watchService != null && generation == expectedGeneration) {
+                cache.put(key(path),
+                          cached);
+            }
+        }
+    }
+
+    private long invalidate(final Path path) {
+        synchronized (cache) {
+            if (path != null) {
+                cache.remove(key(path));
+            }
+            return ++generation;
+        }
+    }
+
+    private void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+            generation++;
+        }
+    }
+
+    private String key(final Path path) {
+        return path.toString();
+    }
+
+    private static boolean isImmutable(final Object value) {
+        return value instanceof String || value instanceof Boolean || value instanceof Character
+                || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Short || value instanceof Byte
+                || value instanceof Enum;
+    }
+
+    private static class CachedObject {
+
+        private final String content;
+        private final Object value;
+
+        private CachedObject(final String content,
+                             final Object value) {
+            this.content = content;
+            this.value = value;
+        }
+
+        private Object get() {
+            if (content == null || value != null) {
+                return value;
+            }
+            return ServerMarshalling.fromJSON(content);
+        }
+    }
 }
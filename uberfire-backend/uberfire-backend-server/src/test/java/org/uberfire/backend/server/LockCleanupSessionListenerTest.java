@@ -97,4 +97,23 @@ public class LockCleanupSessionListenerTest {
             producer.destroy();
         }
     }
+
+    @Test
+    public void injectedLockServiceReleasesSessionLocks() {
+        final VFSLockServiceImpl lockService = mock(VFSLockServiceImpl.class);
+        final LockCleanupSessionListener listener = new LockCleanupSessionListener(lockService);
+        final LockInfo lock = new LockInfo(true,
+                                           "christian",
+                                           PathFactory.newPath("file",
+                                                               "default://file"));
+
+        when(evt.getSession()).thenReturn(session);
+        when(session.getAttribute(VFSLockServiceImpl.LOCK_SESSION_ATTRIBUTE_NAME)).thenReturn(Collections.singleton(lock));
+
+        listener.sessionDestroyed(evt);
+
+        verify(lockService).releaseLocks(Collections.singleton(lock));
+        verify(ioService,
+               never()).delete(any(Path.class));
+    }
 }
@@ -16,8 +16,10 @@
 
 package org.uberfire.backend.server;
 
+import java.util.Collections;
 import java.util.Set;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
 
 import org.jboss.errai.bus.client.api.QueueSession;
 import org.jboss.errai.bus.client.api.base.MessageBuilder;
@@ -25,7 +27,10 @@ import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.server.api.RpcContext;
 import org.jboss.errai.security.shared.api.identity.User;
 import org.jboss.errai.security.shared.api.identity.UserImpl;
+import org.junit.After;
+import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InOrder;
@@ -38,7 +43,6 @@ import org.uberfire.backend.vfs.impl.LockInfo;
 import org.uberfire.backend.vfs.impl.LockResult;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.FileSystem;
-import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.rpc.SessionInfo;
 
 import static org.junit.Assert.*;
@@ -70,20 +74,35 @@ public class VFSLockServiceTest {
     private Path path = PathFactory.newPath("file-to-lock.txt",
                                             "default://file-to-lock.txt");
 
+    @BeforeClass
+    public static void setupFlushDelay() {
+        //tests flush explicitly
+        System.setProperty(VFSLockServiceImpl.FLUSH_DELAY,
+                           "60000");
+    }
+
+    @AfterClass
+    public static void clearFlushDelay() {
+        System.clearProperty(VFSLockServiceImpl.FLUSH_DELAY);
+    }
+
     @Before
     public void setup() {
         setupRpcContext();
 
-        User testUser = new UserImpl("testUser");
-        when(sessionInfo.getIdentity()).thenReturn(testUser);
+        lockService.setup();
+        actAs("testUser");
         when(queueSession.getAttribute(HttpSession.class,
                                        HttpSession.class.getName())).thenReturn(httpSession);
     }
 
+    @After
+    public void tearDown() {
+        lockService.destroy();
+    }
+
     @Test
     public void acquireLockSucceedsIfFileUnlocked() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(false);
-
         final LockResult result = lockService.acquireLock(path);
         assertTrue(result.isSuccess());
         assertEquals(path,
@@ -95,8 +114,7 @@ public class VFSLockServiceTest {
 
     @Test
     public void acquireLockSucceedsIfLockOwned() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("testUser");
+        lockService.acquireLock(path);
 
         final LockResult result = lockService.acquireLock(path);
         assertTrue(result.isSuccess());
@@ -109,8 +127,9 @@ public class VFSLockServiceTest {
 
     @Test
     public void acquireLockFailsIfFileLocked() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("some-other-user");
+        actAs("some-other-user");
+        lockService.acquireLock(path);
+        actAs("testUser");
 
         final LockResult result = lockService.acquireLock(path);
         assertFalse(result.isSuccess());
@@ -123,8 +142,6 @@ public class VFSLockServiceTest {
 
     @Test
     public void acquireLockUpdatesSession() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(false);
-
         lockService.acquireLock(path);
         verify(httpSession).setAttribute(eq(VFSLockServiceImpl.LOCK_SESSION_ATTRIBUTE_NAME),
                                          any(Set.class));
@@ -134,23 +151,24 @@ public class VFSLockServiceTest {
     // Unfortunately, batching is required for ensuring writes are properly 
     // replicated in the cluster. This needs to addressed in a future version 
     // of UF: https://issues.jboss.org/browse/UF-242
-    public void acquireLockUsesBatch() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(false);
-
+    public void acquireLockIsPersistedInBatch() {
         lockService.acquireLock(path);
+        verify(ioService,
+               never()).write(any(org.uberfire.java.nio.file.Path.class),
+                              any(String.class));
+
+        lockService.flush();
 
         final InOrder inOrder = inOrder(ioService);
         inOrder.verify(ioService).startBatch(fileSystem);
-        inOrder.verify(ioService).exists(any(org.uberfire.java.nio.file.Path.class));
         inOrder.verify(ioService).write(any(org.uberfire.java.nio.file.Path.class),
-                                        any(String.class));
+                                        eq("testUser"));
         inOrder.verify(ioService).endBatch();
     }
 
     @Test
     public void releaseLockSucceedsIfLockOwned() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("testUser");
+        lockService.acquireLock(path);
 
         final LockResult result = lockService.releaseLock(path);
         assertTrue(result.isSuccess());
@@ -159,12 +177,14 @@ public class VFSLockServiceTest {
         assertEquals(null,
                      result.getLockInfo().lockedBy());
         assertFalse(result.getLockInfo().isLocked());
+        assertFalse(lockService.retrieveLockInfo(path).isLocked());
     }
 
     @Test
     public void releaseLockFailsIfLockNotOwned() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("some-other-user");
+        actAs("some-other-user");
+        lockService.acquireLock(path);
+        actAs("testUser");
 
         try {
             lockService.releaseLock(path);
@@ -172,12 +192,14 @@ public class VFSLockServiceTest {
         } catch (Exception ioe) {
             // expected    
         }
+        assertTrue(lockService.retrieveLockInfo(path).isLocked());
     }
 
     @Test
     public void forceReleaseLockSucceedsIfLockNotOwned() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("some-other-user");
+        actAs("some-other-user");
+        lockService.acquireLock(path);
+        actAs("testUser");
 
         final LockResult result = lockService.forceReleaseLock(path);
         assertTrue(result.isSuccess());
@@ -190,8 +212,6 @@ public class VFSLockServiceTest {
 
     @Test
     public void releaseLockFailsIfFileUnlocked() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(false);
-
         final LockResult result = lockService.releaseLock(path);
         assertFalse(result.isSuccess());
         assertEquals(path,
@@ -205,38 +225,56 @@ public class VFSLockServiceTest {
     public void releaseLockUpdatesSession() {
         lockService.acquireLock(path);
 
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("testUser");
-
         lockService.releaseLock(path);
         verify(httpSession).setAttribute(eq(VFSLockServiceImpl.LOCK_SESSION_ATTRIBUTE_NAME),
                                          any(Set.class));
     }
 
     @Test
-    // Unfortunately, batching is required for ensuring writes are properly 
-    // replicated in the cluster. This needs to addressed in a future version 
-    // of UF: https://issues.jboss.org/browse/UF-242
-    public void releaseLockUsesBatch() {
+    public void lockChangesAreCoalesced() {
+        final Path otherPath = PathFactory.newPath("other-file.txt",
+                                                   "default://other-file.txt");
         lockService.acquireLock(path);
+        lockService.releaseLock(path);
+        lockService.acquireLock(path);
+        lockService.acquireLock(otherPath);
+        lockService.releaseLock(otherPath);
+
+        lockService.flush();
+
+        verify(ioService,
+               times(1)).startBatch(fileSystem);
+        verify(ioService,
+               times(1)).write(any(org.uberfire.java.nio.file.Path.class),
+                               eq("testUser"));
+        verify(ioService,
+               times(1)).deleteIfExists(any(org.uberfire.java.nio.file.Path.class));
+        verify(ioService,
+               times(1)).endBatch();
+
+        // nothing left to persist
+        lockService.flush();
+        verify(ioService,
+               times(1)).startBatch(fileSystem);
+    }
 
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("testUser");
+    @Test
+    public void sessionLocksAreReleased() {
+        final LockInfo lockInfo = lockService.acquireLock(path).getLockInfo();
 
-        lockService.releaseLock(path);
+        lockService.releaseLocks(Collections.singleton(new LockInfo(true,
+                                                                    "some-other-user",
+                                                                    path)));
+        assertTrue(lockService.retrieveLockInfo(path).isLocked());
 
-        final InOrder inOrder = inOrder(ioService);
-        inOrder.verify(ioService).startBatch(fileSystem);
-        inOrder.verify(ioService).exists(any(org.uberfire.java.nio.file.Path.class));
-        inOrder.verify(ioService).readAllString(any(org.uberfire.java.nio.file.Path.class));
-        inOrder.verify(ioService).delete(any(org.uberfire.java.nio.file.Path.class));
-        inOrder.verify(ioService).endBatch();
+        lockService.releaseLocks(Collections.singleton(lockInfo));
+        assertFalse(lockService.retrieveLockInfo(path).isLocked());
     }
 
     @Test
     public void retrieveLockInfoForLockedFile() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("some-user");
+        actAs("some-user");
+        lockService.acquireLock(path);
 
         final LockInfo info = lockService.retrieveLockInfo(path);
         assertTrue(info.isLocked());
@@ -246,22 +284,77 @@ public class VFSLockServiceTest {
 
     @Test
     public void retrieveLockInfoForUnlockedFile() {
-        when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(false);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn(null);
-
         final LockInfo info = lockService.retrieveLockInfo(path);
         assertFalse(info.isLocked());
         assertNull(info.lockedBy());
     }
 
     @Test
-    public void retrieveLockInfoNoSuchFileException() {
+    public void sessionLocksAreReleasedByListenersNotInjected() {
+        final LockInfo lock = lockService.acquireLock(path).getLockInfo();
+        final HttpSessionEvent event = mock(HttpSessionEvent.class);
+        when(event.getSession()).thenReturn(httpSession);
+        when(httpSession.getAttribute(VFSLockServiceImpl.LOCK_SESSION_ATTRIBUTE_NAME)).thenReturn(Collections.singleton(lock));
+
+        assertTrue(lockService.retrieveLockInfo(path).isLocked());
+
+        new LockCleanupSessionListener().sessionDestroyed(event);
+
+        assertFalse(lockService.retrieveLockInfo(path).isLocked());
+    }
+
+    @Test
+    public void clusteredLocksAreCheckedOnFile() {
+        lockService.setClustered(true);
         when(ioService.exists(any(org.uberfire.java.nio.file.Path.class))).thenReturn(true);
-        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenThrow(new NoSuchFileException());
+        when(ioService.readAllString(any(org.uberfire.java.nio.file.Path.class))).thenReturn("node2-user");
 
-        final LockInfo info = lockService.retrieveLockInfo(path);
-        assertFalse(info.isLocked());
-        assertNull(info.lockedBy());
+        final LockResult result = lockService.acquireLock(path);
+
+        assertFalse(result.isSuccess());
+        assertEquals("node2-user",
+                     result.getLockInfo().lockedBy());
+        assertEquals("node2-user",
+                     lockService.retrieveLockInfo(path).lockedBy());
+        verify(ioService,
+               never()).write(any(org.uberfire.java.nio.file.Path.class),
+                              any(String.class));
+    }
+
+    @Test
+    public void clusteredLockIsWrittenRightAway() {
+        lockService.setClustered(true);
+
+        assertTrue(lockService.acquireLock(path).isSuccess());
+
+        final InOrder inOrder = inOrder(ioService);
+        inOrder.verify(ioService).startBatch(fileSystem);
+        inOrder.verify(ioService).write(any(org.uberfire.java.nio.file.Path.class),
+                                        eq("testUser"));
+        inOrder.verify(ioService).endBatch();
+    }
+
+    @Test
+    public void failedFlushesBackOff() {
+        //never retried sooner than a regular flush, nor later than the max retry delay
+        assertEquals(60000,
+                     lockService.retryDelay(1));
+        assertEquals(60000,
+                     lockService.retryDelay(30));
+
+        doThrow(new RuntimeException("system repository unavailable")).when(ioService).startBatch(fileSystem);
+        lockService.acquireLock(path);
+        lockService.flush();
+
+        doNothing().when(ioService).startBatch(fileSystem);
+        lockService.flush();
+        verify(ioService).write(any(org.uberfire.java.nio.file.Path.class),
+                                eq("testUser"));
+    }
+
+    private void actAs(final String userId) {
+        final User user = new UserImpl(userId);
+        when(sessionInfo.getIdentity()).thenReturn(user);
     }
 
     private void setupRpcContext() {
@@ -270,4 +363,4 @@ public class VFSLockServiceTest {
                             queueSession);
         RpcContext.set(message);
     }
-}
\ No newline at end of file
+}
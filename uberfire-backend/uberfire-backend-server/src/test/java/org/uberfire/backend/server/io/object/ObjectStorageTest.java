@@ -63,6 +63,7 @@ public class ObjectStorageTest {
 
     @After
     public void cleanupFileSystem() {
+        objectStorage.dispose();
         fileSystemTestingUtils.cleanup();
     }
 
@@ -143,6 +144,38 @@ public class ObjectStorageTest {
         assertFalse(objectStorage.exists("/forks/uberfire"));
     }
 
+    @Test
+    public void testReadValuesAreNotShared() {
+        final ArrayList<String> fileContent = new ArrayList<String>();
+        fileContent.add("uberfire");
+        objectStorage.write("/forks/uberfire",
+                            fileContent);
+
+        final List<String> first = objectStorage.read("/forks/uberfire");
+        first.add("changed");
+        fileContent.add("changed too");
+
+        final List<String> second = objectStorage.read("/forks/uberfire");
+        assertEquals(1,
+                     second.size());
+        assertEquals("uberfire",
+                     second.get(0));
+    }
+
+    @Test
+    public void testReadAfterDelete() {
+        assertNull(objectStorage.read("/forks/uberfire"));
+
+        objectStorage.write("/forks/uberfire",
+                            "content");
+        assertEquals("content",
+                     objectStorage.read("/forks/uberfire"));
+
+        objectStorage.delete("/forks/uberfire");
+        assertNull(objectStorage.read("/forks/uberfire"));
+        assertFalse(objectStorage.exists("/forks/uberfire"));
+    }
+
     private SessionInfo mockSessionInfo() {
         return new SessionInfoMock();
     }
@@ -44,5 +44,14 @@ public interface MetaIndexEngine extends PriorityDisposable {
 
     void commit(final KCluster cluster);
 
+    void flush(final KCluster cluster);
+
+    String getLastIndexedCommit(final KCluster cluster,
+                                final String root);
+
+    void setLastIndexedCommit(final KCluster cluster,
+                              final String root,
+                              final String commitId);
+
     void beforeDispose(final Runnable callback);
 }
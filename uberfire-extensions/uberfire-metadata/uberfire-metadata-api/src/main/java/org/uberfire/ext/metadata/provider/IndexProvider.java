@@ -41,6 +41,30 @@ public interface IndexProvider extends Disposable {
     void delete(String index,
                 String id);
 
+    void delete(String index,
+                List<String> ids);
+
+    /**
+     * Makes all changes done so far to the cluster durable, for callers that can't rely on the
+     * provider commit policy.
+     */
+    void flush(KCluster cluster);
+
+    /**
+     * Commit of the given root of the cluster that the index is known to be up to date with, as
+     * recorded by {@link #setLastIndexedCommit(KCluster, String, String)}, or null if unknown.
+     */
+    String getLastIndexedCommit(KCluster cluster,
+                                String root);
+
+    /**
+     * Durably records the commit of the given root of the cluster that the index is up to date with.
+     * Providers that can't keep it ignore the call.
+     */
+    void setLastIndexedCommit(KCluster cluster,
+                              String root,
+                              String commitId);
+
     List<KObject> findById(String index,
                            String id) throws IOException;
 
@@ -38,6 +38,18 @@ public interface IOSearchService {
     int fullTextSearchHits(final String term,
                            final Path... roots);
 
+    SearchPage<Path> searchByAttrs(final Map<String, ?> attrs,
+                                   final Filter filter,
+                                   final int pageSize,
+                                   final SearchCursor after,
+                                   final Path... roots);
+
+    SearchPage<Path> fullTextSearch(final String term,
+                                    final Filter filter,
+                                    final int pageSize,
+                                    final SearchCursor after,
+                                    final Path... roots);
+
     interface Filter {
 
         boolean accept(final KObject kObject);
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.search;
+
+/**
+ * Position of the last hit of a search page, used to ask for the page that follows it.
+ * Its content is only meaningful to the search index that created it.
+ */
+public final class SearchCursor {
+
+    private final int doc;
+    private final float score;
+    private final long searcher;
+
+    public SearchCursor(final int doc,
+                        final float score) {
+        this(doc,
+             score,
+             0);
+    }
+
+    /**
+     * @param searcher token of the index view the position belongs to, 0 if none
+     */
+    public SearchCursor(final int doc,
+                        final float score,
+                        final long searcher) {
+        this.doc = doc;
+        this.score = score;
+        this.searcher = searcher;
+    }
+
+    public int getDoc() {
+        return doc;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public long getSearcher() {
+        return searcher;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final SearchCursor that = (SearchCursor) o;
+        return doc == that.doc && Float.compare(score,
+                                                that.score) == 0 && searcher == that.searcher;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * doc + Float.floatToIntBits(score)) + Long.hashCode(searcher);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCursor{doc=" + doc + ", score=" + score + ", searcher=" + searcher + "}";
+    }
+}
@@ -18,6 +18,7 @@ package org.uberfire.ext.metadata.search;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.uberfire.ext.metadata.model.KObject;
 
@@ -39,4 +40,27 @@ public interface SearchIndex {
 
     int fullTextSearchHits(final String term,
                            final ClusterSegment... clusterSegments);
+
+    /**
+     * Searches the page of at most {@code pageSize} hits that follows {@code after}, or the first
+     * one if {@code after} is null, counting all the hits in the same pass. The page is only short
+     * when no hits accepted by the filter are left, the total is counted before filtering.
+     * @param fields stored fields to load for each hit, all of them if null
+     */
+    SearchPage<KObject> searchByAttrs(final Map<String, ?> attrs,
+                                      final IOSearchService.Filter filter,
+                                      final int pageSize,
+                                      final SearchCursor after,
+                                      final Set<String> fields,
+                                      final ClusterSegment... clusterSegments);
+
+    /**
+     * @see #searchByAttrs(Map, IOSearchService.Filter, int, SearchCursor, Set, ClusterSegment...)
+     */
+    SearchPage<KObject> fullTextSearch(final String term,
+                                       final IOSearchService.Filter filter,
+                                       final int pageSize,
+                                       final SearchCursor after,
+                                       final Set<String> fields,
+                                       final ClusterSegment... clusterSegments);
 }
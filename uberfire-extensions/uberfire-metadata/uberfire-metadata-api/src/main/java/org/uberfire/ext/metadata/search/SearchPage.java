@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.search;
+
+import java.util.List;
+
+/**
+ * A page of search hits.
+ */
+public class SearchPage<T> {
+
+    private final List<T> hits;
+    private final int totalHits;
+    private final SearchCursor next;
+
+    public SearchPage(final List<T> hits,
+                      final int totalHits,
+                      final SearchCursor next) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+        this.next = next;
+    }
+
+    /**
+     * Hits of this page that were accepted by the search filter.
+     */
+    public List<T> getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of hits of the whole search, before filtering.
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Cursor of the next page, or null when this is the last one.
+     */
+    public SearchCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -183,6 +183,31 @@ public class ElasticSearchIndexProvider implements IndexProvider {
         }
     }
 
+    @Override
+    public void delete(String index,
+                       List<String> ids) {
+        ids.forEach(id -> this.delete(index,
+                                      id));
+    }
+
+    @Override
+    public void flush(KCluster cluster) {
+        // writes are sent with an immediate refresh policy, nothing is pending
+    }
+
+    @Override
+    public String getLastIndexedCommit(KCluster cluster,
+                                       String root) {
+        return null;
+    }
+
+    @Override
+    public void setLastIndexedCommit(KCluster cluster,
+                                     String root,
+                                     String commitId) {
+        // not kept, clusters of this provider are not caught up incrementally
+    }
+
     @Override
     public List<KObject> findById(String index,
                                   String id) throws IOException {
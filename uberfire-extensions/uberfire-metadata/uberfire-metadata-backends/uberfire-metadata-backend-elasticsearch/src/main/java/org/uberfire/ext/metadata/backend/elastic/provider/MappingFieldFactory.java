@@ -36,6 +36,7 @@ import org.uberfire.ext.metadata.model.impl.KPropertyImpl;
 import org.uberfire.ext.metadata.model.schema.MetaObject;
 import org.uberfire.ext.metadata.model.schema.MetaProperty;
 import org.uberfire.java.nio.base.version.VersionHistory;
+import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.attribute.FileTime;
 
 import static org.uberfire.ext.metadata.engine.MetaIndexEngine.FULL_TEXT_FIELD;
@@ -153,29 +154,29 @@ public class MappingFieldFactory {
     }
 
     private List<ElasticMetaProperty> build(VersionHistory versionHistory) {
-        if (versionHistory.records().size() == 0) {
+        final VersionRecord lastRecord = versionHistory.lastRecord();
+        if (lastRecord == null) {
             return Collections.emptyList();
         }
-
-        final int lastIndex = versionHistory.records().size() - 1;
+        final VersionRecord firstRecord = versionHistory.firstRecord();
         List<ElasticMetaProperty> properties = new ArrayList<>();
 
         properties.addAll(build(buildKProperty(CHECKIN_COMMENT,
-                                               versionHistory.records().get(lastIndex).comment(),
+                                               lastRecord.comment(),
                                                true)));
         properties.addAll(build(buildKProperty(LAST_MODIFIED_BY,
-                                               versionHistory.records().get(lastIndex).author(),
+                                               lastRecord.author(),
                                                true)));
 
         properties.addAll(build(buildKProperty(CREATED_BY,
-                                               versionHistory.records().get(0).author(),
+                                               firstRecord.author(),
                                                true)));
 
         properties.addAll(build(buildKProperty(CREATED_DATE,
-                                               versionHistory.records().get(0).date(),
+                                               firstRecord.date(),
                                                true)));
         properties.addAll(build(buildKProperty(LAST_MODIFIED_DATE,
-                                               versionHistory.records().get(lastIndex).date(),
+                                               lastRecord.date(),
                                                true)));
 
         return properties;
@@ -19,6 +19,7 @@ package org.uberfire.ext.metadata.backend.elastic.search;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -36,7 +37,9 @@ import org.uberfire.ext.metadata.provider.IndexProvider;
 import org.uberfire.ext.metadata.search.ClusterSegment;
 import org.uberfire.ext.metadata.search.DateRange;
 import org.uberfire.ext.metadata.search.IOSearchService;
+import org.uberfire.ext.metadata.search.SearchCursor;
 import org.uberfire.ext.metadata.search.SearchIndex;
+import org.uberfire.ext.metadata.search.SearchPage;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Collections.emptyList;
@@ -118,6 +121,51 @@ public class ElasticSearchSearchIndex implements SearchIndex {
                           clusterSegments);
     }
 
+    @Override
+    public SearchPage<KObject> searchByAttrs(final Map<String, ?> attrs,
+                                             final IOSearchService.Filter filter,
+                                             final int pageSize,
+                                             final SearchCursor after,
+                                             final Set<String> fields,
+                                             final ClusterSegment... clusterSegments) {
+        return page(searchByAttrs(attrs,
+                                  filter,
+                                  clusterSegments),
+                    pageSize,
+                    after);
+    }
+
+    @Override
+    public SearchPage<KObject> fullTextSearch(final String term,
+                                              final IOSearchService.Filter filter,
+                                              final int pageSize,
+                                              final SearchCursor after,
+                                              final Set<String> fields,
+                                              final ClusterSegment... clusterSegments) {
+        return page(fullTextSearch(term,
+                                   filter,
+                                   clusterSegments),
+                    pageSize,
+                    after);
+    }
+
+    /**
+     * Pages over the whole, already filtered, result. The cursor keeps the position of the next hit.
+     */
+    private SearchPage<KObject> page(final List<KObject> hits,
+                                     final int pageSize,
+                                     final SearchCursor after) {
+        final int from = Math.min(after == null ? 0 : after.getDoc(),
+                                  hits.size());
+        final int to = Math.min(from + pageSize,
+                                hits.size());
+        return new SearchPage<>(hits.subList(from,
+                                             to),
+                                hits.size(),
+                                to < hits.size() ? new SearchCursor(to,
+                                                                    0) : null);
+    }
+
     private int searchHits(final Query query,
                            final ClusterSegment... clusterSegments) {
         return Math.toIntExact(this.indexProvider.findHitsByQuery(getIndices(clusterSegments),
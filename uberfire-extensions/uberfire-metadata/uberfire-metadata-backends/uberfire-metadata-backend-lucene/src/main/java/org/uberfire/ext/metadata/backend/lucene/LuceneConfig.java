@@ -44,6 +44,21 @@ public class LuceneConfig implements MetadataConfig {
                         final LuceneIndexManager indexManager,
                         final MetaIndexEngine metaIndexEngine,
                         final Analyzer analyzer) {
+        this(metaModelStore,
+             fieldFactory,
+             indexManager,
+             new LuceneIndexProvider(indexManager,
+                                     fieldFactory),
+             metaIndexEngine,
+             analyzer);
+    }
+
+    public LuceneConfig(final MetaModelStore metaModelStore,
+                        final FieldFactory fieldFactory,
+                        final LuceneIndexManager indexManager,
+                        final LuceneIndexProvider indexProvider,
+                        final MetaIndexEngine metaIndexEngine,
+                        final Analyzer analyzer) {
         this.metaModelStore = metaModelStore;
         this.fieldFactory = fieldFactory;
         this.analyzer = analyzer;
@@ -51,8 +66,7 @@ public class LuceneConfig implements MetadataConfig {
         this.searchIndex = new LuceneSearchIndex(this.indexManager,
                                                  this.analyzer);
         this.indexEngine = metaIndexEngine;
-        this.indexProvider = new LuceneIndexProvider(indexManager,
-                                                     fieldFactory);
+        this.indexProvider = indexProvider;
         PriorityDisposableRegistry.register(this);
     }
 
@@ -83,6 +97,7 @@ public class LuceneConfig implements MetadataConfig {
     @Override
     public void dispose() {
         indexEngine.dispose();
+        indexProvider.dispose();
         indexManager.dispose();
         metaModelStore.dispose();
         analyzer.close();
@@ -32,6 +32,7 @@ import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.util.BytesRef;
 import org.uberfire.ext.metadata.model.KProperty;
 import org.uberfire.java.nio.base.version.VersionHistory;
+import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.attribute.FileTime;
 
 import static org.uberfire.ext.metadata.backend.lucene.util.Serializer.toByteArray;
@@ -169,11 +170,12 @@ public class SimpleFieldFactory implements FieldFactory {
     }
 
     private IndexableField[] build(final VersionHistory versionHistory) {
-        if (versionHistory.records().size() == 0) {
+        final VersionRecord lastRecord = versionHistory.lastRecord();
+        if (lastRecord == null) {
             return new IndexableField[]{};
         }
+        final VersionRecord firstRecord = versionHistory.firstRecord();
 
-        final int lastIndex = versionHistory.records().size() - 1;
         final IndexableField checkinComment = build(new KProperty<String>() {
             @Override
             public String getName() {
@@ -182,7 +184,7 @@ public class SimpleFieldFactory implements FieldFactory {
 
             @Override
             public String getValue() {
-                return versionHistory.records().get(lastIndex).comment();
+                return lastRecord.comment();
             }
 
             @Override
@@ -199,7 +201,7 @@ public class SimpleFieldFactory implements FieldFactory {
 
             @Override
             public String getValue() {
-                return versionHistory.records().get(lastIndex).author();
+                return lastRecord.author();
             }
 
             @Override
@@ -216,7 +218,7 @@ public class SimpleFieldFactory implements FieldFactory {
 
             @Override
             public String getValue() {
-                return versionHistory.records().get(0).author();
+                return firstRecord.author();
             }
 
             @Override
@@ -233,7 +235,7 @@ public class SimpleFieldFactory implements FieldFactory {
 
             @Override
             public Date getValue() {
-                return versionHistory.records().get(0).date();
+                return firstRecord.date();
             }
 
             @Override
@@ -250,7 +252,7 @@ public class SimpleFieldFactory implements FieldFactory {
 
             @Override
             public Date getValue() {
-                return versionHistory.records().get(lastIndex).date();
+                return lastRecord.date();
             }
 
             @Override
@@ -17,81 +17,129 @@
 package org.uberfire.ext.metadata.backend.lucene.index;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.uberfire.ext.metadata.model.schema.MetaObject;
 
+/**
+ * Documents are keyed by their {@link MetaObject#META_OBJECT_ID} term. Updates and deletes go
+ * through the writer's term based operations, so they don't need a searcher: the writer resolves
+ * all buffered id terms per segment when it flushes.
+ */
 public abstract class BaseLuceneIndex implements LuceneIndex {
 
     @Override
     public void indexDocument(final String id,
                               final Document doc) {
         try {
-            deleteIfExists(id);
-            writer().addDocument(doc);
+            writer().updateDocument(idTerm(id),
+                                    doc);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Only the ids found in the index are deleted, looking all of them up with a single searcher.
+     */
     @Override
     public boolean deleteIfExists(final String... docIds) {
-        boolean deletedSomething = false;
+        final List<Term> found = new ArrayList<>(docIds.length);
         final IndexSearcher searcher = nrtSearcher();
         try {
             final int[] answers = lookupDocIdByPK(searcher,
                                                   docIds);
-            for (final int docId : answers) {
-                if (docId != -1) {
-                    long result = writer().tryDeleteDocument(searcher.getIndexReader(),
-                                                             docId);
-                    if (result >= 0) {
-                        deletedSomething = true;
-                    }
+            for (int i = 0; i < answers.length; i++) {
+                if (answers[i] != -1) {
+                    found.add(idTerm(docIds[i]));
                 }
             }
-        } catch (Exception ex) {
+            if (!found.isEmpty()) {
+                writer().deleteDocuments(found.toArray(new Term[found.size()]));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         } finally {
             nrtRelease(searcher);
         }
-        return deletedSomething;
+        return !found.isEmpty();
     }
 
     @Override
     public void rename(final String sourceId,
                        final Document doc) {
-        final IndexSearcher searcher = nrtSearcher();
         try {
-            int docId = lookupDocIdByPK(searcher,
-                                        sourceId)[0];
-            if (docId != -1) {
-                writer().tryDeleteDocument(searcher.getIndexReader(),
-                                           docId);
+            final String targetId = doc.get(MetaObject.META_OBJECT_ID);
+            if (targetId != null && !targetId.equals(sourceId)) {
+                writer().deleteDocuments(idTerm(targetId));
+            }
+            writer().updateDocument(idTerm(sourceId),
+                                    doc);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Term idTerm(final String id) {
+        return new Term(MetaObject.META_OBJECT_ID,
+                        id);
+    }
+
+    @Override
+    public String getCommitData(final String key) {
+        final Iterable<Map.Entry<String, String>> commitData = writer().getLiveCommitData();
+        if (commitData != null) {
+            for (final Map.Entry<String, String> entry : commitData) {
+                if (entry.getKey().equals(key)) {
+                    return entry.getValue();
+                }
             }
-            indexDocument(sourceId,
-                          doc);
-        } catch (IOException ex) {
-        } finally {
-            nrtRelease(searcher);
         }
+        return null;
+    }
+
+    @Override
+    public synchronized void setCommitData(final String key,
+                                           final String value) {
+        final Map<String, String> commitData = new HashMap<>();
+        final Iterable<Map.Entry<String, String>> current = writer().getLiveCommitData();
+        if (current != null) {
+            for (final Map.Entry<String, String> entry : current) {
+                commitData.put(entry.getKey(),
+                               entry.getValue());
+            }
+        }
+        commitData.put(key,
+                       value);
+        writer().setLiveCommitData(commitData.entrySet());
     }
 
     protected int[] lookupDocIdByPK(final IndexSearcher searcher,
                                     final String... ids) throws IOException {
         final List<LeafReaderContext> subReaders = searcher.getIndexReader().leaves();
+        // one enum per leaf, reused for every id
         final TermsEnum[] termsEnums = new TermsEnum[subReaders.size()];
         final PostingsEnum[] docsEnums = new PostingsEnum[subReaders.size()];
         for (int subIDX = 0; subIDX < subReaders.size(); subIDX++) {
-            termsEnums[subIDX] = subReaders.get(subIDX).reader().fields().terms("id").iterator();
+            final Terms terms = subReaders.get(subIDX).reader().terms(MetaObject.META_OBJECT_ID);
+            if (terms != null) {
+                termsEnums[subIDX] = terms.iterator();
+            }
         }
 
         int[] results = new int[ids.length];
@@ -109,7 +157,7 @@ public abstract class BaseLuceneIndex implements LuceneIndex {
                 final LeafReader subReader = subReaders.get(subIDX).reader();
                 final TermsEnum termsEnum = termsEnums[subIDX];
                 // does the enumeration of ("id") terms from our reader contain the "id" field we're looking for?
-                if (termsEnum.seekExact(id)) {
+                if (termsEnum != null && termsEnum.seekExact(id)) {
                     final PostingsEnum docs = docsEnums[subIDX] = termsEnum.postings(docsEnums[subIDX],
                                                                                      0);
                     // okay, the reader contains it, get the postings ("docs+") for and check that they're there (NP check)
@@ -117,7 +165,7 @@ public abstract class BaseLuceneIndex implements LuceneIndex {
                         final int docID = docs.nextDoc();
                         Bits liveDocs = subReader.getLiveDocs();
                         // But wait, maybe some of the docs have been deleted! Check that too..
-                        if ((liveDocs == null || liveDocs.get(docID)) && docID != DocIdSetIterator.NO_MORE_DOCS) {
+                        if (docID != DocIdSetIterator.NO_MORE_DOCS && (liveDocs == null || liveDocs.get(docID))) {
                             results[idx] = base + docID;
                             break;
                         }
@@ -36,6 +36,17 @@ public interface LuceneIndex extends Index {
     void rename(final String sourceId,
                 final Document doc);
 
+    /**
+     * Value stored with the index commits under the given key, or null.
+     */
+    String getCommitData(final String key);
+
+    /**
+     * Stores a value with the next index commit.
+     */
+    void setCommitData(final String key,
+                       final String value);
+
     IndexReader nrtReader();
 
     void nrtRelease(final IndexReader searcher);
@@ -18,18 +18,21 @@ package org.uberfire.ext.metadata.backend.lucene.index;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.SearcherFactory;
 import org.uberfire.ext.metadata.backend.lucene.model.KClusterImpl;
 import org.uberfire.ext.metadata.engine.Index;
 import org.uberfire.ext.metadata.engine.IndexManager;
@@ -39,10 +42,50 @@ import org.uberfire.ext.metadata.search.ClusterSegment;
 
 import static org.kie.soup.commons.validation.PortablePreconditions.checkNotNull;
 
+/**
+ * Keeps the Lucene index of each cluster.
+ * <p>
+ * Searchers are shared: each index refreshes its own near real time searcher and searchers over
+ * several clusters are cached per cluster set, as long as none of the underlying readers changed.
+ * Every searcher returned by {@link #getIndexSearcher(ClusterSegment...)} is ref counted and must be
+ * given back through {@link #release(IndexSearcher)}.
+ * <p>
+ * A searcher can also be pinned for a while, so the pages of a search all see the same view of the
+ * index even if it's refreshed in between.
+ */
 public class LuceneIndexManager implements IndexManager {
 
+    private static final int MAX_CACHED_SEARCHERS = 64;
+    private static final int MAX_PINNED_SEARCHERS = 64;
+    private static final long PINNED_SEARCHER_TTL = TimeUnit.MINUTES.toNanos(1);
+
     private final LuceneIndexFactory factory;
     private final Map<KCluster, LuceneIndex> indexes = new ConcurrentHashMap<KCluster, LuceneIndex>();
+    private final Map<Set<KCluster>, CachedSearcher> searchers = new LinkedHashMap<Set<KCluster>, CachedSearcher>(16,
+                                                                                                                  0.75f,
+                                                                                                                  true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Set<KCluster>, CachedSearcher> eldest) {
+            if (size() > MAX_CACHED_SEARCHERS) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final Map<Long, PinnedSearcher> pinnedSearchers = new LinkedHashMap<Long, PinnedSearcher>(16,
+                                                                                                      0.75f,
+                                                                                                      true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, PinnedSearcher> eldest) {
+            if (size() > MAX_PINNED_SEARCHERS) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+    private long lastPinnedSearcher = 0;
 
     public LuceneIndexManager(final LuceneIndexFactory factory) {
         this.factory = checkNotNull("factory",
@@ -77,6 +120,7 @@ public class LuceneIndexManager implements IndexManager {
     @Override
     public void delete(KCluster cluster) {
         final LuceneIndex setup = indexes.remove(cluster);
+        evictSearchers(cluster);
         factory.remove(cluster);
         if (setup != null) {
             setup.delete();
@@ -85,6 +129,7 @@ public class LuceneIndexManager implements IndexManager {
 
     @Override
     public void dispose() {
+        evictSearchers(null);
         for (final LuceneIndex index : indexes.values()) {
             index.dispose();
         }
@@ -97,6 +142,87 @@ public class LuceneIndexManager implements IndexManager {
     }
 
     public IndexSearcher getIndexSearcher(final ClusterSegment... clusterSegments) {
+        final Set<KCluster> clusters = clusters(clusterSegments);
+
+        //stable order, so the cached searcher can be matched reader by reader
+        final List<LuceneIndex> clusterIndexes = clusters.stream()
+                .sorted(Comparator.comparing(KCluster::getClusterId))
+                .map(indexes::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        if (clusterIndexes.size() == 1) {
+            return clusterIndexes.get(0).nrtSearcher();
+        }
+
+        final List<IndexSearcher> acquired = new ArrayList<IndexSearcher>(clusterIndexes.size());
+        try {
+            final IndexReader[] readers = new IndexReader[clusterIndexes.size()];
+            for (int i = 0; i < readers.length; i++) {
+                final IndexSearcher searcher = clusterIndexes.get(i).nrtSearcher();
+                acquired.add(searcher);
+                readers[i] = searcher.getIndexReader();
+            }
+            return acquireSearcher(clusters,
+                                   readers);
+        } finally {
+            for (int i = 0; i < acquired.size(); i++) {
+                clusterIndexes.get(i).nrtRelease(acquired.get(i));
+            }
+        }
+    }
+
+    /**
+     * Keeps an acquired searcher open, until it has not been used for a minute or too many others
+     * were pinned.
+     * @return token to get the searcher back through {@link #getPinnedSearcher(long, ClusterSegment...)}
+     */
+    public synchronized long pin(final IndexSearcher searcher,
+                                 final ClusterSegment... clusterSegments) {
+        pruneExpiredSearchers();
+        for (final Map.Entry<Long, PinnedSearcher> entry : pinnedSearchers.entrySet()) {
+            if (entry.getValue().searcher == searcher) {
+                entry.getValue().touch();
+                return entry.getKey();
+            }
+        }
+        searcher.getIndexReader().incRef();
+        final long token = ++lastPinnedSearcher;
+        pinnedSearchers.put(token,
+                            new PinnedSearcher(searcher,
+                                               clusters(clusterSegments)));
+        return token;
+    }
+
+    /**
+     * @return the pinned searcher, to be given back through {@link #release(IndexSearcher)}, or null
+     * if it expired or was pinned for other clusters
+     */
+    public synchronized IndexSearcher getPinnedSearcher(final long token,
+                                                        final ClusterSegment... clusterSegments) {
+        pruneExpiredSearchers();
+        final PinnedSearcher pinned = pinnedSearchers.get(token);
+        if (pinned == null || !pinned.clusters.equals(clusters(clusterSegments))) {
+            return null;
+        }
+        pinned.touch();
+        pinned.searcher.getIndexReader().incRef();
+        return pinned.searcher;
+    }
+
+    private void pruneExpiredSearchers() {
+        final long now = System.nanoTime();
+        final Iterator<PinnedSearcher> iterator = pinnedSearchers.values().iterator();
+        while (iterator.hasNext()) {
+            final PinnedSearcher pinned = iterator.next();
+            if (now - pinned.lastUsed > PINNED_SEARCHER_TTL) {
+                pinned.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Set<KCluster> clusters(final ClusterSegment... clusterSegments) {
         final Set<KCluster> clusters;
         if (clusterSegments == null || clusterSegments.length == 0) {
             clusters = new HashSet<KCluster>(indexes.keySet());
@@ -106,24 +232,46 @@ public class LuceneIndexManager implements IndexManager {
                 clusters.add(new KClusterImpl(clusterSegment.getClusterId()));
             }
         }
+        return clusters;
+    }
 
-        final Collection<IndexReader> readers = new ArrayList<IndexReader>(clusters.size());
-        for (final KCluster cluster : clusters) {
-            final LuceneIndex index = indexes.get(cluster);
-            readers.add(index.nrtReader());
+    private synchronized IndexSearcher acquireSearcher(final Set<KCluster> clusters,
+                                                       final IndexReader[] readers) {
+        CachedSearcher cached = searchers.get(clusters);
+        if (cached == null || !cached.isCurrent(readers)) {
+            if (cached != null) {
+                cached.close();
+            }
+            cached = new CachedSearcher(readers);
+            searchers.put(clusters,
+                          cached);
         }
+        cached.reader.incRef();
+        return cached.searcher;
+    }
 
-        try {
-            return new SearcherFactory().newSearcher(new MultiReader(readers.toArray(new IndexReader[readers.size()])),
-                                                     null);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private synchronized void evictSearchers(final KCluster cluster) {
+        final Iterator<Map.Entry<Set<KCluster>, CachedSearcher>> iterator = searchers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Set<KCluster>, CachedSearcher> entry = iterator.next();
+            if (cluster == null || entry.getKey().contains(cluster)) {
+                entry.getValue().close();
+                iterator.remove();
+            }
+        }
+        final Iterator<PinnedSearcher> pinned = pinnedSearchers.values().iterator();
+        while (pinned.hasNext()) {
+            final PinnedSearcher searcher = pinned.next();
+            if (cluster == null || searcher.clusters.contains(cluster)) {
+                searcher.close();
+                pinned.remove();
+            }
         }
     }
 
     public void release(final IndexSearcher index) {
         try {
-            index.getIndexReader().close();
+            index.getIndexReader().decRef();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -133,4 +281,75 @@ public class LuceneIndexManager implements IndexManager {
     public List<String> getIndices() {
         return indexes.keySet().stream().map(kCluster -> kCluster.getClusterId()).collect(Collectors.toList());
     }
+
+    /**
+     * Searcher kept for the next pages of a search, holding one reference to its reader.
+     */
+    private static class PinnedSearcher {
+
+        private final IndexSearcher searcher;
+        private final Set<KCluster> clusters;
+        private long lastUsed;
+
+        private PinnedSearcher(final IndexSearcher searcher,
+                               final Set<KCluster> clusters) {
+            this.searcher = searcher;
+            this.clusters = clusters;
+            touch();
+        }
+
+        private void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        private void close() {
+            try {
+                searcher.getIndexReader().decRef();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Searcher over the readers of several clusters, the cache holds one reference to it.
+     */
+    private static class CachedSearcher {
+
+        private final IndexReader[] subReaders;
+        private final MultiReader reader;
+        private final IndexSearcher searcher;
+
+        private CachedSearcher(final IndexReader[] subReaders) {
+            try {
+                this.subReaders = subReaders;
+                //keeps its own reference to every sub reader
+                this.reader = new MultiReader(subReaders,
+                                              false);
+                this.searcher = new IndexSearcher(reader);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private boolean isCurrent(final IndexReader[] readers) {
+            if (readers.length != subReaders.length) {
+                return false;
+            }
+            for (int i = 0; i < readers.length; i++) {
+                if (readers[i] != subReaders[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void close() {
+            try {
+                reader.decRef();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 }
@@ -26,6 +26,7 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.lucene62.Lucene62Codec;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.uberfire.ext.metadata.backend.lucene.index.BaseLuceneIndex;
 import org.uberfire.ext.metadata.backend.lucene.index.LuceneIndex;
 import org.uberfire.ext.metadata.backend.lucene.index.LuceneIndexFactory;
 import org.uberfire.ext.metadata.backend.lucene.model.KClusterImpl;
@@ -41,19 +42,28 @@ public class DirectoryFactory implements LuceneIndexFactory {
     private final Map<KCluster, LuceneIndex> clusters = new ConcurrentHashMap<KCluster, LuceneIndex>();
     private final DirectoryType type;
     private final Analyzer analyzer;
+    private final TieredDirectoryManager tieredDirectoryManager;
 
     public DirectoryFactory(final DirectoryType type,
                             final Analyzer analyzer) {
+        this(type,
+             analyzer,
+             new TieredDirectoryManager());
+    }
+
+    public DirectoryFactory(final DirectoryType type,
+                            final Analyzer analyzer,
+                            final TieredDirectoryManager tieredDirectoryManager) {
         this.analyzer = analyzer;
         this.type = type;
+        this.tieredDirectoryManager = tieredDirectoryManager;
         final File[] files = defaultHostingDir().listFiles();
         if (files != null && files.length > 0) {
             for (final File file : files) {
                 if (file.isDirectory()) {
                     final KCluster cluster = new KClusterImpl(file.getName());
                     clusters.put(cluster,
-                                 type.newIndex(cluster,
-                                               newConfig(analyzer)));
+                                 newIndex(cluster));
                 }
             }
         }
@@ -92,14 +102,32 @@ public class DirectoryFactory implements LuceneIndexFactory {
                        !clusters.containsKey(checkNotNull("kcluster",
                                                           kcluster)));
 
-        final LuceneIndex newIndex = type.newIndex(kcluster,
-                                                   newConfig(analyzer));
+        final LuceneIndex newIndex = newIndex(kcluster);
         clusters.put(kcluster,
                      newIndex);
 
         return newIndex;
     }
 
+    private LuceneIndex newIndex(final KCluster cluster) {
+        if (type == DirectoryType.TIERED) {
+            //opened lazily, existing clusters don't cost anything until used
+            return new TieredLuceneIndex(cluster,
+                                         () -> (BaseLuceneIndex) type.newIndex(cluster,
+                                                                               newConfig(analyzer)),
+                                         tieredDirectoryManager);
+        }
+        return type.newIndex(cluster,
+                             newConfig(analyzer));
+    }
+
+    /**
+     * Open directory counts and sizes, meaningful with {@link DirectoryType#TIERED}.
+     */
+    public TieredDirectoryManager getTieredDirectoryManager() {
+        return tieredDirectoryManager;
+    }
+
     @Override
     public void remove(KCluster cluster) {
         clusters.remove(cluster);
@@ -19,12 +19,12 @@ package org.uberfire.ext.metadata.backend.lucene.index.directory;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
 import org.uberfire.ext.metadata.backend.lucene.index.BaseLuceneIndex;
 import org.uberfire.ext.metadata.model.KCluster;
 
@@ -38,6 +38,7 @@ public class DirectoryLuceneIndex extends BaseLuceneIndex {
     private final KCluster cluster;
     private final IndexWriter writer;
     private final Directory directory;
+    private final SearcherManager searcherManager;
     private AtomicBoolean freshIndex;
     private AtomicBoolean isDisposed = new AtomicBoolean(false);
 
@@ -51,6 +52,8 @@ public class DirectoryLuceneIndex extends BaseLuceneIndex {
                                           directory);
             this.writer = new IndexWriter(directory.getDirectory(),
                                           config);
+            this.searcherManager = new SearcherManager(writer,
+                                                       new SearcherFactory());
             this.freshIndex = new AtomicBoolean(directory.freshIndex());
         } catch (final Exception ex) {
             throw new RuntimeException(ex);
@@ -67,29 +70,32 @@ public class DirectoryLuceneIndex extends BaseLuceneIndex {
         return cluster;
     }
 
+    /**
+     * Acquired readers are shared and ref counted, release them with {@link #nrtRelease(IndexReader)}.
+     */
     @Override
     public IndexReader nrtReader() {
-        try {
-            return DirectoryReader.open(writer);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return nrtSearcher().getIndexReader();
     }
 
     @Override
     public void nrtRelease(final IndexReader reader) {
         try {
-            reader.close();
+            reader.decRef();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Acquires the shared searcher, reopening it first if the writer has changes it can't see yet.
+     * Reopening is incremental, unchanged segments are reused.
+     */
     @Override
     public IndexSearcher nrtSearcher() {
         try {
-            return new SearcherFactory().newSearcher(nrtReader(),
-                                                     null);
+            searcherManager.maybeRefreshBlocking();
+            return searcherManager.acquire();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -98,7 +104,7 @@ public class DirectoryLuceneIndex extends BaseLuceneIndex {
     @Override
     public void nrtRelease(final IndexSearcher searcher) {
         try {
-            searcher.getIndexReader().close();
+            searcherManager.release(searcher);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -116,6 +122,7 @@ public class DirectoryLuceneIndex extends BaseLuceneIndex {
 
     private void closeWriter() {
         try {
+            searcherManager.close();
             writer.commit();
             writer.close();
         } catch (IOException e) {
@@ -101,6 +101,18 @@ public enum DirectoryType {
                                             directory,
                                             config);
         }
+    },
+    /**
+     * Memory mapped like {@link #MMAP}, but a {@link DirectoryFactory} only keeps the indexes the
+     * {@link TieredDirectoryManager} decides to be open.
+     */
+    TIERED {
+        @Override
+        public LuceneIndex newIndex(final KCluster cluster,
+                                    final IndexWriterConfig config) {
+            return MMAP.newIndex(cluster,
+                                 config);
+        }
     };
 
     private static void close(FSDirectory directory) {
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.backend.lucene.index.directory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides which {@link TieredLuceneIndex tiered indexes} stay open.
+ * <p>
+ * Clusters whose index is at most {@code smallClusterBytes} big when opened are pinned, as long as
+ * all pinned indexes together fit in {@code maxPinnedBytes}: these are usually the system and
+ * configuration clusters, small and searched all the time. Every other open index is hot, and only
+ * the {@code maxHot} most recently used ones are kept; the least recently used are closed and
+ * reopened on their next use.
+ */
+public class TieredDirectoryManager {
+
+    public static final String MAX_HOT = "org.uberfire.metadata.index.tiered.hot";
+    public static final String MAX_PINNED_BYTES = "org.uberfire.metadata.index.tiered.pinned.bytes";
+    public static final String SMALL_CLUSTER_BYTES = "org.uberfire.metadata.index.tiered.small.bytes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredDirectoryManager.class);
+
+    private final int maxHot;
+    private final long maxPinnedBytes;
+    private final long smallClusterBytes;
+
+    //access ordered, least recently used first
+    private final Set<TieredLuceneIndex> hot = new LinkedHashSet<>();
+    private final Set<TieredLuceneIndex> pinned = new HashSet<>();
+    private long pinnedBytes;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+
+    public TieredDirectoryManager() {
+        this(Integer.getInteger(MAX_HOT,
+                                32),
+             Long.getLong(MAX_PINNED_BYTES,
+                          64L * 1024 * 1024),
+             Long.getLong(SMALL_CLUSTER_BYTES,
+                          1024L * 1024));
+    }
+
+    public TieredDirectoryManager(final int maxHot,
+                                  final long maxPinnedBytes,
+                                  final long smallClusterBytes) {
+        this.maxHot = maxHot;
+        this.maxPinnedBytes = maxPinnedBytes;
+        this.smallClusterBytes = smallClusterBytes;
+    }
+
+    /**
+     * Registers an index that was just opened.
+     */
+    synchronized void opened(final TieredLuceneIndex index,
+                             final long sizeInBytes) {
+        opened.incrementAndGet();
+        if (sizeInBytes <= smallClusterBytes && pinnedBytes + sizeInBytes <= maxPinnedBytes) {
+            pinned.add(index);
+            index.setPinnedBytes(sizeInBytes);
+            pinnedBytes += sizeInBytes;
+        } else {
+            hot.add(index);
+        }
+    }
+
+    /**
+     * Marks an open index as the most recently used one.
+     */
+    synchronized void used(final TieredLuceneIndex index) {
+        if (hot.remove(index)) {
+            hot.add(index);
+        }
+    }
+
+    /**
+     * Forgets an index that was closed, disposed or deleted.
+     */
+    synchronized void closed(final TieredLuceneIndex index) {
+        if (hot.remove(index)) {
+            closed.incrementAndGet();
+        } else if (pinned.remove(index)) {
+            closed.incrementAndGet();
+            pinnedBytes -= index.getPinnedBytes();
+        }
+    }
+
+    /**
+     * Closes the least recently used hot indexes above the limit. Must not be called while holding
+     * the lock of an index, as it takes the locks of others.
+     */
+    void closeColdIndexes() {
+        final List<TieredLuceneIndex> cold = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<TieredLuceneIndex> iterator = hot.iterator();
+            while (hot.size() - cold.size() > maxHot && iterator.hasNext()) {
+                cold.add(iterator.next());
+            }
+        }
+        for (final TieredLuceneIndex index : cold) {
+            //an index in use is not really cold, it stays open
+            if (index.closeIfIdle()) {
+                LOGGER.debug("Closed cold index of cluster {}",
+                             index.getCluster().getClusterId());
+            } else {
+                used(index);
+            }
+        }
+    }
+
+    public synchronized int getOpenDirectories() {
+        return hot.size() + pinned.size();
+    }
+
+    public synchronized int getPinnedDirectories() {
+        return pinned.size();
+    }
+
+    public synchronized long getPinnedBytes() {
+        return pinnedBytes;
+    }
+
+    /**
+     * Current size of every open, and so memory mapped, index.
+     */
+    public long getMappedBytes() {
+        final List<TieredLuceneIndex> open;
+        synchronized (this) {
+            open = new ArrayList<>(hot);
+            open.addAll(pinned);
+        }
+        long bytes = 0;
+        for (final TieredLuceneIndex index : open) {
+            bytes += index.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of times an index was opened, including reopenings of closed ones.
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    public long getClosedCount() {
+        return closed.get();
+    }
+}
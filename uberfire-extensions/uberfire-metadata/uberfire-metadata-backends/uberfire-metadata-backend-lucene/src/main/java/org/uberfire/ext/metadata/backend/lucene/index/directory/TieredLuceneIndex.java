@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.backend.lucene.index.directory;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.uberfire.ext.metadata.backend.lucene.index.BaseLuceneIndex;
+import org.uberfire.ext.metadata.backend.lucene.index.LuceneIndex;
+import org.uberfire.ext.metadata.model.KCluster;
+
+import static org.kie.soup.commons.validation.Preconditions.checkNotNull;
+
+/**
+ * Index of a cluster that is only open while the {@link TieredDirectoryManager} keeps it in a tier.
+ * It is opened on first use and can be closed again at any time it isn't being used; searchers
+ * acquired before closing stay valid until released.
+ */
+public class TieredLuceneIndex implements LuceneIndex {
+
+    private final KCluster cluster;
+    private final Supplier<BaseLuceneIndex> opener;
+    private final TieredDirectoryManager manager;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile BaseLuceneIndex index;
+    private volatile Boolean freshIndex;
+    private boolean disposed;
+    private long pinnedBytes;
+
+    public TieredLuceneIndex(final KCluster cluster,
+                             final Supplier<BaseLuceneIndex> opener,
+                             final TieredDirectoryManager manager) {
+        this.cluster = checkNotNull("cluster",
+                                    cluster);
+        this.opener = checkNotNull("opener",
+                                   opener);
+        this.manager = checkNotNull("manager",
+                                    manager);
+    }
+
+    @Override
+    public KCluster getCluster() {
+        return cluster;
+    }
+
+    public boolean isOpen() {
+        return index != null;
+    }
+
+    @Override
+    public void indexDocument(final String id,
+                              final Document doc) {
+        withIndex(index -> {
+            index.indexDocument(id,
+                                doc);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean deleteIfExists(final String... ids) {
+        return withIndex(index -> index.deleteIfExists(ids));
+    }
+
+    @Override
+    public void rename(final String sourceId,
+                       final Document doc) {
+        withIndex(index -> {
+            index.rename(sourceId,
+                         doc);
+            return null;
+        });
+    }
+
+    @Override
+    public String getCommitData(final String key) {
+        return withIndex(index -> index.getCommitData(key));
+    }
+
+    @Override
+    public void setCommitData(final String key,
+                              final String value) {
+        withIndex(index -> {
+            index.setCommitData(key,
+                                value);
+            return null;
+        });
+    }
+
+    @Override
+    public IndexReader nrtReader() {
+        return nrtSearcher().getIndexReader();
+    }
+
+    @Override
+    public void nrtRelease(final IndexReader reader) {
+        try {
+            reader.decRef();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public IndexSearcher nrtSearcher() {
+        return withIndex(BaseLuceneIndex::nrtSearcher);
+    }
+
+    /**
+     * Doesn't need the index to be open, the searcher may come from an index closed since.
+     */
+    @Override
+    public void nrtRelease(final IndexSearcher searcher) {
+        nrtRelease(searcher.getIndexReader());
+    }
+
+    @Override
+    public boolean freshIndex() {
+        final Boolean fresh = freshIndex;
+        if (fresh != null) {
+            return fresh;
+        }
+        return withIndex(index -> freshIndex);
+    }
+
+    /**
+     * A closed index has nothing to commit, closing it committed every change.
+     */
+    @Override
+    public void commit() {
+        lock.readLock().lock();
+        try {
+            if (index != null) {
+                index.commit();
+            }
+            freshIndex = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete() {
+        lock.writeLock().lock();
+        try {
+            checkNotDisposed();
+            final BaseLuceneIndex current = index != null ? index : opener.get();
+            index = null;
+            disposed = true;
+            manager.closed(this);
+            current.delete();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                manager.closed(this);
+                index.dispose();
+                index = null;
+            }
+            disposed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the index unless it is being used right now.
+     * @return false if it is in use and was left open
+     */
+    boolean closeIfIdle() {
+        if (!lock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            if (index != null) {
+                manager.closed(this);
+                index.dispose();
+                index = null;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Size of the index files, zero when closed.
+     */
+    long sizeInBytes() {
+        final BaseLuceneIndex current = index;
+        if (current == null) {
+            return 0;
+        }
+        try {
+            final org.apache.lucene.store.Directory directory = current.writer().getDirectory();
+            long size = 0;
+            for (final String file : directory.listAll()) {
+                try {
+                    size += directory.fileLength(file);
+                } catch (IOException e) {
+                    //removed by a merge meanwhile
+                }
+            }
+            return size;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    long getPinnedBytes() {
+        return pinnedBytes;
+    }
+
+    void setPinnedBytes(final long pinnedBytes) {
+        this.pinnedBytes = pinnedBytes;
+    }
+
+    private <T> T withIndex(final Function<BaseLuceneIndex, T> operation) {
+        try {
+            lock.readLock().lock();
+            try {
+                return operation.apply(acquire());
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            manager.closeColdIndexes();
+        }
+    }
+
+    /**
+     * Opens the index if needed, must be called holding the read lock.
+     */
+    private BaseLuceneIndex acquire() {
+        if (index != null) {
+            manager.used(this);
+            return index;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            checkNotDisposed();
+            if (index == null) {
+                final BaseLuceneIndex opened = opener.get();
+                if (freshIndex == null) {
+                    freshIndex = opened.freshIndex();
+                }
+                index = opened;
+                manager.opened(this,
+                               sizeInBytes());
+            }
+            return index;
+        } finally {
+            //downgrade, the caller releases the read lock
+            lock.readLock().lock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkNotDisposed() {
+        if (disposed) {
+            throw new IllegalStateException("Index of cluster " + cluster.getClusterId() + " is disposed");
+        }
+    }
+}
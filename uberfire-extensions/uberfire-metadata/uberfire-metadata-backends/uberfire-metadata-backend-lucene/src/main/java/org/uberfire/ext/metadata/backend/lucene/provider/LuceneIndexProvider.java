@@ -17,14 +17,22 @@
 package org.uberfire.ext.metadata.backend.lucene.provider;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
@@ -33,6 +41,9 @@ import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.ext.metadata.backend.lucene.fields.FieldFactory;
 import org.uberfire.ext.metadata.backend.lucene.index.LuceneIndex;
 import org.uberfire.ext.metadata.backend.lucene.index.LuceneIndexManager;
@@ -51,15 +62,82 @@ import static org.kie.soup.commons.validation.PortablePreconditions.checkNotNull
 import static org.uberfire.ext.metadata.backend.lucene.util.KObjectUtil.toKObject;
 import static org.uberfire.ext.metadata.engine.MetaIndexEngine.FULL_TEXT_FIELD;
 
+/**
+ * Lucene backed {@link IndexProvider}.
+ * <p>
+ * Single document changes are group committed: they are visible right away to near real time
+ * readers, that are opened from the writer, but the durable (fsync) commit only happens when a
+ * cluster collects {@link #COMMIT_MAX_PENDING} changes or on the next {@link #COMMIT_INTERVAL}
+ * tick. Use {@link #flush(KCluster)} to force it.
+ */
 public class LuceneIndexProvider implements IndexProvider {
 
+    public static final String COMMIT_INTERVAL = "org.uberfire.metadata.index.commit.interval";
+    public static final String COMMIT_MAX_PENDING = "org.uberfire.metadata.index.commit.max.pending";
+    private static final String LAST_INDEXED_COMMIT = "lastIndexedCommit:";
+    private static final int DEFAULT_COMMIT_INTERVAL = 1000;
+    private static final int DEFAULT_COMMIT_MAX_PENDING = 500;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexProvider.class);
+
     private final FieldFactory fieldFactory;
     private IndexManager indexManager;
+    private final Map<KCluster, AtomicInteger> pendingChanges = new ConcurrentHashMap<>();
+    private final long commitInterval;
+    private final int maxPendingChanges;
+    private final ScheduledExecutorService commitExecutor;
 
     public LuceneIndexProvider(IndexManager indexManager,
                                FieldFactory fieldFactory) {
+        this(indexManager,
+             fieldFactory,
+             readProperty(COMMIT_INTERVAL,
+                          DEFAULT_COMMIT_INTERVAL),
+             readProperty(COMMIT_MAX_PENDING,
+                          DEFAULT_COMMIT_MAX_PENDING));
+    }
+
+    /**
+     * @param commitInterval milliseconds between durable commits of pending changes, zero or less
+     * commits every change right away
+     * @param maxPendingChanges number of pending changes of a cluster that triggers a commit
+     */
+    public LuceneIndexProvider(IndexManager indexManager,
+                               FieldFactory fieldFactory,
+                               long commitInterval,
+                               int maxPendingChanges) {
         this.indexManager = indexManager;
         this.fieldFactory = fieldFactory;
+        this.commitInterval = commitInterval;
+        this.maxPendingChanges = maxPendingChanges;
+        if (commitInterval > 0) {
+            this.commitExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r,
+                                                 "lucene-index-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.commitExecutor.scheduleWithFixedDelay(this::commitPendingChanges,
+                                                       commitInterval,
+                                                       commitInterval,
+                                                       TimeUnit.MILLISECONDS);
+        } else {
+            this.commitExecutor = null;
+        }
+    }
+
+    private static int readProperty(final String name,
+                                    final int defaultValue) {
+        final String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid value '" + value + "' for " + name + ", using " + defaultValue);
+            return defaultValue;
+        }
     }
 
     @Override
@@ -73,7 +151,8 @@ public class LuceneIndexProvider implements IndexProvider {
         final LuceneIndex index = (LuceneIndex) indexManager.indexOf(object);
         index.indexDocument(object.getId(),
                             newDocument(object));
-        index.commit();
+        changed(index,
+                1);
     }
 
     @Override
@@ -86,7 +165,7 @@ public class LuceneIndexProvider implements IndexProvider {
         elements.stream()
                 .map(ko -> (LuceneIndex) indexManager.indexOf(ko))
                 .collect(Collectors.toSet())
-                .forEach(luceneIndex -> luceneIndex.commit());
+                .forEach(this::commit);
     }
 
     @Override
@@ -98,6 +177,7 @@ public class LuceneIndexProvider implements IndexProvider {
 
     @Override
     public void delete(String index) {
+        pendingChanges.remove(new KClusterImpl(index));
         indexManager.delete(() -> index);
     }
 
@@ -105,24 +185,101 @@ public class LuceneIndexProvider implements IndexProvider {
     public void delete(String index,
                        String id) {
         final LuceneIndex luceneIndex = (LuceneIndex) indexManager.get(new KClusterImpl(index));
-        luceneIndex.deleteIfExists(id);
-        luceneIndex.commit();
+        if (luceneIndex.deleteIfExists(id)) {
+            changed(luceneIndex,
+                    1);
+        }
+    }
+
+    @Override
+    public void delete(String index,
+                       List<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        final LuceneIndex luceneIndex = (LuceneIndex) indexManager.get(new KClusterImpl(index));
+        if (luceneIndex.deleteIfExists(ids.toArray(new String[ids.size()]))) {
+            changed(luceneIndex,
+                    ids.size());
+        }
+    }
+
+    @Override
+    public void flush(final KCluster cluster) {
+        final Index index = indexManager.get(cluster);
+        if (index != null) {
+            commit((LuceneIndex) index);
+        }
+    }
+
+    @Override
+    public String getLastIndexedCommit(final KCluster cluster,
+                                       final String root) {
+        final Index index = indexManager.get(cluster);
+        if (index == null) {
+            return null;
+        }
+        return ((LuceneIndex) index).getCommitData(LAST_INDEXED_COMMIT + root);
+    }
+
+    @Override
+    public void setLastIndexedCommit(final KCluster cluster,
+                                     final String root,
+                                     final String commitId) {
+        final Index index = indexManager.get(cluster);
+        if (index != null) {
+            ((LuceneIndex) index).setCommitData(LAST_INDEXED_COMMIT + root,
+                                                commitId);
+            commit((LuceneIndex) index);
+        }
+    }
+
+    private void changed(final LuceneIndex index,
+                         final int changes) {
+        if (commitExecutor == null) {
+            index.commit();
+            return;
+        }
+        final AtomicInteger pending = pendingChanges.computeIfAbsent(index.getCluster(),
+                                                                     k -> new AtomicInteger());
+        if (pending.addAndGet(changes) >= maxPendingChanges) {
+            commit(index);
+        }
+    }
+
+    private void commit(final LuceneIndex index) {
+        final AtomicInteger pending = pendingChanges.get(index.getCluster());
+        if (pending != null) {
+            pending.set(0);
+        }
+        index.commit();
+    }
+
+    private void commitPendingChanges() {
+        for (final Map.Entry<KCluster, AtomicInteger> entry : pendingChanges.entrySet()) {
+            if (entry.getValue().getAndSet(0) > 0) {
+                final Index index = indexManager.get(entry.getKey());
+                if (index == null) {
+                    continue;
+                }
+                try {
+                    index.commit();
+                } catch (Exception e) {
+                    LOGGER.warn("Can't commit index of cluster " + entry.getKey().getClusterId(),
+                                e);
+                }
+            }
+        }
     }
 
     @Override
     public List<KObject> findById(String index,
                                   String id) {
-        List<String> indices = Arrays.asList(index);
-        ScoreDoc[] docs = this.findRawByQuery(indices,
-                                              new TermQuery(new Term("id",
-                                                                     id)),
-                                              null,
-                                              0);
-
-        return Arrays.stream(docs)
-                .map(scoreDoc -> createKObject(indices,
-                                               scoreDoc))
-                .collect(Collectors.toList());
+        return this.search(Arrays.asList(index),
+                           new TermQuery(new Term("id",
+                                                  id)),
+                           null,
+                           0);
     }
 
     @Override
@@ -138,12 +295,19 @@ public class LuceneIndexProvider implements IndexProvider {
         LuceneIndex luceneIndex = ((LuceneIndex) indexManager.get(new KClusterImpl(index)));
         luceneIndex.rename(id,
                            newDocument(to));
+        changed(luceneIndex,
+                1);
     }
 
     @Override
     public long getIndexSize(String index) {
         LuceneIndex luceneIndex = ((LuceneIndex) indexManager.get(new KClusterImpl(index)));
-        return luceneIndex.nrtReader().numDocs();
+        final IndexReader reader = luceneIndex.nrtReader();
+        try {
+            return reader.numDocs();
+        } finally {
+            luceneIndex.nrtRelease(reader);
+        }
     }
 
     @Override
@@ -151,15 +315,10 @@ public class LuceneIndexProvider implements IndexProvider {
                                      Query query,
                                      int limit) {
 
-        ScoreDoc[] docs = this.findRawByQuery(indices,
-                                              query,
-                                              null,
-                                              0);
-
-        return Arrays.stream(docs)
-                .map(scoreDoc -> createKObject(indices,
-                                               scoreDoc))
-                .collect(Collectors.toList());
+        return this.search(indices,
+                           query,
+                           null,
+                           limit);
     }
 
     @Override
@@ -167,36 +326,75 @@ public class LuceneIndexProvider implements IndexProvider {
                                      Query query,
                                      Sort sort,
                                      int limit) {
-        ScoreDoc[] docs = this.findRawByQuery(indices,
-                                              query,
-                                              sort,
-                                              0);
-
-        return Arrays.stream(docs)
-                .map(scoreDoc -> createKObject(indices,
-                                               scoreDoc))
-                .collect(Collectors.toList());
+        return this.search(indices,
+                           query,
+                           sort,
+                           limit);
     }
 
-    private KObject createKObject(List<String> indices,
-                                  ScoreDoc scoreDoc) {
+    /**
+     * Runs the query and loads the stored fields of the hits with the same searcher.
+     */
+    private List<KObject> search(List<String> indices,
+                                 Query query,
+                                 Sort sort,
+                                 int limit) {
+        final LuceneIndexManager luceneIndexManager = (LuceneIndexManager) indexManager;
+        final IndexSearcher searcher = luceneIndexManager.getIndexSearcher(toClusterSegments(indices));
         try {
-            IndexSearcher searcher = ((LuceneIndexManager) indexManager)
-                    .getIndexSearcher(toClusterSegments(indices));
-            return toKObject(searcher.doc(scoreDoc.doc));
+            final ScoreDoc[] docs = search(searcher,
+                                           query,
+                                           sort,
+                                           limit);
+            final List<KObject> result = new ArrayList<>(docs.length);
+            for (final ScoreDoc scoreDoc : docs) {
+                result.add(toKObject(searcher.doc(scoreDoc.doc)));
+            }
+            return result;
         } catch (IOException e) {
-            throw new RuntimeException("Can't convert document to KObject");
+            throw new RuntimeException("Can't convert document to KObject",
+                                       e);
+        } finally {
+            luceneIndexManager.release(searcher);
+        }
+    }
+
+    private ScoreDoc[] search(IndexSearcher searcher,
+                              Query query,
+                              Sort sort,
+                              int limit) throws IOException {
+        int n = Integer.MAX_VALUE;
+        if (limit > 0) {
+            n = limit;
+        }
+        TopDocs topDocs;
+        if (sort != null) {
+            topDocs = searcher.search(query,
+                                      n,
+                                      sort);
+        } else {
+            topDocs = searcher.search(query,
+                                      n);
         }
+        return topDocs.scoreDocs;
     }
 
     @Override
     public long findHitsByQuery(List<String> indices,
                                 Query query) {
-
-        return this.findRawByQuery(indices,
-                                   query,
-                                   null,
-                                   0).length;
+        final LuceneIndexManager luceneIndexManager = (LuceneIndexManager) indexManager;
+        final IndexSearcher searcher = luceneIndexManager.getIndexSearcher(toClusterSegments(indices));
+        try {
+            final TotalHitCountCollector collector = new TotalHitCountCollector();
+            searcher.search(query,
+                            collector);
+            return collector.getTotalHits();
+        } catch (IOException e) {
+            throw new RuntimeException("Error during Query!",
+                                       e);
+        } finally {
+            luceneIndexManager.release(searcher);
+        }
     }
 
     @Override
@@ -209,25 +407,17 @@ public class LuceneIndexProvider implements IndexProvider {
                                      Sort sort,
                                      int limit) {
 
+        final LuceneIndexManager luceneIndexManager = (LuceneIndexManager) indexManager;
+        final IndexSearcher searcher = luceneIndexManager.getIndexSearcher(toClusterSegments(indices));
         try {
-            ClusterSegment[] clusterSegments = toClusterSegments(indices);
-            IndexSearcher searcher = ((LuceneIndexManager) indexManager).getIndexSearcher(clusterSegments);
-            int n = Integer.MAX_VALUE;
-            if (limit > 0) {
-                n = limit;
-            }
-            TopDocs topDocs;
-            if (sort != null) {
-                topDocs = searcher.search(query,
-                                          n,
-                                          sort);
-            } else {
-                topDocs = searcher.search(query,
-                                          n);
-            }
-            return topDocs.scoreDocs;
+            return search(searcher,
+                          query,
+                          sort,
+                          limit);
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            luceneIndexManager.release(searcher);
         }
 
         return new ScoreDoc[0];
@@ -250,7 +440,10 @@ public class LuceneIndexProvider implements IndexProvider {
 
     @Override
     public void dispose() {
-
+        if (commitExecutor != null) {
+            commitExecutor.shutdownNow();
+            commitPendingChanges();
+        }
     }
 
     private Document newDocument(final KObject object) {
@@ -16,11 +16,19 @@
 
 package org.uberfire.ext.metadata.backend.lucene.search;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
@@ -29,6 +37,8 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
@@ -39,31 +49,47 @@ import org.uberfire.ext.metadata.model.schema.MetaObject;
 import org.uberfire.ext.metadata.search.ClusterSegment;
 import org.uberfire.ext.metadata.search.DateRange;
 import org.uberfire.ext.metadata.search.IOSearchService;
+import org.uberfire.ext.metadata.search.SearchCursor;
 import org.uberfire.ext.metadata.search.SearchIndex;
+import org.uberfire.ext.metadata.search.SearchPage;
 
 import static java.util.Collections.emptyList;
+import static org.apache.lucene.search.BooleanClause.Occur.FILTER;
 import static org.apache.lucene.search.BooleanClause.Occur.MUST;
 import static org.apache.lucene.search.BooleanClause.Occur.SHOULD;
 import static org.apache.lucene.search.LegacyNumericRangeQuery.newLongRange;
+import static org.kie.soup.commons.validation.PortablePreconditions.checkCondition;
 import static org.kie.soup.commons.validation.PortablePreconditions.checkNotNull;
 import static org.uberfire.ext.metadata.backend.lucene.util.KObjectUtil.toKObject;
 import static org.uberfire.ext.metadata.engine.MetaIndexEngine.FULL_TEXT_FIELD;
 
 /**
- *
+ * Built queries are immutable, so they are kept in a bounded LRU cache keyed by the search terms
+ * and the cluster segments, and shared by every thread. A single cluster segment restriction is a
+ * non scoring filter clause, which lets the searchers' query cache keep its matching documents per
+ * index segment for as long as the segment lives.
  */
 public class LuceneSearchIndex implements SearchIndex {
 
+    private static final int MAX_CACHED_QUERIES = 256;
+
     private final LuceneIndexManager indexManager;
-    private final QueryParser queryParser;
+    private final Analyzer analyzer;
+    private final Map<List<?>, Query> queries = new LinkedHashMap<List<?>, Query>(16,
+                                                                                  0.75f,
+                                                                                  true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<?>, Query> eldest) {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
 
     public LuceneSearchIndex(final LuceneIndexManager indexManager,
                              final Analyzer analyzer) {
         this.indexManager = checkNotNull("lucene",
                                          indexManager);
-        this.queryParser = new QueryParser(FULL_TEXT_FIELD,
-                                           analyzer);
-        this.queryParser.setAllowLeadingWildcard(true);
+        this.analyzer = checkNotNull("analyzer",
+                                     analyzer);
     }
 
     @Override
@@ -76,11 +102,8 @@ public class LuceneSearchIndex implements SearchIndex {
         if (attrs == null || attrs.size() == 0) {
             return emptyList();
         }
-        final int totalNumHitsEstimate = searchByAttrsHits(attrs,
-                                                           clusterSegments);
         return search(buildQuery(attrs,
                                  clusterSegments),
-                      totalNumHitsEstimate,
                       filter,
                       clusterSegments);
     }
@@ -92,11 +115,8 @@ public class LuceneSearchIndex implements SearchIndex {
         if (clusterSegments == null || clusterSegments.length == 0) {
             return emptyList();
         }
-        final int totalNumHitsEstimate = fullTextSearchHits(term,
-                                                            clusterSegments);
         return search(buildQuery(term,
                                  clusterSegments),
-                      totalNumHitsEstimate,
                       filter,
                       clusterSegments);
     }
@@ -126,6 +146,47 @@ public class LuceneSearchIndex implements SearchIndex {
                           clusterSegments);
     }
 
+    @Override
+    public SearchPage<KObject> searchByAttrs(final Map<String, ?> attrs,
+                                             final IOSearchService.Filter filter,
+                                             final int pageSize,
+                                             final SearchCursor after,
+                                             final Set<String> fields,
+                                             final ClusterSegment... clusterSegments) {
+        if (clusterSegments == null || clusterSegments.length == 0) {
+            return emptyPage();
+        }
+        if (attrs == null || attrs.size() == 0) {
+            return emptyPage();
+        }
+        return searchPage(buildQuery(attrs,
+                                     clusterSegments),
+                          filter,
+                          pageSize,
+                          after,
+                          fields,
+                          clusterSegments);
+    }
+
+    @Override
+    public SearchPage<KObject> fullTextSearch(final String term,
+                                              final IOSearchService.Filter filter,
+                                              final int pageSize,
+                                              final SearchCursor after,
+                                              final Set<String> fields,
+                                              final ClusterSegment... clusterSegments) {
+        if (clusterSegments == null || clusterSegments.length == 0) {
+            return emptyPage();
+        }
+        return searchPage(buildQuery(term,
+                                     clusterSegments),
+                          filter,
+                          pageSize,
+                          after,
+                          fields,
+                          clusterSegments);
+    }
+
     private int searchHits(final Query query,
                            final ClusterSegment... clusterSegments) {
         final IndexSearcher index = indexManager.getIndexSearcher(clusterSegments);
@@ -143,18 +204,16 @@ public class LuceneSearchIndex implements SearchIndex {
     }
 
     private List<KObject> search(final Query query,
-                                 final int totalNumHitsEstimate,
                                  final IOSearchService.Filter filter,
                                  final ClusterSegment... clusterSegments) {
-        final TopScoreDocCollector collector = TopScoreDocCollector.create(totalNumHitsEstimate);
         final IndexSearcher index = indexManager.getIndexSearcher(clusterSegments);
         final List<KObject> result = new ArrayList<KObject>();
         try {
+            final AllHitsCollector collector = new AllHitsCollector();
             index.search(query,
                          collector);
-            final ScoreDoc[] hits = collector.topDocs(0).scoreDocs;
-            for (int i = 0; i < hits.length; i++) {
-                final KObject kObject = toKObject(index.doc(hits[i].doc));
+            for (final ScoreDoc hit : collector.hits()) {
+                final KObject kObject = toKObject(index.doc(hit.doc));
                 if (filter.accept(kObject)) {
                     result.add(kObject);
                 }
@@ -169,8 +228,130 @@ public class LuceneSearchIndex implements SearchIndex {
         return result;
     }
 
+    /**
+     * Collects hits after the cursor until the page has {@code pageSize} of them accepted by the
+     * filter, or the hits run out. The searcher is pinned for the next pages, so their cursors point
+     * into the same view of the index even after it's refreshed; once the pin expires the next page
+     * is searched on the current view, where the cursor is only approximate. Total hits are counted
+     * before filtering.
+     */
+    private SearchPage<KObject> searchPage(final Query query,
+                                           final IOSearchService.Filter filter,
+                                           final int pageSize,
+                                           final SearchCursor after,
+                                           final Set<String> fields,
+                                           final ClusterSegment... clusterSegments) {
+        checkCondition("pageSize must be positive",
+                       pageSize > 0);
+        IndexSearcher index = null;
+        if (after != null && after.getSearcher() != 0) {
+            index = indexManager.getPinnedSearcher(after.getSearcher(),
+                                                   clusterSegments);
+        }
+        if (index == null) {
+            index = indexManager.getIndexSearcher(clusterSegments);
+        }
+        try {
+            final List<KObject> result = new ArrayList<KObject>(pageSize);
+            ScoreDoc last = after == null ? null : new ScoreDoc(after.getDoc(),
+                                                                after.getScore());
+            int totalHits = -1;
+            boolean exhausted = false;
+            while (result.size() < pageSize && !exhausted) {
+                //counts all the hits while keeping the top ones after the cursor
+                final TopScoreDocCollector collector = TopScoreDocCollector.create(pageSize,
+                                                                                   last);
+                index.search(query,
+                             collector);
+                if (totalHits < 0) {
+                    totalHits = collector.getTotalHits();
+                }
+                final ScoreDoc[] hits = collector.topDocs().scoreDocs;
+                exhausted = hits.length < pageSize;
+                int consumed = 0;
+                while (consumed < hits.length && result.size() < pageSize) {
+                    last = hits[consumed++];
+                    final Document document = fields == null ? index.doc(last.doc) : index.doc(last.doc,
+                                                                                              fields);
+                    final KObject kObject = toKObject(document);
+                    if (filter.accept(kObject)) {
+                        result.add(kObject);
+                    }
+                }
+                if (exhausted && consumed == hits.length) {
+                    last = null;
+                }
+            }
+            final SearchCursor next;
+            if (last != null) {
+                next = new SearchCursor(last.doc,
+                                        last.score,
+                                        indexManager.pin(index,
+                                                         clusterSegments));
+            } else {
+                next = null;
+            }
+            return new SearchPage<KObject>(result,
+                                           totalHits,
+                                           next);
+        } catch (final Exception ex) {
+            throw new RuntimeException("Error during Query!",
+                                       ex);
+        } finally {
+            indexManager.release(index);
+        }
+    }
+
+    private SearchPage<KObject> emptyPage() {
+        return new SearchPage<KObject>(emptyList(),
+                                       0,
+                                       null);
+    }
+
+    private Query cachedQuery(final List<?> key,
+                              final Supplier<Query> builder) {
+        synchronized (queries) {
+            final Query query = queries.get(key);
+            if (query != null) {
+                return query;
+            }
+        }
+        final Query query = builder.get();
+        synchronized (queries) {
+            queries.put(key,
+                        query);
+        }
+        return query;
+    }
+
+    private List<?> key(final Object terms,
+                        final ClusterSegment... clusterSegments) {
+        final List<Object> key = new ArrayList<Object>(clusterSegments.length + 1);
+        key.add(terms);
+        for (final ClusterSegment clusterSegment : clusterSegments) {
+            key.add(Arrays.asList(clusterSegment.getClusterId(),
+                                  clusterSegment.segmentIds() == null ? null : Arrays.asList(clusterSegment.segmentIds())));
+        }
+        return key;
+    }
+
     private Query buildQuery(final Map<String, ?> attrs,
                              final ClusterSegment... clusterSegments) {
+        //date ranges have no value equality, these queries aren't cached
+        for (final Object value : attrs.values()) {
+            if (!(value instanceof String || value instanceof Boolean)) {
+                return newQuery(attrs,
+                                clusterSegments);
+            }
+        }
+        return cachedQuery(key(new HashMap<String, Object>(attrs),
+                               clusterSegments),
+                           () -> newQuery(attrs,
+                                          clusterSegments));
+    }
+
+    private Query newQuery(final Map<String, ?> attrs,
+                           final ClusterSegment... clusterSegments) {
         final BooleanQuery.Builder query = new BooleanQuery.Builder();
         for (final Map.Entry<String, ?> entry : attrs.entrySet()) {
             if (entry.getValue() instanceof DateRange) {
@@ -183,8 +364,8 @@ public class LuceneSearchIndex implements SearchIndex {
                                        true),
                           MUST);
             } else if (entry.getValue() instanceof String) {
-                query.add(new WildcardQuery(new Term(entry.getKey(),
-                                                     entry.getValue().toString())),
+                query.add(newTermQuery(new Term(entry.getKey(),
+                                                entry.getValue().toString())),
                           MUST);
             } else if (entry.getValue() instanceof Boolean) {
                 query.add(new TermQuery(new Term(entry.getKey(),
@@ -196,8 +377,34 @@ public class LuceneSearchIndex implements SearchIndex {
                             clusterSegments);
     }
 
+    /**
+     * Terms without wildcards match only themselves, a plain term query finds them without going
+     * through an automaton.
+     */
+    private Query newTermQuery(final Term term) {
+        final String text = term.text();
+        if (text.indexOf(WildcardQuery.WILDCARD_STRING) < 0
+                && text.indexOf(WildcardQuery.WILDCARD_CHAR) < 0
+                && text.indexOf(WildcardQuery.WILDCARD_ESCAPE) < 0) {
+            return new TermQuery(term);
+        }
+        return new WildcardQuery(term);
+    }
+
     private Query buildQuery(final String term,
                              final ClusterSegment... clusterSegments) {
+        return cachedQuery(key(term,
+                               clusterSegments),
+                           () -> newQuery(term,
+                                          clusterSegments));
+    }
+
+    private Query newQuery(final String term,
+                           final ClusterSegment... clusterSegments) {
+        //parsers aren't thread safe
+        final QueryParser queryParser = new QueryParser(FULL_TEXT_FIELD,
+                                                        analyzer);
+        queryParser.setAllowLeadingWildcard(true);
 
         Query fullText;
         try {
@@ -225,7 +432,9 @@ public class LuceneSearchIndex implements SearchIndex {
         booleanQuery.add(query,
                          MUST);
 
-        final BooleanClause.Occur occur = (clusterSegments.length == 1 ? MUST : SHOULD);
+        //a lone restriction scores the same for every hit, as a filter it ranks them the same and can
+        //be cached; several ones rank the hits of the listed clusters first and must keep scoring
+        final BooleanClause.Occur occur = (clusterSegments.length == 1 ? FILTER : SHOULD);
         for (ClusterSegment clusterSegment : clusterSegments) {
             final BooleanQuery.Builder clusterSegmentQuery = new BooleanQuery.Builder();
             addClusterIdTerms(clusterSegmentQuery,
@@ -275,4 +484,46 @@ public class LuceneSearchIndex implements SearchIndex {
     private String format(final String term) {
         return term.toLowerCase();
     }
+
+    /**
+     * Collects every hit in one pass, in the order of a score sorted top docs search. Unlike a top
+     * docs collector it doesn't need the number of hits up front.
+     */
+    private static class AllHitsCollector extends SimpleCollector {
+
+        private final List<ScoreDoc> hits = new ArrayList<ScoreDoc>();
+        private Scorer scorer;
+        private int docBase;
+
+        @Override
+        protected void doSetNextReader(final LeafReaderContext context) throws IOException {
+            docBase = context.docBase;
+        }
+
+        @Override
+        public void setScorer(final Scorer scorer) throws IOException {
+            this.scorer = scorer;
+        }
+
+        @Override
+        public void collect(final int doc) throws IOException {
+            hits.add(new ScoreDoc(docBase + doc,
+                                  scorer.score()));
+        }
+
+        @Override
+        public boolean needsScores() {
+            return true;
+        }
+
+        private List<ScoreDoc> hits() {
+            hits.sort((a, b) -> {
+                final int byScore = Float.compare(b.score,
+                                                  a.score);
+                return byScore != 0 ? byScore : Integer.compare(a.doc,
+                                                                b.doc);
+            });
+            return hits;
+        }
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.backend.lucene.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.ext.metadata.backend.lucene.index.directory.DirectoryType;
+import org.uberfire.ext.metadata.backend.lucene.model.KClusterImpl;
+import org.uberfire.ext.metadata.model.schema.MetaObject;
+
+import static org.junit.Assert.*;
+
+public class BaseLuceneIndexTest {
+
+    private LuceneIndex index;
+
+    @Before
+    public void setup() {
+        index = DirectoryType.INMEMORY.newIndex(new KClusterImpl("cluster"),
+                                                new IndexWriterConfig(new StandardAnalyzer()));
+    }
+
+    @After
+    public void tearDown() {
+        index.dispose();
+    }
+
+    @Test
+    public void reindexingReplacesTheDocument() throws Exception {
+        index.indexDocument("1",
+                            doc("1",
+                                "a"));
+        index.commit();
+        index.indexDocument("1",
+                            doc("1",
+                                "b"));
+        index.indexDocument("2",
+                            doc("2",
+                                "a"));
+
+        assertEquals(2,
+                     numDocs());
+        assertEquals(1,
+                     count("content",
+                           "a"));
+        assertEquals(1,
+                     count("content",
+                           "b"));
+    }
+
+    @Test
+    public void renameReplacesSourceAndTarget() throws Exception {
+        index.indexDocument("1",
+                            doc("1",
+                                "a"));
+        index.indexDocument("2",
+                            doc("2",
+                                "stale"));
+
+        index.rename("1",
+                     doc("2",
+                         "renamed"));
+
+        assertEquals(1,
+                     numDocs());
+        assertEquals(1,
+                     count("content",
+                           "renamed"));
+        assertEquals(0,
+                     count(MetaObject.META_OBJECT_ID,
+                           "1"));
+    }
+
+    @Test
+    public void deleteIfExistsOnlyReportsExistingIds() throws Exception {
+        index.indexDocument("1",
+                            doc("1",
+                                "a"));
+        index.indexDocument("2",
+                            doc("2",
+                                "a"));
+        index.indexDocument("3",
+                            doc("3",
+                                "a"));
+
+        assertFalse(index.deleteIfExists("4"));
+        assertTrue(index.deleteIfExists("1",
+                                        "3",
+                                        "4"));
+        assertFalse(index.deleteIfExists("1"));
+
+        assertEquals(1,
+                     numDocs());
+        assertEquals(1,
+                     count(MetaObject.META_OBJECT_ID,
+                           "2"));
+    }
+
+    @Test
+    public void deleteIfExistsOnEmptyIndex() {
+        assertFalse(index.deleteIfExists("1"));
+    }
+
+    private int numDocs() {
+        final IndexReader reader = index.nrtReader();
+        try {
+            return reader.numDocs();
+        } finally {
+            index.nrtRelease(reader);
+        }
+    }
+
+    private int count(final String field,
+                      final String value) throws Exception {
+        final IndexSearcher searcher = index.nrtSearcher();
+        try {
+            return searcher.count(new TermQuery(new Term(field,
+                                                         value)));
+        } finally {
+            index.nrtRelease(searcher);
+        }
+    }
+
+    private Document doc(final String id,
+                         final String content) {
+        final Document doc = new Document();
+        doc.add(new StringField(MetaObject.META_OBJECT_ID,
+                                id,
+                                Field.Store.YES));
+        doc.add(new StringField("content",
+                                content,
+                                Field.Store.YES));
+        return doc;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.backend.lucene.index;
+
+import java.util.Collections;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.ext.metadata.backend.lucene.index.directory.DirectoryType;
+import org.uberfire.ext.metadata.model.KCluster;
+import org.uberfire.ext.metadata.model.KObjectKey;
+import org.uberfire.ext.metadata.search.ClusterSegment;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class LuceneIndexManagerTest {
+
+    private LuceneIndexManager indexManager;
+    private LuceneIndex indexA;
+    private LuceneIndex indexB;
+
+    @Before
+    public void setup() {
+        final LuceneIndexFactory factory = mock(LuceneIndexFactory.class);
+        doReturn(Collections.emptyMap()).when(factory).getIndexes();
+        when(factory.newCluster(any(KCluster.class))).thenAnswer(invocation -> DirectoryType.INMEMORY.newIndex((KCluster) invocation.getArguments()[0],
+                                                                                                                 new IndexWriterConfig(new StandardAnalyzer())));
+        indexManager = new LuceneIndexManager(factory);
+
+        indexA = indexManager.indexOf(key("a"));
+        indexB = indexManager.indexOf(key("b"));
+        add(indexA,
+            "1");
+        add(indexB,
+            "2");
+    }
+
+    @After
+    public void tearDown() {
+        indexManager.dispose();
+    }
+
+    @Test
+    public void searcherIsSharedUntilAnIndexChanges() throws Exception {
+        final IndexSearcher first = indexManager.getIndexSearcher(segment("a"),
+                                                                  segment("b"));
+        final IndexSearcher second = indexManager.getIndexSearcher(segment("b"),
+                                                                   segment("a"));
+        assertSame(first,
+                   second);
+        assertEquals(2,
+                     first.getIndexReader().numDocs());
+        indexManager.release(second);
+
+        add(indexA,
+            "3");
+
+        final IndexSearcher third = indexManager.getIndexSearcher(segment("a"),
+                                                                  segment("b"));
+        assertNotSame(first,
+                      third);
+        assertEquals(3,
+                     third.getIndexReader().numDocs());
+
+        //the replaced searcher stays usable until released
+        assertTrue(first.getIndexReader().getRefCount() > 0);
+        assertEquals(2,
+                     first.getIndexReader().numDocs());
+        indexManager.release(first);
+        assertEquals(0,
+                     first.getIndexReader().getRefCount());
+
+        indexManager.release(third);
+        assertTrue(third.getIndexReader().getRefCount() > 0);
+    }
+
+    @Test
+    public void singleClusterUsesTheIndexSearcher() throws Exception {
+        final IndexSearcher searcher = indexManager.getIndexSearcher(segment("a"));
+        try {
+            assertEquals(1,
+                         searcher.getIndexReader().numDocs());
+        } finally {
+            indexManager.release(searcher);
+        }
+
+        final IndexSearcher again = indexManager.getIndexSearcher(segment("a"));
+        assertSame(searcher,
+                   again);
+        indexManager.release(again);
+    }
+
+    private void add(final LuceneIndex index,
+                     final String id) {
+        final Document doc = new Document();
+        doc.add(new StringField("id",
+                                id,
+                                Field.Store.YES));
+        index.indexDocument(id,
+                            doc);
+    }
+
+    private KObjectKey key(final String clusterId) {
+        final KObjectKey key = mock(KObjectKey.class);
+        when(key.getClusterId()).thenReturn(clusterId);
+        return key;
+    }
+
+    private ClusterSegment segment(final String clusterId) {
+        return new ClusterSegment() {
+            @Override
+            public String getClusterId() {
+                return clusterId;
+            }
+
+            @Override
+            public String[] segmentIds() {
+                return new String[0];
+            }
+        };
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.backend.lucene.index.directory;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.MMapDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.uberfire.ext.metadata.backend.lucene.index.BaseLuceneIndex;
+import org.uberfire.ext.metadata.backend.lucene.model.KClusterImpl;
+import org.uberfire.ext.metadata.model.schema.MetaObject;
+
+import static org.junit.Assert.*;
+
+public class TieredLuceneIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void leastRecentlyUsedIndexIsClosedAndReopened() throws Exception {
+        final TieredDirectoryManager manager = new TieredDirectoryManager(1,
+                                                                          0,
+                                                                          -1);
+        final TieredLuceneIndex a = index("a",
+                                          manager);
+        final TieredLuceneIndex b = index("b",
+                                          manager);
+
+        a.indexDocument("1",
+                        doc("1"));
+        assertTrue(a.freshIndex());
+        assertEquals(1,
+                     manager.getOpenDirectories());
+
+        b.indexDocument("2",
+                        doc("2"));
+        assertFalse(a.isOpen());
+        assertTrue(b.isOpen());
+        assertEquals(1,
+                     manager.getOpenDirectories());
+        assertEquals(1,
+                     manager.getClosedCount());
+        //still fresh until committed, even if closing committed the changes
+        assertTrue(a.freshIndex());
+        a.commit();
+        assertFalse(a.freshIndex());
+        assertFalse(a.isOpen());
+
+        assertEquals(1,
+                     numDocs(a));
+        assertTrue(a.isOpen());
+        assertFalse(b.isOpen());
+        assertEquals(3,
+                     manager.getOpenedCount());
+        assertTrue(manager.getMappedBytes() > 0);
+
+        a.dispose();
+        b.dispose();
+        assertEquals(0,
+                     manager.getOpenDirectories());
+    }
+
+    @Test
+    public void searcherOutlivesClosing() throws Exception {
+        final TieredDirectoryManager manager = new TieredDirectoryManager(1,
+                                                                          0,
+                                                                          -1);
+        final TieredLuceneIndex a = index("a",
+                                          manager);
+        final TieredLuceneIndex b = index("b",
+                                          manager);
+        a.indexDocument("1",
+                        doc("1"));
+
+        final IndexSearcher searcher = a.nrtSearcher();
+        b.indexDocument("2",
+                        doc("2"));
+        assertFalse(a.isOpen());
+        assertEquals(1,
+                     searcher.getIndexReader().numDocs());
+        a.nrtRelease(searcher);
+        assertEquals(0,
+                     searcher.getIndexReader().getRefCount());
+
+        a.dispose();
+        b.dispose();
+    }
+
+    @Test
+    public void smallIndexesArePinned() throws Exception {
+        final TieredDirectoryManager manager = new TieredDirectoryManager(1,
+                                                                          1024 * 1024,
+                                                                          1024 * 1024);
+        final TieredLuceneIndex a = index("a",
+                                          manager);
+        final TieredLuceneIndex b = index("b",
+                                          manager);
+        a.indexDocument("1",
+                        doc("1"));
+        b.indexDocument("2",
+                        doc("2"));
+
+        assertTrue(a.isOpen());
+        assertTrue(b.isOpen());
+        assertEquals(2,
+                     manager.getPinnedDirectories());
+        assertEquals(0,
+                     manager.getClosedCount());
+
+        a.delete();
+        assertEquals(1,
+                     manager.getPinnedDirectories());
+        b.dispose();
+        assertEquals(0,
+                     manager.getOpenDirectories());
+    }
+
+    private TieredLuceneIndex index(final String clusterId,
+                                    final TieredDirectoryManager manager) throws IOException {
+        final File dir = new File(folder.getRoot(),
+                                  clusterId);
+        final KClusterImpl cluster = new KClusterImpl(clusterId);
+        return new TieredLuceneIndex(cluster,
+                                     () -> {
+                                         try {
+                                             final boolean fresh = !dir.exists();
+                                             return new DirectoryLuceneIndex(cluster,
+                                                                             new Directory(new MMapDirectory(dir.toPath()),
+                                                                                           directory -> {
+                                                                                           },
+                                                                                           fresh),
+                                                                             new IndexWriterConfig(new StandardAnalyzer()));
+                                         } catch (IOException e) {
+                                             throw new RuntimeException(e);
+                                         }
+                                     },
+                                     manager);
+    }
+
+    private int numDocs(final TieredLuceneIndex index) {
+        final IndexReader reader = index.nrtReader();
+        try {
+            return reader.numDocs();
+        } finally {
+            index.nrtRelease(reader);
+        }
+    }
+
+    private Document doc(final String id) {
+        final Document doc = new Document();
+        doc.add(new StringField(MetaObject.META_OBJECT_ID,
+                                id,
+                                Field.Store.YES));
+        return doc;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.backend.lucene.provider;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.lucene.document.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.ext.metadata.backend.lucene.fields.SimpleFieldFactory;
+import org.uberfire.ext.metadata.backend.lucene.index.LuceneIndex;
+import org.uberfire.ext.metadata.backend.lucene.model.KClusterImpl;
+import org.uberfire.ext.metadata.engine.IndexManager;
+import org.uberfire.ext.metadata.model.KCluster;
+import org.uberfire.ext.metadata.model.KObject;
+import org.uberfire.ext.metadata.model.schema.MetaType;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class LuceneIndexProviderTest {
+
+    private static final KCluster CLUSTER = new KClusterImpl("cluster");
+
+    private IndexManager indexManager;
+    private LuceneIndex index;
+
+    @Before
+    public void setup() {
+        indexManager = mock(IndexManager.class);
+        index = mock(LuceneIndex.class);
+        when(index.getCluster()).thenReturn(CLUSTER);
+        when(index.deleteIfExists(anyString())).thenReturn(true);
+        when(indexManager.indexOf(any(KObject.class))).thenReturn(index);
+        when(indexManager.get(CLUSTER)).thenReturn(index);
+    }
+
+    @Test
+    public void commitOnEveryChangeWithoutInterval() {
+        final LuceneIndexProvider provider = new LuceneIndexProvider(indexManager,
+                                                                     new SimpleFieldFactory(),
+                                                                     0,
+                                                                     100);
+
+        provider.index(kObject("1"));
+        provider.delete(CLUSTER.getClusterId(),
+                        "1");
+
+        verify(index,
+               times(2)).commit();
+    }
+
+    @Test
+    public void commitWhenPendingChangesReachTheLimit() {
+        final LuceneIndexProvider provider = new LuceneIndexProvider(indexManager,
+                                                                     new SimpleFieldFactory(),
+                                                                     60000,
+                                                                     3);
+        try {
+            provider.index(kObject("1"));
+            provider.index(kObject("2"));
+            verify(index,
+                   never()).commit();
+
+            provider.delete(CLUSTER.getClusterId(),
+                            "1");
+            verify(index,
+                   times(1)).commit();
+
+            provider.index(kObject("3"));
+            verify(index,
+                   times(1)).commit();
+            verify(index,
+                   times(3)).indexDocument(anyString(),
+                                           any(Document.class));
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Test
+    public void flushCommitsPendingChanges() {
+        final LuceneIndexProvider provider = new LuceneIndexProvider(indexManager,
+                                                                     new SimpleFieldFactory(),
+                                                                     60000,
+                                                                     100);
+        try {
+            provider.index(kObject("1"));
+            verify(index,
+                   never()).commit();
+
+            provider.flush(CLUSTER);
+            verify(index,
+                   times(1)).commit();
+        } finally {
+            provider.dispose();
+        }
+        // nothing left to commit on dispose
+        verify(index,
+               times(1)).commit();
+    }
+
+    @Test
+    public void pendingChangesAreCommittedOnInterval() {
+        final LuceneIndexProvider provider = new LuceneIndexProvider(indexManager,
+                                                                     new SimpleFieldFactory(),
+                                                                     50,
+                                                                     100);
+        try {
+            provider.index(kObject("1"));
+
+            verify(index,
+                   timeout(5000).times(1)).commit();
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Test
+    public void bulkIndexIsCommittedRightAway() {
+        final LuceneIndexProvider provider = new LuceneIndexProvider(indexManager,
+                                                                     new SimpleFieldFactory(),
+                                                                     60000,
+                                                                     100);
+        try {
+            provider.index(Arrays.asList(kObject("1"),
+                                         kObject("2")));
+
+            verify(index,
+                   times(1)).commit();
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    private KObject kObject(final String id) {
+        final MetaType type = mock(MetaType.class);
+        when(type.getName()).thenReturn("type");
+
+        final KObject kObject = mock(KObject.class);
+        when(kObject.getId()).thenReturn(id);
+        when(kObject.getType()).thenReturn(type);
+        when(kObject.getKey()).thenReturn("key" + id);
+        when(kObject.getClusterId()).thenReturn(CLUSTER.getClusterId());
+        when(kObject.getSegmentId()).thenReturn("segment");
+        when(kObject.getProperties()).thenReturn(Collections.emptyList());
+        return kObject;
+    }
+}
@@ -16,8 +16,24 @@
 
 package org.uberfire.ext.metadata.io;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,9 +43,12 @@ import org.uberfire.ext.metadata.engine.MetaIndexEngine;
 import org.uberfire.ext.metadata.engine.Observer;
 import org.uberfire.ext.metadata.model.KCluster;
 import org.uberfire.ext.metadata.model.KObject;
+import org.uberfire.ext.metadata.model.KObjectKey;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.base.BranchChanges;
 import org.uberfire.java.nio.base.FileSystemId;
+import org.uberfire.java.nio.base.dotfiles.DotFileUtils;
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.FileVisitResult;
 import org.uberfire.java.nio.file.Path;
@@ -42,10 +61,33 @@ import static org.kie.soup.commons.validation.PortablePreconditions.checkNotNull
 import static org.uberfire.java.nio.file.Files.walkFileTree;
 
 /**
- *
+ * Indexes a whole file system tree as a pipeline of bounded stages: a walker thread of its own
+ * enumerates the files, {@link #BATCH_THREADS} workers read the attribute views and run the
+ * {@link Indexer}s, and the calling thread hands the resulting {@link KObject}s to the
+ * {@link MetaIndexEngine} in chunks of {@link #BATCH_SIZE}. Stages block when the next one falls
+ * {@link #BATCH_QUEUE_SIZE} elements behind, so memory stays bounded whatever the size of the tree.
+ * <p>
+ * The workers are shared by every pipeline running at once. A worker never waits on a stage running
+ * in the pool, so pipelines only slow each other down, however many are started together.
+ * <p>
+ * Each root records the commit it was indexed at once it is completely indexed, so
+ * {@link #runIncremental(FileSystem)} only has to index what changed since then. Roots of file
+ * systems that don't keep history record an empty commit. A root without a recorded commit was
+ * never completely indexed, even if some of its files are already in the index.
  */
 public final class BatchIndex {
 
+    public static final String BATCH_THREADS = "org.uberfire.metadata.index.batch.threads";
+    public static final String BATCH_QUEUE_SIZE = "org.uberfire.metadata.index.batch.queue.size";
+    public static final String BATCH_SIZE = "org.uberfire.metadata.index.batch.size";
+    private static final int DEFAULT_BATCH_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final long POLL_TIMEOUT = 100;
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+    // recorded for roots indexed without a head commit, it has no changes to catch up from
+    private static final String NO_HISTORY = "";
+
     private static final Logger LOG = LoggerFactory.getLogger(BatchIndex.class);
 
     private final MetaIndexEngine indexEngine;
@@ -54,12 +96,44 @@ public final class BatchIndex {
     private final AtomicBoolean indexDisposed = new AtomicBoolean(false);
     private final Observer observer;
     private final ExecutorService executorService;
+    private final int threads;
+    private final int queueSize;
+    private final int batchSize;
+    private final int poolId;
+    private final AtomicInteger walkerCount = new AtomicInteger();
+    private final ThreadPoolExecutor workers;
 
     public BatchIndex(final MetaIndexEngine indexEngine,
                       final IOService ioService,
                       final Observer observer,
                       final ExecutorService executorService,
                       final Class<? extends FileAttributeView>... views) {
+        this(indexEngine,
+             ioService,
+             observer,
+             executorService,
+             readProperty(BATCH_THREADS,
+                          Runtime.getRuntime().availableProcessors()),
+             readProperty(BATCH_QUEUE_SIZE,
+                          DEFAULT_BATCH_QUEUE_SIZE),
+             readProperty(BATCH_SIZE,
+                          DEFAULT_BATCH_SIZE),
+             views);
+    }
+
+    /**
+     * @param threads number of workers reading attributes and running indexers
+     * @param queueSize number of files and of objects each stage may get ahead of the next one
+     * @param batchSize number of objects sent to the index engine at once
+     */
+    public BatchIndex(final MetaIndexEngine indexEngine,
+                      final IOService ioService,
+                      final Observer observer,
+                      final ExecutorService executorService,
+                      final int threads,
+                      final int queueSize,
+                      final int batchSize,
+                      final Class<? extends FileAttributeView>... views) {
         this.indexEngine = checkNotNull("indexEngine",
                                         indexEngine);
         this.ioService = checkNotNull("ioService",
@@ -67,8 +141,44 @@ public final class BatchIndex {
         this.observer = checkNotNull("observer",
                                      observer);
         this.views = views;
+        this.threads = Math.max(1,
+                                threads);
+        this.queueSize = Math.max(1,
+                                  queueSize);
+        this.batchSize = Math.max(1,
+                                  batchSize);
 
         this.executorService = executorService;
+
+        // walkers get threads of their own, idle threads go away between batches
+        this.poolId = POOL_COUNT.incrementAndGet();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(this.threads,
+                                              this.threads,
+                                              60,
+                                              TimeUnit.SECONDS,
+                                              new LinkedBlockingQueue<>(),
+                                              r -> {
+                                                  final Thread thread = new Thread(r,
+                                                                                   "batch-index-" + poolId + "-" + threadCount.incrementAndGet());
+                                                  thread.setDaemon(true);
+                                                  return thread;
+                                              });
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    private static int readProperty(final String name,
+                                    final int defaultValue) {
+        final String value = System.getProperty(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value '" + value + "' for " + name + ", using " + defaultValue);
+            return defaultValue;
+        }
     }
 
     public void runAsync(final FileSystem fs) {
@@ -87,7 +197,9 @@ public final class BatchIndex {
                         public void run() {
                             indexDisposed.set(true);
 
-                            if (!indexFinished.get()) {
+                            // the index engine may be disposed more than once
+                            if (indexFinished.compareAndSet(false,
+                                                            true)) {
                                 indexEngine.delete(KObjectUtil.toKCluster(fs));
                             }
                         }
@@ -138,74 +250,22 @@ public final class BatchIndex {
             logInformation("Starting indexing of " + root.toUri() + " ...");
 
             final KCluster cluster = KObjectUtil.toKCluster(root.getFileSystem());
+            // read before walking, changes done meanwhile are found by the next incremental run
+            final String head = (String) readChanges(root,
+                                                     null).get(BranchChanges.HEAD);
 
-            walkFileTree(checkNotNull("root",
+            new Pipeline(checkNotNull("root",
                                       root),
-                         new SimpleFileVisitor<Path>() {
-                             @Override
-                             public FileVisitResult visitFile(final Path file,
-                                                              final BasicFileAttributes attrs) throws IOException {
-                                 if (indexDisposed.get()) {
-                                     return FileVisitResult.TERMINATE;
-                                 }
-                                 try {
-                                     checkNotNull("file",
-                                                  file);
-                                     checkNotNull("attrs",
-                                                  attrs);
-
-                                     if (!file.getFileName().toString().startsWith(".")) {
-
-                                         LOG.debug("Indexing " + file.toUri());
-
-                                         //Default indexing
-                                         for (final Class<? extends FileAttributeView> view : views) {
-                                             ioService.getFileAttributeView(file,
-                                                                            view);
-                                         }
-                                         final FileAttribute<?>[] allAttrs = ioService.convert(ioService.readAttributes(file));
-                                         if (!indexDisposed.get()) {
-                                             indexEngine.index(KObjectUtil.toKObject(file,
-                                                                                     allAttrs));
-                                         } else {
-                                             return FileVisitResult.TERMINATE;
-                                         }
-
-                                         //Additional indexing
-                                         for (Indexer indexer : IndexersFactory.getIndexers()) {
-                                             if (file.getFileSystem().isOpen()) {
-                                                 if (indexer.supportsPath(file)) {
-                                                     final KObject kObject = indexer.toKObject(file);
-                                                     if (kObject != null) {
-                                                         if (!indexDisposed.get()) {
-                                                             indexEngine.index(kObject);
-                                                         } else {
-                                                             return FileVisitResult.TERMINATE;
-                                                         }
-                                                     }
-                                                 }
-                                             }
-                                         }
-                                     }
-                                 } catch (final Exception ex) {
-                                     if (indexDisposed.get()) {
-                                         logWarning("Batch index couldn't finish. [@" + root.toUri().toString() + "]");
-                                         return FileVisitResult.TERMINATE;
-                                     } else {
-                                         logError("Index fails. [@" + file.toString() + "]",
-                                                  ex);
-                                     }
-                                 }
-                                 if (indexDisposed.get()) {
-                                     return FileVisitResult.TERMINATE;
-                                 }
-                                 return FileVisitResult.CONTINUE;
-                             }
-                         });
+                         null).run();
 
             if (!indexDisposed.get()) {
                 logInformation("Completed indexing of " + root.toUri());
                 indexEngine.commit(cluster);
+                // the chunks of the pipeline are already durable, recording the root is what marks
+                // it as completely indexed, also for file systems that don't keep history
+                indexEngine.setLastIndexedCommit(cluster,
+                                                 root.toUri().toString(),
+                                                 head != null ? head : NO_HISTORY);
                 if (callback != null) {
                     callback.run();
                 }
@@ -229,6 +289,186 @@ public final class BatchIndex {
         }
     }
 
+    public void runIncrementalAsync(final FileSystem fs) {
+        if (fs != null && fs.getRootDirectories().iterator().hasNext()) {
+            executorService.execute(new DescriptiveRunnable() {
+                @Override
+                public String getDescription() {
+                    return "FS Incremental BatchIndex [" + ((FileSystemId) fs).id() + "]";
+                }
+
+                @Override
+                public void run() {
+                    BatchIndex.this.runIncremental(fs);
+                }
+            });
+        }
+    }
+
+    /**
+     * Brings an existing index of the file system up to date, indexing only the files changed since
+     * the commit each root was last indexed at. Roots without a recorded commit are fully indexed,
+     * and the whole cluster is rebuilt when the changes of a root can't be found anymore (e.g. its
+     * history was rewritten). The cluster is rebuilt as well when none of its roots recorded a
+     * commit: the initial index of the file system was interrupted and only part of it is in the
+     * index.
+     */
+    public void runIncremental(final FileSystem fs) {
+        final KCluster cluster = KObjectUtil.toKCluster(fs);
+        try {
+            final Map<Path, String> lastCommits = new LinkedHashMap<>();
+            boolean hasLastCommit = false;
+            for (final Path root : fs.getRootDirectories()) {
+                final String lastCommit = indexEngine.getLastIndexedCommit(cluster,
+                                                                           root.toUri().toString());
+                lastCommits.put(root,
+                                lastCommit);
+                hasLastCommit |= lastCommit != null;
+            }
+            if (!hasLastCommit) {
+                logWarning("Index of " + fs.toString() + " was never completed, indexing it again");
+                rebuild(cluster,
+                        fs);
+                return;
+            }
+
+            final Map<Path, Map<String, Object>> changes = new LinkedHashMap<>();
+            for (final Map.Entry<Path, String> entry : lastCommits.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                final Map<String, Object> rootChanges = readChanges(entry.getKey(),
+                                                                    entry.getValue());
+                if (rootChanges.get(BranchChanges.HEAD) != null && !rootChanges.containsKey(BranchChanges.CHANGED)) {
+                    logWarning("Changes of " + entry.getKey().toUri() + " since " + entry.getValue() + " not found, indexing " + fs.toString() + " again");
+                    rebuild(cluster,
+                            fs);
+                    return;
+                }
+                changes.put(entry.getKey(),
+                            rootChanges);
+            }
+
+            for (final Map.Entry<Path, String> entry : lastCommits.entrySet()) {
+                if (indexDisposed.get()) {
+                    return;
+                }
+                if (entry.getValue() == null) {
+                    // e.g. a branch created while the index wasn't running
+                    run(entry.getKey());
+                } else {
+                    runIncremental(cluster,
+                                   entry.getKey(),
+                                   entry.getValue(),
+                                   changes.get(entry.getKey()));
+                }
+            }
+        } catch (final Exception ex) {
+            if (indexDisposed.get()) {
+                logWarning("Incremental index couldn't finish. [@" + fs.toString() + "]");
+            } else {
+                logError("Incremental index fails. [@" + fs.toString() + "]",
+                         ex);
+            }
+        }
+    }
+
+    private void rebuild(final KCluster cluster,
+                         final FileSystem fs) {
+        indexEngine.delete(cluster);
+        for (final Path root : fs.getRootDirectories()) {
+            if (indexDisposed.get()) {
+                return;
+            }
+            run(root);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runIncremental(final KCluster cluster,
+                                final Path root,
+                                final String lastCommit,
+                                final Map<String, Object> changes) throws Exception {
+        final String head = (String) changes.get(BranchChanges.HEAD);
+        if (head == null || head.equals(lastCommit)) {
+            return;
+        }
+
+        final Set<Path> changed = new LinkedHashSet<>();
+        for (final String path : (Collection<String>) changes.get(BranchChanges.CHANGED)) {
+            addChanged(changed,
+                       root.resolve(path));
+        }
+        final Collection<String> deleted = (Collection<String>) changes.get(BranchChanges.DELETED);
+        for (final String path : deleted) {
+            final Path file = root.resolve(path);
+            if (file.getFileName().toString().startsWith(".")) {
+                addChanged(changed,
+                           file);
+            } else if (!changed.contains(file)) {
+                delete(file);
+            }
+        }
+
+        logInformation("Indexing " + changed.size() + " changed and " + deleted.size() + " deleted files of " + root.toUri() + " since " + lastCommit);
+        new Pipeline(root,
+                     changed).run();
+
+        if (!indexDisposed.get()) {
+            indexEngine.setLastIndexedCommit(cluster,
+                                             root.toUri().toString(),
+                                             head);
+            logInformation("Completed incremental indexing of " + root.toUri());
+        }
+    }
+
+    /**
+     * Changes to a "dot file" are indexed through the file it holds the attributes of.
+     */
+    private void addChanged(final Set<Path> changed,
+                            final Path file) {
+        Path path = file;
+        if (path.getFileName().toString().startsWith(".")) {
+            if (IOServiceIndexedUtil.isBlackListed(path)) {
+                return;
+            }
+            path = DotFileUtils.undot(path);
+        }
+        if (ioService.exists(path)) {
+            changed.add(path);
+        }
+    }
+
+    private void delete(final Path file) {
+        indexEngine.delete(KObjectUtil.toKObjectKey(file));
+
+        //Additional indexing
+        for (Indexer indexer : IndexersFactory.getIndexers()) {
+            if (indexer.supportsPath(file)) {
+                final KObjectKey kObject = indexer.toKObjectKey(file);
+                if (kObject != null) {
+                    indexEngine.delete(kObject);
+                }
+            }
+        }
+    }
+
+    /**
+     * Head commit of the root and, when known, what changed since the given commit. Empty for file
+     * systems that don't keep history.
+     */
+    private Map<String, Object> readChanges(final Path root,
+                                            final String since) {
+        try {
+            return ioService.readAttributes(root,
+                                            BranchChanges.CHANGES_ATTR + ":" + (since == null ? "" : since));
+        } catch (final Exception ex) {
+            LOG.debug("No history available for " + root.toUri(),
+                      ex);
+            return Collections.emptyMap();
+        }
+    }
+
     private void logInformation(final String message) {
         observer.information(message);
         LOG.info(message);
@@ -247,6 +487,217 @@ public final class BatchIndex {
     }
 
     public void dispose() {
+        workers.shutdownNow();
         indexEngine.dispose();
     }
+
+    /**
+     * State of a single {@link #run(Path, Runnable)}.
+     */
+    private final class Pipeline {
+
+        private final Path root;
+        private final Collection<Path> changed;
+        private final BlockingQueue<Path> files = new ArrayBlockingQueue<>(queueSize);
+        private final BlockingQueue<KObject> kObjects = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean walkFinished = new AtomicBoolean(false);
+        private final CountDownLatch extractorsFinished = new CountDownLatch(threads);
+        private final AtomicBoolean aborted = new AtomicBoolean(false);
+        private final AtomicLong walked = new AtomicLong();
+        private final AtomicLong processed = new AtomicLong();
+        private volatile Exception walkFailure;
+
+        /**
+         * @param changed files to index, or null to index every file of the root
+         */
+        private Pipeline(final Path root,
+                         final Collection<Path> changed) {
+            this.root = root;
+            this.changed = changed;
+        }
+
+        /**
+         * Starts the walker and the workers, and writes on the calling thread until every file is
+         * indexed or the index is disposed.
+         */
+        private void run() throws Exception {
+            // the walker blocks while the workers fall behind, so it must not hold a pool thread the
+            // workers of this or another pipeline are waiting for
+            final Thread walker = new Thread(this::walk,
+                                             "batch-index-" + poolId + "-walker-" + walkerCount.incrementAndGet());
+            walker.setDaemon(true);
+            try {
+                walker.start();
+                for (int i = 0; i < threads; i++) {
+                    workers.execute(this::extract);
+                }
+                write();
+            } finally {
+                aborted.set(true);
+            }
+            walker.join();
+            if (walkFailure != null) {
+                throw walkFailure;
+            }
+        }
+
+        private void walk() {
+            try {
+                if (changed != null) {
+                    for (final Path file : changed) {
+                        if (!offer(files,
+                                   file)) {
+                            return;
+                        }
+                        walked.incrementAndGet();
+                    }
+                    return;
+                }
+                walkFileTree(root,
+                             new SimpleFileVisitor<Path>() {
+                                 @Override
+                                 public FileVisitResult visitFile(final Path file,
+                                                                  final BasicFileAttributes attrs) throws IOException {
+                                     if (isStopped()) {
+                                         return FileVisitResult.TERMINATE;
+                                     }
+                                     checkNotNull("file",
+                                                  file);
+                                     checkNotNull("attrs",
+                                                  attrs);
+
+                                     if (!file.getFileName().toString().startsWith(".")) {
+                                         if (!offer(files,
+                                                    file)) {
+                                             return FileVisitResult.TERMINATE;
+                                         }
+                                         walked.incrementAndGet();
+                                     }
+                                     return FileVisitResult.CONTINUE;
+                                 }
+                             });
+            } catch (final Exception ex) {
+                walkFailure = ex;
+            } finally {
+                walkFinished.set(true);
+            }
+        }
+
+        private void extract() {
+            try {
+                while (!isStopped()) {
+                    final Path file = files.poll(POLL_TIMEOUT,
+                                                 TimeUnit.MILLISECONDS);
+                    if (file != null) {
+                        extract(file);
+                        processed.incrementAndGet();
+                    } else if (walkFinished.get() && files.isEmpty()) {
+                        return;
+                    }
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                aborted.set(true);
+            } finally {
+                extractorsFinished.countDown();
+            }
+        }
+
+        private void extract(final Path file) {
+            try {
+                LOG.debug("Indexing " + file.toUri());
+
+                //Default indexing
+                for (final Class<? extends FileAttributeView> view : views) {
+                    ioService.getFileAttributeView(file,
+                                                   view);
+                }
+                final FileAttribute<?>[] allAttrs = ioService.convert(ioService.readAttributes(file));
+                if (!offer(kObjects,
+                           KObjectUtil.toKObject(file,
+                                                 allAttrs))) {
+                    return;
+                }
+
+                //Additional indexing
+                for (Indexer indexer : IndexersFactory.getIndexers()) {
+                    if (file.getFileSystem().isOpen()) {
+                        if (indexer.supportsPath(file)) {
+                            final KObject kObject = indexer.toKObject(file);
+                            if (kObject != null && !offer(kObjects,
+                                                          kObject)) {
+                                return;
+                            }
+                        }
+                    }
+                }
+            } catch (final Exception ex) {
+                if (!indexDisposed.get()) {
+                    logError("Index fails. [@" + file.toString() + "]",
+                             ex);
+                }
+            }
+        }
+
+        private void write() throws InterruptedException {
+            final List<KObject> batch = new ArrayList<>(batchSize);
+            long nextProgress = PROGRESS_INTERVAL;
+            while (!isStopped()) {
+                final KObject kObject = kObjects.poll(POLL_TIMEOUT,
+                                                      TimeUnit.MILLISECONDS);
+                if (kObject != null) {
+                    batch.add(kObject);
+                    if (batch.size() >= batchSize) {
+                        write(batch);
+                    }
+                } else if (extractorsFinished.getCount() == 0 && kObjects.isEmpty()) {
+                    break;
+                } else if (!batch.isEmpty()) {
+                    // workers are behind, don't keep what we already have waiting
+                    write(batch);
+                }
+
+                if (processed.get() >= nextProgress) {
+                    nextProgress = processed.get() + PROGRESS_INTERVAL;
+                    logInformation("Indexing of " + root.toUri() + ": " + processed.get() + " of " + walked.get() + " files processed, "
+                                           + files.size() + " files and " + kObjects.size() + " objects queued");
+                }
+            }
+            if (!isStopped() && !batch.isEmpty()) {
+                write(batch);
+            }
+        }
+
+        private void write(final List<KObject> batch) {
+            if (indexDisposed.get()) {
+                return;
+            }
+            indexEngine.index(batch.toArray(new KObject[batch.size()]));
+            batch.clear();
+        }
+
+        /**
+         * Waits for room in the next stage, giving up when the batch stops.
+         */
+        private <T> boolean offer(final BlockingQueue<T> queue,
+                                  final T element) {
+            try {
+                while (!isStopped()) {
+                    if (queue.offer(element,
+                                    POLL_TIMEOUT,
+                                    TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                aborted.set(true);
+            }
+            return false;
+        }
+
+        private boolean isStopped() {
+            return indexDisposed.get() || aborted.get();
+        }
+    }
 }
@@ -21,11 +21,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.uberfire.ext.metadata.model.KObject;
+import org.uberfire.ext.metadata.model.schema.MetaObject;
 import org.uberfire.ext.metadata.search.ClusterSegment;
 import org.uberfire.ext.metadata.search.IOSearchService;
+import org.uberfire.ext.metadata.search.SearchCursor;
 import org.uberfire.ext.metadata.search.SearchIndex;
+import org.uberfire.ext.metadata.search.SearchPage;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.base.FileSystemId;
 import org.uberfire.java.nio.base.SegmentedPath;
@@ -96,6 +100,61 @@ public class IOSearchServiceImpl implements IOSearchService {
                                               buildClusterSegments(roots));
     }
 
+    @Override
+    public SearchPage<Path> searchByAttrs(final Map<String, ?> attrs,
+                                          final Filter filter,
+                                          final int pageSize,
+                                          final SearchCursor after,
+                                          final Path... roots) {
+        return toPaths(searchIndex.searchByAttrs(attrs,
+                                                 filter,
+                                                 pageSize,
+                                                 after,
+                                                 fieldsFor(filter),
+                                                 buildClusterSegments(roots)));
+    }
+
+    @Override
+    public SearchPage<Path> fullTextSearch(final String _term,
+                                           final Filter filter,
+                                           final int pageSize,
+                                           final SearchCursor after,
+                                           final Path... roots) {
+        final String term = checkNotNull("term",
+                                         _term).trim();
+        if (term.isEmpty()) {
+            return new SearchPage<>(Collections.emptyList(),
+                                    0,
+                                    null);
+        }
+        return toPaths(searchIndex.fullTextSearch(term,
+                                                  filter,
+                                                  pageSize,
+                                                  after,
+                                                  fieldsFor(filter),
+                                                  buildClusterSegments(roots)));
+    }
+
+    /**
+     * Only the key is needed to resolve the path, unless a filter looks at the whole object.
+     */
+    private Set<String> fieldsFor(final Filter filter) {
+        if (filter instanceof NoOpFilter) {
+            return Collections.singleton(MetaObject.META_OBJECT_KEY);
+        }
+        return null;
+    }
+
+    private SearchPage<Path> toPaths(final SearchPage<KObject> page) {
+        final List<Path> paths = new ArrayList<>(page.getHits().size());
+        for (final KObject kObject : page.getHits()) {
+            paths.add(ioService.get(URI.create(kObject.getKey())));
+        }
+        return new SearchPage<>(paths,
+                                page.getTotalHits(),
+                                page.getNext());
+    }
+
     private ClusterSegment[] buildClusterSegments(final Path[] roots) {
         if (roots == null || roots.length == 0) {
             return new ClusterSegment[0];
@@ -18,11 +18,17 @@ package org.uberfire.ext.metadata.io;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,8 +43,6 @@ import org.uberfire.io.IOWatchService;
 import org.uberfire.io.impl.IOServiceDotFileImpl;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.base.FSPath;
-import org.uberfire.java.nio.base.WatchContext;
-import org.uberfire.java.nio.base.dotfiles.DotFileUtils;
 import org.uberfire.java.nio.file.DeleteOption;
 import org.uberfire.java.nio.file.DirectoryNotEmptyException;
 import org.uberfire.java.nio.file.FileSystem;
@@ -47,7 +51,6 @@ import org.uberfire.java.nio.file.FileSystemNotFoundException;
 import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.file.ProviderNotFoundException;
-import org.uberfire.java.nio.file.StandardWatchEventKind;
 import org.uberfire.java.nio.file.WatchEvent;
 import org.uberfire.java.nio.file.WatchKey;
 import org.uberfire.java.nio.file.WatchService;
@@ -55,19 +58,35 @@ import org.uberfire.java.nio.file.attribute.FileAttribute;
 import org.uberfire.java.nio.file.attribute.FileAttributeView;
 
 import static org.kie.soup.commons.validation.PortablePreconditions.checkNotNull;
-import static org.uberfire.java.nio.file.StandardWatchEventKind.ENTRY_CREATE;
-import static org.uberfire.java.nio.file.StandardWatchEventKind.ENTRY_MODIFY;
 
 public class IOServiceIndexedImpl extends IOServiceDotFileImpl {
 
+    /**
+     * Milliseconds watch events are collected before being indexed together.
+     */
+    public static final String INDEX_EVENT_WINDOW = "org.uberfire.metadata.index.event.window";
+    private static final long DEFAULT_INDEX_EVENT_WINDOW = 500;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(IOServiceIndexedImpl.class);
 
+    // only waits the event window, the indexing itself runs on the executor service
+    private static final ScheduledExecutorService EVENT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r,
+                                         "index-event-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final MetaIndexEngine indexEngine;
     private final BatchIndex batchIndex;
 
     private final Class<? extends FileAttributeView>[] views;
     private final List<String> watchedList = new ArrayList<>();
+    private final Set<String> indexedList = ConcurrentHashMap.newKeySet();
     private final List<WatchService> watchServices = new ArrayList<WatchService>();
+    private final Map<String, IndexEventQueue> indexEventQueues = new ConcurrentHashMap<>();
+    private final long eventWindow = Long.getLong(INDEX_EVENT_WINDOW,
+                                                  DEFAULT_INDEX_EVENT_WINDOW);
 
     private final Observer observer;
     private ExecutorService executorService;
@@ -228,6 +247,7 @@ public class IOServiceIndexedImpl extends IOServiceDotFileImpl {
         for (final WatchService watchService : watchServices) {
             watchService.close();
         }
+        batchIndex.dispose();
         super.dispose();
     }
 
@@ -238,6 +258,8 @@ public class IOServiceIndexedImpl extends IOServiceDotFileImpl {
         final WatchService ws = fs.newWatchService();
         watchedList.add(fs.getName());
         watchServices.add(ws);
+        final IndexEventQueue queue = indexEventQueues.computeIfAbsent(fs.getName(),
+                                                                       k -> new IndexEventQueue());
 
         final ExecutorService defaultInstance = this.executorService;
 
@@ -258,131 +280,129 @@ public class IOServiceIndexedImpl extends IOServiceDotFileImpl {
                     }
 
                     final List<WatchEvent<?>> events = wk.pollEvents();
-                    DescriptiveRunnable job = new DescriptiveRunnable() {
-                        @Override
-                        public String getDescription() {
-                            return "IOServiceIndexedImpl(IndexOnEvent - " + ws.toString() + ")";
-                        }
+                    if (queue.offer(events)) {
+                        scheduleIndexing(ws,
+                                         queue);
+                    }
+                }
+            }
+        });
+    }
 
-                        @Override
-                        public void run() {
-                            // Get a set of "real paths" to be indexed. The "dot path" associated with the "real path"
-                            // is automatically indexed because the "dot path" contains content for FileAttributeView(s)
-                            // linked to the "real path".
-                            final Set<Path> eventRealPaths = new HashSet<>();
-                            for (WatchEvent event : events) {
-                                final WatchContext context = ((WatchContext) event.context());
-                                if (event.kind() == ENTRY_MODIFY || event.kind() == ENTRY_CREATE) {
-                                    final Path path = context.getPath();
-                                    if (!path.getFileName().toString().startsWith(".")) {
-                                        eventRealPaths.add(path);
-                                    }
-                                }
-                            }
+    private void scheduleIndexing(final WatchService ws,
+                                  final IndexEventQueue queue) {
+        try {
+            EVENT_SCHEDULER.schedule(() -> {
+                                         try {
+                                             executorService.execute(new DescriptiveRunnable() {
+                                                 @Override
+                                                 public String getDescription() {
+                                                     return "IOServiceIndexedImpl(IndexOnEvent - " + ws.toString() + ")";
+                                                 }
+
+                                                 @Override
+                                                 public void run() {
+                                                     indexEvents(ws,
+                                                                 queue);
+                                                 }
+                                             });
+                                         } catch (RejectedExecutionException e) {
+                                             indexingRejected(ws,
+                                                              queue,
+                                                              e);
+                                         }
+                                     },
+                                     eventWindow,
+                                     TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            indexingRejected(ws,
+                             queue,
+                             e);
+        }
+    }
 
-                            for (WatchEvent object : events) {
-                                if (isDisposed()) {
-                                    return;
-                                }
-                                try {
-                                    final WatchContext context = ((WatchContext) object.context());
-                                    if (object.kind() == ENTRY_MODIFY || object.kind() == ENTRY_CREATE) {
-
-                                        // If the path to be indexed is a "dot path" but does not have an associated
-                                        // "real path" index the "real path" instead. This ensures when only a
-                                        // "dot path" is updated the FileAttributeView(s) are re-indexed.
-                                        Path path = context.getPath();
-                                        if (path.getFileName().toString().startsWith(".")) {
-                                            if (!IOServiceIndexedUtil.isBlackListed(path)) {
-                                                final Path realPath = DotFileUtils.undot(path);
-                                                if (!eventRealPaths.contains(realPath)) {
-                                                    path = realPath;
-                                                }
-                                            }
-                                        }
-
-                                        if (!path.getFileName().toString().startsWith(".")) {
-
-                                            //Default indexing
-                                            for (final Class<? extends FileAttributeView> view : views) {
-                                                getFileAttributeView(path,
-                                                                     view);
-                                            }
-                                            final FileAttribute<?>[] allAttrs = convert(readAttributes(path));
-                                            indexEngine.index(KObjectUtil.toKObject(path,
-                                                                                    allAttrs));
-
-                                            //Additional indexing
-                                            for (Indexer indexer : IndexersFactory.getIndexers()) {
-                                                if (isDisposed()) {
-                                                    return;
-                                                }
-                                                if (indexer.supportsPath(path)) {
-                                                    final KObject kObject = indexer.toKObject(path);
-                                                    if (kObject != null) {
-                                                        indexEngine.index(kObject);
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    if (object.kind() == StandardWatchEventKind.ENTRY_RENAME) {
-                                        //Default indexing
-                                        final Path sourcePath = context.getOldPath();
-                                        final Path destinationPath = context.getPath();
-                                        indexEngine.rename(KObjectUtil.toKObjectKey(sourcePath),
-                                                           KObjectUtil.toKObject(destinationPath));
-
-                                        //Additional indexing
-                                        for (Indexer indexer : IndexersFactory.getIndexers()) {
-                                            if (isDisposed()) {
-                                                return;
-                                            }
-                                            if (indexer.supportsPath(destinationPath)) {
-                                                final KObjectKey kObjectSource = indexer.toKObjectKey(sourcePath);
-                                                final KObject kObjectDestination = indexer.toKObject(destinationPath);
-                                                if (kObjectSource != null && kObjectDestination != null) {
-                                                    indexEngine.rename(kObjectSource,
-                                                                       kObjectDestination);
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                    if (object.kind() == StandardWatchEventKind.ENTRY_DELETE) {
-                                        //Default indexing
-                                        final Path oldPath = context.getOldPath();
-                                        indexEngine.delete(KObjectUtil.toKObjectKey(oldPath));
-
-                                        //Additional indexing
-                                        for (Indexer indexer : IndexersFactory.getIndexers()) {
-                                            if (isDisposed()) {
-                                                return;
-                                            }
-                                            if (indexer.supportsPath(oldPath)) {
-                                                final KObjectKey kObject = indexer.toKObjectKey(oldPath);
-                                                if (kObject != null) {
-                                                    indexEngine.delete(kObject);
-                                                }
-                                            }
-                                        }
-                                    }
-                                } catch (final Exception ex) {
-                                    LOGGER.error("Error during indexing. { " + object.toString() + " }",
-                                                 ex);
+    private void indexingRejected(final WatchService ws,
+                                  final IndexEventQueue queue,
+                                  final RejectedExecutionException e) {
+        // the events stay queued, the next event received schedules them again
+        queue.cancel();
+        LOGGER.warn("Indexing of " + ws.toString() + " couldn't be scheduled, " + queue.getDepth() + " changed paths wait for the next event",
+                    e);
+    }
+
+    private void indexEvents(final WatchService ws,
+                             final IndexEventQueue queue) {
+        final Map<Path, IndexEventQueue.Operation> batch = queue.drain();
+        try {
+            final List<KObjectKey> toDelete = new ArrayList<>();
+            final List<KObject> toIndex = new ArrayList<>();
+            for (final Map.Entry<Path, IndexEventQueue.Operation> entry : batch.entrySet()) {
+                if (isDisposed || ws.isClose()) {
+                    return;
+                }
+                final Path path = entry.getKey();
+                try {
+                    if (entry.getValue() == IndexEventQueue.Operation.INDEX && exists(path)) {
+                        //Default indexing
+                        for (final Class<? extends FileAttributeView> view : views) {
+                            getFileAttributeView(path,
+                                                 view);
+                        }
+                        final FileAttribute<?>[] allAttrs = convert(readAttributes(path));
+                        toIndex.add(KObjectUtil.toKObject(path,
+                                                          allAttrs));
+
+                        //Additional indexing
+                        for (Indexer indexer : IndexersFactory.getIndexers()) {
+                            if (indexer.supportsPath(path)) {
+                                final KObject kObject = indexer.toKObject(path);
+                                if (kObject != null) {
+                                    toIndex.add(kObject);
                                 }
                             }
                         }
-
-                        private boolean isDisposed() {
-                            return isDisposed || ws.isClose();
+                    } else {
+                        //Default indexing
+                        toDelete.add(KObjectUtil.toKObjectKey(path));
+
+                        //Additional indexing
+                        for (Indexer indexer : IndexersFactory.getIndexers()) {
+                            if (indexer.supportsPath(path)) {
+                                final KObjectKey kObjectKey = indexer.toKObjectKey(path);
+                                if (kObjectKey != null) {
+                                    toDelete.add(kObjectKey);
+                                }
+                            }
                         }
-                    };
-                    defaultInstance.execute(job);
+                    }
+                } catch (final Exception ex) {
+                    LOGGER.error("Error during indexing. { " + entry.getValue() + " " + path.toString() + " }",
+                                 ex);
                 }
             }
-        });
+
+            if (!toDelete.isEmpty()) {
+                indexEngine.delete(toDelete.toArray(new KObjectKey[toDelete.size()]));
+            }
+            if (!toIndex.isEmpty()) {
+                indexEngine.index(toIndex.toArray(new KObject[toIndex.size()]));
+            }
+        } catch (final Exception ex) {
+            LOGGER.error("Error during indexing of " + batch.size() + " changed paths",
+                         ex);
+        } finally {
+            if (queue.done() && !isDisposed && !ws.isClose()) {
+                scheduleIndexing(ws,
+                                 queue);
+            }
+        }
+    }
+
+    /**
+     * Indexing queue of every watched file system, by file system name.
+     */
+    public Map<String, IndexEventQueue> getIndexEventQueues() {
+        return Collections.unmodifiableMap(new HashMap<>(indexEventQueues));
     }
 
     private synchronized void indexIfFresh(final FileSystem fs) {
@@ -393,10 +413,14 @@ public class IOServiceIndexedImpl extends IOServiceDotFileImpl {
             // prevent multiple batch indexes for the same FileSystem being scheduled.
             indexEngine.startBatch(cluster);
             index(fs);
+        } else if (indexedList.add(fs.getName())) {
+            // an existing index may have missed changes done while it wasn't running
+            batchIndex.runIncrementalAsync(fs);
         }
     }
 
     private void index(final FileSystem fs) {
+        indexedList.add(fs.getName());
         batchIndex.runAsync(fs);
     }
 
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.io;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.uberfire.java.nio.base.WatchContext;
+import org.uberfire.java.nio.base.dotfiles.DotFileUtils;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.StandardWatchEventKind;
+import org.uberfire.java.nio.file.WatchEvent;
+
+/**
+ * Watch events of one cluster waiting to be indexed.
+ * <p>
+ * Events collapse per path into the last operation done on it, so a path changed several times
+ * before the queue is drained is indexed only once. A rename is a delete of the old path plus an
+ * index of the new one, and a change to a "dot file" is an index of the path it holds the
+ * attributes of. Only one drain runs at a time, which keeps the operations of a path in order.
+ */
+public class IndexEventQueue {
+
+    public enum Operation {
+        INDEX,
+        DELETE
+    }
+
+    private final Map<Path, Operation> pending = new LinkedHashMap<>();
+    private long oldestPending;
+    private boolean scheduled;
+
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final AtomicLong coalescedEvents = new AtomicLong();
+    private final AtomicLong drainedBatches = new AtomicLong();
+    private final AtomicLong drainedPaths = new AtomicLong();
+    private final AtomicLong lastLagNanos = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * Adds the events to the queue.
+     * @return true when the caller has to schedule a drain
+     */
+    public synchronized boolean offer(final Collection<WatchEvent<?>> events) {
+        for (final WatchEvent<?> event : events) {
+            receivedEvents.incrementAndGet();
+            final WatchContext context = (WatchContext) event.context();
+            if (event.kind() == StandardWatchEventKind.ENTRY_CREATE || event.kind() == StandardWatchEventKind.ENTRY_MODIFY) {
+                put(context.getPath(),
+                    Operation.INDEX);
+            } else if (event.kind() == StandardWatchEventKind.ENTRY_RENAME) {
+                put(context.getOldPath(),
+                    Operation.DELETE);
+                put(context.getPath(),
+                    Operation.INDEX);
+            } else if (event.kind() == StandardWatchEventKind.ENTRY_DELETE) {
+                put(context.getOldPath(),
+                    Operation.DELETE);
+            }
+        }
+        if (scheduled || pending.isEmpty()) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    private void put(final Path path,
+                     final Operation operation) {
+        if (path == null || path.getFileName() == null) {
+            return;
+        }
+        Path target = path;
+        Operation targetOperation = operation;
+        if (path.getFileName().toString().startsWith(".")) {
+            if (IOServiceIndexedUtil.isBlackListed(path)) {
+                return;
+            }
+            target = DotFileUtils.undot(path);
+            targetOperation = Operation.INDEX;
+        }
+
+        if (pending.isEmpty()) {
+            oldestPending = System.nanoTime();
+        }
+        // the last operation on a path wins and moves it to the end of the queue
+        if (pending.remove(target) != null) {
+            coalescedEvents.incrementAndGet();
+        }
+        pending.put(target,
+                    targetOperation);
+    }
+
+    /**
+     * Takes every pending operation, in the order they were last requested. Must be followed by
+     * {@link #done()} once they have been applied.
+     */
+    public synchronized Map<Path, Operation> drain() {
+        final Map<Path, Operation> batch = new LinkedHashMap<>(pending);
+        if (!batch.isEmpty()) {
+            final long lag = System.nanoTime() - oldestPending;
+            lastLagNanos.set(lag);
+            maxLagNanos.accumulateAndGet(lag,
+                                         Math::max);
+            drainedBatches.incrementAndGet();
+            drainedPaths.addAndGet(batch.size());
+        }
+        pending.clear();
+        return batch;
+    }
+
+    /**
+     * Ends a drain.
+     * @return true when more events arrived meanwhile and the caller has to schedule another drain
+     */
+    public synchronized boolean done() {
+        if (pending.isEmpty()) {
+            scheduled = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gives up a drain that couldn't be scheduled. The pending operations are kept and the next
+     * {@link #offer(Collection)} asks for a drain again.
+     */
+    public synchronized void cancel() {
+        scheduled = false;
+    }
+
+    /**
+     * Number of paths waiting to be indexed.
+     */
+    public synchronized int getDepth() {
+        return pending.size();
+    }
+
+    /**
+     * Time the oldest waiting path has been in the queue.
+     */
+    public synchronized long getLagMillis() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestPending);
+    }
+
+    /**
+     * Time the oldest path of the last drained batch waited in the queue.
+     */
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get());
+    }
+
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+
+    public long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    /**
+     * Events that didn't cause any extra indexing because a later event of the same path replaced
+     * them.
+     */
+    public long getCoalescedEvents() {
+        return coalescedEvents.get();
+    }
+
+    public long getDrainedBatches() {
+        return drainedBatches.get();
+    }
+
+    public long getDrainedPaths() {
+        return drainedPaths.get();
+    }
+}
@@ -114,6 +114,11 @@ public class MetadataConfigBuilder {
         return this;
     }
 
+    public MetadataConfigBuilder useTieredDirectory() {
+        this.type = DirectoryType.TIERED;
+        return this;
+    }
+
     public MetadataConfig build() {
         if (metaModelStore == null) {
             withoutMemoryMetaModel();
@@ -149,6 +154,7 @@ public class MetadataConfigBuilder {
             return new LuceneConfig(metaModelStore,
                                     fieldFactory,
                                     indexManager,
+                                    indexProvider,
                                     new MetadataIndexEngine(indexProvider,
                                                             metaModelStore),
                                     analyzer);
@@ -17,12 +17,16 @@
 package org.uberfire.ext.metadata.io.index;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
@@ -40,25 +44,46 @@ import org.uberfire.ext.metadata.provider.IndexProvider;
 import static org.kie.soup.commons.validation.PortablePreconditions.checkCondition;
 import static org.kie.soup.commons.validation.PortablePreconditions.checkNotNull;
 
+/**
+ * Objects indexed one by one while a batch of their cluster is open are buffered and sent to the
+ * provider together when the outermost batch is committed, or every {@code segmentSize} objects.
+ * Any number of threads may feed the same batch.
+ */
 public class MetadataIndexEngine implements MetaIndexEngine {
 
+    private static final int DEFAULT_SEGMENT_SIZE = 1000;
+
     private final MetaModelBuilder metaModelBuilder;
     private Logger logger = LoggerFactory.getLogger(MetadataIndexEngine.class);
     private final IndexProvider provider;
-    private final Map<KCluster, AtomicInteger> batchMode = new ConcurrentHashMap<>();
-    private final Map<KCluster, List<KObject>> batchSet = new ConcurrentHashMap<>();
+    private final Map<KCluster, Batch> batches = new ConcurrentHashMap<>();
+    private final int segmentSize;
     private final Collection<Runnable> beforeDispose = new ArrayList<>();
 
     public MetadataIndexEngine(IndexProvider provider,
                                MetaModelStore metaModelStore) {
+        this(provider,
+             metaModelStore,
+             DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize number of buffered objects of a batch that are sent to the provider without
+     * waiting for its commit
+     */
+    public MetadataIndexEngine(IndexProvider provider,
+                               MetaModelStore metaModelStore,
+                               int segmentSize) {
         this.provider = provider;
         this.metaModelBuilder = new MetaModelBuilder(metaModelStore);
+        this.segmentSize = segmentSize;
         PriorityDisposableRegistry.register(this);
     }
 
     @Override
     public boolean freshIndex(KCluster cluster) {
-        boolean isFreshIndex = this.provider.isFreshIndex(cluster) && !batchMode.containsKey(cluster);
+        final Batch batch = batches.get(cluster);
+        boolean isFreshIndex = this.provider.isFreshIndex(cluster) && (batch == null || !batch.isOpen());
         if (logger.isDebugEnabled()) {
             logger.debug("Is fresh index? " + isFreshIndex);
         }
@@ -67,39 +92,32 @@ public class MetadataIndexEngine implements MetaIndexEngine {
 
     @Override
     public void startBatch(KCluster cluster) {
-        final AtomicInteger batchStack = batchMode.get(cluster);
-        if (batchStack == null) {
-            batchMode.put(cluster,
-                          new AtomicInteger());
-        } else {
-            if (batchStack.get() < 0) {
-                batchStack.set(1);
-            } else {
-                batchStack.incrementAndGet();
-            }
-        }
+        batches.computeIfAbsent(cluster,
+                                k -> new Batch()).start();
     }
 
     @Override
     public void index(KObject kObject) {
-
-        if (this.isBatch(kObject)) {
-            KClusterImpl index = new KClusterImpl(kObject.getClusterId());
-            this.batchSet.putIfAbsent(index,
-                                      new ArrayList<>());
-            List<KObject> store = this.batchSet.get(index);
-            store.add(kObject);
-            this.batchSet.put(index,
-                              store);
+        final Batch batch = batches.get(new KClusterImpl(kObject.getClusterId()));
+        if (batch != null && batch.add(kObject)) {
+            if (batch.size() >= segmentSize) {
+                synchronized (batch) {
+                    if (batch.size() >= segmentSize) {
+                        index(batch.takeSegment());
+                    }
+                }
+            }
         } else {
             this.metaModelBuilder.updateMetaModel(kObject);
             this.provider.index(kObject);
         }
     }
 
-    private boolean isBatch(KObject object) {
-        final AtomicInteger batchStack = batchMode.get(new KClusterImpl(object.getClusterId()));
-        return batchStack != null && batchStack.get() > 0;
+    private void index(List<KObject> kObjects) {
+        if (!kObjects.isEmpty()) {
+            kObjects.forEach(kObject -> this.metaModelBuilder.updateMetaModel(kObject));
+            this.provider.index(kObjects);
+        }
     }
 
     @Override
@@ -132,6 +150,7 @@ public class MetadataIndexEngine implements MetaIndexEngine {
 
     @Override
     public void delete(KCluster cluster) {
+        batches.remove(cluster);
         this.provider.delete(cluster.getClusterId());
     }
 
@@ -143,22 +162,51 @@ public class MetadataIndexEngine implements MetaIndexEngine {
 
     @Override
     public void delete(KObjectKey... objectsKey) {
-        Arrays.stream(objectsKey).forEach(kObjectKey -> this.delete(kObjectKey));
+        // one delete per cluster, so the index is refreshed once and not once per key
+        final Map<String, List<String>> idsByCluster = new LinkedHashMap<>();
+        for (final KObjectKey objectKey : objectsKey) {
+            idsByCluster.computeIfAbsent(objectKey.getClusterId(),
+                                         clusterId -> new ArrayList<>()).add(objectKey.getId());
+        }
+        idsByCluster.forEach((clusterId, ids) -> this.provider.delete(clusterId,
+                                                                      ids));
     }
 
     @Override
     public void commit(KCluster cluster) {
-        final AtomicInteger batchStack = batchMode.get(cluster);
-        if (batchStack != null) {
-            int value = batchStack.decrementAndGet();
-            if (value > 0) {
-                this.provider.index(this.batchSet.get(cluster));
-                batchMode.remove(cluster);
-                batchSet.remove(cluster);
+        final Batch batch = batches.get(cluster);
+        if (batch != null) {
+            // segments are handed off under the batch monitor, so they reach the provider in order
+            synchronized (batch) {
+                final List<KObject> lastSegment = batch.end();
+                if (lastSegment != null) {
+                    index(lastSegment);
+                }
             }
         }
     }
 
+    @Override
+    public void flush(KCluster cluster) {
+        this.provider.flush(cluster);
+    }
+
+    @Override
+    public String getLastIndexedCommit(KCluster cluster,
+                                       String root) {
+        return this.provider.getLastIndexedCommit(cluster,
+                                                  root);
+    }
+
+    @Override
+    public void setLastIndexedCommit(KCluster cluster,
+                                     String root,
+                                     String commitId) {
+        this.provider.setLastIndexedCommit(cluster,
+                                           root,
+                                           commitId);
+    }
+
     @Override
     public void beforeDispose(Runnable callback) {
         this.beforeDispose.add(checkNotNull("callback",
@@ -178,4 +226,98 @@ public class MetadataIndexEngine implements MetaIndexEngine {
             }
         }
     }
+
+    /**
+     * Batch state of a cluster. Appends share the read lock and only wait while a segment is
+     * being swapped or the batch depth changes.
+     */
+    private static final class Batch {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final AtomicInteger size = new AtomicInteger();
+        private int depth;
+        private Queue<KObject> segment = new ConcurrentLinkedQueue<>();
+
+        private void start() {
+            lock.writeLock().lock();
+            try {
+                depth++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return true if the batch is open and took the object
+         */
+        private boolean add(final KObject kObject) {
+            lock.readLock().lock();
+            try {
+                if (depth <= 0) {
+                    return false;
+                }
+                segment.add(kObject);
+                size.incrementAndGet();
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean isOpen() {
+            lock.readLock().lock();
+            try {
+                return depth > 0;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int size() {
+            return size.get();
+        }
+
+        /**
+         * Ends a level of the batch. Closing the outermost one and taking what is left to index
+         * happen atomically, so nothing can be added to it in between.
+         * @return the remaining objects if the outermost batch was ended, after which objects aren't
+         * buffered anymore, null otherwise
+         */
+        private List<KObject> end() {
+            final Queue<KObject> full;
+            lock.writeLock().lock();
+            try {
+                if (depth <= 0) {
+                    return null;
+                }
+                depth--;
+                if (depth > 0) {
+                    return null;
+                }
+                full = swapSegment();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return new ArrayList<>(full);
+        }
+
+        private List<KObject> takeSegment() {
+            final Queue<KObject> full;
+            lock.writeLock().lock();
+            try {
+                full = swapSegment();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return new ArrayList<>(full);
+        }
+
+        //callers hold the write lock
+        private Queue<KObject> swapSegment() {
+            final Queue<KObject> full = segment;
+            segment = new ConcurrentLinkedQueue<>();
+            size.set(0);
+            return full;
+        }
+    }
 }
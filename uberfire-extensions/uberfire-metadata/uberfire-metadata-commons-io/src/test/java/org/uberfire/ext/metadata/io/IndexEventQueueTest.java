@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.io;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+import org.uberfire.ext.metadata.io.IndexEventQueue.Operation;
+import org.uberfire.java.nio.base.WatchContext;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.Paths;
+import org.uberfire.java.nio.file.StandardWatchEventKind;
+import org.uberfire.java.nio.file.WatchEvent;
+
+import static org.junit.Assert.*;
+
+public class IndexEventQueueTest {
+
+    private final Path file1 = Paths.get(URI.create("file:///queue/file1.txt"));
+    private final Path dotFile1 = Paths.get(URI.create("file:///queue/.file1.txt"));
+    private final Path file2 = Paths.get(URI.create("file:///queue/file2.txt"));
+    private final Path file3 = Paths.get(URI.create("file:///queue/file3.txt"));
+
+    @Test
+    public void eventsOfAPathCollapse() {
+        final IndexEventQueue queue = new IndexEventQueue();
+
+        assertTrue(queue.offer(Arrays.asList(event(StandardWatchEventKind.ENTRY_CREATE,
+                                                   file1,
+                                                   null),
+                                             event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                   dotFile1,
+                                                   null),
+                                             event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                   file2,
+                                                   null))));
+        // a drain is already scheduled
+        assertFalse(queue.offer(Arrays.asList(event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                    file1,
+                                                    null),
+                                              event(StandardWatchEventKind.ENTRY_DELETE,
+                                                    null,
+                                                    file2),
+                                              event(StandardWatchEventKind.ENTRY_RENAME,
+                                                    file3,
+                                                    file1))));
+        assertEquals(3,
+                     queue.getDepth());
+        assertEquals(6,
+                     queue.getReceivedEvents());
+
+        final Map<Path, Operation> batch = queue.drain();
+        assertEquals(Arrays.asList(file2,
+                                   file1,
+                                   file3),
+                     Arrays.asList(batch.keySet().toArray()));
+        assertEquals(Operation.DELETE,
+                     batch.get(file2));
+        assertEquals(Operation.DELETE,
+                     batch.get(file1));
+        assertEquals(Operation.INDEX,
+                     batch.get(file3));
+        assertEquals(0,
+                     queue.getDepth());
+        assertEquals(1,
+                     queue.getDrainedBatches());
+    }
+
+    @Test
+    public void onlyOneDrainAtATime() {
+        final IndexEventQueue queue = new IndexEventQueue();
+
+        assertTrue(queue.offer(Collections.singletonList(event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                               file1,
+                                                               null))));
+        queue.drain();
+
+        // arrives while the batch is being indexed
+        assertFalse(queue.offer(Collections.singletonList(event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                                file1,
+                                                                null))));
+        assertTrue(queue.done());
+
+        assertEquals(Collections.singleton(file1),
+                     queue.drain().keySet());
+        assertFalse(queue.done());
+
+        assertTrue(queue.offer(Collections.singletonList(event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                               file2,
+                                                               null))));
+    }
+
+    @Test
+    public void cancelledDrainIsScheduledAgain() {
+        final IndexEventQueue queue = new IndexEventQueue();
+
+        assertTrue(queue.offer(Collections.singletonList(event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                               file1,
+                                                               null))));
+        // the drain couldn't be scheduled
+        queue.cancel();
+
+        assertTrue(queue.offer(Collections.singletonList(event(StandardWatchEventKind.ENTRY_MODIFY,
+                                                               file2,
+                                                               null))));
+        assertEquals(new HashSet<>(Arrays.asList(file1,
+                                                 file2)),
+                     queue.drain().keySet());
+    }
+
+    @Test
+    public void blackListedDotFilesAreIgnored() {
+        final IndexEventQueue queue = new IndexEventQueue();
+
+        assertFalse(queue.offer(Collections.singletonList(event(StandardWatchEventKind.ENTRY_CREATE,
+                                                                Paths.get(URI.create("file:///queue/.gitkeep")),
+                                                                null))));
+        assertEquals(0,
+                     queue.getDepth());
+    }
+
+    private WatchEvent<?> event(final WatchEvent.Kind<?> kind,
+                                final Path path,
+                                final Path oldPath) {
+        final WatchContext context = new WatchContext() {
+            @Override
+            public Path getPath() {
+                return path;
+            }
+
+            @Override
+            public Path getOldPath() {
+                return oldPath;
+            }
+
+            @Override
+            public String getSessionId() {
+                return null;
+            }
+
+            @Override
+            public String getMessage() {
+                return null;
+            }
+
+            @Override
+            public String getUser() {
+                return null;
+            }
+        };
+        return new WatchEvent<Object>() {
+            @Override
+            public Kind<Object> kind() {
+                return (Kind<Object>) kind;
+            }
+
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public Object context() {
+                return context;
+            }
+        };
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.ext.metadata.io.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.ext.metadata.backend.lucene.model.KClusterImpl;
+import org.uberfire.ext.metadata.engine.MetaModelStore;
+import org.uberfire.ext.metadata.model.KCluster;
+import org.uberfire.ext.metadata.model.KObject;
+import org.uberfire.ext.metadata.model.KObjectKey;
+import org.uberfire.ext.metadata.model.schema.MetaType;
+import org.uberfire.ext.metadata.provider.IndexProvider;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class MetadataIndexEngineTest {
+
+    private static final KCluster CLUSTER = new KClusterImpl("cluster");
+    private static final int THREADS = 8;
+    private static final int OBJECTS_PER_THREAD = 500;
+
+    private final List<String> indexed = Collections.synchronizedList(new ArrayList<>());
+    private IndexProvider provider;
+    private MetadataIndexEngine engine;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        provider = mock(IndexProvider.class);
+        doAnswer(invocation -> {
+            ((List<KObject>) invocation.getArguments()[0]).forEach(kObject -> indexed.add(kObject.getId()));
+            return null;
+        }).when(provider).index(anyListOf(KObject.class));
+        doAnswer(invocation -> {
+            indexed.add(((KObject) invocation.getArguments()[0]).getId());
+            return null;
+        }).when(provider).index(any(KObject.class));
+
+        engine = new MetadataIndexEngine(provider,
+                                         mock(MetaModelStore.class),
+                                         64);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentBatchLosesNothing() throws Exception {
+        engine.startBatch(CLUSTER);
+        indexConcurrently(null);
+        engine.commit(CLUSTER);
+
+        assertIndexedOnce();
+    }
+
+    @Test
+    public void commitWhileIndexing() throws Exception {
+        engine.startBatch(CLUSTER);
+        indexConcurrently(() -> engine.commit(CLUSTER));
+
+        // objects arriving after the commit are indexed right away
+        assertIndexedOnce();
+    }
+
+    @Test
+    public void nestedBatchesAreFlushedByTheOutermostCommit() {
+        final MetadataIndexEngine engine = new MetadataIndexEngine(provider,
+                                                                   mock(MetaModelStore.class));
+        engine.startBatch(CLUSTER);
+        engine.startBatch(CLUSTER);
+        engine.index(kObject("1"));
+
+        engine.commit(CLUSTER);
+        assertTrue(indexed.isEmpty());
+        assertFalse(engine.freshIndex(CLUSTER));
+
+        engine.commit(CLUSTER);
+        assertEquals(Collections.singletonList("1"),
+                     indexed);
+
+        // extra commits are ignored
+        engine.commit(CLUSTER);
+        engine.index(kObject("2"));
+        verify(provider).index(any(KObject.class));
+    }
+
+    @Test
+    public void keysOfTheSameClusterAreDeletedTogether() {
+        engine.delete(key("cluster",
+                          "1"),
+                      key("other",
+                          "2"),
+                      key("cluster",
+                          "3"));
+
+        verify(provider).delete("cluster",
+                                Arrays.asList("1",
+                                              "3"));
+        verify(provider).delete("other",
+                                Collections.singletonList("2"));
+        verify(provider,
+               never()).delete(anyString(),
+                               anyString());
+    }
+
+    private void indexConcurrently(final Runnable halfway) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch half = new CountDownLatch(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OBJECTS_PER_THREAD; i++) {
+                    if (i == OBJECTS_PER_THREAD / 2) {
+                        half.countDown();
+                    }
+                    engine.index(kObject(thread + "-" + i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        if (halfway != null) {
+            half.await();
+            halfway.run();
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private void assertIndexedOnce() {
+        final Set<String> unique = new HashSet<>(indexed);
+        assertEquals("duplicated objects",
+                     indexed.size(),
+                     unique.size());
+        assertEquals("lost objects",
+                     THREADS * OBJECTS_PER_THREAD,
+                     unique.size());
+    }
+
+    private KObjectKey key(final String clusterId,
+                           final String id) {
+        final KObjectKey key = mock(KObjectKey.class);
+        when(key.getClusterId()).thenReturn(clusterId);
+        when(key.getId()).thenReturn(id);
+        return key;
+    }
+
+    private KObject kObject(final String id) {
+        final MetaType type = mock(MetaType.class);
+        when(type.getName()).thenReturn("type");
+
+        final KObject kObject = mock(KObject.class);
+        when(kObject.getId()).thenReturn(id);
+        when(kObject.getType()).thenReturn(type);
+        when(kObject.getClusterId()).thenReturn(CLUSTER.getClusterId());
+        return kObject;
+    }
+}
@@ -20,7 +20,13 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -29,7 +35,9 @@ import org.junit.Test;
 import org.uberfire.commons.async.DescriptiveThreadFactory;
 import org.uberfire.ext.metadata.engine.Observer;
 import org.uberfire.ext.metadata.io.BatchIndex;
+import org.uberfire.ext.metadata.io.KObjectUtil;
 import org.uberfire.ext.metadata.io.MetadataConfigBuilder;
+import org.uberfire.ext.metadata.model.KCluster;
 import org.uberfire.io.IOService;
 import org.uberfire.io.attribute.DublinCoreView;
 import org.uberfire.io.impl.IOServiceDotFileImpl;
@@ -57,7 +65,7 @@ public class BatchIndexTest extends BaseIndexTest {
 
     @Override
     protected String[] getRepositoryNames() {
-        return new String[]{"temp-repo-test"};
+        return new String[]{"temp-repo-test", "temp-repo-pipeline-test", "temp-repo-incremental-test", "temp-repo-concurrent-test-0", "temp-repo-concurrent-test-1", "temp-repo-concurrent-test-2", "temp-repo-interrupted-test"};
     }
 
     @Test
@@ -251,4 +259,233 @@ public class BatchIndexTest extends BaseIndexTest {
                                                      }
                                                  });
     }
+
+    @Test
+    public void testIndexWithSmallQueues() {
+        for (int i = 0; i < 25; i++) {
+            ioService().write(ioService().get("git://temp-repo-pipeline-test/dir" + (i % 3) + "/file" + i + ".txt"),
+                              "content " + i);
+        }
+
+        final List<String> errors = new CopyOnWriteArrayList<>();
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        final BatchIndex batchIndex = new BatchIndex(config.getIndexEngine(),
+                                                     ioService(),
+                                                     new Observer() {
+                                                         @Override
+                                                         public void information(final String message) {
+
+                                                         }
+
+                                                         @Override
+                                                         public void warning(final String message) {
+                                                             errors.add(message);
+                                                         }
+
+                                                         @Override
+                                                         public void error(final String message) {
+                                                             errors.add(message);
+                                                         }
+                                                     },
+                                                     Executors.newCachedThreadPool(new DescriptiveThreadFactory()),
+                                                     3,
+                                                     2,
+                                                     4,
+                                                     DublinCoreView.class);
+        batchIndex.run(ioService().get("git://temp-repo-pipeline-test/"),
+                       () -> completed.set(true));
+
+        assertTrue(completed.get());
+        assertTrue(errors.isEmpty());
+
+        final String index = toKCluster(ioService().get("git://temp-repo-pipeline-test/").getFileSystem()).getClusterId();
+        assertEquals(25,
+                     config.getIndexProvider().findHitsByQuery(Arrays.asList(index),
+                                                               new MatchAllDocsQuery()));
+        config.dispose();
+    }
+
+    @Test
+    public void testConcurrentIndexesWithOneWorker() throws InterruptedException {
+        final int repositories = 3;
+        final int files = 30;
+        for (int r = 0; r < repositories; r++) {
+            for (int i = 0; i < files; i++) {
+                ioService().write(ioService().get("git://temp-repo-concurrent-test-" + r + "/dir" + (i % 3) + "/file" + i + ".txt"),
+                                  "content " + i);
+            }
+        }
+
+        final List<String> errors = new CopyOnWriteArrayList<>();
+        // more pipelines than workers, each walker gets far ahead of the single worker
+        final BatchIndex batchIndex = new BatchIndex(config.getIndexEngine(),
+                                                     ioService(),
+                                                     new Observer() {
+                                                         @Override
+                                                         public void information(final String message) {
+
+                                                         }
+
+                                                         @Override
+                                                         public void warning(final String message) {
+                                                             errors.add(message);
+                                                         }
+
+                                                         @Override
+                                                         public void error(final String message) {
+                                                             errors.add(message);
+                                                         }
+                                                     },
+                                                     Executors.newCachedThreadPool(new DescriptiveThreadFactory()),
+                                                     1,
+                                                     2,
+                                                     4,
+                                                     DublinCoreView.class);
+
+        final CountDownLatch completed = new CountDownLatch(repositories);
+        final ExecutorService runners = Executors.newFixedThreadPool(repositories);
+        try {
+            for (int r = 0; r < repositories; r++) {
+                final Path root = ioService().get("git://temp-repo-concurrent-test-" + r + "/");
+                runners.execute(() -> batchIndex.run(root,
+                                                     completed::countDown));
+            }
+            assertTrue(completed.await(60,
+                                       TimeUnit.SECONDS));
+        } finally {
+            runners.shutdownNow();
+        }
+        assertTrue(errors.isEmpty());
+
+        for (int r = 0; r < repositories; r++) {
+            final String index = toKCluster(ioService().get("git://temp-repo-concurrent-test-" + r + "/").getFileSystem()).getClusterId();
+            assertEquals(files,
+                         config.getIndexProvider().findHitsByQuery(Arrays.asList(index),
+                                                                   new MatchAllDocsQuery()));
+        }
+        config.dispose();
+    }
+
+    @Test
+    public void testIncrementalIndex() {
+        final Path root = ioService().get("git://temp-repo-incremental-test/");
+        final Path file1 = ioService().get("git://temp-repo-incremental-test/file1.txt");
+        ioService().write(file1,
+                          "content 1");
+        ioService().write(ioService().get("git://temp-repo-incremental-test/file2.txt"),
+                          "content 2");
+
+        final BatchIndex batchIndex = new BatchIndex(config.getIndexEngine(),
+                                                     ioService(),
+                                                     new Observer() {
+                                                         @Override
+                                                         public void information(final String message) {
+
+                                                         }
+
+                                                         @Override
+                                                         public void warning(final String message) {
+
+                                                         }
+
+                                                         @Override
+                                                         public void error(final String message) {
+
+                                                         }
+                                                     },
+                                                     Executors.newCachedThreadPool(new DescriptiveThreadFactory()),
+                                                     DublinCoreView.class);
+        batchIndex.run(root);
+
+        final String index = toKCluster(root.getFileSystem()).getClusterId();
+        assertNotNull(config.getIndexEngine().getLastIndexedCommit(toKCluster(root.getFileSystem()),
+                                                                   root.toUri().toString()));
+        assertEquals(2,
+                     config.getIndexProvider().findHitsByQuery(Arrays.asList(index),
+                                                               new MatchAllDocsQuery()));
+
+        //changes the index doesn't see
+        final Path file3 = ioService().get("git://temp-repo-incremental-test/dir/file3.txt");
+        ioService().write(file3,
+                          "content 3");
+        ioService().delete(file1);
+
+        batchIndex.runIncremental(root.getFileSystem());
+        assertEquals(2,
+                     config.getIndexProvider().findHitsByQuery(Arrays.asList(index),
+                                                               new MatchAllDocsQuery()));
+        assertTrue(config.getIndexProvider().exists(index,
+                                                    KObjectUtil.toKObjectKey(file3).getId()));
+        assertFalse(config.getIndexProvider().exists(index,
+                                                     KObjectUtil.toKObjectKey(file1).getId()));
+        config.dispose();
+    }
+
+    @Test
+    public void testInterruptedIndexIsRebuilt() {
+        final Path root = ioService().get("git://temp-repo-interrupted-test/");
+        final Path file1 = ioService().get("git://temp-repo-interrupted-test/file1.txt");
+        final Path file2 = ioService().get("git://temp-repo-interrupted-test/file2.txt");
+        final Path file3 = ioService().get("git://temp-repo-interrupted-test/file3.txt");
+        ioService().write(file1,
+                          "content 1");
+        ioService().write(file2,
+                          "content 2");
+        ioService().write(file3,
+                          "content 3");
+
+        // the node went down once the first chunk of the initial index was committed
+        final KCluster cluster = toKCluster(root.getFileSystem());
+        config.getIndexEngine().index(KObjectUtil.toKObject(file1,
+                                                            ioService().convert(ioService().readAttributes(file1))),
+                                      KObjectUtil.toKObject(file3,
+                                                            ioService().convert(ioService().readAttributes(file3))));
+        ioService().delete(file3);
+        assertFalse(config.getIndexEngine().freshIndex(cluster));
+        assertNull(config.getIndexEngine().getLastIndexedCommit(cluster,
+                                                                root.toUri().toString()));
+
+        // restarted, the existing index is caught up
+        final List<String> warnings = new CopyOnWriteArrayList<>();
+        final BatchIndex batchIndex = new BatchIndex(config.getIndexEngine(),
+                                                     ioService(),
+                                                     new Observer() {
+                                                         @Override
+                                                         public void information(final String message) {
+
+                                                         }
+
+                                                         @Override
+                                                         public void warning(final String message) {
+                                                             warnings.add(message);
+                                                         }
+
+                                                         @Override
+                                                         public void error(final String message) {
+
+                                                         }
+                                                     },
+                                                     Executors.newCachedThreadPool(new DescriptiveThreadFactory()),
+                                                     DublinCoreView.class);
+        batchIndex.runIncremental(root.getFileSystem());
+
+        assertEquals(1,
+                     warnings.size());
+        assertNotNull(config.getIndexEngine().getLastIndexedCommit(cluster,
+                                                                   root.toUri().toString()));
+        final String index = cluster.getClusterId();
+        assertEquals(2,
+                     config.getIndexProvider().findHitsByQuery(Arrays.asList(index),
+                                                               new MatchAllDocsQuery()));
+        assertTrue(config.getIndexProvider().exists(index,
+                                                    KObjectUtil.toKObjectKey(file2).getId()));
+        assertFalse(config.getIndexProvider().exists(index,
+                                                     KObjectUtil.toKObjectKey(file3).getId()));
+
+        // once completed, a restart has nothing to rebuild
+        batchIndex.runIncremental(root.getFileSystem());
+        assertEquals(1,
+                     warnings.size());
+        config.dispose();
+    }
 }
@@ -17,13 +17,18 @@
 package org.uberfire.ext.metadata.io.lucene;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.jboss.byteman.contrib.bmunit.BMScript;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.uberfire.ext.metadata.io.IOSearchServiceImpl;
 import org.uberfire.ext.metadata.search.IOSearchService;
+import org.uberfire.ext.metadata.search.SearchPage;
 import org.uberfire.java.nio.file.Path;
 
 import static org.junit.Assert.*;
@@ -105,5 +110,62 @@ public class IOSearchServiceImplTest extends BaseIndexTest {
             } catch (final IllegalArgumentException ignored) {
             }
         }
+
+        {
+            final Map<String, Object> attrs = Collections.singletonMap("filename",
+                                                                       "*.txt");
+            final SearchPage<Path> first = searchIndex.searchByAttrs(attrs,
+                                                                     new IOSearchService.NoOpFilter(),
+                                                                     2,
+                                                                     null,
+                                                                     root);
+            assertEquals(3,
+                         first.getTotalHits());
+            assertEquals(2,
+                         first.getHits().size());
+            assertTrue(first.hasNext());
+
+            final SearchPage<Path> second = searchIndex.searchByAttrs(attrs,
+                                                                      new IOSearchService.NoOpFilter(),
+                                                                      2,
+                                                                      first.getNext(),
+                                                                      root);
+            assertEquals(3,
+                         second.getTotalHits());
+            assertEquals(1,
+                         second.getHits().size());
+            assertFalse(second.hasNext());
+
+            final Set<Path> all = new HashSet<Path>(first.getHits());
+            all.addAll(second.getHits());
+            assertEquals(3,
+                         all.size());
+        }
+
+        {
+            final Map<String, Object> attrs = Collections.singletonMap("filename",
+                                                                       "*.txt");
+            final IOSearchService.Filter notA = kObject -> !kObject.getKey().endsWith("/a.txt");
+            SearchPage<Path> page = searchIndex.searchByAttrs(attrs,
+                                                              notA,
+                                                              2,
+                                                              null,
+                                                              root);
+            assertEquals(2,
+                         page.getHits().size());
+
+            final Set<Path> all = new HashSet<Path>(page.getHits());
+            while (page.hasNext()) {
+                page = searchIndex.searchByAttrs(attrs,
+                                                 notA,
+                                                 2,
+                                                 page.getNext(),
+                                                 root);
+                all.addAll(page.getHits());
+            }
+            assertEquals(2,
+                         all.size());
+            assertFalse(all.contains(path2));
+        }
     }
 }
@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.jboss.byteman.contrib.bmunit.BMScript;
 import org.junit.Test;
@@ -181,5 +183,16 @@ public class LuceneSearchIndexTest extends BaseIndexTest {
             assertEquals(2,
                          results.size());
         }
+
+        //Built queries are shared between threads
+        {
+            final List<Integer> hits = IntStream.range(0,
+                                                       100)
+                    .parallel()
+                    .mapToObj(i -> config.getSearchIndex().fullTextSearchHits("*indexed*",
+                                                                              i % 2 == 0 ? cs1 : cs2))
+                    .collect(Collectors.toList());
+            assertTrue(hits.stream().allMatch(hit -> hit == 1));
+        }
     }
 }
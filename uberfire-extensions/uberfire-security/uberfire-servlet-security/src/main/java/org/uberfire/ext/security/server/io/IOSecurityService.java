@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -325,6 +326,32 @@ public class IOSecurityService implements IOService {
                                       options);
     }
 
+    @Override
+    public void writeAll(Map<Path, byte[]> content,
+                         OpenOption... options) throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        for (final Path path : content.keySet()) {
+            if (!authManager.authorize(toResource(path),
+                                       getUser())) {
+                throw new SecurityException();
+            }
+        }
+        service.writeAll(content,
+                         options);
+    }
+
+    @Override
+    public void deleteAll(Collection<Path> paths,
+                          DeleteOption... options) throws IllegalArgumentException, DirectoryNotEmptyException, IOException, SecurityException {
+        for (final Path path : paths) {
+            if (!authManager.authorize(toResource(path),
+                                       getUser())) {
+                throw new SecurityException();
+            }
+        }
+        service.deleteAll(paths,
+                          options);
+    }
+
     @Override
     public Path createTempFile(String prefix,
                                String suffix,
@@ -403,6 +430,23 @@ public class IOSecurityService implements IOService {
                             options);
     }
 
+    @Override
+    public void moveAll(Map<Path, Path> sourceToTarget,
+                        CopyOption... options) throws UnsupportedOperationException, FileAlreadyExistsException, DirectoryNotEmptyException, IOException, SecurityException {
+        for (final Map.Entry<Path, Path> entry : sourceToTarget.entrySet()) {
+            if (!authManager.authorize(toResource(entry.getKey()),
+                                       getUser())) {
+                throw new SecurityException();
+            }
+            if (!authManager.authorize(toResource(entry.getValue()),
+                                       getUser())) {
+                throw new SecurityException();
+            }
+        }
+        service.moveAll(sourceToTarget,
+                        options);
+    }
+
     @Override
     public <V extends FileAttributeView> V getFileAttributeView(Path path,
                                                                 Class<V> type) throws IllegalArgumentException {
@@ -98,35 +98,33 @@ public class SocialTimelineCacheClusterPersistence extends SocialTimelineCachePe
 
     private void registerNewEvent(SocialUser user,
                                   SocialActivitiesEvent event) {
-        List<SocialActivitiesEvent> userEvents = userEventsTimelineFreshEvents.get(user.getUserName());
-        if (userEvents == null) {
-            userEvents = new ArrayList<SocialActivitiesEvent>();
-        }
-        userEvents.add(event);
-        userEventsTimelineFreshEvents.put(user.getUserName(),
-                                          userEvents);
+        appendFreshEvent(userEventsTimelineFreshEvents,
+                         user.getUserName(),
+                         event);
         cacheControl(user);
     }
 
     private void syncCluster(SocialUser user) {
-        List<SocialActivitiesEvent> myFreshEvents = userEventsTimelineFreshEvents.get(user.getUserName());
+        List<SocialActivitiesEvent> myFreshEvents = takeFreshEvents(userEventsTimelineFreshEvents,
+                                                                    user.getUserName());
         SocialCacheControl socialCacheControl = userEventsCacheControl.get(user.getUserName());
         socialCacheControl.reset();
         List<SocialActivitiesEvent> actualTypeTimeline = createOrGetUserTimeline(user.getUserName());
-        refreshCache(user.getUserName(),
-                     actualTypeTimeline);
+        userEventsTimelineCache.put(user.getUserName(),
+                                    actualTypeTimeline);
         syncMyStaleItems(myFreshEvents,
                          actualTypeTimeline,
                          user);
     }
 
     private void syncCluster(SocialEventType eventType) {
-        List<SocialActivitiesEvent> myFreshEvents = typeEventsFreshEvents.get(eventType);
+        List<SocialActivitiesEvent> myFreshEvents = takeFreshEvents(typeEventsFreshEvents,
+                                                                    eventType);
         SocialCacheControl socialCacheControl = typeEventsCacheControl.get(eventType);
         socialCacheControl.reset();
         List<SocialActivitiesEvent> actualTypeTimeline = createOrGetTypeTimeline(eventType);
-        refreshCache(eventType,
-                     actualTypeTimeline);
+        typeEventsTimelineCache.put(eventType,
+                                    actualTypeTimeline);
         syncMyStaleItems(myFreshEvents,
                          actualTypeTimeline,
                          eventType);
@@ -155,10 +153,9 @@ public class SocialTimelineCacheClusterPersistence extends SocialTimelineCachePe
     private void registerNewEvent(SocialActivitiesEvent event,
                                   SocialEventType eventType,
                                   boolean sendClusterMsg) {
-        List<SocialActivitiesEvent> typeEvents = typeEventsFreshEvents.get(eventType);
-        typeEvents.add(event);
-        typeEventsFreshEvents.put(eventType,
-                                  typeEvents);
+        appendFreshEvent(typeEventsFreshEvents,
+                         eventType,
+                         event);
         cacheControl(event,
                      eventType);
 
@@ -178,10 +175,9 @@ public class SocialTimelineCacheClusterPersistence extends SocialTimelineCachePe
                                                                     storedTimeline);
 
         if (!unsavedEvents.isEmpty()) {
-            List<SocialActivitiesEvent> cacheEvents = typeEventsFreshEvents.get(eventType);
-            cacheEvents.addAll(unsavedEvents);
-            typeEventsFreshEvents.put(eventType,
-                                      cacheEvents);
+            appendFreshEvents(typeEventsFreshEvents,
+                              eventType,
+                              unsavedEvents);
         }
     }
 
@@ -191,10 +187,9 @@ public class SocialTimelineCacheClusterPersistence extends SocialTimelineCachePe
         List<SocialActivitiesEvent> unsavedEvents = findStaleEvents(myFreshEvents,
                                                                     storedTimeline);
         if (!unsavedEvents.isEmpty()) {
-            List<SocialActivitiesEvent> cacheEvents = userEventsTimelineFreshEvents.get(user.getUserName());
-            cacheEvents.addAll(unsavedEvents);
-            userEventsTimelineFreshEvents.put(user.getUserName(),
-                                              cacheEvents);
+            appendFreshEvents(userEventsTimelineFreshEvents,
+                              user.getUserName(),
+                              unsavedEvents);
         }
     }
 
@@ -218,12 +213,8 @@ public class SocialTimelineCacheClusterPersistence extends SocialTimelineCachePe
     }
 
     private void cacheControl(SocialUser user) {
-        SocialCacheControl socialCacheControl = userEventsCacheControl.get(user.getUserName());
-        if (socialCacheControl == null) {
-            socialCacheControl = new SocialCacheControl();
-            userEventsCacheControl.put(user.getUserName(),
-                                       socialCacheControl);
-        }
+        SocialCacheControl socialCacheControl = userEventsCacheControl.computeIfAbsent(user.getUserName(),
+                                                                                       userName -> new SocialCacheControl());
         socialCacheControl.registerNewEvent();
         if (socialCacheControl.needToPersist()) {
             Path userDir = getUserDirectory(user.getUserName());
@@ -18,9 +18,13 @@ package org.ext.uberfire.social.activities.persistence;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.Gson;
 import org.ext.uberfire.social.activities.model.SocialActivitiesEvent;
@@ -35,14 +39,34 @@ import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.Path;
 
+/**
+ * Every timeline is an append only log of segments, numbered files holding the events of one flush.
+ * Fresh events are kept in memory, in the tail of their timeline, until the threshold is reached and
+ * they are flushed as a new segment, together with its metadata, in a single commit. The last segment
+ * and the size of each one are indexed in memory, and the events of the segments read are cached,
+ * so paging through a timeline doesn't read its files again.
+ */
 public abstract class SocialTimelineCachePersistence implements SocialTimelinePersistenceAPI {
 
     public static final String SOCIAL_FILES = "social-files";
     public static final String THRESHOLD_PROPERTY = "org.uberfire.social.threshold";
+    public static final String SEGMENT_CACHE_SIZE_PROPERTY = "org.uberfire.social.segment.cache.size";
     private static final int DEFAULT_THRESHOLD = 100;
-    Map<SocialEventType, List<SocialActivitiesEvent>> typeEventsTimelineCache = new HashMap<SocialEventType, List<SocialActivitiesEvent>>();
-    Map<SocialEventType, List<SocialActivitiesEvent>> typeEventsFreshEvents = new HashMap<SocialEventType, List<SocialActivitiesEvent>>();
-    Map<SocialEventType, SocialCacheControl> typeEventsCacheControl = new HashMap<SocialEventType, SocialCacheControl>();
+    Map<SocialEventType, List<SocialActivitiesEvent>> typeEventsTimelineCache = new ConcurrentHashMap<SocialEventType, List<SocialActivitiesEvent>>();
+    Map<SocialEventType, List<SocialActivitiesEvent>> typeEventsFreshEvents = new ConcurrentHashMap<SocialEventType, List<SocialActivitiesEvent>>();
+    Map<SocialEventType, SocialCacheControl> typeEventsCacheControl = new ConcurrentHashMap<SocialEventType, SocialCacheControl>();
+    Map<Path, SocialTimelineIndex> timelineIndexes = new ConcurrentHashMap<Path, SocialTimelineIndex>();
+    private final int segmentCacheSize = Integer.getInteger(SEGMENT_CACHE_SIZE_PROPERTY,
+                                                            64);
+    //segment file -> events, guarded by itself
+    private final Map<Path, List<SocialActivitiesEvent>> segmentCache = new LinkedHashMap<Path, List<SocialActivitiesEvent>>(16,
+                                                                                                                            0.75f,
+                                                                                                                            true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Path, List<SocialActivitiesEvent>> eldest) {
+            return size() > segmentCacheSize;
+        }
+    };
     int threshold;
     IOService ioService;
 
@@ -59,9 +83,9 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     SocialUserServicesExtendedBackEndImpl userServicesBackend;
 
     SocialSecurityConstraintsManager socialSecurityConstraintsManager;
-    Map<String, List<SocialActivitiesEvent>> userEventsTimelineCache = new HashMap<String, List<SocialActivitiesEvent>>();
-    Map<String, List<SocialActivitiesEvent>> userEventsTimelineFreshEvents = new HashMap<String, List<SocialActivitiesEvent>>();
-    Map<String, SocialCacheControl> userEventsCacheControl = new HashMap<String, SocialCacheControl>();
+    Map<String, List<SocialActivitiesEvent>> userEventsTimelineCache = new ConcurrentHashMap<String, List<SocialActivitiesEvent>>();
+    Map<String, List<SocialActivitiesEvent>> userEventsTimelineFreshEvents = new ConcurrentHashMap<String, List<SocialActivitiesEvent>>();
+    Map<String, SocialCacheControl> userEventsCacheControl = new ConcurrentHashMap<String, SocialCacheControl>();
 
     @Override
     public void setup() {
@@ -86,14 +110,14 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
             typeEventsTimelineCache.put(type,
                                         events);
             typeEventsFreshEvents.put(type,
-                                      new ArrayList<SocialActivitiesEvent>());
+                                      new CopyOnWriteArrayList<SocialActivitiesEvent>());
         }
         for (String username : socialUserPersistenceAPI.getSocialUsersName()) {
             List<SocialActivitiesEvent> events = createOrGetUserTimeline(username);
             userEventsTimelineCache.put(username,
                                         events);
             userEventsTimelineFreshEvents.put(username,
-                                              new ArrayList<SocialActivitiesEvent>());
+                                              new CopyOnWriteArrayList<SocialActivitiesEvent>());
         }
     }
 
@@ -117,15 +141,41 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
 
     List<SocialActivitiesEvent> getTimeline(Path timelineDir,
                                             String fileIndex) {
-        List<SocialActivitiesEvent> events;
         Path fileTimeline = timelineDir.resolve(fileIndex);
-        String numberOfEvents = getItemsMetadata(timelineDir,
-                                                 fileIndex);
-        SocialFile socialFile = createSocialFile(fileTimeline);
-        events = socialFile.readSocialEvents(Integer.valueOf(numberOfEvents));
+        List<SocialActivitiesEvent> events = getCachedSegment(fileTimeline);
+        if (events == null) {
+            Integer numberOfEvents = getNumberOfEventsOnPath(fileIndex,
+                                                             timelineDir);
+            SocialFile socialFile = createSocialFile(fileTimeline);
+            events = socialFile.readSocialEvents(numberOfEvents);
+            //a segment without metadata may still be being written
+            if (events != null && numberOfEvents >= 0) {
+                cacheSegment(fileTimeline,
+                             events);
+            }
+        }
         return applySocialSecurityConstraints(events);
     }
 
+    private List<SocialActivitiesEvent> getCachedSegment(Path fileTimeline) {
+        synchronized (segmentCache) {
+            return segmentCache.get(fileTimeline);
+        }
+    }
+
+    private void cacheSegment(Path fileTimeline,
+                              List<SocialActivitiesEvent> events) {
+        synchronized (segmentCache) {
+            segmentCache.put(fileTimeline,
+                             Collections.unmodifiableList(new ArrayList<SocialActivitiesEvent>(events)));
+        }
+    }
+
+    SocialTimelineIndex getTimelineIndex(Path timelineDir) {
+        return timelineIndexes.computeIfAbsent(timelineDir,
+                                               dir -> new SocialTimelineIndex());
+    }
+
     SocialFile createSocialFile(Path fileTimeline) {
         return new SocialFile(fileTimeline,
                               ioService,
@@ -136,50 +186,78 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
         return lastFileIndex >= 0;
     }
 
+    /**
+     * Reads the last segment of the timeline from its directory, refreshing the index.
+     */
     Integer getLastFileIndex(Path timelineDir) {
         Path resolve = timelineDir.resolve(Constants.LAST_FILE_INDEX.name());
-        if (!getIoService().exists(resolve)) {
-            return -1;
+        Integer lastIndex = -1;
+        if (getIoService().exists(resolve)) {
+            String index = getIoService().readAllString(resolve);
+            lastIndex = Integer.valueOf(index);
         }
-        String index = getIoService().readAllString(resolve);
-        Integer lastIndex = Integer.valueOf(index);
+        getTimelineIndex(timelineDir).setLastSegment(lastIndex);
 
         return lastIndex;
     }
 
-    void createPersistenceStructure(Path timelineDir) {
-        String lastIndex = "-1";
-        updateLastIndexFile(timelineDir,
-                            lastIndex);
+    /**
+     * Last segment of the timeline as indexed, only read from its directory the first time.
+     */
+    Integer getIndexedLastFileIndex(Path timelineDir) {
+        Integer lastIndex = getTimelineIndex(timelineDir).getLastSegment();
+        if (lastIndex == null) {
+            return getLastFileIndex(timelineDir);
+        }
+        return lastIndex;
     }
 
-    private void updateLastIndexFile(Path directory,
-                                     String lastIndex) {
-        Path lastFileIndex = directory.resolve(Constants.LAST_FILE_INDEX.name());
+    void createPersistenceStructure(Path timelineDir) {
         try {
-            getIoService().startBatch(lastFileIndex.getFileSystem());
-            getIoService().write(lastFileIndex,
-                                 lastIndex);
+            getIoService().startBatch(timelineDir.getFileSystem());
+            updateLastIndexFile(timelineDir,
+                                "-1");
         } finally {
             getIoService().endBatch();
         }
+        getTimelineIndex(timelineDir).setLastSegment(-1);
+    }
+
+    private void updateLastIndexFile(Path directory,
+                                     String lastIndex) {
+        Path lastFileIndex = directory.resolve(Constants.LAST_FILE_INDEX.name());
+        getIoService().write(lastFileIndex,
+                             lastIndex);
     }
 
+    /**
+     * Appends the events as a new segment of the timeline: its events, metadata and the new last
+     * segment are written in a single batch. The batch is taken before the index monitor, in the
+     * same order as callers that flush inside their own batch.
+     */
     private String persistEvents(List<SocialActivitiesEvent> newEvents,
                                  Path timeLineDir) {
-        Integer lastFileIndex = getLastFileIndex(timeLineDir);
-        lastFileIndex = lastFileIndex + 1;
-        Path timelineFile = timeLineDir.resolve(lastFileIndex.toString());
+        final SocialTimelineIndex timelineIndex = getTimelineIndex(timeLineDir);
         try {
             getIoService().startBatch(timeLineDir.getFileSystem());
-            writeItems(timelineFile,
-                       newEvents);
-            writeItemsMetadata(timeLineDir,
-                               lastFileIndex.toString(),
-                               newEvents.size());
-            updateLastIndexFile(timeLineDir,
-                                lastFileIndex.toString());
-            return lastFileIndex.toString();
+            synchronized (timelineIndex) {
+                //read from the directory, another node may have appended a segment
+                Integer lastFileIndex = getLastFileIndex(timeLineDir);
+                lastFileIndex = lastFileIndex + 1;
+                Path timelineFile = timeLineDir.resolve(lastFileIndex.toString());
+                writeItems(timelineFile,
+                           newEvents);
+                writeItemsMetadata(timeLineDir,
+                                   lastFileIndex.toString(),
+                                   newEvents.size());
+                updateLastIndexFile(timeLineDir,
+                                    lastFileIndex.toString());
+                cacheSegment(timelineFile,
+                             newEvents);
+                timelineIndex.segmentWritten(lastFileIndex,
+                                             newEvents.size());
+                return lastFileIndex.toString();
+            }
         } finally {
             getIoService().endBatch();
         }
@@ -190,13 +268,8 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
                                     int size) {
         String metadataFileName = originalFilename + Constants.METADATA;
         Path timelineFile = timeLineDir.resolve(metadataFileName);
-        try {
-            getIoService().startBatch(timelineFile.getFileSystem());
-            getIoService().write(timelineFile,
-                                 size + "");
-        } finally {
-            getIoService().endBatch();
-        }
+        getIoService().write(timelineFile,
+                             size + "");
     }
 
     String getItemsMetadata(Path timeLineDir,
@@ -212,17 +285,12 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
 
     private void writeItems(final Path timeLineFile,
                             final List<SocialActivitiesEvent> newEvents) {
-        SocialFile socialFile = new SocialFile(timeLineFile,
-                                               ioService,
-                                               gson);
+        SocialFile socialFile = createSocialFile(timeLineFile);
 
         try {
-            ioService.startBatch(timeLineFile.getFileSystem());
             socialFile.write(newEvents);
         } catch (IOException e) {
             throw new ErrorAccessingTimeline(e);
-        } finally {
-            ioService.endBatch();
         }
     }
 
@@ -249,6 +317,67 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
         return createOrGetTimeline(timelineDir);
     }
 
+    /**
+     * Appends an event to the in memory tail of a timeline. Appending and taking the tail to flush it
+     * lock only the entry of that timeline, and the tail can be read while being appended to.
+     */
+    <K> void appendFreshEvent(Map<K, List<SocialActivitiesEvent>> freshEvents,
+                              K key,
+                              SocialActivitiesEvent event) {
+        appendFreshEvents(freshEvents,
+                          key,
+                          Collections.singletonList(event));
+    }
+
+    <K> void appendFreshEvents(Map<K, List<SocialActivitiesEvent>> freshEvents,
+                               K key,
+                               List<SocialActivitiesEvent> events) {
+        freshEvents.compute(key,
+                            (k, tail) -> {
+                                final List<SocialActivitiesEvent> newTail;
+                                if (tail instanceof CopyOnWriteArrayList) {
+                                    newTail = tail;
+                                } else if (tail == null) {
+                                    newTail = new CopyOnWriteArrayList<SocialActivitiesEvent>();
+                                } else {
+                                    newTail = new CopyOnWriteArrayList<SocialActivitiesEvent>(tail);
+                                }
+                                newTail.addAll(events);
+                                return newTail;
+                            });
+    }
+
+    /**
+     * Puts back events taken from the tail of a timeline that couldn't be flushed, ahead of the
+     * events appended since.
+     */
+    <K> void restoreFreshEvents(Map<K, List<SocialActivitiesEvent>> freshEvents,
+                                K key,
+                                List<SocialActivitiesEvent> events) {
+        freshEvents.compute(key,
+                            (k, tail) -> {
+                                final List<SocialActivitiesEvent> newTail = new CopyOnWriteArrayList<SocialActivitiesEvent>(events);
+                                if (tail != null) {
+                                    newTail.addAll(tail);
+                                }
+                                return newTail;
+                            });
+    }
+
+    /**
+     * Replaces the tail of a timeline with an empty one.
+     * @return the events of the replaced tail
+     */
+    <K> List<SocialActivitiesEvent> takeFreshEvents(Map<K, List<SocialActivitiesEvent>> freshEvents,
+                                                    K key) {
+        final List<SocialActivitiesEvent> tail = freshEvents.put(key,
+                                                                 new CopyOnWriteArrayList<SocialActivitiesEvent>());
+        if (tail == null) {
+            return new ArrayList<SocialActivitiesEvent>();
+        }
+        return new ArrayList<SocialActivitiesEvent>(tail);
+    }
+
     @Override
     public List<SocialActivitiesEvent> getLastEvents(SocialEventType key) {
         List<SocialActivitiesEvent> events = new ArrayList<SocialActivitiesEvent>();
@@ -258,18 +387,30 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     }
 
     List<SocialActivitiesEvent> storeTimeLineInFile(SocialEventType type) {
-        List<SocialActivitiesEvent> socialActivitiesEvents = typeEventsFreshEvents.get(type);
-        persistEvents(type,
-                      socialActivitiesEvents);
-        refreshCache(type,
-                     socialActivitiesEvents);
+        List<SocialActivitiesEvent> socialActivitiesEvents = takeFreshEvents(typeEventsFreshEvents,
+                                                                             type);
+        if (socialActivitiesEvents.isEmpty()) {
+            //already flushed by another thread
+            return socialActivitiesEvents;
+        }
+        try {
+            persistEvents(type,
+                          socialActivitiesEvents);
+        } catch (RuntimeException e) {
+            restoreFreshEvents(typeEventsFreshEvents,
+                               type,
+                               socialActivitiesEvents);
+            throw e;
+        }
+        typeEventsTimelineCache.put(type,
+                                    socialActivitiesEvents);
         return socialActivitiesEvents;
     }
 
     void refreshCache(SocialEventType type,
                       List<SocialActivitiesEvent> socialActivitiesEvents) {
         typeEventsFreshEvents.put(type,
-                                  new ArrayList<SocialActivitiesEvent>());
+                                  new CopyOnWriteArrayList<SocialActivitiesEvent>());
         typeEventsTimelineCache.put(type,
                                     socialActivitiesEvents);
     }
@@ -286,7 +427,7 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     public Integer numberOfPages(SocialEventType type) {
         Path timelineDir = userServicesBackend.buildPath(SOCIAL_FILES,
                                                          type.name());
-        Integer lastFileIndex = getLastFileIndex(timelineDir);
+        Integer lastFileIndex = getIndexedLastFileIndex(timelineDir);
         return lastFileIndex;
     }
 
@@ -304,7 +445,7 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     public Integer getTypeMostRecentFileIndex(SocialEventType type) {
         Path timelineDir = userServicesBackend.buildPath(SOCIAL_FILES,
                                                          type.name());
-        Integer lastFileIndex = getLastFileIndex(timelineDir);
+        Integer lastFileIndex = getIndexedLastFileIndex(timelineDir);
         return lastFileIndex;
     }
 
@@ -327,9 +468,7 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     private String persistEvents(SocialUser user,
                                  List<SocialActivitiesEvent> newEvents) {
         Path userDir = getUserDirectory(user.getUserName());
-        if (!ioService.exists(userDir)) {
-            createPersistenceStructure(userDir);
-        }
+        //a new user's directory is created along with its first segment
         return persistEvents(newEvents,
                              userDir);
     }
@@ -364,25 +503,37 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     }
 
     private void createCacheStructureForNewUsers(SocialUser user) {
-        userEventsTimelineCache.put(user.getUserName(),
-                                    new ArrayList<SocialActivitiesEvent>());
-        userEventsTimelineFreshEvents.put(user.getUserName(),
-                                          new ArrayList<SocialActivitiesEvent>());
+        userEventsTimelineCache.putIfAbsent(user.getUserName(),
+                                            new ArrayList<SocialActivitiesEvent>());
+        userEventsTimelineFreshEvents.putIfAbsent(user.getUserName(),
+                                                  new CopyOnWriteArrayList<SocialActivitiesEvent>());
     }
 
     List<SocialActivitiesEvent> storeTimeLineInFile(SocialUser user) {
-        List<SocialActivitiesEvent> socialActivitiesEvents = userEventsTimelineFreshEvents.get(user.getUserName());
-        persistEvents(user,
-                      socialActivitiesEvents);
-        refreshCache(user.getUserName(),
-                     socialActivitiesEvents);
+        List<SocialActivitiesEvent> socialActivitiesEvents = takeFreshEvents(userEventsTimelineFreshEvents,
+                                                                             user.getUserName());
+        if (socialActivitiesEvents.isEmpty()) {
+            //already flushed by another thread
+            return socialActivitiesEvents;
+        }
+        try {
+            persistEvents(user,
+                          socialActivitiesEvents);
+        } catch (RuntimeException e) {
+            restoreFreshEvents(userEventsTimelineFreshEvents,
+                               user.getUserName(),
+                               socialActivitiesEvents);
+            throw e;
+        }
+        userEventsTimelineCache.put(user.getUserName(),
+                                    socialActivitiesEvents);
         return socialActivitiesEvents;
     }
 
     void refreshCache(String userName,
                       List<SocialActivitiesEvent> socialActivitiesEvents) {
         userEventsTimelineFreshEvents.put(userName,
-                                          new ArrayList<SocialActivitiesEvent>());
+                                          new CopyOnWriteArrayList<SocialActivitiesEvent>());
         userEventsTimelineCache.put(userName,
                                     socialActivitiesEvents);
     }
@@ -395,7 +546,7 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
     @Override
     public Integer getUserMostRecentFileIndex(SocialUser user) {
         Path timelineDir = getUserDirectory(user.getUserName());
-        Integer lastFileIndex = getLastFileIndex(timelineDir);
+        Integer lastFileIndex = getIndexedLastFileIndex(timelineDir);
         return lastFileIndex;
     }
 
@@ -438,10 +589,20 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
 
     Integer getNumberOfEventsOnPath(String originalFilename,
                                     Path path) {
+        final SocialTimelineIndex timelineIndex = getTimelineIndex(path);
+        final Integer indexed = timelineIndex.getNumberOfEvents(originalFilename);
+        if (indexed != null) {
+            return indexed;
+        }
         String itemsMetadata = getItemsMetadata(path,
                                                 originalFilename);
         try {
-            return Integer.parseInt(itemsMetadata);
+            final int numberOfEvents = Integer.parseInt(itemsMetadata);
+            if (numberOfEvents >= 0) {
+                timelineIndex.setNumberOfEvents(originalFilename,
+                                                numberOfEvents);
+            }
+            return numberOfEvents;
         } catch (NumberFormatException e) {
             return -1;
         }
@@ -477,22 +638,22 @@ public abstract class SocialTimelineCachePersistence implements SocialTimelinePe
 
     protected class SocialCacheControl {
 
-        private int sizeOfcache;
+        private final AtomicInteger sizeOfcache = new AtomicInteger();
 
         public SocialCacheControl() {
             reset();
         }
 
         public void registerNewEvent() {
-            sizeOfcache = sizeOfcache + 1;
+            sizeOfcache.incrementAndGet();
         }
 
         public boolean needToPersist() {
-            return sizeOfcache > getThreshold();
+            return sizeOfcache.get() > getThreshold();
         }
 
         public void reset() {
-            sizeOfcache = 0;
+            sizeOfcache.set(0);
         }
     }
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ext.uberfire.social.activities.persistence;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory index of the segments of a timeline, the numbered files its events are flushed to: the
+ * last segment written and how many events each one holds. Segments are append only, every flush
+ * writes a new one, so once read from their metadata files they never have to be read again.
+ */
+public class SocialTimelineIndex {
+
+    //null until read from the timeline directory
+    private volatile Integer lastSegment;
+    private final Map<String, Integer> eventsBySegment = new ConcurrentHashMap<String, Integer>();
+
+    public Integer getLastSegment() {
+        return lastSegment;
+    }
+
+    public void setLastSegment(final Integer lastSegment) {
+        this.lastSegment = lastSegment;
+    }
+
+    /**
+     * @return null if the segment isn't known yet
+     */
+    public Integer getNumberOfEvents(final String segment) {
+        return eventsBySegment.get(segment);
+    }
+
+    public void setNumberOfEvents(final String segment,
+                                  final int numberOfEvents) {
+        eventsBySegment.put(segment,
+                            numberOfEvents);
+    }
+
+    public void segmentWritten(final Integer segment,
+                               final int numberOfEvents) {
+        setNumberOfEvents(segment.toString(),
+                          numberOfEvents);
+        lastSegment = segment;
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.Test;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.Path;
 
+import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -103,6 +104,73 @@ public class SocialTimelineCachePersistenceTest {
         verify(socialSecurityConstraintsManager).applyConstraints(any(List.class));
     }
 
+    @Test
+    public void flushedSegmentsAreReadOnceTest() throws Exception {
+        final SocialFile socialFile = mock(SocialFile.class);
+        when(socialFile.readSocialEvents(1)).thenReturn(oneEventList);
+        socialTimelineCachePersistence = new SocialTimelineCacheInstancePersistenceUnitTestWrapper(socialSecurityConstraintsManager) {
+            @Override
+            String getItemsMetadata(Path timeLineDir,
+                                    String originalFilename) {
+                return "1";
+            }
+
+            @Override
+            SocialFile createSocialFile(Path fileTimeline) {
+                return socialFile;
+            }
+        };
+        final Path timelineDir = mock(Path.class);
+        when(timelineDir.resolve("0")).thenReturn(mock(Path.class));
+
+        socialTimelineCachePersistence.getTimeline(timelineDir,
+                                                   "0");
+        socialTimelineCachePersistence.getTimeline(timelineDir,
+                                                   "0");
+
+        verify(socialFile,
+               times(1)).readSocialEvents(1);
+        verify(socialSecurityConstraintsManager,
+               times(2)).applyConstraints(oneEventList);
+        assertEquals(Integer.valueOf(1),
+                     socialTimelineCachePersistence.getNumberOfEventsOnPath("0",
+                                                                            timelineDir));
+    }
+
+    @Test
+    public void eventsAreKeptWhenTheFlushFailsTest() throws Exception {
+        final SocialActivitiesEvent first = new SocialActivitiesEvent();
+        final SocialActivitiesEvent second = new SocialActivitiesEvent();
+        final SocialActivitiesEvent appendedMeanwhile = new SocialActivitiesEvent();
+        final SocialUser user = new SocialUser("dora");
+        socialTimelineCachePersistence.appendFreshEvent(socialTimelineCachePersistence.userEventsTimelineFreshEvents,
+                                                        user.getUserName(),
+                                                        first);
+        socialTimelineCachePersistence.appendFreshEvent(socialTimelineCachePersistence.userEventsTimelineFreshEvents,
+                                                        user.getUserName(),
+                                                        second);
+
+        //no timeline directory to write to
+        try {
+            socialTimelineCachePersistence.storeTimeLineInFile(user);
+            fail("flush should have failed");
+        } catch (RuntimeException e) {
+        }
+        socialTimelineCachePersistence.appendFreshEvent(socialTimelineCachePersistence.userEventsTimelineFreshEvents,
+                                                        user.getUserName(),
+                                                        appendedMeanwhile);
+
+        final List<SocialActivitiesEvent> tail = socialTimelineCachePersistence.userEventsTimelineFreshEvents.get(user.getUserName());
+        assertEquals(3,
+                     tail.size());
+        assertSame(first,
+                   tail.get(0));
+        assertSame(second,
+                   tail.get(1));
+        assertSame(appendedMeanwhile,
+                   tail.get(2));
+    }
+
     private SocialTimelineCachePersistence createFakeSocialTimelineCachePersistence() {
         return new SocialTimelineCachePersistence() {
 
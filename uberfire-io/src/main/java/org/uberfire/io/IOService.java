@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -332,6 +333,53 @@ public interface IOService extends PriorityDisposable {
                final OpenOption... options)
             throws IllegalArgumentException, IOException, UnsupportedOperationException;
 
+    /**
+     * Writes all the given contents, a null content deletes the path. When the underlying file system
+     * supports it all changes are applied at once (as a single commit for versioned file systems),
+     * otherwise they are applied one by one.
+     */
+    default void writeAll(final Map<Path, byte[]> content,
+                          final OpenOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        for (final Map.Entry<Path, byte[]> entry : content.entrySet()) {
+            if (entry.getValue() == null) {
+                deleteIfExists(entry.getKey());
+            } else {
+                write(entry.getKey(),
+                      entry.getValue(),
+                      options);
+            }
+        }
+    }
+
+    /**
+     * Deletes all the given paths, ignoring the ones that don't exist. When the underlying file
+     * system supports it all paths are deleted at once.
+     */
+    default void deleteAll(final Collection<Path> paths,
+                           final DeleteOption... options)
+            throws IllegalArgumentException, DirectoryNotEmptyException, IOException, SecurityException {
+        for (final Path path : paths) {
+            deleteIfExists(path,
+                           options);
+        }
+    }
+
+    /**
+     * Moves all the given sources to their targets. When the underlying file system supports it all
+     * paths are moved at once.
+     */
+    default void moveAll(final Map<Path, Path> sourceToTarget,
+                         final CopyOption... options)
+            throws UnsupportedOperationException, FileAlreadyExistsException,
+            DirectoryNotEmptyException, IOException, SecurityException {
+        for (final Map.Entry<Path, Path> entry : sourceToTarget.entrySet()) {
+            move(entry.getKey(),
+                 entry.getValue(),
+                 options);
+        }
+    }
+
     public abstract static class NewFileSystemListener {
 
         public abstract void execute(final FileSystem newFileSystem,
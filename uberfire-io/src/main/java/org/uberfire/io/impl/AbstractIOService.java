@@ -18,16 +18,19 @@ package org.uberfire.io.impl;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,9 +43,11 @@ import org.uberfire.io.IOWatchService;
 import org.uberfire.io.lock.BatchLockControl;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.base.AbstractPath;
+import org.uberfire.java.nio.base.BulkOperationsProvider;
 import org.uberfire.java.nio.base.FileSystemState;
 import org.uberfire.java.nio.channels.SeekableByteChannel;
 import org.uberfire.java.nio.file.CopyOption;
+import org.uberfire.java.nio.file.DeleteOption;
 import org.uberfire.java.nio.file.DirectoryNotEmptyException;
 import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.FileAlreadyExistsException;
@@ -686,6 +691,115 @@ public abstract class AbstractIOService implements IOServiceIdentifiable,
         return path;
     }
 
+    @Override
+    public void writeAll(final Map<Path, byte[]> content,
+                         final OpenOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        checkNotNull("content",
+                     content);
+        final BulkOperationsProvider provider = getBulkOperationsProvider(content.keySet());
+        if (provider == null) {
+            for (final Map.Entry<Path, byte[]> entry : content.entrySet()) {
+                if (entry.getValue() == null) {
+                    deleteIfExists(entry.getKey());
+                } else {
+                    write(entry.getKey(),
+                          entry.getValue(),
+                          options);
+                }
+            }
+            return;
+        }
+
+        final Map<Path, InputStream> streams = new LinkedHashMap<>();
+        for (final Map.Entry<Path, byte[]> entry : expandBulkContent(content).entrySet()) {
+            streams.put(entry.getKey(),
+                        entry.getValue() == null ? null : new ByteArrayInputStream(entry.getValue()));
+        }
+        provider.writeAll(streams,
+                          options);
+    }
+
+    @Override
+    public void deleteAll(final Collection<Path> paths,
+                          final DeleteOption... options)
+            throws IllegalArgumentException, DirectoryNotEmptyException, IOException, SecurityException {
+        checkNotNull("paths",
+                     paths);
+        final BulkOperationsProvider provider = getBulkOperationsProvider(paths);
+        if (provider == null) {
+            for (final Path path : paths) {
+                deleteIfExists(path,
+                               options);
+            }
+            return;
+        }
+
+        final Map<Path, byte[]> content = new LinkedHashMap<>();
+        for (final Path path : paths) {
+            content.put(path,
+                        null);
+        }
+        provider.deleteAll(expandBulkContent(content).keySet(),
+                           options);
+    }
+
+    @Override
+    public void moveAll(final Map<Path, Path> sourceToTarget,
+                        final CopyOption... options)
+            throws UnsupportedOperationException, FileAlreadyExistsException,
+            DirectoryNotEmptyException, IOException, SecurityException {
+        checkNotNull("sourceToTarget",
+                     sourceToTarget);
+        final Set<Path> paths = new HashSet<>(sourceToTarget.keySet());
+        paths.addAll(sourceToTarget.values());
+        final BulkOperationsProvider provider = getBulkOperationsProvider(paths);
+        if (provider == null) {
+            for (final Map.Entry<Path, Path> entry : sourceToTarget.entrySet()) {
+                move(entry.getKey(),
+                     entry.getValue(),
+                     options);
+            }
+            return;
+        }
+
+        provider.moveAll(expandBulkMove(sourceToTarget),
+                         options);
+    }
+
+    /**
+     * Returns the provider able to handle all the given paths in a single operation, or null if the
+     * paths must be handled one by one.
+     */
+    protected BulkOperationsProvider getBulkOperationsProvider(final Collection<Path> paths) {
+        BulkOperationsProvider result = null;
+        for (final Path path : paths) {
+            if (path.getFileSystem() == null || !(path.getFileSystem().provider() instanceof BulkOperationsProvider)) {
+                return null;
+            }
+            final BulkOperationsProvider provider = (BulkOperationsProvider) path.getFileSystem().provider();
+            if (result != null && result != provider) {
+                return null;
+            }
+            result = provider;
+        }
+        return result;
+    }
+
+    /**
+     * Hook for subclasses to add the paths related to the ones being written or deleted.
+     */
+    protected Map<Path, byte[]> expandBulkContent(final Map<Path, byte[]> content) {
+        return content;
+    }
+
+    /**
+     * Hook for subclasses to add the paths related to the ones being moved.
+     */
+    protected Map<Path, Path> expandBulkMove(final Map<Path, Path> sourceToTarget) {
+        return sourceToTarget;
+    }
+
     protected abstract Set<? extends OpenOption> buildOptions(final Set<? extends OpenOption> options,
                                                               final OpenOption... other);
 
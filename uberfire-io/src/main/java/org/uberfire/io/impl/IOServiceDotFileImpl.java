@@ -17,8 +17,11 @@
 package org.uberfire.io.impl;
 
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -77,6 +80,11 @@ public class IOServiceDotFileImpl
                        final DeleteOption... options)
             throws IllegalArgumentException, NoSuchFileException, DirectoryNotEmptyException,
             IOException, SecurityException {
+        if (isBulkFile(path)) {
+            deleteAll(Collections.singletonList(path),
+                      options);
+            return;
+        }
         Files.delete(path,
                      options);
         try {
@@ -93,6 +101,12 @@ public class IOServiceDotFileImpl
     public boolean deleteIfExists(final Path path,
                                   final DeleteOption... options)
             throws IllegalArgumentException, DirectoryNotEmptyException, IOException, SecurityException {
+        if (isBulkFile(path)) {
+            final boolean result = Files.exists(path);
+            deleteAll(Collections.singletonList(path),
+                      options);
+            return result;
+        }
         final boolean result = Files.deleteIfExists(path,
                                                     options);
         try {
@@ -186,6 +200,13 @@ public class IOServiceDotFileImpl
                      final CopyOption... options)
             throws UnsupportedOperationException, FileAlreadyExistsException,
             DirectoryNotEmptyException, AtomicMoveNotSupportedException, IOException, SecurityException {
+        if (isBulkFile(source) && Files.exists(dot(source))) {
+            moveAll(Collections.singletonMap(source,
+                                             target),
+                    options);
+            return target;
+        }
+
         if (Files.exists(dot(source))) {
             Files.move(dot(source),
                        dot(target),
@@ -201,6 +222,74 @@ public class IOServiceDotFileImpl
         return result;
     }
 
+    @Override
+    public void deleteAll(final Collection<Path> paths,
+                          final DeleteOption... options)
+            throws IllegalArgumentException, DirectoryNotEmptyException, IOException, SecurityException {
+        super.deleteAll(paths,
+                        options);
+        for (final Path path : paths) {
+            if (path instanceof AttrHolder) {
+                ((AttrHolder) path).getAttrStorage().clear();
+            }
+        }
+    }
+
+    /**
+     * Only the given targets must not exist, dot files of the targets are replaced like the single
+     * move does.
+     */
+    @Override
+    public void moveAll(final Map<Path, Path> sourceToTarget,
+                        final CopyOption... options)
+            throws UnsupportedOperationException, FileAlreadyExistsException,
+            DirectoryNotEmptyException, IOException, SecurityException {
+        checkNotNull("sourceToTarget",
+                     sourceToTarget);
+        if (!Arrays.asList(options).contains(REPLACE_EXISTING)) {
+            for (final Path target : sourceToTarget.values()) {
+                if (Files.exists(target)) {
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+            }
+        }
+        super.moveAll(sourceToTarget,
+                      forceBuildOptions(options));
+    }
+
+    @Override
+    protected Map<Path, byte[]> expandBulkContent(final Map<Path, byte[]> content) {
+        final Map<Path, byte[]> result = new LinkedHashMap<>(content);
+        for (final Map.Entry<Path, byte[]> entry : content.entrySet()) {
+            if (entry.getValue() == null && !content.containsKey(dot(entry.getKey()))) {
+                result.put(dot(entry.getKey()),
+                           null);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected Map<Path, Path> expandBulkMove(final Map<Path, Path> sourceToTarget) {
+        final Map<Path, Path> result = new LinkedHashMap<>(sourceToTarget);
+        for (final Map.Entry<Path, Path> entry : sourceToTarget.entrySet()) {
+            final Path dotSource = dot(entry.getKey());
+            if (!sourceToTarget.containsKey(dotSource) && Files.exists(dotSource)) {
+                result.put(dotSource,
+                           dot(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Regular files on file systems that support bulk operations get their dot file changed in the
+     * same operation, instead of one at a time.
+     */
+    protected boolean isBulkFile(final Path path) {
+        return getBulkOperationsProvider(Collections.singletonList(path)) != null && Files.isRegularFile(path);
+    }
+
     @Override
     public <V extends FileAttributeView> V getFileAttributeView(final Path path,
                                                                 final Class<V> type)
@@ -16,76 +16,198 @@
 
 package org.uberfire.io.lock;
 
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.LockableFileSystem;
 
+/**
+ * Tracks batches per file system and per thread.
+ * <p>
+ * Each batch holds only the lock of its own file system, so batches on different file systems run
+ * concurrently. A thread may nest batches on different file systems as long as it acquires them in
+ * the lock order (by file system name), which rules out deadlocks between threads doing the same.
+ * Writes to another file system during a batch follow the same order: the file system locks only
+ * wait a bounded time for a lock out of order and fail instead of deadlocking with a crossed batch.
+ * Batches are ended in the reverse order they were started.
+ */
 public class BatchLockControl {
 
-    private ReentrantLock lock = new ReentrantLock(true);
-    private FileSystem fileSystemOnBatch;
+    private final ConcurrentMap<String, BatchLockStats> stats = new ConcurrentHashMap<>();
+    private final ThreadLocal<Deque<BatchEntry>> batches = ThreadLocal.withInitial(ArrayDeque::new);
 
     public void lock(final FileSystem fs) {
-        lock.lock();
-        try{
-            makeSureThatIsOnlyOneFSOnCurrentBatch(fs);
-        }
-        catch (BatchRuntimeException e){
-            lock.unlock();
-            throw e;
-        }
-
-        if (!isAlreadyOnBatch(fs)) {
-            if (isLockable(fs)) {
-                fileSystemOnBatch = fs;
-                ((LockableFileSystem) fs).lock();
-            } else {
-                throw new BatchRuntimeException("Not a LockableFileSystem : "
-                                                        + fileSystemOnBatch.toString());
-            }
+        if (!isLockable(fs)) {
+            throw new BatchRuntimeException("Not a LockableFileSystem : " + fs);
         }
-    }
 
-    private void makeSureThatIsOnlyOneFSOnCurrentBatch(FileSystem fs) {
-        if (fileSystemOnBatch != null && !fileSystemOnBatch.equals(fs)) {
-            throw new BatchRuntimeException("We already have a batch process running on another FS : "
-                                                    + fileSystemOnBatch.toString());
+        final Deque<BatchEntry> current = batches.get();
+        final BatchEntry sameFS = findEntry(current,
+                                            fs);
+        if (sameFS != null) {
+            sameFS.holdCount++;
+            current.push(sameFS);
+            return;
         }
+
+        makeSureLockOrderIsRespected(current,
+                                     fs);
+
+        final BatchLockStats fsStats = stats.computeIfAbsent(fs.toString(),
+                                                             k -> new BatchLockStats());
+        final long start = System.nanoTime();
+        ((LockableFileSystem) fs).lock();
+        final long acquired = System.nanoTime();
+        fsStats.recordWait(acquired - start);
+
+        current.push(new BatchEntry(fs,
+                                    fsStats,
+                                    acquired));
     }
 
-    private boolean isAlreadyOnBatch(FileSystem fileSystem) {
-        return fileSystemOnBatch != null && fileSystemOnBatch.equals(fileSystem);
+    private BatchEntry findEntry(final Deque<BatchEntry> current,
+                                 final FileSystem fs) {
+        for (final BatchEntry entry : current) {
+            if (entry.fileSystem.equals(fs)) {
+                return entry;
+            }
+        }
+        return null;
     }
 
-    public void unlock() {
-        if (lock.isLocked()) {
-            if (shouldUnlockLockedFileSystems()) {
-                ((LockableFileSystem) fileSystemOnBatch).unlock();
-                fileSystemOnBatch = null;
+    private void makeSureLockOrderIsRespected(final Deque<BatchEntry> current,
+                                              final FileSystem fs) {
+        for (final BatchEntry entry : current) {
+            if (entry.fileSystem.toString().compareTo(fs.toString()) > 0) {
+                throw new BatchRuntimeException("A batch on " + fs + " can't be started inside a batch on "
+                                                        + entry.fileSystem + ", nested batches must follow the file system name order");
             }
-            lock.unlock();
         }
     }
 
-    private boolean shouldUnlockLockedFileSystems() {
-        return lock.getHoldCount() == 1 && fileSystemOnBatch != null && isLockable(fileSystemOnBatch);
+    /**
+     * Ends the innermost batch of the current thread.
+     */
+    public void unlock() {
+        final Deque<BatchEntry> current = batches.get();
+        final BatchEntry entry = current.poll();
+        if (entry == null) {
+            return;
+        }
+        entry.holdCount--;
+        if (entry.holdCount == 0) {
+            try {
+                ((LockableFileSystem) entry.fileSystem).unlock();
+            } finally {
+                entry.stats.recordHold(System.nanoTime() - entry.acquired);
+            }
+        }
+        if (current.isEmpty()) {
+            batches.remove();
+        }
     }
 
     private boolean isLockable(FileSystem fileSystem) {
         return fileSystem instanceof LockableFileSystem;
     }
 
+    /**
+     * Whether the current thread is running a batch.
+     */
     public boolean isLocked() {
-        return lock.isLocked();
+        return !batches.get().isEmpty();
     }
 
+    /**
+     * Nesting depth of the innermost batch of the current thread on its file system.
+     */
     public int getHoldCount() {
-        return lock.getHoldCount();
+        final BatchEntry entry = batches.get().peek();
+        return entry == null ? 0 : entry.holdCount;
     }
 
+    /**
+     * File system of the innermost batch of the current thread.
+     */
     public FileSystem getFileSystemOnBatch() {
-        return fileSystemOnBatch;
+        final BatchEntry entry = batches.get().peek();
+        return entry == null ? null : entry.fileSystem;
+    }
+
+    public BatchLockStats getStats(final FileSystem fs) {
+        return stats.get(fs.toString());
+    }
+
+    /**
+     * Lock wait and hold time of every file system that ran a batch, by file system name.
+     */
+    public Map<String, BatchLockStats> getStats() {
+        return Collections.unmodifiableMap(new HashMap<>(stats));
+    }
+
+    public static class BatchLockStats {
+
+        private final AtomicLong acquisitions = new AtomicLong(0);
+        private final AtomicLong totalWaitNanos = new AtomicLong(0);
+        private final AtomicLong maxWaitNanos = new AtomicLong(0);
+        private final AtomicLong totalHoldNanos = new AtomicLong(0);
+        private final AtomicLong maxHoldNanos = new AtomicLong(0);
+
+        private void recordWait(final long nanos) {
+            acquisitions.incrementAndGet();
+            totalWaitNanos.addAndGet(nanos);
+            maxWaitNanos.accumulateAndGet(nanos,
+                                          Math::max);
+        }
+
+        private void recordHold(final long nanos) {
+            totalHoldNanos.addAndGet(nanos);
+            maxHoldNanos.accumulateAndGet(nanos,
+                                          Math::max);
+        }
+
+        public long getAcquisitions() {
+            return acquisitions.get();
+        }
+
+        public long getTotalWaitNanos() {
+            return totalWaitNanos.get();
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos.get();
+        }
+
+        public long getTotalHoldNanos() {
+            return totalHoldNanos.get();
+        }
+
+        public long getMaxHoldNanos() {
+            return maxHoldNanos.get();
+        }
+    }
+
+    private static class BatchEntry {
+
+        private final FileSystem fileSystem;
+        private final BatchLockStats stats;
+        private final long acquired;
+        private int holdCount = 1;
+
+        private BatchEntry(final FileSystem fileSystem,
+                           final BatchLockStats stats,
+                           final long acquired) {
+            this.fileSystem = fileSystem;
+            this.stats = stats;
+            this.acquired = acquired;
+        }
     }
 
     public class BatchRuntimeException extends RuntimeException {
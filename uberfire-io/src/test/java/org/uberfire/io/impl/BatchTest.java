@@ -351,7 +351,7 @@ public class BatchTest {
     }
 
     @Test
-    public void innerBatchShouldOnlyBeCalledOnTheSameFS() throws IOException, InterruptedException {
+    public void innerBatchOnAnotherFSFollowingLockOrder() throws IOException, InterruptedException {
         Path repo1 = ioService.get(URI.create("git://amend-repo-test/readme.txt"));
         ioService.write(repo1,
                         "init!",
@@ -366,15 +366,52 @@ public class BatchTest {
 
         ioService.startBatch(fs1);
         assertTrue(fs1Batch.isOnBatch());
+        ioService.startBatch(fs2);
+        assertTrue(fs1Batch.isOnBatch());
+        assertTrue(fs2Batch.isOnBatch());
+        ioService.endBatch();
+        assertTrue(fs1Batch.isOnBatch());
+        assertFalse(fs2Batch.isOnBatch());
+        assertFalse(fs2Batch.isLocked());
+        ioService.endBatch();
+        assertProperBatchCleanup();
+    }
+
+    @Test
+    public void innerBatchOnAnotherFSShouldFollowLockOrder() throws IOException, InterruptedException {
+        ioService.startBatch(fs2);
+        assertTrue(fs2Batch.isOnBatch());
         try {
-            ioService.startBatch(fs2);
+            ioService.startBatch(fs1);
             fail();
         } catch (BatchLockControl.BatchRuntimeException e) {
-            //We already have a batch process running on another FS : git://amend-repo-test
+            //git://amend-repo-test comes before git://check-amend-repo-test
         }
+        assertFalse(fs1Batch.isOnBatch());
+        assertTrue(fs2Batch.isOnBatch());
+        ioService.endBatch();
+        assertProperBatchCleanup();
+    }
+
+    @Test
+    public void batchesOnDifferentFSRunConcurrently() throws IOException, InterruptedException {
+        ioService.startBatch(fs1);
+        final boolean[] startedOnOtherThread = {false};
+        final Thread thread = new Thread(() -> {
+            ioService.startBatch(fs2);
+            startedOnOtherThread[0] = fs2Batch.isOnBatch();
+            ioService.endBatch();
+        });
+        thread.start();
+        thread.join(10000);
+        assertTrue(startedOnOtherThread[0]);
         assertTrue(fs1Batch.isOnBatch());
         ioService.endBatch();
         assertProperBatchCleanup();
+
+        final BatchLockControl.BatchLockStats stats = ((IOServiceLockable) ioService).getLockControl().getStats(fs2);
+        assertNotNull(stats);
+        assertTrue(stats.getAcquisitions() > 0);
     }
 
     @Test
@@ -24,6 +24,7 @@ import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.attribute.BasicFileAttributeView;
 import org.uberfire.java.nio.file.attribute.BasicFileAttributes;
 import org.uberfire.java.nio.file.attribute.FileTime;
+import org.uberfire.java.nio.fs.jgit.util.model.CommitMetadata;
 import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
 import org.uberfire.java.nio.fs.jgit.util.model.PathType;
 
@@ -91,7 +92,13 @@ public class JGitBasicAttributeView extends AbstractBasicFileAttributeView<JGitP
             public FileTime creationTime() {
                 if (creationDate == null) {
                     try {
-                        creationDate = new FileTimeImpl(fs.getGit().getFirstCommit(ref).getCommitterIdent().getWhen().getTime());
+                        final CommitMetadata firstCommit = fs.getGit().getCommitMetadataIndex().getFirstCommit(branchName,
+                                                                                                               "/");
+                        if (firstCommit != null) {
+                            creationDate = new FileTimeImpl(firstCommit.getTime());
+                        } else {
+                            creationDate = new FileTimeImpl(fs.getGit().getFirstCommit(ref).getCommitterIdent().getWhen().getTime());
+                        }
                     } catch (final Exception e) {
                         creationDate = new FileTimeImpl(0);
                     }
@@ -78,6 +78,14 @@ public interface JGitFileSystem extends FileSystem,
 
     int getNumberOfCommitsSinceLastGC();
 
+    /**
+     * Locks a single branch for writing. Writers of other branches are not blocked, while
+     * {@link #lock()} still excludes all of them.
+     */
+    void lock(String branchName);
+
+    void unlock(String branchName);
+
     void addOldHeadsOfPendingDiffs(String branchName,
                                    NotificationModel notificationModel);
 
@@ -34,13 +34,18 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.uberfire.commons.config.ConfigProperties;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.base.FileSystemState;
 import org.uberfire.java.nio.base.options.CommentedOption;
@@ -97,7 +102,6 @@ public class JGitFileSystemImpl implements JGitFileSystem {
         this.name = checkNotEmpty("name",
                                   name);
 
-        this.lock = new Lock(git.getRepository().getDirectory().toURI());
         this.credential = checkNotNull("credential",
                                        credential);
         this.fileStore = new JGitFileStore(this.git.getRepository());
@@ -115,6 +119,9 @@ public class JGitFileSystemImpl implements JGitFileSystem {
         } else {
             toStringContent = "git://" + name;
         }
+        //same order as nested batches, see BatchLockControl
+        this.lock = new Lock(git.getRepository().getDirectory().toURI(),
+                             toStringContent);
     }
 
     @Override
@@ -481,49 +488,300 @@ public class JGitFileSystemImpl implements JGitFileSystem {
         lock.unlock();
     }
 
+    @Override
+    public void lock(final String branchName) {
+        lock.lock(branchName);
+    }
+
+    @Override
+    public void unlock(final String branchName) {
+        lock.unlock(branchName);
+    }
+
     //testing purposes
     public boolean isLocked() {
         return lock.isLocked();
     }
 
+    /**
+     * Two level lock of the repository.
+     * <p>
+     * The file system lock is exclusive and covers all branches (batches, syncs, ref level
+     * operations), while branch locks only exclude writers of the same branch so commits to
+     * independent branches run in parallel. Readers don't lock at all, they work on immutable tree
+     * ids.
+     * <p>
+     * The physical lock on db.lock, that guards the repository against other processes, is acquired
+     * by the first holder and kept for a short delay after the last one leaves, so a burst of
+     * writes doesn't pay for it on every commit.
+     * <p>
+     * A thread holding file system locks (a batch) takes other locks in order. Waiting for a lock that
+     * sorts before one it already holds is bounded by a timeout and fails with an
+     * IllegalStateException, so two batches writing to each other's file system can't deadlock.
+     */
     public static class Lock {
 
-        private ReentrantLock lock = new ReentrantLock(true);
+        public static final String PHYSICAL_LOCK_RELEASE_DELAY = "org.uberfire.nio.git.lock.release.delay";
+        public static final String DEFAULT_PHYSICAL_LOCK_RELEASE_DELAY = "200";
+        public static final String LOCK_ORDER_TIMEOUT = "org.uberfire.nio.git.lock.order.timeout";
+        public static final String DEFAULT_LOCK_ORDER_TIMEOUT = "30000";
+
+        //file system locks held by the current thread
+        private static final ThreadLocal<Set<Lock>> HELD_LOCKS = new ThreadLocal<>();
+
+        private static final ScheduledExecutorService RELEASE_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r,
+                                             "jgit-physical-lock-release");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+        private final Map<String, ReentrantLock> branchLocks = new ConcurrentHashMap<>();
+        private final Object physicalLockMonitor = new Object();
+        //serializes the acquisition of the file lock, which may block on another process
+        private final ReentrantLock physicalAcquireLock = new ReentrantLock();
+        private final long releaseDelay;
+        private final String order;
+        private final long orderTimeout;
+        private int holders = 0;
+        private long releaseGeneration = 0;
         private FileLock physicalLock;
         private java.nio.file.Path lockFile;
         private FileChannel fileChannel;
 
         public Lock(URI repoURI) {
+            this(repoURI,
+                 repoURI.toString());
+        }
+
+        public Lock(URI repoURI,
+                    long releaseDelay) {
+            this(repoURI,
+                 repoURI.toString(),
+                 releaseDelay,
+                 initOrderTimeout());
+        }
+
+        public Lock(URI repoURI,
+                    String order) {
+            this(repoURI,
+                 order,
+                 initReleaseDelay(),
+                 initOrderTimeout());
+        }
+
+        public Lock(URI repoURI,
+                    String order,
+                    long releaseDelay,
+                    long orderTimeout) {
             this.lockFile = createLockInfra(repoURI);
+            this.order = order;
+            this.releaseDelay = releaseDelay;
+            this.orderTimeout = orderTimeout;
+        }
+
+        private static long initReleaseDelay() {
+            final ConfigProperties config = new ConfigProperties(System.getProperties());
+            try {
+                final int delay = config.get(PHYSICAL_LOCK_RELEASE_DELAY,
+                                             DEFAULT_PHYSICAL_LOCK_RELEASE_DELAY).getIntValue();
+                return delay < 0 ? Integer.valueOf(DEFAULT_PHYSICAL_LOCK_RELEASE_DELAY) : delay;
+            } catch (NumberFormatException ex) {
+                return Integer.valueOf(DEFAULT_PHYSICAL_LOCK_RELEASE_DELAY);
+            }
+        }
+
+        private static long initOrderTimeout() {
+            final ConfigProperties config = new ConfigProperties(System.getProperties());
+            try {
+                final int timeout = config.get(LOCK_ORDER_TIMEOUT,
+                                               DEFAULT_LOCK_ORDER_TIMEOUT).getIntValue();
+                return timeout < 0 ? Integer.valueOf(DEFAULT_LOCK_ORDER_TIMEOUT) : timeout;
+            } catch (NumberFormatException ex) {
+                return Integer.valueOf(DEFAULT_LOCK_ORDER_TIMEOUT);
+            }
         }
 
         public void lock() {
-            lock.lock();
+            if (lock.getReadHoldCount() > 0 && !lock.isWriteLockedByCurrentThread()) {
+                throw new IllegalStateException("The file system lock can't be acquired while holding a branch lock.");
+            }
+            acquireInOrder(lock.writeLock());
 
-            if (needToCreatePhysicalLock()) {
-                physicalLockOnFS();
+            if (lock.getWriteHoldCount() == 1) {
+                try {
+                    acquirePhysicalLock();
+                } catch (RuntimeException | Error e) {
+                    lock.writeLock().unlock();
+                    throw e;
+                }
+                Set<Lock> held = HELD_LOCKS.get();
+                if (held == null) {
+                    held = new HashSet<>();
+                    HELD_LOCKS.set(held);
+                }
+                held.add(this);
+            }
+        }
+
+        public void unlock() {
+            if (lock.isWriteLockedByCurrentThread()) {
+                if (lock.getWriteHoldCount() == 1) {
+                    final Set<Lock> held = HELD_LOCKS.get();
+                    if (held != null) {
+                        held.remove(this);
+                        if (held.isEmpty()) {
+                            HELD_LOCKS.remove();
+                        }
+                    }
+                    releasePhysicalLock();
+                }
+                lock.writeLock().unlock();
             }
         }
 
-        private boolean needToCreatePhysicalLock() {
-            return ((physicalLock == null || !physicalLock.isValid()) && lock.getHoldCount() == 1);
+        public void lock(final String branchName) {
+            if (lock.isWriteLockedByCurrentThread()) {
+                //the file system lock already covers all branches
+                lock.writeLock().lock();
+                return;
+            }
+            acquireInOrder(lock.readLock());
+            final ReentrantLock branchLock = branchLocks.computeIfAbsent(branchName,
+                                                                         k -> new ReentrantLock(true));
+            try {
+                acquireInOrder(branchLock);
+            } catch (RuntimeException e) {
+                lock.readLock().unlock();
+                throw e;
+            }
+            if (branchLock.getHoldCount() == 1) {
+                try {
+                    acquirePhysicalLock();
+                } catch (RuntimeException | Error e) {
+                    branchLock.unlock();
+                    lock.readLock().unlock();
+                    throw e;
+                }
+            }
+        }
+
+        public void unlock(final String branchName) {
+            if (lock.isWriteLockedByCurrentThread()) {
+                unlock();
+                return;
+            }
+            final ReentrantLock branchLock = branchLocks.get(branchName);
+            if (branchLock == null || !branchLock.isHeldByCurrentThread()) {
+                return;
+            }
+            if (branchLock.getHoldCount() == 1) {
+                releasePhysicalLock();
+            }
+            branchLock.unlock();
+            lock.readLock().unlock();
         }
 
         public boolean isLocked() {
-            return lock.isLocked();
+            if (lock.isWriteLocked()) {
+                return true;
+            }
+            for (final ReentrantLock branchLock : branchLocks.values()) {
+                if (branchLock.isLocked()) {
+                    return true;
+                }
+            }
+            return false;
         }
 
-        public void unlock() {
-            if (lock.isLocked()) {
-                if (releasePhysicalLock()) {
+        /**
+         * Blocks on in order acquisitions, but only waits up to the order timeout when the thread
+         * already holds a file system lock that sorts after this one.
+         */
+        private void acquireInOrder(final java.util.concurrent.locks.Lock target) {
+            final Lock heldAfter = findHeldAfter();
+            if (heldAfter == null) {
+                target.lock();
+                return;
+            }
+            try {
+                if (target.tryLock(orderTimeout,
+                                   TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Lock of [" + order + "] not acquired within " + orderTimeout
+                                                    + "ms while holding the lock of [" + heldAfter.order
+                                                    + "], locks must be taken in order.");
+        }
+
+        private Lock findHeldAfter() {
+            final Set<Lock> held = HELD_LOCKS.get();
+            if (held == null) {
+                return null;
+            }
+            for (final Lock other : held) {
+                if (other != this && other.order.compareTo(order) > 0) {
+                    return other;
+                }
+            }
+            return null;
+        }
+
+        private void acquirePhysicalLock() {
+            synchronized (physicalLockMonitor) {
+                holders++;
+                releaseGeneration++;
+                if (physicalLock != null && physicalLock.isValid()) {
+                    return;
+                }
+            }
+            //waiting for the file lock must not hold the monitor, releases and other branches need it
+            physicalAcquireLock.lock();
+            try {
+                synchronized (physicalLockMonitor) {
+                    if (physicalLock != null && physicalLock.isValid()) {
+                        return;
+                    }
+                }
+                physicalLockOnFS();
+            } catch (RuntimeException | Error e) {
+                synchronized (physicalLockMonitor) {
+                    holders--;
+                }
+                throw e;
+            } finally {
+                physicalAcquireLock.unlock();
+            }
+        }
+
+        private void releasePhysicalLock() {
+            synchronized (physicalLockMonitor) {
+                holders--;
+                if (holders > 0 || physicalLock == null || !physicalLock.isValid()) {
+                    return;
+                }
+                if (releaseDelay <= 0) {
                     physicalUnLockOnFS();
+                    return;
                 }
-                lock.unlock();
+                final long generation = releaseGeneration;
+                RELEASE_EXECUTOR.schedule(() -> releaseIfIdle(generation),
+                                          releaseDelay,
+                                          TimeUnit.MILLISECONDS);
             }
         }
 
-        private boolean releasePhysicalLock() {
-            return physicalLock != null && physicalLock.isValid() && lock.isLocked() && lock.getHoldCount() == 1;
+        private void releaseIfIdle(final long generation) {
+            synchronized (physicalLockMonitor) {
+                //skip if someone took the lock in the meantime
+                if (holders == 0 && generation == releaseGeneration && physicalLock != null && physicalLock.isValid()) {
+                    physicalUnLockOnFS();
+                }
+            }
         }
 
         java.nio.file.Path createLockInfra(URI uri) {
@@ -541,18 +799,40 @@ public class JGitFileSystemImpl implements JGitFileSystem {
         }
 
         void physicalLockOnFS() {
+            FileChannel channel = null;
             try {
                 File file = lockFile.toFile();
                 RandomAccessFile raf = new RandomAccessFile(file,
                                                             "rw");
-                fileChannel = raf.getChannel();
-                physicalLock = fileChannel.lock();
+                channel = raf.getChannel();
+                final FileLock fileLock = channel.lock();
+                synchronized (physicalLockMonitor) {
+                    fileChannel = channel;
+                    physicalLock = fileLock;
+                }
             } catch (FileNotFoundException e) {
                 LOGGER.error("Error during lock of FS [" + toString() + "]",
                              e);
             } catch (java.io.IOException e) {
+                closeQuietly(channel);
                 LOGGER.error("Error during lock of FS [" + toString() + "]",
                              e);
+            } catch (RuntimeException | Error e) {
+                //e.g. OverlappingFileLockException, the channel would leak with its file
+                closeQuietly(channel);
+                throw e;
+            }
+        }
+
+        private void closeQuietly(final FileChannel channel) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (java.io.IOException e) {
+                LOGGER.warn("Error closing lock file of FS [" + toString() + "]",
+                            e);
             }
         }
 
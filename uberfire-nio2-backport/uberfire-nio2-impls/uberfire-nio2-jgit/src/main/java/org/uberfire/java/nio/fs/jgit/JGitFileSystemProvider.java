@@ -19,7 +19,6 @@ package org.uberfire.java.nio.fs.jgit;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FilterOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
@@ -33,6 +32,7 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,6 +45,7 @@ import java.util.TimeZone;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.UserInfo;
@@ -88,6 +89,8 @@ import org.uberfire.java.nio.EncodingUtil;
 import org.uberfire.java.nio.IOException;
 import org.uberfire.java.nio.base.AbstractPath;
 import org.uberfire.java.nio.base.BasicFileAttributesImpl;
+import org.uberfire.java.nio.base.BranchChanges;
+import org.uberfire.java.nio.base.BulkOperationsProvider;
 import org.uberfire.java.nio.base.ExtendedAttributeView;
 import org.uberfire.java.nio.base.FileDiff;
 import org.uberfire.java.nio.base.FileSystemState;
@@ -134,7 +137,9 @@ import org.uberfire.java.nio.fs.jgit.daemon.git.Daemon;
 import org.uberfire.java.nio.fs.jgit.daemon.ssh.BaseGitCommand;
 import org.uberfire.java.nio.fs.jgit.daemon.ssh.GitSSHService;
 import org.uberfire.java.nio.fs.jgit.manager.JGitFileSystemsManager;
+import org.uberfire.java.nio.fs.jgit.util.BlobByteChannel;
 import org.uberfire.java.nio.fs.jgit.util.Git;
+import org.uberfire.java.nio.fs.jgit.util.PathInfoCache;
 import org.uberfire.java.nio.fs.jgit.util.ProxyAuthenticator;
 import org.uberfire.java.nio.fs.jgit.util.commands.PathUtil;
 import org.uberfire.java.nio.fs.jgit.util.model.CommitContent;
@@ -173,6 +178,7 @@ import static org.uberfire.java.nio.fs.jgit.util.model.PathType.DIRECTORY;
 import static org.uberfire.java.nio.fs.jgit.util.model.PathType.NOT_FOUND;
 
 public class JGitFileSystemProvider implements SecuredFileSystemProvider,
+                                               BulkOperationsProvider,
                                                Disposable {
 
     private static final Logger LOG = LoggerFactory.getLogger(JGitFileSystemProvider.class);
@@ -335,6 +341,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
     private void loadConfig(final ConfigProperties systemConfig) {
 
         config.load(systemConfig);
+        PathInfoCache.configure(config.getPathInfoCacheSize());
 
         if (config.httpProxyIsDefined()) {
             setupProxyAuthentication();
@@ -428,6 +435,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                 fs.unlock();
                 final String userName = req.getUser().getName();
                 for (Map.Entry<String, RevCommit> oldTreeRef : oldTreeRefs.entrySet()) {
+                    fs.getGit().getCommitMetadataIndex().update(oldTreeRef.getKey());
                     final List<RevCommit> commits = fs.getGit().listCommits(oldTreeRef.getValue(),
                                                                             fs.getGit().getLastCommit(oldTreeRef.getKey()));
                     for (final RevCommit revCommit : commits) {
@@ -899,27 +907,174 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
             throw new NotDirectoryException(path.toString());
         }
 
+        return newBlobByteChannel(gPath,
+                                  blobId -> commit(gPath,
+                                                   buildCommitInfo("{" + toPathImpl(path).getPath() + "}",
+                                                                   Arrays.asList(options)),
+                                                   new DefaultCommitContent(Collections.emptyMap(),
+                                                                            Collections.singletonMap(gPath.getPath(),
+                                                                                                     blobId)))).asOutputStream();
+    }
+
+    @Override
+    public void writeAll(final Map<Path, InputStream> content,
+                         final OpenOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        checkNotNull("content",
+                     content);
+        if (content.isEmpty()) {
+            return;
+        }
+
+        final JGitPathImpl first = toPathImpl(content.keySet().iterator().next());
+        final Map<String, File> removed = new HashMap<>();
+        final Map<String, ObjectId> blobs = new HashMap<>();
+
+        for (final Map.Entry<Path, InputStream> entry : content.entrySet()) {
+            final JGitPathImpl gPath = toPathImpl(entry.getKey());
+            checkSameBranch(first,
+                            gPath);
+            if (entry.getValue() == null) {
+                removed.put(gPath.getPath(),
+                            null);
+                continue;
+            }
+
+            final PathInfo result = gPath.getFileSystem().getGit().getPathInfo(gPath.getRefTree(),
+                                                                               gPath.getPath());
+            if (result.getPathType().equals(PathType.DIRECTORY)) {
+                throw new NotDirectoryException(gPath.toString());
+            }
+
+            try (final OutputStream out = newBlobByteChannel(gPath,
+                                                             blobId -> blobs.put(gPath.getPath(),
+                                                                                 blobId)).asOutputStream()) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = entry.getValue().read(buffer)) != -1) {
+                    out.write(buffer,
+                              0,
+                              read);
+                }
+            } catch (java.io.IOException e) {
+                throw new IOException("Could not write content of " + gPath.toString(),
+                                      e);
+            }
+        }
+
+        try {
+            commit(first,
+                   buildCommitInfo("{" + first.getPath() + (content.size() > 1 ? " and " + (content.size() - 1) + " more" : "") + "}",
+                                   Arrays.asList(options)),
+                   new DefaultCommitContent(removed,
+                                            blobs));
+        } finally {
+            for (final Path path : content.keySet()) {
+                ((AbstractPath) path).clearCache();
+            }
+        }
+    }
+
+    @Override
+    public void deleteAll(final Collection<Path> paths,
+                          final DeleteOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        checkNotNull("paths",
+                     paths);
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        final JGitPathImpl first = toPathImpl(paths.iterator().next());
+        final Map<String, File> removed = new HashMap<>();
+        for (final Path path : paths) {
+            final JGitPathImpl gPath = toPathImpl(path);
+            checkSameBranch(first,
+                            gPath);
+            removed.put(gPath.getPath(),
+                        null);
+        }
+
         try {
-            final File file = File.createTempFile("gitz",
-                                                  "woot");
-            return new FilterOutputStream(new FileOutputStream(file)) {
-                @Override
-                public void close() throws java.io.IOException {
-                    super.close();
-
-                    commit(gPath,
-                           buildCommitInfo("{" + toPathImpl(path).getPath() + "}",
-                                           Arrays.asList(options)),
-                           new DefaultCommitContent(new HashMap<String, File>() {{
-                               put(gPath.getPath(),
-                                   file);
-                           }}));
+            commit(first,
+                   buildCommitInfo("delete {" + first.getPath() + (paths.size() > 1 ? " and " + (paths.size() - 1) + " more" : "") + "}",
+                                   Arrays.asList(options)),
+                   new DefaultCommitContent(removed));
+        } finally {
+            for (final Path path : paths) {
+                ((AbstractPath) path).clearCache();
+            }
+        }
+    }
+
+    @Override
+    public void moveAll(final Map<Path, Path> sourceToTarget,
+                        final CopyOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException {
+        checkNotNull("sourceToTarget",
+                     sourceToTarget);
+        if (sourceToTarget.isEmpty()) {
+            return;
+        }
+
+        final JGitPathImpl first = toPathImpl(sourceToTarget.keySet().iterator().next());
+        final Map<JGitPathImpl, JGitPathImpl> fromTo = new HashMap<>();
+        for (final Map.Entry<Path, Path> entry : sourceToTarget.entrySet()) {
+            final JGitPathImpl source = toPathImpl(entry.getKey());
+            final JGitPathImpl target = toPathImpl(entry.getValue());
+            checkSameBranch(first,
+                            source);
+            checkSameBranch(first,
+                            target);
+
+            final PathInfo targetResult = target.getFileSystem().getGit().getPathInfo(target.getRefTree(),
+                                                                                      target.getPath());
+            if (!isRoot(target) && targetResult.getPathType() != NOT_FOUND) {
+                if (!contains(options,
+                              StandardCopyOption.REPLACE_EXISTING)) {
+                    throw new FileAlreadyExistsException(target.toString());
                 }
-            };
-        } catch (java.io.IOException e) {
-            throw new IOException("Could not create file or output stream.",
-                                  e);
+            }
+
+            final PathInfo sourceResult = source.getFileSystem().getGit().getPathInfo(source.getRefTree(),
+                                                                                      source.getPath());
+            if (sourceResult.getPathType() == NOT_FOUND) {
+                throw new NoSuchFileException(source.toString());
+            }
+            if (sourceResult.getPathType() == DIRECTORY) {
+                fromTo.putAll(mapDirectoryContent(source,
+                                                  target,
+                                                  options));
+            } else {
+                fromTo.put(source,
+                           target);
+            }
         }
+
+        final Map<String, String> result = new HashMap<>(fromTo.size());
+        for (final Map.Entry<JGitPathImpl, JGitPathImpl> fromToEntry : fromTo.entrySet()) {
+            result.put(PathUtil.normalize(fromToEntry.getKey().getPath()),
+                       PathUtil.normalize(fromToEntry.getValue().getPath()));
+        }
+
+        commit(first,
+               buildCommitInfo("moving {" + first.getPath() + (sourceToTarget.size() > 1 ? " and " + (sourceToTarget.size() - 1) + " more" : "") + "}",
+                               Arrays.asList(options)),
+               new MoveCommitContent(result));
+    }
+
+    private void checkSameBranch(final JGitPathImpl first,
+                                 final JGitPathImpl other) {
+        if (!first.getFileSystem().equals(other.getFileSystem()) || !first.getRefTree().equals(other.getRefTree())) {
+            throw new IllegalArgumentException("All paths must belong to the same file system and branch: " + first.toString() + ", " + other.toString());
+        }
+    }
+
+    private BlobByteChannel newBlobByteChannel(final JGitPathImpl gPath,
+                                               final Consumer<ObjectId> onBlobInserted) {
+        return new BlobByteChannel(gPath.getFileSystem().getGit().getRepository(),
+                                   config.getWriteInMemoryThreshold(),
+                                   onBlobInserted);
     }
 
     private CommitInfo buildCommitInfo(final String defaultMessage,
@@ -1020,44 +1175,42 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                                                       final Set<? extends OpenOption> options,
                                                       final JGitPathImpl gPath,
                                                       final FileAttribute<?>[] attrs) throws java.io.IOException {
-        final File file = File.createTempFile("gitz",
-                                              "woot");
-
-        return new SeekableByteChannelFileBasedImpl(new RandomAccessFile(file,
-                                                                         "rw").getChannel()) {
-            @Override
-            public void close() throws java.io.IOException {
-                super.close();
-
-                File tempDot = null;
-                final boolean hasDotContent;
-                if (options != null && options.contains(new DotFileOption())) {
-                    deleteIfExists(dot(path),
-                                   extractCommentedOption(options));
-                    tempDot = File.createTempFile("meta",
-                                                  "dot");
-                    hasDotContent = buildDotFile(path,
-                                                 new FileOutputStream(tempDot),
-                                                 attrs);
-                } else {
-                    hasDotContent = false;
-                }
-
-                final File dotfile = tempDot;
-
-                commit(gPath,
-                       buildCommitInfo("{" + toPathImpl(path).getPath() + "}",
-                                       options),
-                       new DefaultCommitContent(new HashMap<String, File>() {{
-                           put(gPath.getPath(),
-                               file);
-                           if (hasDotContent) {
-                               put(toPathImpl(dot(gPath)).getPath(),
-                                   dotfile);
-                           }
-                       }}));
-            }
-        };
+        return newBlobByteChannel(gPath,
+                                  blobId -> {
+                                      try {
+                                          File tempDot = null;
+                                          final boolean hasDotContent;
+                                          if (options != null && options.contains(new DotFileOption())) {
+                                              tempDot = File.createTempFile("meta",
+                                                                            "dot");
+                                              hasDotContent = buildDotFile(path,
+                                                                           new FileOutputStream(tempDot),
+                                                                           attrs);
+                                          } else {
+                                              hasDotContent = false;
+                                          }
+
+                                          final File dotfile = tempDot;
+
+                                          commit(gPath,
+                                                 buildCommitInfo("{" + toPathImpl(path).getPath() + "}",
+                                                                 options),
+                                                 new DefaultCommitContent(new HashMap<String, File>() {{
+                                                     if (hasDotContent) {
+                                                         put(toPathImpl(dot(gPath)).getPath(),
+                                                             dotfile);
+                                                     } else if (options != null && options.contains(new DotFileOption())) {
+                                                         //stale dot file goes away in the same commit
+                                                         put(toPathImpl(dot(gPath)).getPath(),
+                                                             null);
+                                                     }
+                                                 }},
+                                                                          Collections.singletonMap(gPath.getPath(),
+                                                                                                   blobId)));
+                                      } catch (java.io.IOException e) {
+                                          throw new IOException(e);
+                                      }
+                                  });
     }
 
     private SeekableByteChannelFileBasedImpl openAByteChannel(Path path) throws FileNotFoundException {
@@ -1324,10 +1477,10 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
         }
 
         try {
-            path.getFileSystem().lock();
+            path.getFileSystem().lock(path.getRefTree());
             path.getFileSystem().getGit().deleteRef(branch);
         } finally {
-            path.getFileSystem().unlock();
+            path.getFileSystem().unlock(path.getRefTree());
         }
     }
 
@@ -1445,11 +1598,11 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                        final JGitPathImpl target) {
 
         try {
-            target.getFileSystem().lock();
+            target.getFileSystem().lock(target.getRefTree());
             source.getFileSystem().getGit().merge(source.getRefTree(),
                                                   target.getRefTree());
         } finally {
-            target.getFileSystem().unlock();
+            target.getFileSystem().unlock(target.getRefTree());
         }
     }
 
@@ -1457,11 +1610,11 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                             final JGitPathImpl target,
                             final String... commits) {
         try {
-            target.getFileSystem().lock();
+            target.getFileSystem().lock(target.getRefTree());
             source.getFileSystem().getGit().cherryPick(target,
                                                        commits);
         } finally {
-            target.getFileSystem().unlock();
+            target.getFileSystem().unlock(target.getRefTree());
         }
     }
 
@@ -1670,11 +1823,11 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
     private void createBranch(final JGitPathImpl source,
                               final JGitPathImpl target) {
         try {
-            target.getFileSystem().lock();
+            target.getFileSystem().lock(target.getRefTree());
             source.getFileSystem().getGit().createRef(source.getRefTree(),
                                                       target.getRefTree());
         } finally {
-            target.getFileSystem().unlock();
+            target.getFileSystem().unlock(target.getRefTree());
         }
     }
 
@@ -2038,6 +2191,9 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
             map.put("diff",
                     diffs);
             return map;
+        } else if (s[0].equals(BranchChanges.CHANGES_ATTR)) {
+            return readChanges(toPathImpl(path),
+                               s[1]);
         } else {
             final ExtendedAttributeView view = getFileAttributeView(toPathImpl(path),
                                                                     s[0],
@@ -2050,6 +2206,53 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
         }
     }
 
+    private Map<String, Object> readChanges(final JGitPathImpl path,
+                                            final String since) {
+        final Git git = path.getFileSystem().getGit();
+        final Map<String, Object> map = new HashMap<>();
+        final RevCommit head = git.getLastCommit(path.getRefTree());
+        map.put(BranchChanges.HEAD,
+                head == null ? null : head.getName());
+        if (head == null || since.isEmpty()) {
+            return map;
+        }
+
+        final List<ObjectId> sinceId = git.resolveObjectIds(since);
+        if (sinceId.isEmpty()) {
+            return map;
+        }
+        final RevCommit sinceCommit;
+        try {
+            sinceCommit = git.resolveRevCommit(sinceId.get(0));
+        } catch (java.io.IOException e) {
+            LOG.warn("Can't read commit " + since + " of " + path.getFileSystem().getName(),
+                     e);
+            return map;
+        }
+
+        final List<String> changed = new ArrayList<>();
+        final List<String> deleted = new ArrayList<>();
+        for (final DiffEntry diff : git.listDiffs(sinceCommit.getTree().getId(),
+                                                  head.getTree().getId())) {
+            switch (diff.getChangeType()) {
+                case DELETE:
+                    deleted.add(diff.getOldPath());
+                    break;
+                case RENAME:
+                    deleted.add(diff.getOldPath());
+                    changed.add(diff.getNewPath());
+                    break;
+                default:
+                    changed.add(diff.getNewPath());
+            }
+        }
+        map.put(BranchChanges.CHANGED,
+                changed);
+        map.put(BranchChanges.DELETED,
+                deleted);
+        return map;
+    }
+
     @Override
     public void setAttribute(final Path path,
                              final String attribute,
@@ -2113,9 +2316,9 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
     private void lockAndSquash(final Path path,
                                final SquashOption value) {
         final JGitFileSystem fileSystem = (JGitFileSystem) path.getFileSystem();
+        final JGitPathImpl gSource = toPathImpl(path);
         try {
-            fileSystem.lock();
-            final JGitPathImpl gSource = toPathImpl(path);
+            fileSystem.lock(gSource.getRefTree());
             String commitMessage = checkNotEmpty("commitMessage",
                                                  value.getMessage());
             String startCommit = checkNotEmpty("startCommit",
@@ -2124,7 +2327,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                                                     startCommit,
                                                     commitMessage);
         } finally {
-            fileSystem.unlock();
+            fileSystem.unlock(gSource.getRefTree());
         }
     }
 
@@ -2258,11 +2461,11 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                         final CommitContent commitContent) {
 
         final JGitFileSystem fileSystem = path.getFileSystem();
+        final String branchName = path.getRefTree();
         try {
-            fileSystem.lock();
+            fileSystem.lock(branchName);
 
             final Git git = fileSystem.getGit();
-            final String branchName = path.getRefTree();
             final boolean batchState = fileSystem.isOnBatch();
             final boolean amend = batchState && fileSystem.isHadCommitOnBatchState(path.getRoot());
             final ObjectId oldHead = path.getFileSystem().getGit().getTreeFromRef(branchName);
@@ -2286,8 +2489,10 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                 if (hasCommit) {
                     int value = fileSystem.incrementAndGetCommitCount();
                     if (value >= config.getCommitLimit()) {
-                        git.gc();
+                        fsManager.getGarbageCollectionScheduler().scheduleGC(fileSystem);
                         fileSystem.resetCommitCount();
+                    } else {
+                        fsManager.getGarbageCollectionScheduler().recordActivity(fileSystem.getName());
                     }
                 }
 
@@ -2295,6 +2500,8 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
 
                 postCommitHook(git.getRepository());
 
+                git.getCommitMetadataIndex().update(branchName);
+
                 notifyDiffs(path.getFileSystem(),
                             branchName,
                             commitInfo.getSessionId(),
@@ -2334,7 +2541,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
                                                     hasCommit);
             }
         } finally {
-            fileSystem.unlock();
+            fileSystem.unlock(branchName);
         }
     }
 
@@ -2349,6 +2556,7 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
 
             for (Map.Entry<String, NotificationModel> branchNameNotificationModelEntry : fileSystem.getOldHeadsOfPendingDiffs().entrySet()) {
                 final ObjectId newHead = fileSystem.getGit().getTreeFromRef(branchNameNotificationModelEntry.getKey());
+                fileSystem.getGit().getCommitMetadataIndex().update(branchNameNotificationModelEntry.getKey());
                 try {
                     notifyDiffs(fileSystem,
                                 branchNameNotificationModelEntry.getKey(),
@@ -2367,8 +2575,10 @@ public class JGitFileSystemProvider implements SecuredFileSystemProvider,
 
             int value = fileSystem.incrementAndGetCommitCount();
             if (value >= config.getCommitLimit()) {
-                fileSystem.getGit().gc();
+                fsManager.getGarbageCollectionScheduler().scheduleGC(fileSystem);
                 fileSystem.resetCommitCount();
+            } else {
+                fsManager.getGarbageCollectionScheduler().recordActivity(fileSystem.getName());
             }
         }
 
@@ -47,12 +47,18 @@ public class JGitFileSystemProviderConfiguration {
     public static final String GIT_SSH_ALGORITHM = "org.uberfire.nio.git.ssh.algorithm";
     public static final String GIT_SSH_PASSPHRASE = "org.uberfire.nio.git.ssh.passphrase";
     public static final String GIT_GC_LIMIT = "org.uberfire.nio.git.gc.limit";
+    public static final String GIT_GC_THREADS = "org.uberfire.nio.git.gc.threads";
+    public static final String GIT_GC_IDLE_DELAY = "org.uberfire.nio.git.gc.idle.delay";
+    public static final String GIT_GC_MAX_DELAY = "org.uberfire.nio.git.gc.max.delay";
+    public static final String GIT_WRITE_IN_MEMORY_THRESHOLD = "org.uberfire.nio.git.write.inmemory.threshold";
     public static final String HTTP_PROXY_USER = "http.proxyUser";
     public static final String HTTP_PROXY_PASSWORD = "http.proxyPassword";
     public static final String HTTPS_PROXY_USER = "https.proxyUser";
     public static final String HTTPS_PROXY_PASSWORD = "https.proxyPassword";
     public static final String USER_DIR = "user.dir";
     public static final String JGIT_CACHE_INSTANCES = "org.uberfire.nio.jgit.cache.instances";
+    public static final String JGIT_CACHE_MAX_WEIGHT = "org.uberfire.nio.jgit.cache.max.weight";
+    public static final String GIT_PATH_INFO_CACHE_SIZE = "org.uberfire.nio.git.cache.pathinfo.size";
 
     public static final String GIT_ENV_KEY_DEST_PATH = "out-dir";
     public static final String GIT_ENV_KEY_USER_NAME = "username";
@@ -73,11 +79,21 @@ public class JGitFileSystemProviderConfiguration {
     public static final String DEFAULT_SSH_ALGORITHM = "DSA";
     public static final String DEFAULT_SSH_CERT_PASSPHRASE = "";
     public static final String DEFAULT_COMMIT_LIMIT_TO_GC = "20";
+    public static final String DEFAULT_GC_THREADS = "1";
+    public static final String DEFAULT_GC_IDLE_DELAY = "5000";
+    public static final String DEFAULT_GC_MAX_DELAY = "60000";
+    public static final String DEFAULT_WRITE_IN_MEMORY_THRESHOLD = "1048576";
     public static final String DEFAULT_JGIT_FILE_SYSTEM_INSTANCES_CACHE = "20";
+    public static final String DEFAULT_JGIT_FILE_SYSTEM_MAX_WEIGHT = "2048";
+    public static final String DEFAULT_PATH_INFO_CACHE_SIZE = "5000";
     public static final String DEFAULT_GIT_ENV_KEY_MIGRATE_FROM = "migrate-from";
     public static final String DEFAULT_ENABLE_GIT_KETCH = "false";
 
     private int commitLimit;
+    private int gcMaxConcurrent;
+    private int gcIdleDelay;
+    private int gcMaxDelay;
+    private int writeInMemoryThreshold;
     private boolean daemonEnabled;
     private int daemonPort;
     private String daemonHostAddr;
@@ -102,6 +118,8 @@ public class JGitFileSystemProviderConfiguration {
     private String httpsProxyUser;
     private String httpsProxyPassword;
     private int jgitFileSystemsInstancesCache;
+    private long jgitFileSystemsMaxWeight;
+    private int pathInfoCacheSize;
 
     public void load(ConfigProperties systemConfig) {
         LOG.debug("Configuring from properties:");
@@ -141,6 +159,14 @@ public class JGitFileSystemProviderConfiguration {
                                                                                    DEFAULT_SSH_CERT_PASSPHRASE);
         final ConfigProperties.ConfigProperty commitLimitProp = systemConfig.get(GIT_GC_LIMIT,
                                                                                  DEFAULT_COMMIT_LIMIT_TO_GC);
+        final ConfigProperties.ConfigProperty gcThreadsProp = systemConfig.get(GIT_GC_THREADS,
+                                                                               DEFAULT_GC_THREADS);
+        final ConfigProperties.ConfigProperty gcIdleDelayProp = systemConfig.get(GIT_GC_IDLE_DELAY,
+                                                                                 DEFAULT_GC_IDLE_DELAY);
+        final ConfigProperties.ConfigProperty gcMaxDelayProp = systemConfig.get(GIT_GC_MAX_DELAY,
+                                                                                DEFAULT_GC_MAX_DELAY);
+        final ConfigProperties.ConfigProperty writeInMemoryThresholdProp = systemConfig.get(GIT_WRITE_IN_MEMORY_THRESHOLD,
+                                                                                            DEFAULT_WRITE_IN_MEMORY_THRESHOLD);
 
         final ConfigProperties.ConfigProperty httpProxyUserProp = systemConfig.get(HTTP_PROXY_USER,
                                                                                    null);
@@ -153,6 +179,10 @@ public class JGitFileSystemProviderConfiguration {
 
         final ConfigProperties.ConfigProperty jgitFileSystemsInstancesCacheProp = systemConfig.get(JGIT_CACHE_INSTANCES,
                                                                                                    DEFAULT_JGIT_FILE_SYSTEM_INSTANCES_CACHE);
+        final ConfigProperties.ConfigProperty jgitFileSystemsMaxWeightProp = systemConfig.get(JGIT_CACHE_MAX_WEIGHT,
+                                                                                              DEFAULT_JGIT_FILE_SYSTEM_MAX_WEIGHT);
+        final ConfigProperties.ConfigProperty pathInfoCacheSizeProp = systemConfig.get(GIT_PATH_INFO_CACHE_SIZE,
+                                                                                       DEFAULT_PATH_INFO_CACHE_SIZE);
 
         httpProxyUser = httpProxyUserProp.getValue();
         httpProxyPassword = httpProxyPasswordProp.getValue();
@@ -177,6 +207,16 @@ public class JGitFileSystemProviderConfiguration {
         gitReposParentDir = new File(bareReposDirProp.getValue(),
                                      reposDirNameProp.getValue());
         commitLimit = commitLimitProp.getIntValue();
+        gcMaxConcurrent = gcThreadsProp.getIntValue();
+        if (gcMaxConcurrent < 1) {
+            gcMaxConcurrent = Integer.valueOf(DEFAULT_GC_THREADS);
+        }
+        gcIdleDelay = gcIdleDelayProp.getIntValue();
+        gcMaxDelay = gcMaxDelayProp.getIntValue();
+        writeInMemoryThreshold = writeInMemoryThresholdProp.getIntValue();
+        if (writeInMemoryThreshold < 0) {
+            writeInMemoryThreshold = Integer.valueOf(DEFAULT_WRITE_IN_MEMORY_THRESHOLD);
+        }
 
         jgitFileSystemsInstancesCache = jgitFileSystemsInstancesCacheProp.getIntValue();
 
@@ -184,6 +224,13 @@ public class JGitFileSystemProviderConfiguration {
             jgitFileSystemsInstancesCache = Integer.valueOf(DEFAULT_JGIT_FILE_SYSTEM_INSTANCES_CACHE);
         }
 
+        jgitFileSystemsMaxWeight = jgitFileSystemsMaxWeightProp.getIntValue();
+
+        pathInfoCacheSize = pathInfoCacheSizeProp.getIntValue();
+        if (pathInfoCacheSize < 0) {
+            pathInfoCacheSize = Integer.valueOf(DEFAULT_PATH_INFO_CACHE_SIZE);
+        }
+
         daemonEnabled = enabledProp.getBooleanValue();
         if (daemonEnabled) {
             daemonPort = portProp.getIntValue();
@@ -221,6 +268,22 @@ public class JGitFileSystemProviderConfiguration {
         return commitLimit;
     }
 
+    public int getGcMaxConcurrent() {
+        return gcMaxConcurrent;
+    }
+
+    public int getGcIdleDelay() {
+        return gcIdleDelay;
+    }
+
+    public int getGcMaxDelay() {
+        return gcMaxDelay;
+    }
+
+    public int getWriteInMemoryThreshold() {
+        return writeInMemoryThreshold;
+    }
+
     public boolean isDaemonEnabled() {
         return daemonEnabled;
     }
@@ -300,4 +363,18 @@ public class JGitFileSystemProviderConfiguration {
     public int getJgitFileSystemsInstancesCache() {
         return jgitFileSystemsInstancesCache;
     }
+
+    /**
+     * Max total weight of the cached file system instances, zero or less means no weight bound.
+     */
+    public long getJgitFileSystemsMaxWeight() {
+        return jgitFileSystemsMaxWeight;
+    }
+
+    /**
+     * Max entries of the path info cache shared by all repositories, zero disables it.
+     */
+    public int getPathInfoCacheSize() {
+        return pathInfoCacheSize;
+    }
 }
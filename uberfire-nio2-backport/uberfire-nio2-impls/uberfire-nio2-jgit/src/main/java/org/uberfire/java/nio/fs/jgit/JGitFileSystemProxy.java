@@ -152,6 +152,16 @@ public class JGitFileSystemProxy implements JGitFileSystem {
         cachedSupplier.get().unlock();
     }
 
+    @Override
+    public void lock(String branchName) {
+        cachedSupplier.get().lock(branchName);
+    }
+
+    @Override
+    public void unlock(String branchName) {
+        cachedSupplier.get().unlock(branchName);
+    }
+
     @Override
     public void addOldHeadsOfPendingDiffs(String branchName,
                                           NotificationModel notificationModel) {
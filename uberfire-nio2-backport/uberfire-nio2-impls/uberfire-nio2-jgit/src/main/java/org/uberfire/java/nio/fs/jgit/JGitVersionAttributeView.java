@@ -32,6 +32,7 @@ import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.attribute.BasicFileAttributeView;
 import org.uberfire.java.nio.file.attribute.FileTime;
+import org.uberfire.java.nio.fs.jgit.util.model.CommitMetadata;
 import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
 import org.uberfire.java.nio.fs.jgit.util.model.PathType;
 
@@ -71,63 +72,22 @@ public class JGitVersionAttributeView extends VersionAttributeView<JGitPathImpl>
             throw new NoSuchFileException(path);
         }
 
-        final Ref refId = fs.getGit().getRef(branchName);
-        final List<VersionRecord> records = new ArrayList<>();
-
-        if (refId != null) {
-            try {
-                for (final RevCommit commit : fs.getGit().listCommits(refId,
-                                                                      pathInfo.getPath())) {
-                    records.add(new VersionRecord() {
-                        @Override
-                        public String id() {
-                            return commit.name();
-                        }
-
-                        @Override
-                        public String author() {
-                            return commit.getAuthorIdent().getName();
-                        }
-
-                        @Override
-                        public String email() {
-                            return commit.getAuthorIdent().getEmailAddress();
-                        }
-
-                        @Override
-                        public String comment() {
-                            return commit.getFullMessage();
-                        }
-
-                        @Override
-                        public Date date() {
-                            return commit.getAuthorIdent().getWhen();
-                        }
-
-                        @Override
-                        public String uri() {
-                            return fs.getPath(commit.name(),
-                                              path).toUri().toString();
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
-        }
-
-        Collections.reverse(records);
+        final JGitVersionHistory history = new JGitVersionHistory(fs,
+                                                                  branchName,
+                                                                  path,
+                                                                  pathInfo.getPath());
 
         return new VersionAttributes() {
             @Override
             public VersionHistory history() {
-                return () -> records;
+                return history;
             }
 
             @Override
             public FileTime lastModifiedTime() {
-                if (records.size() > 0) {
-                    return new FileTimeImpl(records.get(records.size() - 1).date().getTime());
+                final VersionRecord record = history.lastRecord();
+                if (record != null) {
+                    return new FileTimeImpl(record.date().getTime());
                 }
                 return null;
             }
@@ -139,8 +99,9 @@ public class JGitVersionAttributeView extends VersionAttributeView<JGitPathImpl>
 
             @Override
             public FileTime creationTime() {
-                if (records.size() > 0) {
-                    return new FileTimeImpl(records.get(0).date().getTime());
+                final VersionRecord record = history.firstRecord();
+                if (record != null) {
+                    return new FileTimeImpl(record.date().getTime());
                 }
                 return null;
             }
@@ -176,4 +137,139 @@ public class JGitVersionAttributeView extends VersionAttributeView<JGitPathImpl>
             }
         };
     }
+
+    /**
+     * History that is only walked when requested: the latest record comes from the repository
+     * last commit index, pages are read with a bounded log and the whole history is loaded at most
+     * once, when {@link #records()} is called.
+     */
+    private static class JGitVersionHistory implements VersionHistory {
+
+        private final JGitFileSystem fs;
+        private final String branchName;
+        private final String path;
+        private final String gitPath;
+        private volatile List<VersionRecord> records = null;
+
+        private JGitVersionHistory(final JGitFileSystem fs,
+                                   final String branchName,
+                                   final String path,
+                                   final String gitPath) {
+            this.fs = fs;
+            this.branchName = branchName;
+            this.path = path;
+            this.gitPath = gitPath;
+        }
+
+        @Override
+        public List<VersionRecord> records() {
+            if (records == null) {
+                synchronized (this) {
+                    if (records == null) {
+                        final List<VersionRecord> result = new ArrayList<>();
+                        for (final RevCommit commit : listCommits(0,
+                                                                  -1)) {
+                            result.add(toRecord(commit));
+                        }
+                        Collections.reverse(result);
+                        records = result;
+                    }
+                }
+            }
+            return records;
+        }
+
+        @Override
+        public List<VersionRecord> recentRecords(final int offset,
+                                                 final int pageSize) {
+            if (records != null) {
+                return VersionHistory.super.recentRecords(offset,
+                                                          pageSize);
+            }
+            final List<VersionRecord> result = new ArrayList<>();
+            for (final RevCommit commit : listCommits(offset,
+                                                      pageSize)) {
+                result.add(toRecord(commit));
+            }
+            return result;
+        }
+
+        @Override
+        public VersionRecord lastRecord() {
+            if (records != null) {
+                return VersionHistory.super.lastRecord();
+            }
+            final RevCommit commit = fs.getGit().getLastCommit(branchName,
+                                                               gitPath);
+            return commit == null ? null : toRecord(commit);
+        }
+
+        @Override
+        public VersionRecord firstRecord() {
+            if (records != null) {
+                return VersionHistory.super.firstRecord();
+            }
+            final CommitMetadata firstCommit = fs.getGit().getCommitMetadataIndex().getFirstCommit(branchName,
+                                                                                                   gitPath);
+            if (firstCommit == null) {
+                return VersionHistory.super.firstRecord();
+            }
+            try {
+                return toRecord(fs.getGit().resolveRevCommit(firstCommit.getCommitId()));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private List<RevCommit> listCommits(final int skip,
+                                            final int maxCount) {
+            final Ref refId = fs.getGit().getRef(branchName);
+            if (refId == null) {
+                return Collections.emptyList();
+            }
+            try {
+                return fs.getGit().listCommits(refId,
+                                               gitPath,
+                                               skip,
+                                               maxCount);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private VersionRecord toRecord(final RevCommit commit) {
+            return new VersionRecord() {
+                @Override
+                public String id() {
+                    return commit.name();
+                }
+
+                @Override
+                public String author() {
+                    return commit.getAuthorIdent().getName();
+                }
+
+                @Override
+                public String email() {
+                    return commit.getAuthorIdent().getEmailAddress();
+                }
+
+                @Override
+                public String comment() {
+                    return commit.getFullMessage();
+                }
+
+                @Override
+                public Date date() {
+                    return commit.getAuthorIdent().getWhen();
+                }
+
+                @Override
+                public String uri() {
+                    return fs.getPath(commit.name(),
+                                      path).toUri().toString();
+                }
+            };
+        }
+    }
 }
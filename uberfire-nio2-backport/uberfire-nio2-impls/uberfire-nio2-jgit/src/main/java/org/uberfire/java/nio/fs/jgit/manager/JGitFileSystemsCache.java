@@ -16,35 +16,80 @@
 
 package org.uberfire.java.nio.fs.jgit.manager;
 
+import java.io.File;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
+import org.eclipse.jgit.lib.Repository;
 import org.kie.soup.commons.validation.PortablePreconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.java.nio.fs.jgit.JGitFileSystem;
 import org.uberfire.java.nio.fs.jgit.JGitFileSystemProviderConfiguration;
 import org.uberfire.java.nio.fs.jgit.JGitFileSystemProxy;
+import org.uberfire.java.nio.fs.jgit.util.PathInfoCache;
 
+/**
+ * Keeps a bounded amount of real file system instances, all the others are recreated from their
+ * suppliers on demand.
+ * <p>
+ * Lookups never lock: instances live in concurrent maps and each file system gets a single proxy,
+ * that always resolves to the current instance. The bound is both on the number of instances and
+ * on their weight (pack files and pack size of the repository). Evicted instances get their
+ * repository closed in background, after a grace period for operations still running on them;
+ * an evicted instance requested again within that period is put back in the cache instead of
+ * opening the repository a second time.
+ */
 public class JGitFileSystemsCache {
 
+    private static final Logger LOG = LoggerFactory.getLogger(JGitFileSystemsCache.class);
+
+    static final long BYTES_PER_WEIGHT_UNIT = 1024 * 1024;
+    static final long EVICTED_CLOSE_DELAY = 30000;
+
     //supplier for fs
     final Map<String, Supplier<JGitFileSystem>> fileSystemsSuppliers = new ConcurrentHashMap<>();
 
     //limited ammount of real instances of FS
-    final Map<String, Supplier<JGitFileSystem>> memoizedSuppliers;
+    final Map<String, CachedFileSystem> memoizedSuppliers = new ConcurrentHashMap<>();
+
+    final Map<String, JGitFileSystemProxy> proxies = new ConcurrentHashMap<>();
+
+    //evicted instances waiting to be closed, reused if their file system is requested again
+    final Map<String, CachedFileSystem> evictedFileSystems = new ConcurrentHashMap<>();
+
+    final JGitGarbageCollectionScheduler gcScheduler;
+
+    private final int maxInstances;
+    private final long maxWeight;
+    private final Object evictionLock = new Object();
+    private final AtomicLong accessClock = new AtomicLong(0);
+    private final AtomicLong totalWeight = new AtomicLong(0);
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong totalLoadTime = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    //guarded by evictionLock, created on demand so the cache can be used again after clear
+    private ScheduledExecutorService closeExecutor;
 
     public JGitFileSystemsCache(JGitFileSystemProviderConfiguration config) {
-        memoizedSuppliers = (Map) Collections.synchronizedMap(new LinkedHashMap<String, Supplier<JGitFileSystem>>(config.getJgitFileSystemsInstancesCache() + 1,
-                                                                                                                  0.75f,
-                                                                                                                  true) {
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > config.getJgitFileSystemsInstancesCache();
-            }
-        });
+        this(config,
+             new JGitGarbageCollectionScheduler(config));
+    }
+
+    public JGitFileSystemsCache(JGitFileSystemProviderConfiguration config,
+                                JGitGarbageCollectionScheduler gcScheduler) {
+        this.gcScheduler = gcScheduler;
+        this.maxInstances = config.getJgitFileSystemsInstancesCache();
+        this.maxWeight = config.getJgitFileSystemsMaxWeight();
     }
 
     public void addSupplier(String fsKey,
@@ -63,35 +108,195 @@ public class JGitFileSystemsCache {
 
     Supplier<JGitFileSystem> createMemoizedSupplier(String fsKey,
                                                     Supplier<JGitFileSystem> createFSSupplier) {
-        Supplier<JGitFileSystem> memoizedFSSupplier = MemoizedFileSystemsSupplier.of(createFSSupplier);
-        memoizedSuppliers.putIfAbsent(fsKey,
-                                      memoizedFSSupplier);
-        return memoizedFSSupplier;
+        //a second instance of the same repository would compete with the evicted one for its locks
+        final CachedFileSystem reused = reuseEvicted(fsKey);
+        if (reused != null) {
+            evictIfNeeded(reused);
+            return reused;
+        }
+        final CachedFileSystem created = new CachedFileSystem(fsKey,
+                                                              createFSSupplier);
+        final CachedFileSystem existing = memoizedSuppliers.putIfAbsent(fsKey,
+                                                                        created);
+        if (existing != null) {
+            return existing;
+        }
+        evictIfNeeded(created);
+        return created;
+    }
+
+    private CachedFileSystem reuseEvicted(final String fsKey) {
+        synchronized (evictionLock) {
+            final CachedFileSystem evicted = evictedFileSystems.remove(fsKey);
+            if (evicted == null) {
+                return null;
+            }
+            evicted.cancelClose();
+            final CachedFileSystem existing = memoizedSuppliers.putIfAbsent(fsKey,
+                                                                            evicted);
+            if (existing != null) {
+                closeLater(evicted);
+                return existing;
+            }
+            evicted.lastAccess = accessClock.incrementAndGet();
+            totalWeight.addAndGet(evicted.weight);
+            return evicted;
+        }
     }
 
     public void remove(String fsName) {
         fileSystemsSuppliers.remove(fsName);
-        memoizedSuppliers.remove(fsName);
+        synchronized (evictionLock) {
+            final CachedFileSystem removed = memoizedSuppliers.remove(fsName);
+            if (removed != null) {
+                totalWeight.addAndGet(-removed.weight);
+            }
+            final CachedFileSystem evicted = evictedFileSystems.remove(fsName);
+            if (evicted != null) {
+                evicted.cancelClose();
+                close(evicted);
+            }
+        }
+        proxies.remove(fsName);
+        gcScheduler.remove(fsName);
     }
 
     public JGitFileSystem get(String fsName) {
+        if (!fileSystemsSuppliers.containsKey(fsName)) {
+            return null;
+        }
+        return proxies.computeIfAbsent(fsName,
+                                       k -> new JGitFileSystemProxy(k,
+                                                                    () -> getRealFileSystem(k)));
+    }
 
-        Supplier<JGitFileSystem> memoizedSupplier = memoizedSuppliers.get(fsName);
-        if (memoizedSupplier != null) {
-            return new JGitFileSystemProxy(fsName,
-                                           memoizedSupplier);
-        } else if (fileSystemsSuppliers.get(fsName) != null) {
-            Supplier<JGitFileSystem> newMemoizedSupplier = createMemoizedSupplier(fsName,
-                                                                                  fileSystemsSuppliers.get(fsName));
-            return new JGitFileSystemProxy(fsName,
-                                           newMemoizedSupplier);
+    JGitFileSystem getRealFileSystem(String fsName) {
+        CachedFileSystem cached = memoizedSuppliers.get(fsName);
+        if (cached == null) {
+            final Supplier<JGitFileSystem> supplier = fileSystemsSuppliers.get(fsName);
+            if (supplier == null) {
+                throw new IllegalStateException("File system [" + fsName + "] is no longer available.");
+            }
+            cached = (CachedFileSystem) createMemoizedSupplier(fsName,
+                                                               supplier);
+        }
+        return cached.get();
+    }
+
+    private void evictIfNeeded(final CachedFileSystem keep) {
+        if (!isOverBound()) {
+            return;
+        }
+        synchronized (evictionLock) {
+            while (isOverBound()) {
+                CachedFileSystem eldest = null;
+                for (final CachedFileSystem candidate : memoizedSuppliers.values()) {
+                    if (candidate == keep || candidate.isOnBatch()) {
+                        continue;
+                    }
+                    if (eldest == null || candidate.lastAccess < eldest.lastAccess) {
+                        eldest = candidate;
+                    }
+                }
+                if (eldest == null || !memoizedSuppliers.remove(eldest.fsName,
+                                                               eldest)) {
+                    return;
+                }
+                evictions.incrementAndGet();
+                totalWeight.addAndGet(-eldest.weight);
+                closeLater(eldest);
+            }
+        }
+    }
+
+    private boolean isOverBound() {
+        return memoizedSuppliers.size() > maxInstances || (maxWeight > 0 && totalWeight.get() > maxWeight && memoizedSuppliers.size() > 1);
+    }
+
+    //callers hold evictionLock
+    private void closeLater(final CachedFileSystem evicted) {
+        if (evicted.instance == null) {
+            return;
+        }
+        final CachedFileSystem previous = evictedFileSystems.put(evicted.fsName,
+                                                                 evicted);
+        if (previous != null && previous != evicted) {
+            previous.cancelClose();
+            close(previous);
+        }
+        evicted.closeTask = closeExecutor().schedule(() -> {
+                                                         if (evictedFileSystems.remove(evicted.fsName,
+                                                                                       evicted)) {
+                                                             close(evicted);
+                                                         }
+                                                     },
+                                                     EVICTED_CLOSE_DELAY,
+                                                     TimeUnit.MILLISECONDS);
+    }
+
+    private void close(final CachedFileSystem evicted) {
+        final JGitFileSystem fs = evicted.instance;
+        try {
+            final Repository repository = fs.getGit() == null ? null : fs.getGit().getRepository();
+            if (repository != null) {
+                repository.close();
+            }
+        } catch (final Exception ex) {
+            LOG.warn("Error closing repository of evicted file system [" + evicted.fsName + "]",
+                     ex);
+        }
+    }
+
+    private ScheduledExecutorService closeExecutor() {
+        if (closeExecutor == null) {
+            closeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r,
+                                                 "jgit-fs-cache-close");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return closeExecutor;
+    }
+
+    static long weigh(final JGitFileSystem fs) {
+        try {
+            final Repository repository = fs.getGit() == null ? null : fs.getGit().getRepository();
+            if (repository == null || repository.getDirectory() == null) {
+                return 1;
+            }
+            final File[] packs = new File(repository.getDirectory(),
+                                          "objects/pack").listFiles((dir, name) -> name.endsWith(".pack"));
+            if (packs == null) {
+                return 1;
+            }
+            long packBytes = 0;
+            for (final File pack : packs) {
+                packBytes += pack.length();
+            }
+            return 1 + packs.length + packBytes / BYTES_PER_WEIGHT_UNIT;
+        } catch (final Exception ex) {
+            return 1;
         }
-        return null;
     }
 
     public void clear() {
-        memoizedSuppliers.clear();
+        synchronized (evictionLock) {
+            memoizedSuppliers.clear();
+            totalWeight.set(0);
+            for (final CachedFileSystem evicted : evictedFileSystems.values()) {
+                evicted.cancelClose();
+                close(evicted);
+            }
+            evictedFileSystems.clear();
+            if (closeExecutor != null) {
+                closeExecutor.shutdownNow();
+                closeExecutor = null;
+            }
+        }
         fileSystemsSuppliers.clear();
+        proxies.clear();
+        gcScheduler.shutdown();
     }
 
     public boolean containsKey(String fsName) {
@@ -102,10 +307,79 @@ public class JGitFileSystemsCache {
         return fileSystemsSuppliers.keySet();
     }
 
+    public JGitGarbageCollectionScheduler getGarbageCollectionScheduler() {
+        return gcScheduler;
+    }
+
     public JGitFileSystemsCacheInfo getCacheInfo() {
         return new JGitFileSystemsCacheInfo();
     }
 
+    class CachedFileSystem implements Supplier<JGitFileSystem> {
+
+        private final String fsName;
+        private final Supplier<JGitFileSystem> memoized;
+        private volatile JGitFileSystem instance;
+        private volatile long lastAccess;
+        private volatile long weight;
+        private volatile ScheduledFuture<?> closeTask;
+
+        CachedFileSystem(final String fsName,
+                         final Supplier<JGitFileSystem> createFSSupplier) {
+            this.fsName = fsName;
+            this.lastAccess = accessClock.incrementAndGet();
+            this.memoized = MemoizedFileSystemsSupplier.of(() -> load(createFSSupplier));
+        }
+
+        private JGitFileSystem load(final Supplier<JGitFileSystem> createFSSupplier) {
+            misses.incrementAndGet();
+            final long start = System.currentTimeMillis();
+            final JGitFileSystem fs = createFSSupplier.get();
+            totalLoadTime.addAndGet(System.currentTimeMillis() - start);
+            final long fsWeight = weigh(fs);
+            synchronized (evictionLock) {
+                instance = fs;
+                weight = fsWeight;
+                if (memoizedSuppliers.get(fsName) == this) {
+                    totalWeight.addAndGet(fsWeight);
+                } else {
+                    //evicted while loading
+                    closeLater(this);
+                }
+            }
+            return fs;
+        }
+
+        @Override
+        public JGitFileSystem get() {
+            lastAccess = accessClock.incrementAndGet();
+            final JGitFileSystem fs = instance;
+            if (fs != null) {
+                hits.incrementAndGet();
+                return fs;
+            }
+            final JGitFileSystem loaded = memoized.get();
+            evictIfNeeded(this);
+            return loaded;
+        }
+
+        private void cancelClose() {
+            final ScheduledFuture<?> task = closeTask;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+
+        private boolean isOnBatch() {
+            final JGitFileSystem fs = instance;
+            try {
+                return fs != null && fs.isOnBatch();
+            } catch (final Exception ex) {
+                return false;
+            }
+        }
+    }
+
     public class JGitFileSystemsCacheInfo {
 
         public int fileSystemsCacheSize() {
@@ -116,9 +390,62 @@ public class JGitFileSystemsCache {
             return memoizedSuppliers.keySet();
         }
 
+        public long fileSystemsCacheWeight() {
+            return totalWeight.get();
+        }
+
+        public long fileSystemsCacheHits() {
+            return hits.get();
+        }
+
+        public long fileSystemsCacheMisses() {
+            return misses.get();
+        }
+
+        public double fileSystemsCacheHitRate() {
+            final long requests = hits.get() + misses.get();
+            return requests == 0 ? 1.0 : (double) hits.get() / requests;
+        }
+
+        public long fileSystemsCacheAverageLoadTime() {
+            final long loads = misses.get();
+            return loads == 0 ? 0 : totalLoadTime.get() / loads;
+        }
+
+        public long fileSystemsCacheEvictions() {
+            return evictions.get();
+        }
+
+        public int gcQueueDepth(String fsName) {
+            return gcScheduler.getQueueDepth(fsName);
+        }
+
+        public long lastGCDuration(String fsName) {
+            return gcScheduler.getLastGCDuration(fsName);
+        }
+
+        public int pathInfoCacheSize() {
+            return PathInfoCache.getInstance().size();
+        }
+
+        public long pathInfoCacheHits() {
+            return PathInfoCache.getInstance().getHitCount();
+        }
+
+        public long pathInfoCacheMisses() {
+            return PathInfoCache.getInstance().getMissCount();
+        }
+
+        public long pathInfoCacheEvictions() {
+            return PathInfoCache.getInstance().getEvictionCount();
+        }
+
         @Override
         public String toString() {
-            return "JGitFileSystemsCacheInfo{fileSystemsCacheSize[" + fileSystemsCacheSize() + "], fileSystemsCacheKeys[" + fileSystemsCacheKeys() + "]}";
+            return "JGitFileSystemsCacheInfo{fileSystemsCacheSize[" + fileSystemsCacheSize() + "], fileSystemsCacheKeys[" + fileSystemsCacheKeys() + "], " +
+                    "fileSystemsCache[weight=" + fileSystemsCacheWeight() + ", hits=" + fileSystemsCacheHits() + ", misses=" + fileSystemsCacheMisses() +
+                    ", evictions=" + fileSystemsCacheEvictions() + ", avgLoadTime=" + fileSystemsCacheAverageLoadTime() + "ms], " +
+                    "pathInfoCache[size=" + pathInfoCacheSize() + ", hits=" + pathInfoCacheHits() + ", misses=" + pathInfoCacheMisses() + ", evictions=" + pathInfoCacheEvictions() + "]}";
         }
     }
 }
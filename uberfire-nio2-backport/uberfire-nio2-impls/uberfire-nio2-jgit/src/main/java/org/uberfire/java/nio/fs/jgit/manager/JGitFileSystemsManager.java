@@ -168,6 +168,10 @@ public class JGitFileSystemsManager {
                 .map(fsName -> get(fsName)).collect(Collectors.toSet());
     }
 
+    public JGitGarbageCollectionScheduler getGarbageCollectionScheduler() {
+        return fsCache.getGarbageCollectionScheduler();
+    }
+
     public JGitFileSystemsCache getFsCache() {
         return fsCache;
     }
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.manager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystem;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystemProviderConfiguration;
+
+/**
+ * Runs git garbage collection in background, outside of the file system lock.
+ * Requests for the same file system are coalesced into a single run, runs are delayed until the
+ * repository is idle (bounded by a max delay) and the number of concurrent collections across all
+ * repositories is capped by the size of the gc thread pool.
+ */
+public class JGitGarbageCollectionScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JGitGarbageCollectionScheduler.class);
+
+    private final Map<String, GCState> states = new ConcurrentHashMap<>();
+    private final long idleDelay;
+    private final long maxDelay;
+    private final int maxConcurrent;
+    //created on demand so the scheduler can be used again after a shutdown of the provider
+    private ScheduledExecutorService idleTimer;
+    private ExecutorService gcExecutor;
+
+    public JGitGarbageCollectionScheduler(final JGitFileSystemProviderConfiguration config) {
+        this.idleDelay = Math.max(0,
+                                  config.getGcIdleDelay());
+        this.maxDelay = Math.max(idleDelay,
+                                 config.getGcMaxDelay());
+        this.maxConcurrent = Math.max(1,
+                                      config.getGcMaxConcurrent());
+    }
+
+    /**
+     * Requests a garbage collection for the given file system, if there is already one pending the
+     * request is merged into it.
+     */
+    public void scheduleGC(final JGitFileSystem fs) {
+        final GCState state = states.computeIfAbsent(fs.getName(),
+                                                     k -> new GCState());
+        final long now = System.currentTimeMillis();
+        state.requests.incrementAndGet();
+        state.lastActivity.set(now);
+        if (state.pending.compareAndSet(false,
+                                        true)) {
+            state.firstRequest.set(now);
+            state.scheduled = startedIdleTimer().schedule(() -> runWhenIdle(fs,
+                                                                            state),
+                                                          idleDelay,
+                                                          TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Marks the file system as busy, postponing any pending collection until it gets idle again.
+     */
+    public void recordActivity(final String fsName) {
+        final GCState state = states.get(fsName);
+        if (state != null) {
+            state.lastActivity.set(System.currentTimeMillis());
+        }
+    }
+
+    private void runWhenIdle(final JGitFileSystem fs,
+                             final GCState state) {
+        final long now = System.currentTimeMillis();
+        final long idleFor = now - state.lastActivity.get();
+        final long waitingFor = now - state.firstRequest.get();
+        try {
+            if (idleFor < idleDelay && waitingFor < maxDelay) {
+                state.scheduled = currentIdleTimer().schedule(() -> runWhenIdle(fs,
+                                                                                state),
+                                                              Math.min(idleDelay - idleFor,
+                                                                       maxDelay - waitingFor),
+                                                              TimeUnit.MILLISECONDS);
+                return;
+            }
+            currentGCExecutor().execute(() -> collect(fs,
+                                                      state));
+        } catch (final RejectedExecutionException ex) {
+            //shut down in the meantime
+            state.pending.set(false);
+        }
+    }
+
+    private void collect(final JGitFileSystem fs,
+                         final GCState state) {
+        state.pending.set(false);
+        state.requests.set(0);
+        if (!fs.isOpen()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            fs.getGit().gc();
+        } catch (final Exception ex) {
+            LOG.error("Garbage collection failed for repository [" + fs.getName() + "]",
+                      ex);
+        } finally {
+            state.lastDuration.set(System.currentTimeMillis() - start);
+            state.lastRun.set(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Cancels all pending collections, a collection that is already running is not interrupted.
+     */
+    public void cancelPending() {
+        for (final GCState state : states.values()) {
+            final ScheduledFuture<?> scheduled = state.scheduled;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+        states.clear();
+    }
+
+    /**
+     * Cancels all pending collections and stops the scheduler threads, a collection that is
+     * already running is allowed to finish. A later request starts them again.
+     */
+    public synchronized void shutdown() {
+        cancelPending();
+        if (idleTimer != null) {
+            idleTimer.shutdownNow();
+            idleTimer = null;
+        }
+        if (gcExecutor != null) {
+            gcExecutor.shutdown();
+            gcExecutor = null;
+        }
+    }
+
+    private synchronized ScheduledExecutorService startedIdleTimer() {
+        if (idleTimer == null) {
+            idleTimer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("jgit-gc-scheduler"));
+            gcExecutor = Executors.newFixedThreadPool(maxConcurrent,
+                                                      daemonThreadFactory("jgit-gc"));
+        }
+        return idleTimer;
+    }
+
+    private synchronized ScheduledExecutorService currentIdleTimer() {
+        if (idleTimer == null) {
+            throw new RejectedExecutionException("gc scheduler is shut down");
+        }
+        return idleTimer;
+    }
+
+    private synchronized ExecutorService currentGCExecutor() {
+        if (gcExecutor == null) {
+            throw new RejectedExecutionException("gc scheduler is shut down");
+        }
+        return gcExecutor;
+    }
+
+    public void remove(final String fsName) {
+        final GCState state = states.remove(fsName);
+        if (state != null && state.scheduled != null) {
+            state.scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * Number of gc requests waiting to be served for the given file system.
+     */
+    public int getQueueDepth(final String fsName) {
+        final GCState state = states.get(fsName);
+        return state == null ? 0 : state.requests.get();
+    }
+
+    /**
+     * Duration in milliseconds of the last gc run for the given file system or -1 if none ran yet.
+     */
+    public long getLastGCDuration(final String fsName) {
+        final GCState state = states.get(fsName);
+        return state == null ? -1 : state.lastDuration.get();
+    }
+
+    /**
+     * Timestamp of the last gc run for the given file system or -1 if none ran yet.
+     */
+    public long getLastGCTime(final String fsName) {
+        final GCState state = states.get(fsName);
+        return state == null ? -1 : state.lastRun.get();
+    }
+
+    private static ThreadFactory daemonThreadFactory(final String name) {
+        final AtomicInteger counter = new AtomicInteger(0);
+        return r -> {
+            final Thread thread = new Thread(r,
+                                             name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class GCState {
+
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+        private final AtomicInteger requests = new AtomicInteger(0);
+        private final AtomicLong firstRequest = new AtomicLong(0);
+        private final AtomicLong lastActivity = new AtomicLong(0);
+        private final AtomicLong lastDuration = new AtomicLong(-1);
+        private final AtomicLong lastRun = new AtomicLong(-1);
+        private volatile ScheduledFuture<?> scheduled;
+    }
+}
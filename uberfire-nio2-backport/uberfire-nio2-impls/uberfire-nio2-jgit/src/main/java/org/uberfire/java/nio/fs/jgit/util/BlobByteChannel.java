@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.channels.SeekableByteChannel;
+
+/**
+ * Write channel that turns its content into a git blob when closed.
+ * <p>
+ * Content is kept in memory up to the configured threshold and only bigger contents are spilled
+ * to a temporary file, so on close the blob is inserted straight from memory for most writes. The
+ * id of the inserted blob is handed to the given consumer, that is expected to commit it.
+ */
+public class BlobByteChannel implements SeekableByteChannel {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+    private final Repository repository;
+    private final int inMemoryThreshold;
+    private final Consumer<ObjectId> onBlobInserted;
+
+    private byte[] buffer;
+    private int size = 0;
+    private int position = 0;
+    private File spillFile = null;
+    private FileChannel spillChannel = null;
+    private boolean open = true;
+
+    public BlobByteChannel(final Repository repository,
+                           final int inMemoryThreshold,
+                           final Consumer<ObjectId> onBlobInserted) {
+        this.repository = repository;
+        this.inMemoryThreshold = inMemoryThreshold;
+        this.onBlobInserted = onBlobInserted;
+        this.buffer = new byte[Math.min(INITIAL_BUFFER_SIZE,
+                                        Math.max(inMemoryThreshold,
+                                                 16))];
+    }
+
+    /**
+     * Output stream view of this channel, closing the stream closes the channel.
+     */
+    public OutputStream asOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) throws java.io.IOException {
+                write(new byte[]{(byte) b},
+                      0,
+                      1);
+            }
+
+            @Override
+            public void write(final byte[] b,
+                              final int off,
+                              final int len) throws java.io.IOException {
+                BlobByteChannel.this.write(ByteBuffer.wrap(b,
+                                                           off,
+                                                           len));
+            }
+
+            @Override
+            public void close() throws java.io.IOException {
+                BlobByteChannel.this.close();
+            }
+        };
+    }
+
+    public boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    @Override
+    public long position() throws IOException {
+        checkOpen();
+        if (isSpilled()) {
+            try {
+                return spillChannel.position();
+            } catch (java.io.IOException e) {
+                throw new IOException(e);
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(final long newPosition) throws IOException {
+        checkOpen();
+        try {
+            if (!isSpilled() && newPosition > inMemoryThreshold) {
+                spill();
+            }
+            if (isSpilled()) {
+                spillChannel.position(newPosition);
+            } else {
+                position = (int) newPosition;
+            }
+            return this;
+        } catch (java.io.IOException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        checkOpen();
+        if (isSpilled()) {
+            try {
+                return spillChannel.size();
+            } catch (java.io.IOException e) {
+                throw new IOException(e);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(final long newSize) throws IOException {
+        checkOpen();
+        if (isSpilled()) {
+            try {
+                spillChannel.truncate(newSize);
+            } catch (java.io.IOException e) {
+                throw new IOException(e);
+            }
+        } else if (newSize < size) {
+            size = (int) newSize;
+            position = Math.min(position,
+                                size);
+        }
+        return this;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws java.io.IOException {
+        checkOpen();
+        if (isSpilled()) {
+            return spillChannel.read(dst);
+        }
+        if (position >= size) {
+            return -1;
+        }
+        final int length = Math.min(dst.remaining(),
+                                    size - position);
+        dst.put(buffer,
+                position,
+                length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws java.io.IOException {
+        checkOpen();
+        final int length = src.remaining();
+        if (!isSpilled() && (long) position + length > inMemoryThreshold) {
+            spill();
+        }
+        if (isSpilled()) {
+            return spillChannel.write(src);
+        }
+
+        final int end = position + length;
+        if (end > buffer.length) {
+            buffer = Arrays.copyOf(buffer,
+                                   Math.min(Math.max(buffer.length * 2,
+                                                     end),
+                                            inMemoryThreshold));
+        }
+        if (position > size) {
+            Arrays.fill(buffer,
+                        size,
+                        position,
+                        (byte) 0);
+        }
+        src.get(buffer,
+                position,
+                length);
+        position = end;
+        size = Math.max(size,
+                        end);
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws java.io.IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            final ObjectId blobId;
+            try (final ObjectInserter inserter = repository.newObjectInserter()) {
+                if (isSpilled()) {
+                    spillChannel.position(0);
+                    blobId = inserter.insert(Constants.OBJ_BLOB,
+                                             spillChannel.size(),
+                                             Channels.newInputStream(spillChannel));
+                } else {
+                    blobId = inserter.insert(Constants.OBJ_BLOB,
+                                             buffer,
+                                             0,
+                                             size);
+                }
+                inserter.flush();
+            }
+            onBlobInserted.accept(blobId);
+        } finally {
+            buffer = null;
+            if (isSpilled()) {
+                spillChannel.close();
+                spillFile.delete();
+            }
+        }
+    }
+
+    private void spill() throws java.io.IOException {
+        spillFile = File.createTempFile("gitz",
+                                        "woot");
+        spillChannel = new RandomAccessFile(spillFile,
+                                            "rw").getChannel();
+        spillChannel.write(ByteBuffer.wrap(buffer,
+                                           0,
+                                           size));
+        spillChannel.position(position);
+        buffer = null;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IOException("Channel is closed.");
+        }
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.java.nio.fs.jgit.util.model.CommitMetadata;
+
+import static org.uberfire.java.nio.fs.jgit.util.commands.PathUtil.normalize;
+
+/**
+ * Persistent per repository index of the first commit (and its commit time) of each branch and of
+ * each path on a branch. Last commits are served by {@link LastCommitIndex}, that only needs the
+ * log of the path and so is kept in memory.
+ * <p>
+ * The index is stored as an append only journal in the repository directory. Each branch records
+ * the tip it is consistent with: when the branch moved forward only the new commits are indexed,
+ * if the tip is not an ancestor anymore (or the index is missing) the branch is rebuilt from its
+ * whole history. The root path ("") holds the branch level first commit. Updates after commits run
+ * in background, so callers holding the file system lock never wait for the journal.
+ */
+public class CommitMetadataIndex {
+
+    public static final String INDEX_FILE_NAME = "uf-commit-metadata";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommitMetadataIndex.class);
+
+    private static final String HEADER = "# uberfire commit metadata v2";
+    private static final String RESET = "R";
+    private static final String TIP = "T";
+    private static final String ENTRY = "P";
+    private static final String SEPARATOR = "\t";
+    private static final String REFS_HEADS = "refs/heads/";
+
+    private static final ExecutorService UPDATE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r,
+                                         "jgit-commit-metadata-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Git git;
+    private final Set<String> pendingUpdates = ConcurrentHashMap.newKeySet();
+    private final Map<String, BranchMetadata> branches = new HashMap<>();
+    private boolean loaded = false;
+    private int journalSize = 0;
+
+    public CommitMetadataIndex(final Git git) {
+        this.git = git;
+    }
+
+    public synchronized CommitMetadata getFirstCommit(final String branchName,
+                                                      final String path) {
+        load();
+        final String branch = branchKey(branchName);
+        try {
+            final BranchMetadata metadata = sync(branch);
+            return metadata == null ? null : metadata.firstCommits.get(normalize(path));
+        } catch (final IOException ex) {
+            LOG.warn("Commit metadata index lookup failed for branch [" + branch + "].",
+                     ex);
+            branches.remove(branch);
+            return null;
+        }
+    }
+
+    /**
+     * Asks for the index of the given branch to be brought up to date with its tip in background.
+     * Requests for a branch that is already waiting for an update are merged into it.
+     */
+    public void update(final String branchName) {
+        final String branch = branchKey(branchName);
+        if (!pendingUpdates.add(branch)) {
+            return;
+        }
+        UPDATE_EXECUTOR.execute(() -> {
+            pendingUpdates.remove(branch);
+            try {
+                updateNow(branch);
+            } catch (final RuntimeException ex) {
+                LOG.warn("Commit metadata index update failed for branch [" + branch + "].",
+                         ex);
+            }
+        });
+    }
+
+    /**
+     * Brings the index of the given branch up to date with its tip. Branches that were never
+     * indexed are left alone, they are built on their first lookup.
+     */
+    synchronized void updateNow(final String branchName) {
+        load();
+        final String branch = branchKey(branchName);
+        if (!branches.containsKey(branch)) {
+            return;
+        }
+        try {
+            sync(branch);
+        } catch (final IOException ex) {
+            LOG.warn("Commit metadata index update failed for branch [" + branch + "], it will be rebuilt.",
+                     ex);
+            branches.remove(branch);
+        }
+    }
+
+    public synchronized void clear() {
+        branches.clear();
+        loaded = false;
+        journalSize = 0;
+    }
+
+    private BranchMetadata sync(final String branch) throws IOException {
+        final Ref ref = git.getRef(branch);
+        if (ref == null) {
+            return null;
+        }
+        final ObjectId currentTip = ref.getTarget().getObjectId();
+        BranchMetadata metadata = branches.get(branch);
+        if (metadata != null && currentTip.equals(metadata.tip)) {
+            return metadata;
+        }
+
+        final List<String> journal = new ArrayList<>();
+        try (final RevWalk rw = new RevWalk(git.getRepository())) {
+            final RevCommit tipCommit = rw.parseCommit(currentTip);
+            RevCommit previousTip = null;
+            if (metadata != null && metadata.tip != null) {
+                try {
+                    previousTip = rw.parseCommit(metadata.tip);
+                    if (!rw.isMergedInto(previousTip,
+                                         tipCommit)) {
+                        previousTip = null;
+                    }
+                } catch (final IOException ex) {
+                    //previous tip is gone, the branch was rewritten
+                    previousTip = null;
+                }
+                rw.reset();
+            }
+
+            if (previousTip == null) {
+                metadata = new BranchMetadata();
+                branches.put(branch,
+                             metadata);
+                journal.add(RESET + SEPARATOR + branch);
+            }
+
+            rw.sort(RevSort.TOPO);
+            rw.sort(RevSort.REVERSE,
+                    true);
+            rw.markStart(tipCommit);
+            if (previousTip != null) {
+                rw.markUninteresting(previousTip);
+            }
+            for (final RevCommit commit : rw) {
+                index(branch,
+                      metadata,
+                      commit,
+                      journal);
+            }
+        }
+
+        metadata.tip = currentTip.copy();
+        journal.add(TIP + SEPARATOR + branch + SEPARATOR + currentTip.name());
+        persist(journal);
+
+        return metadata;
+    }
+
+    private void index(final String branch,
+                       final BranchMetadata metadata,
+                       final RevCommit commit,
+                       final List<String> journal) throws IOException {
+        final CommitMetadata commitMetadata = new CommitMetadata(commit.copy(),
+                                                                 commit.getCommitterIdent().getWhen().getTime());
+        final Set<String> touched = new LinkedHashSet<>();
+        touched.add("");
+        for (final String changedPath : listChangedPaths(commit)) {
+            String path = changedPath;
+            while (!path.isEmpty() && touched.add(path)) {
+                final int lastSlash = path.lastIndexOf('/');
+                path = lastSlash < 0 ? "" : path.substring(0,
+                                                            lastSlash);
+            }
+        }
+
+        //commits are walked oldest first, only paths seen for the first time are recorded
+        for (final String path : touched) {
+            if (!metadata.firstCommits.containsKey(path)) {
+                metadata.firstCommits.put(path,
+                                          commitMetadata);
+                journal.add(toLine(branch,
+                                   path,
+                                   commitMetadata));
+            }
+        }
+    }
+
+    private List<String> listChangedPaths(final RevCommit commit) throws IOException {
+        final List<String> paths = new ArrayList<>();
+        try (final RevWalk rw = new RevWalk(git.getRepository());
+             final TreeWalk tw = new TreeWalk(git.getRepository())) {
+            final RevCommit parsed = rw.parseCommit(commit);
+            if (parsed.getParentCount() > 0) {
+                tw.addTree(rw.parseCommit(parsed.getParent(0)).getTree());
+            } else {
+                tw.addTree(new EmptyTreeIterator());
+            }
+            tw.addTree(parsed.getTree());
+            tw.setRecursive(true);
+            tw.setFilter(TreeFilter.ANY_DIFF);
+            while (tw.next()) {
+                paths.add(tw.getPathString());
+            }
+        }
+        return paths;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        final File indexFile = indexFile();
+        if (indexFile == null || !indexFile.exists()) {
+            return;
+        }
+        try (final BufferedReader reader = Files.newBufferedReader(indexFile.toPath(),
+                                                                   StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IllegalStateException("Unknown commit metadata version: " + line);
+            }
+            journalSize++;
+            while ((line = reader.readLine()) != null) {
+                journalSize++;
+                replay(line);
+            }
+        } catch (final Exception ex) {
+            LOG.warn("Commit metadata index [" + indexFile + "] is corrupted, it will be rebuilt.",
+                     ex);
+            branches.clear();
+            journalSize = 0;
+            indexFile.delete();
+        }
+    }
+
+    private void replay(final String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        final String[] fields = line.split(SEPARATOR,
+                                           5);
+        switch (fields[0]) {
+            case RESET:
+                branches.put(fields[1],
+                             new BranchMetadata());
+                break;
+            case TIP:
+                branches.computeIfAbsent(fields[1],
+                                         k -> new BranchMetadata()).tip = ObjectId.fromString(fields[2]);
+                break;
+            case ENTRY:
+                branches.computeIfAbsent(fields[1],
+                                         k -> new BranchMetadata()).firstCommits.put(fields[4],
+                                                                                     new CommitMetadata(ObjectId.fromString(fields[2]),
+                                                                                                        Long.parseLong(fields[3])));
+                break;
+            default:
+                throw new IllegalStateException("Unknown commit metadata entry: " + line);
+        }
+    }
+
+    private void persist(final List<String> journal) {
+        final File indexFile = indexFile();
+        if (indexFile == null) {
+            return;
+        }
+        try {
+            if (journalSize + journal.size() > compactionThreshold()) {
+                compact(indexFile);
+                return;
+            }
+            final boolean isNew = !indexFile.exists();
+            try (final Writer writer = Files.newBufferedWriter(indexFile.toPath(),
+                                                               StandardCharsets.UTF_8,
+                                                               StandardOpenOption.CREATE,
+                                                               StandardOpenOption.APPEND)) {
+                if (isNew) {
+                    writeLine(writer,
+                              HEADER);
+                }
+                for (final String line : journal) {
+                    writeLine(writer,
+                              line);
+                }
+            }
+            journalSize += journal.size();
+        } catch (final IOException ex) {
+            LOG.warn("Unable to write commit metadata index [" + indexFile + "].",
+                     ex);
+        }
+    }
+
+    private void compact(final File indexFile) throws IOException {
+        final File tempFile = new File(indexFile.getParentFile(),
+                                       indexFile.getName() + ".tmp");
+        int lines = 1;
+        try (final BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(),
+                                                                   StandardCharsets.UTF_8)) {
+            writeLine(writer,
+                      HEADER);
+            for (final Map.Entry<String, BranchMetadata> branch : branches.entrySet()) {
+                writeLine(writer,
+                          RESET + SEPARATOR + branch.getKey());
+                for (final Map.Entry<String, CommitMetadata> path : branch.getValue().firstCommits.entrySet()) {
+                    writeLine(writer,
+                              toLine(branch.getKey(),
+                                     path.getKey(),
+                                     path.getValue()));
+                }
+                if (branch.getValue().tip != null) {
+                    writeLine(writer,
+                              TIP + SEPARATOR + branch.getKey() + SEPARATOR + branch.getValue().tip.name());
+                }
+                lines += branch.getValue().firstCommits.size() + 2;
+            }
+        }
+        Files.move(tempFile.toPath(),
+                   indexFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        journalSize = lines;
+    }
+
+    private int compactionThreshold() {
+        int entries = 0;
+        for (final BranchMetadata metadata : branches.values()) {
+            entries += metadata.firstCommits.size() + 2;
+        }
+        return entries * 2 + 1024;
+    }
+
+    private File indexFile() {
+        final File directory = git.getRepository().getDirectory();
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory,
+                        INDEX_FILE_NAME);
+    }
+
+    private static void writeLine(final Writer writer,
+                                  final String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    private static String toLine(final String branch,
+                                 final String path,
+                                 final CommitMetadata firstCommit) {
+        return ENTRY + SEPARATOR + branch +
+                SEPARATOR + firstCommit.getCommitId().name() + SEPARATOR + firstCommit.getTime() +
+                SEPARATOR + path;
+    }
+
+    private static String branchKey(final String branchName) {
+        if (branchName.startsWith(REFS_HEADS)) {
+            return branchName.substring(REFS_HEADS.length());
+        }
+        return branchName;
+    }
+
+    private static class BranchMetadata {
+
+        private final Map<String, CommitMetadata> firstCommits = new HashMap<>();
+        private ObjectId tip;
+    }
+}
@@ -111,6 +111,14 @@ public interface Git {
     List<RevCommit> listCommits(final Ref ref,
                                 final String path) throws IOException, GitAPIException;
 
+    List<RevCommit> listCommits(final Ref ref,
+                                final String path,
+                                final int skip,
+                                final int maxCount) throws IOException, GitAPIException;
+
+    RevCommit getLastCommit(final String branchName,
+                            final String path);
+
     List<RevCommit> listCommits(final ObjectId startRange,
                                 final ObjectId endRange);
 
@@ -157,6 +165,8 @@ public interface Git {
 
     RevCommit getFirstCommit(final Ref ref) throws IOException;
 
+    CommitMetadataIndex getCommitMetadataIndex();
+
     List<Ref> listRefs();
 
     List<ObjectId> resolveObjectIds(final String... commits);
@@ -122,6 +122,8 @@ public class GitImpl implements Git {
     private org.eclipse.jgit.api.Git git;
     private KetchLeaderCache leaders;
     private final AtomicBoolean isHeadInitialized = new AtomicBoolean(false);
+    private final LastCommitIndex lastCommitIndex = new LastCommitIndex(this);
+    private final CommitMetadataIndex commitMetadataIndex = new CommitMetadataIndex(this);
 
     public GitImpl(final org.eclipse.jgit.api.Git git) {
         this(git,
@@ -194,6 +196,26 @@ public class GitImpl implements Git {
                                path).execute();
     }
 
+    @Override
+    public List<RevCommit> listCommits(final Ref ref,
+                                       final String path,
+                                       final int skip,
+                                       final int maxCount) throws IOException, GitAPIException {
+        return new ListCommits(this,
+                               ref,
+                               path,
+                               skip,
+                               maxCount).execute();
+    }
+
+    @Override
+    public RevCommit getLastCommit(final String branchName,
+                                   final String path) {
+        return retryIfNeeded(RuntimeException.class,
+                             () -> lastCommitIndex.getLastCommit(branchName,
+                                                                 path));
+    }
+
     @Override
     public List<RevCommit> listCommits(final ObjectId startRange,
                                        final ObjectId endRange) {
@@ -314,12 +336,19 @@ public class GitImpl implements Git {
                           final boolean amend,
                           final ObjectId originId,
                           final CommitContent content) {
-        return new Commit(this,
-                          branchName,
-                          commitInfo,
-                          amend,
-                          null,
-                          content).execute();
+        final RevCommit previousTip = getLastCommit(branchName);
+        final boolean hadEffectiveCommit = new Commit(this,
+                                                      branchName,
+                                                      commitInfo,
+                                                      amend,
+                                                      null,
+                                                      content).execute();
+        if (hadEffectiveCommit) {
+            lastCommitIndex.commitApplied(branchName,
+                                          amend ? null : previousTip,
+                                          getLastCommit(branchName));
+        }
+        return hadEffectiveCommit;
     }
 
     @Override
@@ -345,6 +374,11 @@ public class GitImpl implements Git {
                                   ref).execute();
     }
 
+    @Override
+    public CommitMetadataIndex getCommitMetadataIndex() {
+        return commitMetadataIndex;
+    }
+
     @Override
     public List<Ref> listRefs() {
         return new ListRefs(git.getRepository()).execute();
@@ -451,6 +485,8 @@ public class GitImpl implements Git {
     @Override
     public void updateRepo(final Repository repo) {
         this.git = new org.eclipse.jgit.api.Git(repo);
+        lastCommitIndex.clear();
+        commitMetadataIndex.clear();
     }
 
     @Override
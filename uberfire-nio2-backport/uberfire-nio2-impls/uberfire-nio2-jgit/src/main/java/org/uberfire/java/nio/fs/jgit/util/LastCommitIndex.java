@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import static org.uberfire.java.nio.fs.jgit.util.commands.PathUtil.normalize;
+
+/**
+ * Per repository index of the latest commit that touched a path, for each branch.
+ * <p>
+ * Entries are filled on demand from the log and kept up to date by {@link #commitApplied} with the
+ * paths changed by each commit (and their parent directories). Each branch index remembers the tip
+ * it is consistent with, so if the branch moves by any other means (push, merge, amend...) it is
+ * simply discarded and rebuilt on demand.
+ */
+public class LastCommitIndex {
+
+    private final Git git;
+    private final Map<String, BranchIndex> branches = new ConcurrentHashMap<>();
+
+    public LastCommitIndex(final Git git) {
+        this.git = git;
+    }
+
+    public RevCommit getLastCommit(final String branchName,
+                                   final String path) throws IOException, GitAPIException {
+        final Ref ref = git.getRef(branchName);
+        if (ref == null) {
+            return null;
+        }
+        final ObjectId tip = ref.getTarget().getObjectId();
+        final String gitPath = normalize(path);
+        final BranchIndex index = branches.computeIfAbsent(branchName,
+                                                           k -> new BranchIndex());
+
+        final ObjectId commitId;
+        synchronized (index) {
+            index.syncTo(tip);
+            commitId = index.lastCommits.get(gitPath);
+        }
+        if (commitId != null) {
+            return git.resolveRevCommit(commitId);
+        }
+
+        final List<RevCommit> commits = git.listCommits(ref,
+                                                        gitPath,
+                                                        0,
+                                                        1);
+        if (commits.isEmpty()) {
+            return null;
+        }
+        final RevCommit commit = commits.get(0);
+        synchronized (index) {
+            if (tip.equals(index.tip)) {
+                index.lastCommits.putIfAbsent(gitPath,
+                                              commit.copy());
+            }
+        }
+        return commit;
+    }
+
+    /**
+     * Records that the branch moved from the previous tip to the new one in a single commit.
+     */
+    public void commitApplied(final String branchName,
+                              final ObjectId previousTip,
+                              final ObjectId newTip) {
+        final BranchIndex index = branches.get(branchName);
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (previousTip == null || newTip == null || !previousTip.equals(index.tip)) {
+                index.reset(newTip);
+                return;
+            }
+            try {
+                final ObjectId commitId = newTip.copy();
+                for (final String changedPath : listChangedPaths(previousTip,
+                                                                 newTip)) {
+                    String path = changedPath;
+                    while (true) {
+                        index.lastCommits.put(path,
+                                              commitId);
+                        if (path.isEmpty()) {
+                            break;
+                        }
+                        final int lastSlash = path.lastIndexOf('/');
+                        path = lastSlash < 0 ? "" : path.substring(0,
+                                                                    lastSlash);
+                    }
+                }
+                index.tip = commitId;
+            } catch (final IOException ex) {
+                //index can't be trusted anymore, start over
+                index.reset(newTip);
+            }
+        }
+    }
+
+    public void clear() {
+        branches.clear();
+    }
+
+    private List<String> listChangedPaths(final ObjectId previousTip,
+                                          final ObjectId newTip) throws IOException {
+        final Repository repository = git.getRepository();
+        final List<String> paths = new ArrayList<>();
+        try (final RevWalk rw = new RevWalk(repository);
+             final TreeWalk tw = new TreeWalk(repository)) {
+            tw.addTree(rw.parseCommit(previousTip).getTree());
+            tw.addTree(rw.parseCommit(newTip).getTree());
+            tw.setRecursive(true);
+            //identical subtrees are skipped, so the cost depends on the size of the change
+            tw.setFilter(TreeFilter.ANY_DIFF);
+            while (tw.next()) {
+                paths.add(tw.getPathString());
+            }
+        }
+        return paths;
+    }
+
+    private static class BranchIndex {
+
+        private final Map<String, ObjectId> lastCommits = new HashMap<>();
+        private ObjectId tip;
+
+        private void syncTo(final ObjectId currentTip) {
+            if (tip == null || !tip.equals(currentTip)) {
+                reset(currentTip);
+            }
+        }
+
+        private void reset(final ObjectId newTip) {
+            lastCommits.clear();
+            tip = newTip == null ? null : newTip.copy();
+        }
+    }
+}
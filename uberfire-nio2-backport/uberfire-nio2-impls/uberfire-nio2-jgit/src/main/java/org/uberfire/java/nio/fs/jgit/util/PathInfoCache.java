@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystemProviderConfiguration;
+import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
+
+import static org.uberfire.java.nio.fs.jgit.JGitFileSystemProviderConfiguration.DEFAULT_PATH_INFO_CACHE_SIZE;
+
+/**
+ * Bounded LRU cache of path lookups and directory listings.
+ * <p>
+ * Entries are keyed by the tree id they were resolved against. As git trees are immutable and
+ * content addressed an entry never gets stale, so there is no need to invalidate it on commits and
+ * it is safe to share the cache between repositories, in the same way JGit shares its WindowCache.
+ */
+public class PathInfoCache {
+
+    //replaced when the provider loads its configuration
+    private static volatile PathInfoCache INSTANCE = new PathInfoCache(Integer.valueOf(DEFAULT_PATH_INFO_CACHE_SIZE));
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final int maxSize;
+    private final Map<Key, Object> entries;
+
+    PathInfoCache(final int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<Key, Object>(maxSize + 1,
+                                                                                  0.75f,
+                                                                                  true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Object> eldest) {
+                if (size() > PathInfoCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    public static PathInfoCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sizes the shared cache, see {@link JGitFileSystemProviderConfiguration#getPathInfoCacheSize()}.
+     * Entries are dropped only if the size changes.
+     */
+    public static synchronized void configure(final int maxSize) {
+        if (INSTANCE.maxSize != maxSize) {
+            INSTANCE = new PathInfoCache(maxSize);
+        }
+    }
+
+    public PathInfo getPathInfo(final ObjectId treeId,
+                                final String path,
+                                final Loader<PathInfo> loader) throws IOException {
+        return (PathInfo) get(new Key(treeId,
+                                      path,
+                                      false),
+                              loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<PathInfo> listPathContent(final ObjectId treeId,
+                                          final String path,
+                                          final Loader<List<PathInfo>> loader) throws IOException {
+        final List<PathInfo> content = (List<PathInfo>) get(new Key(treeId,
+                                                                    path,
+                                                                    true),
+                                                            () -> Collections.unmodifiableList(loader.load()));
+        return new ArrayList<>(content);
+    }
+
+    private Object get(final Key key,
+                       final Loader<?> loader) throws IOException {
+        if (maxSize == 0) {
+            misses.incrementAndGet();
+            return loader.load();
+        }
+        final Object cached = entries.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        final Object value = loader.load();
+        if (value != null) {
+            entries.put(key,
+                        value);
+        }
+        return value;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        T load() throws IOException;
+    }
+
+    private static class Key {
+
+        private final ObjectId treeId;
+        private final String path;
+        private final boolean listing;
+
+        private Key(final ObjectId treeId,
+                    final String path,
+                    final boolean listing) {
+            this.treeId = treeId.copy();
+            this.path = path;
+            this.listing = listing;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return listing == key.listing && treeId.equals(key.treeId) && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = treeId.hashCode();
+            result = 31 * result + path.hashCode();
+            result = 31 * result + (listing ? 1 : 0);
+            return result;
+        }
+    }
+}
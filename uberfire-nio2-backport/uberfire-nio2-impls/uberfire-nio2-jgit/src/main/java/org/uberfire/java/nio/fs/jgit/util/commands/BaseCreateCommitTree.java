@@ -16,17 +16,12 @@
 
 package org.uberfire.java.nio.fs.jgit.util.commands;
 
+import java.io.IOException;
 import java.util.Optional;
-import java.util.function.BiConsumer;
 
-import org.eclipse.jgit.dircache.DirCacheEditor;
-import org.eclipse.jgit.dircache.DirCacheEntry;
-import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
-import org.eclipse.jgit.treewalk.TreeWalk;
 import org.uberfire.java.nio.fs.jgit.util.Git;
 import org.uberfire.java.nio.fs.jgit.util.model.CommitContent;
 
@@ -47,46 +42,21 @@ abstract class BaseCreateCommitTree<T extends CommitContent> {
         this.commitContent = commitContent;
     }
 
-    Optional<ObjectId> buildTree(final DirCacheEditor editor) {
+    Optional<ObjectId> buildTree(final IncrementalTreeBuilder builder,
+                                 final ObjectId baseTreeId) {
         try {
-            return Optional.ofNullable(editor.getDirCache().writeTree(odi));
+            return Optional.ofNullable(builder.build(baseTreeId));
         } catch (Exception ex) {
             throw new RuntimeException(ex);
         }
     }
 
-    void iterateOverTreeWalk(final Git git,
-                             final ObjectId headId,
-                             final BiConsumer<String, CanonicalTreeParser> consumer) {
-        if (headId != null) {
-            try (final TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
-                final int hIdx = treeWalk.addTree(new RevWalk(git.getRepository()).parseTree(headId));
-                treeWalk.setRecursive(true);
-
-                while (treeWalk.next()) {
-                    final String walkPath = treeWalk.getPathString();
-                    final CanonicalTreeParser hTree = treeWalk.getTree(hIdx,
-                                                                       CanonicalTreeParser.class);
-
-                    consumer.accept(walkPath,
-                                    hTree);
-                }
-            } catch (final Exception ex) {
-                throw new RuntimeException(ex);
-            }
+    ObjectId resolveBaseTree() throws IOException {
+        if (headId == null) {
+            return null;
+        }
+        try (final RevWalk revWalk = new RevWalk(git.getRepository())) {
+            return revWalk.parseTree(headId).copy();
         }
-    }
-
-    void addToTemporaryInCoreIndex(final DirCacheEditor editor,
-                                   final DirCacheEntry dcEntry,
-                                   final ObjectId objectId,
-                                   final FileMode fileMode) {
-        editor.add(new DirCacheEditor.PathEdit(dcEntry) {
-            @Override
-            public void apply(final DirCacheEntry ent) {
-                ent.setObjectId(objectId);
-                ent.setFileMode(fileMode);
-            }
-        });
     }
 }
@@ -19,11 +19,10 @@ package org.uberfire.java.nio.fs.jgit.util.commands;
 import java.util.Map;
 import java.util.Optional;
 
-import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.dircache.DirCacheEditor;
-import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.uberfire.java.nio.fs.jgit.util.Git;
 import org.uberfire.java.nio.fs.jgit.util.model.CopyCommitContent;
 
@@ -42,30 +41,29 @@ public class CreateCopyCommitTree extends BaseCreateCommitTree<CopyCommitContent
     public Optional<ObjectId> execute() {
         final Map<String, String> content = commitContent.getContent();
 
-        final DirCacheEditor editor = DirCache.newInCore().editor();
+        try (final ObjectReader reader = odi.newReader()) {
+            final ObjectId baseTreeId = resolveBaseTree();
+            final IncrementalTreeBuilder builder = new IncrementalTreeBuilder(reader,
+                                                                              odi);
 
-        try {
-            iterateOverTreeWalk(git,
-                                headId,
-                                (walkPath, hTree) -> {
-                                    final String toPath = content.get(walkPath);
-                                    addToTemporaryInCoreIndex(editor,
-                                                              new DirCacheEntry(walkPath),
-                                                              hTree.getEntryObjectId(),
-                                                              hTree.getEntryFileMode());
-                                    if (toPath != null) {
-                                        addToTemporaryInCoreIndex(editor,
-                                                                  new DirCacheEntry(toPath),
-                                                                  hTree.getEntryObjectId(),
-                                                                  hTree.getEntryFileMode());
-                                    }
-                                });
+            if (baseTreeId != null) {
+                for (final Map.Entry<String, String> sourceDest : content.entrySet()) {
+                    try (final TreeWalk treeWalk = TreeWalk.forPath(reader,
+                                                                    sourceDest.getKey(),
+                                                                    baseTreeId)) {
+                        if (treeWalk != null) {
+                            builder.add(sourceDest.getValue(),
+                                        treeWalk.getObjectId(0),
+                                        treeWalk.getFileMode(0));
+                        }
+                    }
+                }
+            }
 
-            editor.finish();
+            return buildTree(builder,
+                             baseTreeId);
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
-
-        return buildTree(editor);
     }
 }
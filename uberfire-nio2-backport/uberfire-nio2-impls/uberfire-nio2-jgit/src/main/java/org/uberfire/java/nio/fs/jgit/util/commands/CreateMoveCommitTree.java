@@ -16,16 +16,16 @@
 
 package org.uberfire.java.nio.fs.jgit.util.commands;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
-import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.dircache.DirCacheEditor;
-import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.uberfire.commons.data.Pair;
 import org.uberfire.java.nio.fs.jgit.util.Git;
 import org.uberfire.java.nio.fs.jgit.util.model.MoveCommitContent;
 
@@ -43,28 +43,36 @@ public class CreateMoveCommitTree extends BaseCreateCommitTree<MoveCommitContent
 
     public Optional<ObjectId> execute() {
         final Map<String, String> content = commitContent.getContent();
-        final DirCacheEditor editor = DirCache.newInCore().editor();
-        final List<String> pathsAdded = new ArrayList<>();
 
-        try {
-            iterateOverTreeWalk(git,
-                                headId,
-                                (walkPath, hTree) -> {
-                                    final String toPath = content.get(walkPath);
-                                    final DirCacheEntry dcEntry = new DirCacheEntry((toPath == null) ? walkPath : toPath);
-                                    if (!pathsAdded.contains(dcEntry.getPathString())) {
-                                        addToTemporaryInCoreIndex(editor,
-                                                                  dcEntry,
-                                                                  hTree.getEntryObjectId(),
-                                                                  hTree.getEntryFileMode());
-                                        pathsAdded.add(dcEntry.getPathString());
-                                    }
-                                });
-            editor.finish();
+        try (final ObjectReader reader = odi.newReader()) {
+            final ObjectId baseTreeId = resolveBaseTree();
+            final IncrementalTreeBuilder builder = new IncrementalTreeBuilder(reader,
+                                                                              odi);
+            final Map<String, Pair<ObjectId, FileMode>> movedEntries = new HashMap<>(content.size());
+
+            if (baseTreeId != null) {
+                for (final Map.Entry<String, String> fromTo : content.entrySet()) {
+                    try (final TreeWalk treeWalk = TreeWalk.forPath(reader,
+                                                                    fromTo.getKey(),
+                                                                    baseTreeId)) {
+                        if (treeWalk != null) {
+                            movedEntries.put(fromTo.getValue(),
+                                             Pair.newPair(treeWalk.getObjectId(0),
+                                                          treeWalk.getFileMode(0)));
+                            builder.remove(fromTo.getKey());
+                        }
+                    }
+                }
+            }
+
+            movedEntries.forEach((path, entry) -> builder.add(path,
+                                                              entry.getK1(),
+                                                              entry.getK2()));
+
+            return buildTree(builder,
+                             baseTreeId);
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
-
-        return buildTree(editor);
     }
 }
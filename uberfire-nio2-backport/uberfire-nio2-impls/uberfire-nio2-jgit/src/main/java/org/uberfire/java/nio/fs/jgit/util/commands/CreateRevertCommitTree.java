@@ -18,11 +18,9 @@ package org.uberfire.java.nio.fs.jgit.util.commands;
 
 import java.util.Optional;
 
-import org.eclipse.jgit.dircache.DirCache;
-import org.eclipse.jgit.dircache.DirCacheEditor;
-import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.uberfire.java.nio.fs.jgit.util.Git;
 import org.uberfire.java.nio.fs.jgit.util.model.RevertCommitContent;
 
@@ -39,23 +37,12 @@ public class CreateRevertCommitTree extends BaseCreateCommitTree<RevertCommitCon
     }
 
     public Optional<ObjectId> execute() {
-        final DirCacheEditor editor = DirCache.newInCore().editor();
-
-        try {
-            iterateOverTreeWalk(git,
-                                headId,
-                                (walkPath, hTree) -> {
-                                    addToTemporaryInCoreIndex(editor,
-                                                              new DirCacheEntry(walkPath),
-                                                              hTree.getEntryObjectId(),
-                                                              hTree.getEntryFileMode());
-                                });
-
-            editor.finish();
+        try (final ObjectReader reader = odi.newReader()) {
+            return buildTree(new IncrementalTreeBuilder(reader,
+                                                        odi),
+                             resolveBaseTree());
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
-
-        return buildTree(editor);
     }
 }
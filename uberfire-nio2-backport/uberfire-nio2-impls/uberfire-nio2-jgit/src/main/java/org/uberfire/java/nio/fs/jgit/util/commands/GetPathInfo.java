@@ -23,6 +23,7 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.uberfire.java.nio.fs.jgit.util.Git;
+import org.uberfire.java.nio.fs.jgit.util.PathInfoCache;
 import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
 import org.uberfire.java.nio.fs.jgit.util.model.PathType;
 
@@ -58,6 +59,15 @@ public class GetPathInfo {
                                 gitPath,
                                 PathType.NOT_FOUND);
         }
+
+        return PathInfoCache.getInstance().getPathInfo(tree,
+                                                       gitPath,
+                                                       () -> resolvePathInfo(tree,
+                                                                             gitPath));
+    }
+
+    private PathInfo resolvePathInfo(final ObjectId tree,
+                                     final String gitPath) throws IOException {
         try (final TreeWalk tw = new TreeWalk(git.getRepository())) {
             tw.setFilter(PathFilter.create(gitPath));
             tw.reset(tree);
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util.commands;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+/**
+ * Builds a new tree out of a base tree by rewriting only the tree objects along the edited paths.
+ * Subtrees that are not touched by any edit keep their original ids and are never read, so the
+ * cost of a commit depends on the changed directories instead of the size of the repository.
+ */
+public class IncrementalTreeBuilder {
+
+    private static final Comparator<Map.Entry<String, Entry>> GIT_TREE_ORDER = (o1, o2) ->
+            compare(sortKey(o1.getKey(),
+                            o1.getValue()),
+                    sortKey(o2.getKey(),
+                            o2.getValue()));
+
+    private final ObjectReader reader;
+    private final ObjectInserter inserter;
+    private final Node root = new Node();
+
+    public IncrementalTreeBuilder(final ObjectReader reader,
+                                  final ObjectInserter inserter) {
+        this.reader = reader;
+        this.inserter = inserter;
+    }
+
+    /**
+     * Adds or replaces the entry on the given path.
+     */
+    public IncrementalTreeBuilder add(final String path,
+                                      final ObjectId objectId,
+                                      final FileMode fileMode) {
+        final Node node = lookupNode(path);
+        node.objectId = objectId;
+        node.fileMode = fileMode;
+        node.removed = false;
+        node.children.clear();
+        return this;
+    }
+
+    /**
+     * Removes the entry on the given path, the path can be a file or a directory.
+     */
+    public IncrementalTreeBuilder remove(final String path) {
+        final Node node = lookupNode(path);
+        node.objectId = null;
+        node.fileMode = null;
+        node.removed = true;
+        node.children.clear();
+        return this;
+    }
+
+    /**
+     * Applies all pending edits on top of the given tree (that can be null for an empty base) and
+     * returns the id of the resulting root tree.
+     */
+    public ObjectId build(final ObjectId baseTreeId) throws IOException {
+        final ObjectId treeId = build(baseTreeId,
+                                      root);
+        if (treeId == null) {
+            return inserter.insert(new TreeFormatter());
+        }
+        return treeId;
+    }
+
+    private ObjectId build(final ObjectId baseTreeId,
+                           final Node node) throws IOException {
+        final Map<String, Entry> entries = readEntries(baseTreeId);
+        boolean modified = false;
+
+        for (final Map.Entry<String, Node> child : node.children.entrySet()) {
+            final String name = child.getKey();
+            final Node edit = child.getValue();
+            final Entry current = entries.get(name);
+
+            if (edit.objectId != null) {
+                if (current == null || !current.matches(edit.objectId,
+                                                        edit.fileMode)) {
+                    entries.put(name,
+                                new Entry(edit.objectId,
+                                          edit.fileMode));
+                    modified = true;
+                }
+            } else if (edit.children.isEmpty()) {
+                if (edit.removed && current != null) {
+                    entries.remove(name);
+                    modified = true;
+                }
+            } else {
+                final ObjectId baseSubtreeId;
+                if (!edit.removed && current != null && current.isTree()) {
+                    baseSubtreeId = current.objectId;
+                } else {
+                    baseSubtreeId = null;
+                }
+                final ObjectId subtreeId = build(baseSubtreeId,
+                                                 edit);
+                if (subtreeId == null) {
+                    if (current != null) {
+                        entries.remove(name);
+                        modified = true;
+                    }
+                } else if (current == null || !current.matches(subtreeId,
+                                                               FileMode.TREE)) {
+                    entries.put(name,
+                                new Entry(subtreeId,
+                                          FileMode.TREE));
+                    modified = true;
+                }
+            }
+        }
+
+        if (!modified) {
+            return baseTreeId;
+        }
+
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        final List<Map.Entry<String, Entry>> sortedEntries = new ArrayList<>(entries.entrySet());
+        sortedEntries.sort(GIT_TREE_ORDER);
+
+        final TreeFormatter formatter = new TreeFormatter();
+        for (final Map.Entry<String, Entry> entry : sortedEntries) {
+            formatter.append(entry.getKey(),
+                             entry.getValue().fileMode,
+                             entry.getValue().objectId);
+        }
+
+        return inserter.insert(formatter);
+    }
+
+    private Map<String, Entry> readEntries(final ObjectId treeId) throws IOException {
+        final Map<String, Entry> entries = new HashMap<>();
+        if (treeId == null) {
+            return entries;
+        }
+
+        final CanonicalTreeParser parser = new CanonicalTreeParser(null,
+                                                                   reader,
+                                                                   treeId);
+        while (!parser.eof()) {
+            entries.put(parser.getEntryPathString(),
+                        new Entry(parser.getEntryObjectId(),
+                                  parser.getEntryFileMode()));
+            parser.next(1);
+        }
+
+        return entries;
+    }
+
+    private Node lookupNode(final String path) {
+        Node node = root;
+        for (final String segment : PathUtil.normalize(path).split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (node.objectId != null) {
+                //a file is being replaced by a directory
+                node.objectId = null;
+                node.fileMode = null;
+                node.removed = true;
+            }
+            node = node.children.computeIfAbsent(segment,
+                                                 k -> new Node());
+        }
+        return node;
+    }
+
+    private static byte[] sortKey(final String name,
+                                  final Entry entry) {
+        if (entry.isTree()) {
+            return Constants.encode(name + "/");
+        }
+        return Constants.encode(name);
+    }
+
+    private static int compare(final byte[] a,
+                               final byte[] b) {
+        final int length = Math.min(a.length,
+                                    b.length);
+        for (int i = 0; i < length; i++) {
+            final int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new TreeMap<>();
+        private ObjectId objectId;
+        private FileMode fileMode;
+        private boolean removed;
+    }
+
+    private static class Entry {
+
+        private final ObjectId objectId;
+        private final FileMode fileMode;
+
+        private Entry(final ObjectId objectId,
+                      final FileMode fileMode) {
+            this.objectId = objectId.copy();
+            this.fileMode = fileMode;
+        }
+
+        private boolean isTree() {
+            return (fileMode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_TREE;
+        }
+
+        private boolean matches(final ObjectId objectId,
+                                final FileMode fileMode) {
+            return this.objectId.equals(objectId) && this.fileMode.getBits() == fileMode.getBits();
+        }
+    }
+}
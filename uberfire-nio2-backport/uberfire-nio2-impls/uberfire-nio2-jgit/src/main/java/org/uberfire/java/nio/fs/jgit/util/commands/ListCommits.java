@@ -37,13 +37,29 @@ public class ListCommits {
     private final ObjectId endRange;
     private final Ref ref;
     private final String path;
+    private final int skip;
+    private final int maxCount;
 
     public ListCommits(final GitImpl git,
                        final Ref ref,
                        final String path) {
+        this(git,
+             ref,
+             path,
+             0,
+             -1);
+    }
+
+    public ListCommits(final GitImpl git,
+                       final Ref ref,
+                       final String path,
+                       final int skip,
+                       final int maxCount) {
         this.git = git;
         this.ref = ref;
         this.path = path;
+        this.skip = skip;
+        this.maxCount = maxCount;
         this.startRange = null;
         this.endRange = null;
     }
@@ -56,6 +72,8 @@ public class ListCommits {
         this.endRange = endRange;
         this.ref = null;
         this.path = null;
+        this.skip = 0;
+        this.maxCount = -1;
     }
 
     public List<RevCommit> execute() throws IOException, GitAPIException {
@@ -80,6 +98,12 @@ public class ListCommits {
             if (path != null && !path.isEmpty()) {
                 logCommand.addPath(path);
             }
+            if (skip > 0) {
+                logCommand.setSkip(skip);
+            }
+            if (maxCount >= 0) {
+                logCommand.setMaxCount(maxCount);
+            }
             return (RevWalk) logCommand.call();
         }
 
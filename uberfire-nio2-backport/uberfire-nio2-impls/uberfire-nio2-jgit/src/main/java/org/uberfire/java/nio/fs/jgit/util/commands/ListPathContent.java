@@ -24,6 +24,7 @@ import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.uberfire.java.nio.fs.jgit.util.Git;
+import org.uberfire.java.nio.fs.jgit.util.PathInfoCache;
 import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
 
 public class ListPathContent {
@@ -43,11 +44,20 @@ public class ListPathContent {
     public List<PathInfo> execute() throws IOException {
 
         final String gitPath = PathUtil.normalize(path);
-        final List<PathInfo> result = new ArrayList<>();
         final ObjectId tree = git.getTreeFromRef(branchName);
         if (tree == null) {
-            return result;
+            return new ArrayList<>();
         }
+
+        return PathInfoCache.getInstance().listPathContent(tree,
+                                                           gitPath,
+                                                           () -> listContent(tree,
+                                                                             gitPath));
+    }
+
+    private List<PathInfo> listContent(final ObjectId tree,
+                                       final String gitPath) throws IOException {
+        final List<PathInfo> result = new ArrayList<>();
         try (final TreeWalk tw = new TreeWalk(git.getRepository())) {
             boolean found = false;
             if (gitPath.isEmpty()) {
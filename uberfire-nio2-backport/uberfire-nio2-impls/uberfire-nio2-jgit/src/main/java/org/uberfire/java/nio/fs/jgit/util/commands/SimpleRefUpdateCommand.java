@@ -26,10 +26,19 @@ import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.java.nio.fs.jgit.util.Git;
 
 public class SimpleRefUpdateCommand {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SimpleRefUpdateCommand.class);
+
+    private static final int LOCK_FAILURE_RETRIES = Integer.getInteger("org.uberfire.nio.git.ref.update.retries",
+                                                                       10);
+    private static final long LOCK_FAILURE_RETRY_SLEEP = Long.getLong("org.uberfire.nio.git.ref.update.retry.sleep",
+                                                                      20L);
+
     private final Git git;
     private final String name;
     private final RevCommit commit;
@@ -43,6 +52,32 @@ public class SimpleRefUpdateCommand {
     }
 
     public void execute() throws IOException, ConcurrentRefUpdateException {
+        //background gc packs refs concurrently with commits, briefly holding packed-refs.lock
+        for (int attempt = 1; ; attempt++) {
+            final RefUpdate ru = newRefUpdate();
+            final RefUpdate.Result rc = ru.forceUpdate();
+            if (rc != RefUpdate.Result.LOCK_FAILURE || attempt >= LOCK_FAILURE_RETRIES) {
+                checkResult(ru,
+                            rc,
+                            commit.getId());
+                return;
+            }
+            LOG.debug("Ref update of [{}] failed to lock, retrying ({}/{}).",
+                      ru.getName(),
+                      attempt,
+                      LOCK_FAILURE_RETRIES);
+            try {
+                Thread.sleep(LOCK_FAILURE_RETRY_SLEEP * attempt);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                checkResult(ru,
+                            rc,
+                            commit.getId());
+            }
+        }
+    }
+
+    private RefUpdate newRefUpdate() throws IOException {
         final ObjectId headId = git.getLastCommit(Constants.R_HEADS + name);
         final RefUpdate ru = git.getRepository().updateRef(Constants.R_HEADS + name);
         if (headId == null) {
@@ -53,13 +88,12 @@ public class SimpleRefUpdateCommand {
         ru.setNewObjectId(commit.getId());
         ru.setRefLogMessage(commit.getShortMessage(),
                             false);
-        forceUpdate(ru,
-                    commit.getId());
+        return ru;
     }
 
-    private void forceUpdate(final RefUpdate ru,
-                             final ObjectId id) throws java.io.IOException, ConcurrentRefUpdateException {
-        final RefUpdate.Result rc = ru.forceUpdate();
+    private void checkResult(final RefUpdate ru,
+                             final RefUpdate.Result rc,
+                             final ObjectId id) throws ConcurrentRefUpdateException {
         switch (rc) {
             case NEW:
             case FORCED:
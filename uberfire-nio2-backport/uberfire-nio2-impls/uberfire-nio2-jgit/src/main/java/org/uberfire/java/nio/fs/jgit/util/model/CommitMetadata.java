@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util.model;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+public class CommitMetadata {
+
+    private final ObjectId commitId;
+    private final long time;
+
+    public CommitMetadata(final ObjectId commitId,
+                          final long time) {
+        this.commitId = commitId;
+        this.time = time;
+    }
+
+    public ObjectId getCommitId() {
+        return commitId;
+    }
+
+    public long getTime() {
+        return time;
+    }
+}
@@ -17,17 +17,35 @@
 package org.uberfire.java.nio.fs.jgit.util.model;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Map;
 
+import org.eclipse.jgit.lib.ObjectId;
+
 public class DefaultCommitContent implements CommitContent {
 
     private final Map<String, File> content;
+    private final Map<String, ObjectId> blobs;
 
     public DefaultCommitContent(final Map<String, File> content) {
+        this(content,
+             Collections.emptyMap());
+    }
+
+    /**
+     * @param blobs paths whose content was already inserted in the repository, mapped to the blob id
+     */
+    public DefaultCommitContent(final Map<String, File> content,
+                                final Map<String, ObjectId> blobs) {
         this.content = content;
+        this.blobs = blobs;
     }
 
     public Map<String, File> getContent() {
         return content;
     }
+
+    public Map<String, ObjectId> getBlobs() {
+        return blobs;
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.fs.jgit.util.Git;
+import org.uberfire.java.nio.fs.jgit.util.commands.Commit;
+import org.uberfire.java.nio.fs.jgit.util.commands.CreateRepository;
+import org.uberfire.java.nio.fs.jgit.util.model.CommitInfo;
+import org.uberfire.java.nio.fs.jgit.util.model.CopyCommitContent;
+import org.uberfire.java.nio.fs.jgit.util.model.MoveCommitContent;
+import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.uberfire.java.nio.fs.jgit.util.model.PathType.DIRECTORY;
+import static org.uberfire.java.nio.fs.jgit.util.model.PathType.FILE;
+import static org.uberfire.java.nio.fs.jgit.util.model.PathType.NOT_FOUND;
+
+public class IncrementalTreeBuilderTest extends AbstractTestInfra {
+
+    private Git git;
+
+    @Before
+    public void setup() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File(parentFolder,
+                                        "tree-builder.git");
+
+        git = new CreateRepository(gitFolder).execute().get();
+
+        commit(new HashMap<String, File>() {{
+            put("path/to/file1.txt",
+                tempFile("content1"));
+            put("path/to/file2.txt",
+                tempFile("content2"));
+            put("other/file3.txt",
+                tempFile("content3"));
+            put("path.txt",
+                tempFile("content4"));
+        }});
+    }
+
+    @Test
+    public void testUnchangedSubtreesAreReused() throws IOException {
+        final ObjectId otherBefore = subtreeId("other");
+        final ObjectId pathBefore = subtreeId("path");
+
+        commit(new HashMap<String, File>() {{
+            put("path/to/file1.txt",
+                tempFile("new content"));
+        }});
+
+        assertThat(subtreeId("other")).isEqualTo(otherBefore);
+        assertThat(subtreeId("path")).isNotEqualTo(pathBefore);
+        assertThat(git.getPathInfo("master",
+                                   "path/to/file2.txt").getPathType()).isEqualTo(FILE);
+        assertThat(git.getPathInfo("master",
+                                   "path.txt").getPathType()).isEqualTo(FILE);
+    }
+
+    @Test
+    public void testSameContentDoesNotCommit() throws IOException {
+        final boolean hasCommit = commit(new HashMap<String, File>() {{
+            put("path/to/file1.txt",
+                tempFile("content1"));
+        }});
+
+        assertThat(hasCommit).isFalse();
+    }
+
+    @Test
+    public void testDeleteEmptiesDirectories() throws IOException {
+        commit(new HashMap<String, File>() {{
+            put("other/file3.txt",
+                null);
+        }});
+
+        assertThat(git.getPathInfo("master",
+                                   "other").getPathType()).isEqualTo(NOT_FOUND);
+
+        commit(new HashMap<String, File>() {{
+            put("path",
+                null);
+        }});
+
+        final List<PathInfo> content = git.listPathContent("master",
+                                                           "/");
+        assertThat(content).hasSize(1);
+        assertThat(content.get(0).getPath()).isEqualTo("path.txt");
+    }
+
+    @Test
+    public void testMoveAndCopy() throws IOException {
+        final ObjectId fileId = git.getPathInfo("master",
+                                                "path/to/file1.txt").getObjectId();
+
+        new Commit(git,
+                   "master",
+                   new CommitInfo(null,
+                                  "name",
+                                  "name@example.com",
+                                  "move",
+                                  null,
+                                  null),
+                   false,
+                   null,
+                   new MoveCommitContent(new HashMap<String, String>() {{
+                       put("path/to/file1.txt",
+                           "moved/file1.txt");
+                   }})).execute();
+
+        assertThat(git.getPathInfo("master",
+                                   "path/to/file1.txt").getPathType()).isEqualTo(NOT_FOUND);
+        assertThat(git.getPathInfo("master",
+                                   "moved").getPathType()).isEqualTo(DIRECTORY);
+        assertThat(git.getPathInfo("master",
+                                   "moved/file1.txt").getObjectId()).isEqualTo(fileId);
+
+        new Commit(git,
+                   "master",
+                   new CommitInfo(null,
+                                  "name",
+                                  "name@example.com",
+                                  "copy",
+                                  null,
+                                  null),
+                   false,
+                   null,
+                   new CopyCommitContent(new HashMap<String, String>() {{
+                       put("moved/file1.txt",
+                           "path/to/file1.txt");
+                   }})).execute();
+
+        assertThat(git.getPathInfo("master",
+                                   "moved/file1.txt").getObjectId()).isEqualTo(fileId);
+        assertThat(git.getPathInfo("master",
+                                   "path/to/file1.txt").getObjectId()).isEqualTo(fileId);
+    }
+
+    private boolean commit(final HashMap<String, File> content) {
+        return new Commit(git,
+                          "master",
+                          "name",
+                          "name@example.com",
+                          "commit",
+                          null,
+                          null,
+                          false,
+                          content).execute();
+    }
+
+    private ObjectId subtreeId(final String path) throws IOException {
+        try (final TreeWalk treeWalk = TreeWalk.forPath(git.getRepository(),
+                                                        path,
+                                                        git.getTreeFromRef("master"))) {
+            return treeWalk.getObjectId(0);
+        }
+    }
+}
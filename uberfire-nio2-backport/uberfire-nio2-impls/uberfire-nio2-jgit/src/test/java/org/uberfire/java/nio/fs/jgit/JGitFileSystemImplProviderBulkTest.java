@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.uberfire.java.nio.base.options.CommentedOption;
+import org.uberfire.java.nio.base.version.VersionAttributes;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.FileAlreadyExistsException;
+import org.uberfire.java.nio.file.NoSuchFileException;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.StandardCopyOption;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public class JGitFileSystemImplProviderBulkTest extends AbstractTestInfra {
+
+    @Test
+    public void testWriteAllInASingleCommit() {
+        provider.newFileSystem(URI.create("git://bulk-write-repo"),
+                               EMPTY_ENV);
+
+        final Path path1 = provider.getPath(URI.create("git://master@bulk-write-repo/file1.txt"));
+        final Path path2 = provider.getPath(URI.create("git://master@bulk-write-repo/some/dir/file2.txt"));
+        final Path path3 = provider.getPath(URI.create("git://master@bulk-write-repo/file3.txt"));
+
+        provider.writeAll(content(path1,
+                                  "content1",
+                                  path3,
+                                  "content3"));
+
+        final Map<Path, InputStream> content = content(path1,
+                                                       "new content1",
+                                                       path2,
+                                                       "content2");
+        content.put(path3,
+                    null);
+        provider.writeAll(content,
+                          new CommentedOption("user",
+                                              "bulk write"));
+
+        assertThat(provider.exists(path1)).isTrue();
+        assertThat(provider.exists(path2)).isTrue();
+        assertThat(provider.exists(path3)).isFalse();
+
+        final VersionRecord lastRecord1 = lastRecord(path1);
+        final VersionRecord lastRecord2 = lastRecord(path2);
+        assertThat(lastRecord1.id()).isEqualTo(lastRecord2.id());
+        assertThat(lastRecord1.comment()).isEqualTo("bulk write");
+        assertThat(history(path1)).hasSize(2);
+    }
+
+    @Test
+    public void testDeleteAllInASingleCommit() {
+        provider.newFileSystem(URI.create("git://bulk-delete-repo"),
+                               EMPTY_ENV);
+
+        final Path path1 = provider.getPath(URI.create("git://master@bulk-delete-repo/file1.txt"));
+        final Path path2 = provider.getPath(URI.create("git://master@bulk-delete-repo/dir/file2.txt"));
+        final Path path3 = provider.getPath(URI.create("git://master@bulk-delete-repo/file3.txt"));
+
+        provider.writeAll(content(path1,
+                                  "content1",
+                                  path2,
+                                  "content2"));
+        provider.writeAll(Collections.singletonMap(path3,
+                                                   new ByteArrayInputStream("content3".getBytes())));
+
+        provider.deleteAll(Arrays.asList(path1,
+                                         provider.getPath(URI.create("git://master@bulk-delete-repo/dir")),
+                                         provider.getPath(URI.create("git://master@bulk-delete-repo/not_there.txt"))));
+
+        assertThat(provider.exists(path1)).isFalse();
+        assertThat(provider.exists(path2)).isFalse();
+        assertThat(provider.exists(path3)).isTrue();
+    }
+
+    @Test
+    public void testMoveAllInASingleCommit() {
+        provider.newFileSystem(URI.create("git://bulk-move-repo"),
+                               EMPTY_ENV);
+
+        final Path source1 = provider.getPath(URI.create("git://master@bulk-move-repo/file1.txt"));
+        final Path source2 = provider.getPath(URI.create("git://master@bulk-move-repo/.file1.txt"));
+        final Path target1 = provider.getPath(URI.create("git://master@bulk-move-repo/moved/file1.txt"));
+        final Path target2 = provider.getPath(URI.create("git://master@bulk-move-repo/moved/.file1.txt"));
+
+        provider.writeAll(content(source1,
+                                  "content",
+                                  source2,
+                                  "meta"));
+
+        final Map<Path, Path> sourceToTarget = new HashMap<>();
+        sourceToTarget.put(source1,
+                           target1);
+        sourceToTarget.put(source2,
+                           target2);
+        provider.moveAll(sourceToTarget);
+
+        assertThat(provider.exists(source1)).isFalse();
+        assertThat(provider.exists(source2)).isFalse();
+        assertThat(provider.exists(target1)).isTrue();
+        assertThat(provider.exists(target2)).isTrue();
+        assertThat(lastRecord(target1).id()).isEqualTo(lastRecord(target2).id());
+
+        try {
+            provider.moveAll(sourceToTarget);
+            failBecauseExceptionWasNotThrown(NoSuchFileException.class);
+        } catch (NoSuchFileException ignored) {
+        }
+    }
+
+    @Test
+    public void testMoveAllOnExistingTarget() {
+        provider.newFileSystem(URI.create("git://bulk-move-existing-repo"),
+                               EMPTY_ENV);
+
+        final Path source1 = provider.getPath(URI.create("git://master@bulk-move-existing-repo/file1.txt"));
+        final Path source2 = provider.getPath(URI.create("git://master@bulk-move-existing-repo/file2.txt"));
+        final Path target1 = provider.getPath(URI.create("git://master@bulk-move-existing-repo/moved/file1.txt"));
+        final Path target2 = provider.getPath(URI.create("git://master@bulk-move-existing-repo/moved/file2.txt"));
+
+        provider.writeAll(content(source1,
+                                  "content1",
+                                  source2,
+                                  "content2"));
+        provider.writeAll(content(target1,
+                                  "existing",
+                                  provider.getPath(URI.create("git://master@bulk-move-existing-repo/moved/other.txt")),
+                                  "other"));
+
+        final Map<Path, Path> sourceToTarget = new HashMap<>();
+        sourceToTarget.put(source1,
+                           target1);
+        sourceToTarget.put(source2,
+                           target2);
+        try {
+            provider.moveAll(sourceToTarget);
+            failBecauseExceptionWasNotThrown(FileAlreadyExistsException.class);
+        } catch (FileAlreadyExistsException ignored) {
+        }
+        assertThat(provider.exists(source1)).isTrue();
+        assertThat(provider.exists(source2)).isTrue();
+        assertThat(provider.exists(target2)).isFalse();
+
+        provider.moveAll(sourceToTarget,
+                         StandardCopyOption.REPLACE_EXISTING);
+
+        assertThat(provider.exists(source1)).isFalse();
+        assertThat(provider.exists(source2)).isFalse();
+        assertThat(provider.exists(target1)).isTrue();
+        assertThat(provider.exists(target2)).isTrue();
+    }
+
+    @Test
+    public void testPathsFromDifferentBranches() {
+        provider.newFileSystem(URI.create("git://bulk-branches-repo"),
+                               EMPTY_ENV);
+
+        final Path path1 = provider.getPath(URI.create("git://master@bulk-branches-repo/file1.txt"));
+        final Path path2 = provider.getPath(URI.create("git://other@bulk-branches-repo/file2.txt"));
+
+        try {
+            provider.writeAll(content(path1,
+                                      "content1",
+                                      path2,
+                                      "content2"));
+            failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        assertThat(provider.exists(path1)).isFalse();
+    }
+
+    private Map<Path, InputStream> content(final Path path1,
+                                           final String content1,
+                                           final Path path2,
+                                           final String content2) {
+        final Map<Path, InputStream> content = new HashMap<>();
+        content.put(path1,
+                    new ByteArrayInputStream(content1.getBytes()));
+        content.put(path2,
+                    new ByteArrayInputStream(content2.getBytes()));
+        return content;
+    }
+
+    private List<VersionRecord> history(final Path path) {
+        return provider.readAttributes(path,
+                                       VersionAttributes.class).history().records();
+    }
+
+    private VersionRecord lastRecord(final Path path) {
+        final List<VersionRecord> records = history(path);
+        return records.get(records.size() - 1);
+    }
+}
@@ -16,9 +16,11 @@
 
 package org.uberfire.java.nio.fs.jgit;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +29,7 @@ import org.eclipse.jgit.lib.Repository;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.uberfire.java.nio.base.BranchChanges;
 import org.uberfire.java.nio.base.FileDiff;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.fs.jgit.util.Git;
@@ -197,4 +200,47 @@ public class JGitFileSystemImplProviderDiffTest extends AbstractTestInfra {
 
         assertThat(diffs.size()).isEqualTo(0);
     }
+
+    @Test
+    public void testChangesSinceCommit() {
+        provider.newFileSystem(URI.create("git://changes-repo"),
+                               EMPTY_ENV);
+
+        final Path root = provider.getPath(URI.create("git://master@changes-repo/"));
+        final Path file1 = provider.getPath(URI.create("git://master@changes-repo/file1.txt"));
+        final Path file2 = provider.getPath(URI.create("git://master@changes-repo/dir/file2.txt"));
+        final Path file3 = provider.getPath(URI.create("git://master@changes-repo/file3.txt"));
+
+        write(file1,
+              "content1");
+        write(file2,
+              "content2");
+        final String since = (String) provider.readAttributes(root,
+                                                              "changes:").get(BranchChanges.HEAD);
+        assertThat(since).isNotNull();
+        assertThat(provider.readAttributes(root,
+                                           "changes:").containsKey(BranchChanges.CHANGED)).isFalse();
+
+        write(file1,
+              "new content1");
+        write(file3,
+              "content3");
+        provider.delete(file2);
+
+        final Map<String, Object> changes = provider.readAttributes(root,
+                                                                    "changes:" + since);
+        assertThat((String) changes.get(BranchChanges.HEAD)).isNotEqualTo(since);
+        assertThat((List<String>) changes.get(BranchChanges.CHANGED)).containsOnly("file1.txt",
+                                                                                   "file3.txt");
+        assertThat((List<String>) changes.get(BranchChanges.DELETED)).containsOnly("dir/file2.txt");
+
+        assertThat(provider.readAttributes(root,
+                                           "changes:0000000000000000000000000000000000000000").containsKey(BranchChanges.CHANGED)).isFalse();
+    }
+
+    private void write(final Path path,
+                       final String content) {
+        provider.writeAll(Collections.singletonMap(path,
+                                                   new ByteArrayInputStream(content.getBytes())));
+    }
 }
@@ -18,6 +18,13 @@ package org.uberfire.java.nio.fs.jgit;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.transport.CredentialsProvider;
@@ -30,6 +37,7 @@ import org.uberfire.java.nio.fs.jgit.util.Git;
 import org.uberfire.java.nio.fs.jgit.util.GitImpl;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class JGitFileSystemImplTest extends AbstractTestInfra {
@@ -452,7 +460,8 @@ public class JGitFileSystemImplTest extends AbstractTestInfra {
     public void lockTest() throws IOException, GitAPIException {
 
         final Git git = setupGit();
-        JGitFileSystemImpl.Lock lock = new JGitFileSystemImpl.Lock(git.getRepository().getDirectory().toURI());
+        JGitFileSystemImpl.Lock lock = new JGitFileSystemImpl.Lock(git.getRepository().getDirectory().toURI(),
+                                                                   0);
 
         JGitFileSystemImpl.Lock lockSpy = spy(lock);
 
@@ -468,4 +477,153 @@ public class JGitFileSystemImplTest extends AbstractTestInfra {
         verify(lockSpy,
                times(1)).physicalUnLockOnFS();
     }
+
+    @Test
+    public void physicalLockIsKeptDuringBurstTest() throws IOException, GitAPIException {
+
+        final Git git = setupGit();
+        JGitFileSystemImpl.Lock lockSpy = spy(new JGitFileSystemImpl.Lock(git.getRepository().getDirectory().toURI(),
+                                                                          500));
+
+        for (int i = 0; i < 5; i++) {
+            lockSpy.lock("master");
+            lockSpy.unlock("master");
+        }
+        lockSpy.lock();
+        lockSpy.unlock();
+
+        verify(lockSpy,
+               times(1)).physicalLockOnFS();
+        verify(lockSpy,
+               timeout(5000).times(1)).physicalUnLockOnFS();
+    }
+
+    @Test
+    public void failedPhysicalLockReleasesLockTest() throws IOException, GitAPIException {
+
+        final Git git = setupGit();
+        final JGitFileSystemImpl.Lock lockSpy = spy(new JGitFileSystemImpl.Lock(git.getRepository().getDirectory().toURI(),
+                                                                                0));
+        doThrow(new OverlappingFileLockException()).doCallRealMethod().when(lockSpy).physicalLockOnFS();
+
+        try {
+            lockSpy.lock();
+            fail("physical lock failure should be propagated");
+        } catch (OverlappingFileLockException e) {
+        }
+        assertThat(lockSpy.isLocked()).isFalse();
+
+        lockSpy.lock("master");
+        lockSpy.unlock("master");
+
+        verify(lockSpy,
+               times(2)).physicalLockOnFS();
+        verify(lockSpy,
+               times(1)).physicalUnLockOnFS();
+        assertThat(lockSpy.isLocked()).isFalse();
+    }
+
+    @Test
+    public void branchLocksDontBlockEachOtherTest() throws Exception {
+
+        final Git git = setupGit();
+        final JGitFileSystemImpl.Lock lock = new JGitFileSystemImpl.Lock(git.getRepository().getDirectory().toURI(),
+                                                                         0);
+
+        lock.lock("master");
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Boolean> otherBranch = executor.submit(() -> {
+                lock.lock("develop");
+                lock.unlock("develop");
+                return true;
+            });
+            assertThat(otherBranch.get(5,
+                                       TimeUnit.SECONDS)).isTrue();
+
+            final Future<Boolean> wholeFileSystem = executor.submit(() -> {
+                lock.lock();
+                lock.unlock();
+                return true;
+            });
+            try {
+                wholeFileSystem.get(200,
+                                    TimeUnit.MILLISECONDS);
+                fail("file system lock must wait for branch writers");
+            } catch (TimeoutException ignored) {
+            }
+
+            lock.unlock("master");
+            assertThat(wholeFileSystem.get(5,
+                                           TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(lock.isLocked()).isFalse();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void fileSystemLockInsideBranchLockTest() throws IOException, GitAPIException {
+
+        final Git git = setupGit();
+        final JGitFileSystemImpl.Lock lock = new JGitFileSystemImpl.Lock(git.getRepository().getDirectory().toURI(),
+                                                                         0);
+
+        lock.lock("master");
+        try {
+            lock.lock();
+        } finally {
+            lock.unlock("master");
+        }
+    }
+
+    @Test
+    public void crossedBatchesDontDeadlockTest() throws Exception {
+
+        final JGitFileSystemImpl.Lock lockA = new JGitFileSystemImpl.Lock(setupGit().getRepository().getDirectory().toURI(),
+                                                                          "git://a",
+                                                                          0,
+                                                                          200);
+        final JGitFileSystemImpl.Lock lockB = new JGitFileSystemImpl.Lock(setupGit().getRepository().getDirectory().toURI(),
+                                                                          "git://b",
+                                                                          0,
+                                                                          200);
+
+        final CountDownLatch batchesStarted = new CountDownLatch(2);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<Boolean> inOrder = executor.submit(() -> writeDuringBatch(lockA,
+                                                                                   lockB,
+                                                                                   batchesStarted));
+            final Future<Boolean> outOfOrder = executor.submit(() -> writeDuringBatch(lockB,
+                                                                                      lockA,
+                                                                                      batchesStarted));
+
+            assertThat(outOfOrder.get(5,
+                                      TimeUnit.SECONDS)).isFalse();
+            assertThat(inOrder.get(5,
+                                   TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(lockA.isLocked()).isFalse();
+        assertThat(lockB.isLocked()).isFalse();
+    }
+
+    private boolean writeDuringBatch(final JGitFileSystemImpl.Lock batch,
+                                     final JGitFileSystemImpl.Lock write,
+                                     final CountDownLatch batchesStarted) throws InterruptedException {
+        batch.lock();
+        try {
+            batchesStarted.countDown();
+            batchesStarted.await();
+            write.lock("master");
+            write.unlock("master");
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        } finally {
+            batch.unlock();
+        }
+    }
 }
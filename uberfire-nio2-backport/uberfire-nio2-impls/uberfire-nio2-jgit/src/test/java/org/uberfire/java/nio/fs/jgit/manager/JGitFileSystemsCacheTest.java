@@ -124,12 +124,97 @@ public class JGitFileSystemsCacheTest {
         verify(fs3Supplier,
                times(1)).get();
 
-        ((JGitFileSystemProxy) cache.get("fs1")).getRealJGitFileSystem();
+        assertTrue(cache.evictedFileSystems.containsKey("fs1"));
+        assertEquals(fs1,
+                     ((JGitFileSystemProxy) cache.get("fs1")).getRealJGitFileSystem());
+
+        // no longer on memoized cache (oldest instance) but not closed yet, so the evicted
+        // instance is put back instead of opening the repository again
+        verify(fs1Supplier,
+               times(1)).get();
+        assertFalse(cache.evictedFileSystems.containsKey("fs1"));
+        assertEquals(2,
+                     cache.memoizedSuppliers.size());
 
-        // two calls because is on no longer on memoized cache (oldest instance) needs to regenerate
-        // from fs supplier
+        cache.clear();
+        assertTrue(cache.evictedFileSystems.isEmpty());
+    }
+
+    @Test
+    public void proxyInstancesAreReused() {
+        when(config.getJgitFileSystemsInstancesCache()).thenReturn(1);
+        cache = new JGitFileSystemsCache(config);
+
+        JGitFileSystem fs1 = mock(JGitFileSystem.class);
+        Supplier<JGitFileSystem> fs1Supplier = getSupplierSpy(fs1);
+        cache.addSupplier("fs1",
+                          fs1Supplier);
+        JGitFileSystem fs2 = mock(JGitFileSystem.class);
+        cache.addSupplier("fs2",
+                          getSupplierSpy(fs2));
+
+        JGitFileSystemProxy fs1Proxy = (JGitFileSystemProxy) cache.get("fs1");
+        assertSame(fs1Proxy,
+                   cache.get("fs1"));
+
+        assertEquals(fs1,
+                     fs1Proxy.getRealJGitFileSystem());
+        assertEquals(fs2,
+                     ((JGitFileSystemProxy) cache.get("fs2")).getRealJGitFileSystem());
+
+        //the proxy keeps working after its instance got evicted
+        assertEquals(fs1,
+                     fs1Proxy.getRealJGitFileSystem());
         verify(fs1Supplier,
-               times(2)).get();
+               times(1)).get();
+
+        cache.remove("fs1");
+        assertNull(cache.get("fs1"));
+    }
+
+    @Test
+    public void cacheMetrics() {
+        when(config.getJgitFileSystemsInstancesCache()).thenReturn(1);
+        cache = new JGitFileSystemsCache(config);
+
+        cache.addSupplier("fs1",
+                          getSupplierSpy(mock(JGitFileSystem.class)));
+        cache.addSupplier("fs2",
+                          getSupplierSpy(mock(JGitFileSystem.class)));
+
+        ((JGitFileSystemProxy) cache.get("fs2")).getRealJGitFileSystem();
+        ((JGitFileSystemProxy) cache.get("fs2")).getRealJGitFileSystem();
+        ((JGitFileSystemProxy) cache.get("fs1")).getRealJGitFileSystem();
+
+        final JGitFileSystemsCache.JGitFileSystemsCacheInfo info = cache.getCacheInfo();
+        assertEquals(1,
+                     info.fileSystemsCacheSize());
+        assertEquals(1,
+                     info.fileSystemsCacheHits());
+        assertEquals(2,
+                     info.fileSystemsCacheMisses());
+        assertEquals(2,
+                     info.fileSystemsCacheEvictions());
+        assertEquals(1,
+                     info.fileSystemsCacheWeight());
+    }
+
+    @Test
+    public void evictionByWeight() {
+        when(config.getJgitFileSystemsInstancesCache()).thenReturn(10);
+        when(config.getJgitFileSystemsMaxWeight()).thenReturn(2L);
+        cache = new JGitFileSystemsCache(config);
+
+        for (int i = 0; i < 4; i++) {
+            cache.addSupplier("fs" + i,
+                              getSupplierSpy(mock(JGitFileSystem.class)));
+            ((JGitFileSystemProxy) cache.get("fs" + i)).getRealJGitFileSystem();
+        }
+
+        assertEquals(2,
+                     cache.memoizedSuppliers.size());
+        assertTrue(cache.memoizedSuppliers.containsKey("fs2"));
+        assertTrue(cache.memoizedSuppliers.containsKey("fs3"));
     }
 
     private Supplier<JGitFileSystem> getSupplierSpy(final JGitFileSystem fs1) {
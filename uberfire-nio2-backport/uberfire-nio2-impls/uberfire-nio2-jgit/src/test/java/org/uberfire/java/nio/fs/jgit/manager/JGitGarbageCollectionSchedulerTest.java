@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.manager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystem;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystemProviderConfiguration;
+import org.uberfire.java.nio.fs.jgit.util.Git;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JGitGarbageCollectionSchedulerTest {
+
+    private JGitFileSystemProviderConfiguration config;
+    private JGitFileSystem fs;
+    private Git git;
+
+    @Before
+    public void setup() {
+        config = mock(JGitFileSystemProviderConfiguration.class);
+        when(config.getGcMaxConcurrent()).thenReturn(1);
+        when(config.getGcIdleDelay()).thenReturn(200);
+        when(config.getGcMaxDelay()).thenReturn(1000);
+
+        git = mock(Git.class);
+        fs = mock(JGitFileSystem.class);
+        when(fs.getName()).thenReturn("fs");
+        when(fs.isOpen()).thenReturn(true);
+        when(fs.getGit()).thenReturn(git);
+    }
+
+    @Test
+    public void requestsAreCoalesced() throws InterruptedException {
+        final JGitGarbageCollectionScheduler scheduler = new JGitGarbageCollectionScheduler(config);
+
+        scheduler.scheduleGC(fs);
+        scheduler.scheduleGC(fs);
+        scheduler.scheduleGC(fs);
+
+        assertEquals(3,
+                     scheduler.getQueueDepth("fs"));
+        verify(git,
+               never()).gc();
+
+        verify(git,
+               timeout(5000).times(1)).gc();
+
+        Thread.sleep(300);
+        verify(git,
+               times(1)).gc();
+        assertEquals(0,
+                     scheduler.getQueueDepth("fs"));
+        assertTrue(scheduler.getLastGCDuration("fs") >= 0);
+    }
+
+    @Test
+    public void closedFileSystemIsSkipped() {
+        when(fs.isOpen()).thenReturn(false);
+        final JGitGarbageCollectionScheduler scheduler = new JGitGarbageCollectionScheduler(config);
+
+        scheduler.scheduleGC(fs);
+
+        verify(fs,
+               timeout(5000)).isOpen();
+        verify(git,
+               never()).gc();
+    }
+
+    @Test
+    public void cancelPending() throws InterruptedException {
+        final JGitGarbageCollectionScheduler scheduler = new JGitGarbageCollectionScheduler(config);
+
+        scheduler.scheduleGC(fs);
+        scheduler.cancelPending();
+
+        Thread.sleep(400);
+        verify(git,
+               never()).gc();
+        assertEquals(0,
+                     scheduler.getQueueDepth("fs"));
+    }
+
+    @Test
+    public void canBeUsedAgainAfterShutdown() throws InterruptedException {
+        final JGitGarbageCollectionScheduler scheduler = new JGitGarbageCollectionScheduler(config);
+
+        scheduler.scheduleGC(fs);
+        scheduler.shutdown();
+
+        Thread.sleep(400);
+        verify(git,
+               never()).gc();
+
+        scheduler.scheduleGC(fs);
+        verify(git,
+               timeout(5000).times(1)).gc();
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.fs.jgit.AbstractTestInfra;
+import org.uberfire.java.nio.fs.jgit.util.commands.CreateRepository;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BlobByteChannelTest extends AbstractTestInfra {
+
+    private Git git;
+
+    @Before
+    public void setup() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File(parentFolder,
+                                        "blob-channel.git");
+
+        git = new CreateRepository(gitFolder).execute().get();
+    }
+
+    @Test
+    public void smallContentIsInsertedFromMemory() throws IOException {
+        final AtomicReference<ObjectId> blobId = new AtomicReference<>();
+        final BlobByteChannel channel = new BlobByteChannel(git.getRepository(),
+                                                            1024,
+                                                            blobId::set);
+
+        try (final OutputStream out = channel.asOutputStream()) {
+            out.write("small content".getBytes());
+        }
+
+        assertThat(channel.isSpilled()).isFalse();
+        assertThat(channel.isOpen()).isFalse();
+        assertThat(readBlob(blobId.get())).isEqualTo("small content");
+    }
+
+    @Test
+    public void bigContentIsSpilledToDisk() throws IOException {
+        final AtomicReference<ObjectId> blobId = new AtomicReference<>();
+        final BlobByteChannel channel = new BlobByteChannel(git.getRepository(),
+                                                            16,
+                                                            blobId::set);
+
+        channel.write(ByteBuffer.wrap("0123456789".getBytes()));
+        assertThat(channel.isSpilled()).isFalse();
+        channel.write(ByteBuffer.wrap("0123456789".getBytes()));
+        assertThat(channel.isSpilled()).isTrue();
+        channel.close();
+
+        assertThat(readBlob(blobId.get())).isEqualTo("01234567890123456789");
+    }
+
+    @Test
+    public void channelIsSeekable() throws IOException {
+        final AtomicReference<ObjectId> blobId = new AtomicReference<>();
+        final BlobByteChannel channel = new BlobByteChannel(git.getRepository(),
+                                                            1024,
+                                                            blobId::set);
+
+        channel.write(ByteBuffer.wrap("hello world".getBytes()));
+        channel.position(6);
+        channel.write(ByteBuffer.wrap("there".getBytes()));
+        channel.truncate(9);
+
+        assertThat(channel.size()).isEqualTo(9);
+        channel.close();
+
+        assertThat(readBlob(blobId.get())).isEqualTo("hello the");
+    }
+
+    private String readBlob(final ObjectId blobId) throws IOException {
+        return new String(git.getRepository().open(blobId).getBytes());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.fs.jgit.AbstractTestInfra;
+import org.uberfire.java.nio.fs.jgit.util.commands.Commit;
+import org.uberfire.java.nio.fs.jgit.util.commands.CreateRepository;
+import org.uberfire.java.nio.fs.jgit.util.model.CommitMetadata;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CommitMetadataIndexTest extends AbstractTestInfra {
+
+    private Git git;
+
+    @Before
+    public void setup() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File(parentFolder,
+                                        "commit-metadata.git");
+
+        git = new CreateRepository(gitFolder).execute().get();
+    }
+
+    @Test
+    public void firstCommitsPerBranchAndPath() throws IOException {
+        final RevCommit first = commit("path/to/file1.txt");
+        final RevCommit second = commit("path/to/file2.txt");
+        commit("path/to/file1.txt");
+
+        final CommitMetadataIndex index = git.getCommitMetadataIndex();
+
+        assertThat(index.getFirstCommit("master",
+                                        "/").getCommitId()).isEqualTo(first);
+        assertThat(index.getFirstCommit("master",
+                                        "path/to").getCommitId()).isEqualTo(first);
+        assertThat(index.getFirstCommit("master",
+                                        "path/to/file2.txt").getCommitId()).isEqualTo(second);
+        assertThat(index.getFirstCommit("master",
+                                        "path/to/file1.txt").getCommitId()).isEqualTo(first);
+        assertThat(index.getFirstCommit("master",
+                                        "path/to/file1.txt").getTime()).isEqualTo(first.getCommitterIdent().getWhen().getTime());
+        assertThat(index.getFirstCommit("master",
+                                        "non/existent.txt")).isNull();
+        assertThat(index.getFirstCommit("non-existent-branch",
+                                        "/")).isNull();
+    }
+
+    @Test
+    public void indexIsUpdatedIncrementallyAndPersisted() throws IOException {
+        final RevCommit first = commit("file1.txt");
+        assertThat(git.getCommitMetadataIndex().getFirstCommit("master",
+                                                               "file1.txt").getCommitId()).isEqualTo(first);
+
+        final RevCommit second = commit("file2.txt");
+        git.getCommitMetadataIndex().updateNow("master");
+
+        final File indexFile = new File(git.getRepository().getDirectory(),
+                                        CommitMetadataIndex.INDEX_FILE_NAME);
+        assertThat(indexFile).exists();
+        assertThat(new String(Files.readAllBytes(indexFile.toPath()),
+                              StandardCharsets.UTF_8)).contains(second.name());
+
+        final CommitMetadataIndex reloaded = new CommitMetadataIndex(git);
+        final CommitMetadata firstCommit = reloaded.getFirstCommit("master",
+                                                                   "file1.txt");
+        final CommitMetadata secondFileCommit = reloaded.getFirstCommit("master",
+                                                                        "file2.txt");
+        assertThat(firstCommit.getCommitId()).isEqualTo(first);
+        assertThat(secondFileCommit.getCommitId()).isEqualTo(second);
+    }
+
+    @Test
+    public void updatesRunInBackground() throws Exception {
+        final RevCommit first = commit("file1.txt");
+        final CommitMetadataIndex index = git.getCommitMetadataIndex();
+        assertThat(index.getFirstCommit("master",
+                                        "file1.txt").getCommitId()).isEqualTo(first);
+
+        final RevCommit second = commit("file2.txt");
+        index.update("master");
+
+        final File indexFile = new File(git.getRepository().getDirectory(),
+                                        CommitMetadataIndex.INDEX_FILE_NAME);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!new String(Files.readAllBytes(indexFile.toPath()),
+                           StandardCharsets.UTF_8).contains(second.name()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(new String(Files.readAllBytes(indexFile.toPath()),
+                              StandardCharsets.UTF_8)).contains(second.name());
+    }
+
+    @Test
+    public void indexIsRebuiltWhenCorrupted() throws IOException {
+        final RevCommit first = commit("file1.txt");
+        assertThat(git.getCommitMetadataIndex().getFirstCommit("master",
+                                                               "file1.txt").getCommitId()).isEqualTo(first);
+
+        final File indexFile = new File(git.getRepository().getDirectory(),
+                                        CommitMetadataIndex.INDEX_FILE_NAME);
+        Files.write(indexFile.toPath(),
+                    "garbage\n".getBytes(StandardCharsets.UTF_8));
+
+        final CommitMetadataIndex reloaded = new CommitMetadataIndex(git);
+        assertThat(reloaded.getFirstCommit("master",
+                                           "file1.txt").getCommitId()).isEqualTo(first);
+    }
+
+    private RevCommit commit(final String path) throws IOException {
+        final File content = tempFile("content" + System.nanoTime());
+        new Commit(git,
+                   "master",
+                   "name",
+                   "name@example.com",
+                   "commit",
+                   null,
+                   null,
+                   false,
+                   new HashMap<String, File>() {{
+                       put(path,
+                           content);
+                   }}).execute();
+        return git.getLastCommit("master");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.fs.jgit.AbstractTestInfra;
+import org.uberfire.java.nio.fs.jgit.util.commands.Commit;
+import org.uberfire.java.nio.fs.jgit.util.commands.CreateRepository;
+import org.uberfire.java.nio.fs.jgit.util.model.CommitInfo;
+import org.uberfire.java.nio.fs.jgit.util.model.DefaultCommitContent;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class LastCommitIndexTest extends AbstractTestInfra {
+
+    private Git git;
+
+    @Before
+    public void setup() throws IOException {
+        final File parentFolder = createTempDirectory();
+        final File gitFolder = new File(parentFolder,
+                                        "last-commit.git");
+
+        git = new CreateRepository(gitFolder).execute().get();
+    }
+
+    @Test
+    public void lastCommitIsTrackedPerPath() throws Exception {
+        commit("1st commit",
+               "path/to/file1.txt");
+        final RevCommit first = git.getLastCommit("master");
+
+        //loads the index before the next commit, so it has to be updated incrementally
+        assertThat(git.getLastCommit("master",
+                                     "path/to/file1.txt")).isEqualTo(first);
+
+        commit("2nd commit",
+               "path/to/file2.txt");
+        final RevCommit second = git.getLastCommit("master");
+
+        assertThat(git.getLastCommit("master",
+                                     "path/to/file1.txt")).isEqualTo(first);
+        assertThat(git.getLastCommit("master",
+                                     "path/to/file2.txt")).isEqualTo(second);
+        assertThat(git.getLastCommit("master",
+                                     "/path/to")).isEqualTo(second);
+        assertThat(git.getLastCommit("master",
+                                     "/")).isEqualTo(second);
+        assertThat(git.getLastCommit("master",
+                                     "non/existent.txt")).isNull();
+    }
+
+    @Test
+    public void indexIsRebuiltWhenBranchMovesOutsideOfCommit() throws Exception {
+        commit("1st commit",
+               "path/to/file1.txt");
+        assertThat(git.getLastCommit("master",
+                                     "path/to/file1.txt").getFullMessage()).isEqualTo("1st commit");
+
+        new Commit(git,
+                   "master",
+                   "name",
+                   "name@example.com",
+                   "external commit",
+                   null,
+                   null,
+                   false,
+                   new HashMap<String, File>() {{
+                       put("path/to/file1.txt",
+                           tempFile("external"));
+                   }}).execute();
+
+        assertThat(git.getLastCommit("master",
+                                     "path/to/file1.txt").getFullMessage()).isEqualTo("external commit");
+    }
+
+    @Test
+    public void listCommitsIsPaged() throws Exception {
+        commit("1st commit",
+               "file.txt");
+        commit("2nd commit",
+               "file.txt");
+        commit("3rd commit",
+               "file.txt");
+
+        final List<RevCommit> page = git.listCommits(git.getRef("master"),
+                                                     "file.txt",
+                                                     1,
+                                                     1);
+
+        assertThat(page).hasSize(1);
+        assertThat(page.get(0).getFullMessage()).isEqualTo("2nd commit");
+    }
+
+    private void commit(final String message,
+                        final String path) throws IOException {
+        final File content = tempFile(message);
+        git.commit("master",
+                   new CommitInfo(null,
+                                  "name",
+                                  "name@example.com",
+                                  message,
+                                  null,
+                                  null),
+                   false,
+                   null,
+                   new DefaultCommitContent(new HashMap<String, File>() {{
+                       put(path,
+                           content);
+                   }}));
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.fs.jgit.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+import org.uberfire.java.nio.fs.jgit.util.model.PathInfo;
+import org.uberfire.java.nio.fs.jgit.util.model.PathType;
+
+import static org.junit.Assert.*;
+
+public class PathInfoCacheTest {
+
+    private static final ObjectId TREE_A = ObjectId.fromString("0123456789012345678901234567890123456789");
+    private static final ObjectId TREE_B = ObjectId.fromString("9876543210987654321098765432109876543210");
+
+    @Test
+    public void pathInfoIsLoadedOncePerTree() throws IOException {
+        final PathInfoCache cache = new PathInfoCache(10);
+        final AtomicInteger loads = new AtomicInteger(0);
+        final PathInfoCache.Loader<PathInfo> loader = () -> {
+            loads.incrementAndGet();
+            return new PathInfo(null,
+                                "file.txt",
+                                PathType.FILE);
+        };
+
+        cache.getPathInfo(TREE_A,
+                          "file.txt",
+                          loader);
+        cache.getPathInfo(TREE_A,
+                          "file.txt",
+                          loader);
+        assertEquals(1,
+                     loads.get());
+        assertEquals(1,
+                     cache.getHitCount());
+        assertEquals(1,
+                     cache.getMissCount());
+
+        cache.getPathInfo(TREE_B,
+                          "file.txt",
+                          loader);
+        assertEquals(2,
+                     loads.get());
+    }
+
+    @Test
+    public void listingsAreCopiedAndEvicted() throws IOException {
+        final PathInfoCache cache = new PathInfoCache(1);
+
+        final List<PathInfo> content = cache.listPathContent(TREE_A,
+                                                             "dir",
+                                                             () -> new ArrayList<PathInfo>() {{
+                                                                 add(new PathInfo(null,
+                                                                                  "dir/file.txt",
+                                                                                  PathType.FILE));
+                                                             }});
+        content.clear();
+
+        assertEquals(1,
+                     cache.listPathContent(TREE_A,
+                                           "dir",
+                                           ArrayList::new).size());
+
+        cache.getPathInfo(TREE_A,
+                          "dir",
+                          () -> new PathInfo(null,
+                                             "dir",
+                                             PathType.DIRECTORY));
+
+        assertEquals(1,
+                     cache.size());
+        assertEquals(1,
+                     cache.getEvictionCount());
+    }
+}
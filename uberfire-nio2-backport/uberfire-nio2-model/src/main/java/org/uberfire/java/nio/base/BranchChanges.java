@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.base;
+
+/**
+ * Names of the attributes that describe how a branch changed since a given commit, read from the
+ * root path of the branch with {@code readAttributes(root, CHANGES_ATTR + ":" + commitId)}.
+ * <p>
+ * {@link #HEAD} holds the current head commit id of the branch. {@link #CHANGED} and
+ * {@link #DELETED} list the paths, relative to the root, added or modified and deleted since the
+ * commit; they are missing when no commit is given or the commit isn't known to the repository.
+ */
+public final class BranchChanges {
+
+    public static final String CHANGES_ATTR = "changes";
+    public static final String HEAD = "head";
+    public static final String CHANGED = "changed";
+    public static final String DELETED = "deleted";
+
+    private BranchChanges() {
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.uberfire.java.nio.base;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
+
+import org.uberfire.java.nio.IOException;
+import org.uberfire.java.nio.file.CopyOption;
+import org.uberfire.java.nio.file.DeleteOption;
+import org.uberfire.java.nio.file.OpenOption;
+import org.uberfire.java.nio.file.Path;
+
+/**
+ * Implemented by file system providers that are able to apply changes on several paths as a single
+ * atomic operation. All paths of an operation must belong to the same file system (and branch, for
+ * versioned file systems).
+ */
+public interface BulkOperationsProvider {
+
+    /**
+     * Writes all the given contents at once, replacing existing files. A null content deletes the
+     * path if it exists.
+     */
+    void writeAll(final Map<Path, InputStream> content,
+                  final OpenOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException;
+
+    /**
+     * Deletes all the given paths at once, directories are deleted with their content. Paths that
+     * don't exist are ignored.
+     */
+    void deleteAll(final Collection<Path> paths,
+                   final DeleteOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException;
+
+    /**
+     * Moves all the given sources to their targets at once. Existing targets are only replaced
+     * with {@link org.uberfire.java.nio.file.StandardCopyOption#REPLACE_EXISTING}, otherwise nothing
+     * is moved and a {@link org.uberfire.java.nio.file.FileAlreadyExistsException} is thrown.
+     */
+    void moveAll(final Map<Path, Path> sourceToTarget,
+                 final CopyOption... options)
+            throws IllegalArgumentException, IOException, UnsupportedOperationException;
+}
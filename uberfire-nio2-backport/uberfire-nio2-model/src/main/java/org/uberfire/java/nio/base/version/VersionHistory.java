@@ -16,6 +16,7 @@
 
 package org.uberfire.java.nio.base.version;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -23,5 +24,39 @@ import java.util.List;
  */
 public interface VersionHistory {
 
+    /**
+     * All records of the history, oldest first.
+     */
     List<VersionRecord> records();
+
+    /**
+     * A page of the history in reverse chronological order, starting from the most recent record.
+     * Implementations backed by a version control system should override it to avoid loading the
+     * whole history.
+     */
+    default List<VersionRecord> recentRecords(final int offset,
+                                              final int pageSize) {
+        final List<VersionRecord> records = records();
+        final List<VersionRecord> result = new ArrayList<>();
+        for (int i = records.size() - 1 - offset; i >= 0 && result.size() < pageSize; i--) {
+            result.add(records.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * The most recent record or null if the history is empty.
+     */
+    default VersionRecord lastRecord() {
+        final List<VersionRecord> records = records();
+        return records.isEmpty() ? null : records.get(records.size() - 1);
+    }
+
+    /**
+     * The oldest record or null if the history is empty.
+     */
+    default VersionRecord firstRecord() {
+        final List<VersionRecord> records = records();
+        return records.isEmpty() ? null : records.get(0);
+    }
 }
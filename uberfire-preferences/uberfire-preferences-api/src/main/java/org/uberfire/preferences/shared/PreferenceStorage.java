@@ -18,6 +18,7 @@ package org.uberfire.preferences.shared;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.jboss.errai.bus.server.annotations.Remote;
 import org.uberfire.preferences.shared.impl.PreferenceScopeResolutionStrategyInfo;
@@ -87,6 +88,16 @@ public interface PreferenceStorage {
                String key,
                Object value);
 
+    /**
+     * (Over) Writes several preference values at once, for a specific scope. All of them are
+     * committed together.
+     * @param scope Scope in which the preferences will be written.
+     * @param valueByKey Map from the preference keys to their values (values could be null).
+     * @param <T> Type of the preference values.
+     */
+    <T> void write(PreferenceScope scope,
+                   Map<String, T> valueByKey);
+
     /**
      * Deletes a preference, in a specific scope, if it exists.
      * @param scope Scope in which the preference is stored.
@@ -57,6 +57,13 @@ public interface BasePreferencePortable<T> extends BasePreference<T> {
      */
     String bundleKey();
 
+    /**
+     * Returns the properties holding other preference beans by their field name, each mapped to
+     * whether it is shared (stored on its own) or not (stored inside this preference).
+     * @return Whether each sub-preference property is shared, by property field name.
+     */
+    Map<String, Boolean> getSubPreferences();
+
     /**
      * Sets a property value by its name.
      * @param property Name of the property field to be set.
@@ -17,6 +17,7 @@
 package org.uberfire.preferences.shared.bean;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.jboss.errai.bus.server.annotations.Remote;
 import org.uberfire.preferences.shared.PreferenceScope;
@@ -48,6 +49,25 @@ public interface PreferenceBeanServerStore extends PreferenceBeanStore {
     <U extends BasePreference<U>, T extends BasePreferencePortable<U>> T load(T emptyPortablePreference,
                                                                               PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo);
 
+    /**
+     * Loads several preference beans at once. Every value they need, including the ones of the
+     * shared preferences they hold, is read from the storage in a single pass.
+     * @param emptyPortablePreferences Newly created portable instances for the preference beans.
+     * @return The loaded preference bean portable instances, in the same order.
+     */
+    List<BasePreferencePortable<? extends BasePreference<?>>> load(Collection<BasePreferencePortable<? extends BasePreference<?>>> emptyPortablePreferences);
+
+    /**
+     * Loads several preference beans at once, following the passed scope resolution strategy. Every
+     * value they need, including the ones of the shared preferences they hold, is read from the
+     * storage in a single pass.
+     * @param emptyPortablePreferences Newly created portable instances for the preference beans.
+     * @param scopeResolutionStrategyInfo Custom scope resolution strategy to follow.
+     * @return The loaded preference bean portable instances, in the same order.
+     */
+    List<BasePreferencePortable<? extends BasePreference<?>>> load(Collection<BasePreferencePortable<? extends BasePreference<?>>> emptyPortablePreferences,
+                                                                   PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo);
+
     /**
      * Saves all preference data.
      * @param portablePreference Preference instance to be saved.
@@ -77,13 +97,14 @@ public interface PreferenceBeanServerStore extends PreferenceBeanStore {
                                                                                  PreferenceScope scope);
 
     /**
-     * Saves all preferences passed.
+     * Saves all preferences passed, committing them together.
      * @param portablePreferences Preference instances to be saved.
      */
     void save(Collection<BasePreferencePortable<? extends BasePreference<?>>> portablePreferences);
 
     /**
-     * Saves all preferences passed, following the passed scope resolution strategy.
+     * Saves all preferences passed, following the passed scope resolution strategy, committing them
+     * together.
      * @param portablePreferences Preference instances to be saved.
      * @param scopeResolutionStrategyInfo Custom scope resolution strategy to follow.
      */
@@ -91,7 +112,8 @@ public interface PreferenceBeanServerStore extends PreferenceBeanStore {
               PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo);
 
     /**
-     * Saves all preferences passed, following the passed scope resolution strategy.
+     * Saves all preferences passed, following the passed scope resolution strategy, committing them
+     * together.
      * @param portablePreferences Preference instances to be saved.
      * @param scope Custom scope resolution strategy to follow.
      */
@@ -82,6 +82,11 @@ public class PortablePreferenceMockPortableGeneratedImpl extends PortablePrefere
         }
     }
 
+    @Override
+    public Map<String, Boolean> getSubPreferences() {
+        return new HashMap<>();
+    }
+
     @Override
     public Map<String, PropertyFormType> getPropertiesTypes() {
         Map<String, PropertyFormType> propertiesTypes = new HashMap<>();
@@ -19,10 +19,15 @@ package org.uberfire.preferences.backend;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.util.AnnotationLiteral;
 import javax.inject.Inject;
@@ -83,20 +88,32 @@ public class PreferenceBeanStoreImpl implements PreferenceBeanServerStore {
     @Override
     public <U extends BasePreference<U>, T extends BasePreferencePortable<U>> T load(final T emptyPortablePreference,
                                                                                      final PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo) {
-        Class<U> clazz = emptyPortablePreference.getPojoClass();
-        T portablePreference = preferenceStore.get(scopeResolutionStrategyInfo,
-                                                   emptyPortablePreference.identifier());
-        if (portablePreference == null) {
-            portablePreference = (T) emptyPortablePreference.defaultValue((U) emptyPortablePreference);
-        }
+        return (T) load(emptyPortablePreference,
+                        key -> preferenceStore.get(scopeResolutionStrategyInfo,
+                                                   key));
+    }
 
-        try {
-            return load(clazz,
-                        portablePreference,
-                        scopeResolutionStrategyInfo);
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+    @Override
+    public List<BasePreferencePortable<? extends BasePreference<?>>> load(final Collection<BasePreferencePortable<? extends BasePreference<?>>> emptyPortablePreferences) {
+        return load(emptyPortablePreferences,
+                    defaultScopeResolutionStrategy.getInfo());
+    }
+
+    @Override
+    public List<BasePreferencePortable<? extends BasePreference<?>>> load(final Collection<BasePreferencePortable<? extends BasePreference<?>>> emptyPortablePreferences,
+                                                                          final PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo) {
+        final Set<String> keys = new LinkedHashSet<>();
+        emptyPortablePreferences.forEach(emptyPortablePreference -> collectKeys(emptyPortablePreference,
+                                                                                keys));
+        final Map<String, Object> valueByKey = preferenceStore.search(scopeResolutionStrategyInfo,
+                                                                      keys);
+
+        final List<BasePreferencePortable<? extends BasePreference<?>>> loadedPreferences = new ArrayList<>();
+        for (BasePreferencePortable<? extends BasePreference<?>> emptyPortablePreference : emptyPortablePreferences) {
+            loadedPreferences.add((BasePreferencePortable<? extends BasePreference<?>>) load(emptyPortablePreference,
+                                                                                             valueByKey::get));
         }
+        return loadedPreferences;
     }
 
     @Override
@@ -145,19 +162,8 @@ public class PreferenceBeanStoreImpl implements PreferenceBeanServerStore {
     @Override
     public <U extends BasePreference<U>, T extends BasePreferencePortable<U>> void save(final T portablePreference,
                                                                                         final PreferenceScope scope) {
-        try {
-            Class<U> clazz = portablePreference.getPojoClass();
-            save(clazz,
-                 portablePreference,
-                 scope);
-            if (portablePreference.isPersistable()) {
-                preferenceStore.put(scope,
-                                    portablePreference.identifier(),
-                                    portablePreference);
-            }
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+        save(Collections.singletonList(portablePreference),
+             scope);
     }
 
     @Override
@@ -216,9 +222,15 @@ public class PreferenceBeanStoreImpl implements PreferenceBeanServerStore {
     @Override
     public void save(final Collection<BasePreferencePortable<? extends BasePreference<?>>> portablePreferences,
                      final PreferenceScope scope) {
+        final Map<String, Object> valueByKey = new LinkedHashMap<>();
         for (BasePreferencePortable<? extends BasePreference<?>> portablePreference : portablePreferences) {
-            saveOne(portablePreference,
-                    scope);
+            collectValues(portablePreference,
+                          valueByKey);
+        }
+
+        if (!valueByKey.isEmpty()) {
+            preferenceStore.put(scope,
+                                valueByKey);
         }
     }
 
@@ -285,132 +297,108 @@ public class PreferenceBeanStoreImpl implements PreferenceBeanServerStore {
         return rootElement;
     }
 
-    private <U extends BasePreference<U>, T extends BasePreferencePortable<U>> T load(final Class<U> clazz,
-                                                                                      T portablePreference,
-                                                                                      final PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo) throws IllegalAccessException {
+    /**
+     * Loads a preference, and every preference it holds, from the values returned by the reader.
+     */
+    private BasePreferencePortable<?> load(final BasePreferencePortable<?> emptyPortablePreference,
+                                           final Function<String, Object> reader) {
+        BasePreferencePortable portablePreference = (BasePreferencePortable) reader.apply(emptyPortablePreference.identifier());
         if (portablePreference == null) {
-            portablePreference = lookupPortablePreference(clazz);
+            portablePreference = (BasePreferencePortable) ((BasePreferencePortable) emptyPortablePreference).defaultValue(emptyPortablePreference);
         }
 
-        for (Field field : portablePreference.getPojoClass().getDeclaredFields()) {
-            Property propertyAnnotation = field.getAnnotation(Property.class);
-            if (propertyAnnotation != null) {
-                if (field.getType().isAnnotationPresent(WorkbenchPreference.class)) {
-                    final Class<? extends BasePreference<?>> propertyType = (Class<? extends BasePreference<?>>) field.getType();
-                    boolean shared = propertyAnnotation.shared();
-
-                    field.setAccessible(true);
-
-                    if (shared) {
-                        BasePreferencePortable<?> loadedSharedProperty = loadSharedPreference(field,
-                                                                                              scopeResolutionStrategyInfo);
-                        field.set(portablePreference,
-                                  loadedSharedProperty);
-                    } else {
-                        final BasePreferencePortable<?> subPreferenceValue = loadSubPreferenceValue(portablePreference,
-                                                                                                    field,
-                                                                                                    scopeResolutionStrategyInfo);
-                        field.set(portablePreference,
-                                  subPreferenceValue);
-                    }
-                }
-            }
-        }
+        loadSubPreferences(portablePreference,
+                           reader);
 
         return portablePreference;
     }
 
-    private <U extends BasePreference<U>, T extends BasePreferencePortable<U>> T loadSharedPreference(final Field field,
-                                                                                                      final PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo) {
-        final Class<U> propertyType = (Class<U>) field.getType();
-        T loadedPreference;
-
-        try {
-            T emptyPortablePreference = lookupPortablePreference(propertyType);
-            T portablePreference = preferenceStore.get(scopeResolutionStrategyInfo,
-                                                       emptyPortablePreference.identifier());
-            if (portablePreference == null) {
-                portablePreference = (T) emptyPortablePreference.defaultValue((U) emptyPortablePreference);
+    private void loadSubPreferences(final BasePreferencePortable<?> portablePreference,
+                                    final Function<String, Object> reader) {
+        portablePreference.getSubPreferences().forEach((property, shared) -> {
+            final BasePreferencePortable<?> subPreference = getSubPreference(portablePreference,
+                                                                             property);
+            if (shared) {
+                portablePreference.set(property,
+                                       load(lookupPortablePreference(subPreference.getPojoClass()),
+                                            reader));
+            } else {
+                loadSubPreferences(subPreference,
+                                   reader);
+                portablePreference.set(property,
+                                       subPreference);
             }
-            loadedPreference = load(propertyType,
-                                    portablePreference,
-                                    scopeResolutionStrategyInfo);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        });
+    }
+
+    /**
+     * Collects the keys of a preference and of every shared preference it holds, which are stored
+     * on their own.
+     */
+    private void collectKeys(final BasePreferencePortable<?> emptyPortablePreference,
+                             final Set<String> keys) {
+        if (keys.add(emptyPortablePreference.identifier())) {
+            collectSubPreferenceKeys(emptyPortablePreference,
+                                     keys);
         }
-
-        return loadedPreference;
     }
 
-    private <U extends BasePreference<U>, T extends BasePreferencePortable<U>> T loadSubPreferenceValue(final Object portablePreference,
-                                                                                                        final Field field,
-                                                                                                        final PreferenceScopeResolutionStrategyInfo scopeResolutionStrategyInfo) throws IllegalAccessException {
-        final Class<U> propertyType = (Class<U>) field.getType();
-        final T subPreferenceValue = (T) field.get(portablePreference);
-        return load(propertyType,
-                    subPreferenceValue,
-                    scopeResolutionStrategyInfo);
-    }
-
-    private <U extends BasePreference<U>, T extends BasePreferencePortable<U>> void save(final Class<U> clazz,
-                                                                                         final T portablePreference,
-                                                                                         final PreferenceScope scope) throws IllegalAccessException {
-        for (Field field : portablePreference.getPojoClass().getDeclaredFields()) {
-            Property propertyAnnotation = field.getAnnotation(Property.class);
-            if (propertyAnnotation != null) {
-                if (field.getType().isAnnotationPresent(WorkbenchPreference.class)) {
-                    boolean shared = propertyAnnotation.shared();
-
-                    field.setAccessible(true);
-
-                    if (shared) {
-                        saveSharedPreference(portablePreference,
-                                             field,
-                                             scope);
-                    } else {
-                        saveSubPreference(portablePreference,
-                                          field,
-                                          scope);
-                    }
-                }
+    private void collectSubPreferenceKeys(final BasePreferencePortable<?> portablePreference,
+                                          final Set<String> keys) {
+        portablePreference.getSubPreferences().forEach((property, shared) -> {
+            final BasePreferencePortable<?> subPreference = getSubPreference(portablePreference,
+                                                                             property);
+            if (shared) {
+                collectKeys(lookupPortablePreference(subPreference.getPojoClass()),
+                            keys);
+            } else {
+                collectSubPreferenceKeys(subPreference,
+                                         keys);
             }
+        });
+    }
+
+    /**
+     * Collects the values to be stored for a preference: its own, if it is persistable, and the ones
+     * of every shared preference it holds.
+     */
+    private void collectValues(final BasePreferencePortable<?> portablePreference,
+                               final Map<String, Object> valueByKey) {
+        collectSubPreferenceValues(portablePreference,
+                                   valueByKey);
+        if (portablePreference.isPersistable()) {
+            valueByKey.put(portablePreference.identifier(),
+                           portablePreference);
         }
     }
 
-    private <U extends BasePreference<U>, T extends BasePreferencePortable<U>> void saveSharedPreference(final Object portablePreference,
-                                                                                                         final Field field,
-                                                                                                         final PreferenceScope scope) throws IllegalAccessException {
-        final Class<U> propertyType = (Class<U>) field.getType();
-        final T sharedPropertyValue = (T) field.get(portablePreference);
-        save(sharedPropertyValue,
-             scope);
-    }
-
-    private <U extends BasePreference<U>, T extends BasePreferencePortable<U>> void saveSubPreference(final Object portablePreference,
-                                                                                                      final Field field,
-                                                                                                      final PreferenceScope scope) throws IllegalAccessException {
-        final Class<U> propertyType = (Class<U>) field.getType();
-        final T subPreferenceValue = (T) field.get(portablePreference);
-        save(propertyType,
-             subPreferenceValue,
-             scope);
+    private void collectSubPreferenceValues(final BasePreferencePortable<?> portablePreference,
+                                            final Map<String, Object> valueByKey) {
+        portablePreference.getSubPreferences().forEach((property, shared) -> {
+            final BasePreferencePortable<?> subPreference = (BasePreferencePortable<?>) portablePreference.get(property);
+            if (subPreference == null) {
+                return;
+            }
+            if (shared) {
+                collectValues(subPreference,
+                              valueByKey);
+            } else {
+                collectSubPreferenceValues(subPreference,
+                                           valueByKey);
+            }
+        });
     }
 
-    private <T extends BasePreference<T>> void saveOne(final BasePreferencePortable<?> portablePreference,
-                                                       final PreferenceScope scope) {
-        Class<T> clazz = (Class<T>) portablePreference.getPojoClass();
-        try {
-            save(clazz,
-                 (BasePreferencePortable<T>) portablePreference,
-                 scope);
-            if (portablePreference.isPersistable()) {
-                preferenceStore.put(scope,
-                                    portablePreference.identifier(),
-                                    portablePreference);
-            }
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+    /**
+     * Returns the value of a sub-preference property, or a new empty one if it isn't set.
+     */
+    private BasePreferencePortable<?> getSubPreference(final BasePreferencePortable<?> portablePreference,
+                                                       final String property) {
+        final BasePreferencePortable<?> subPreference = (BasePreferencePortable<?>) portablePreference.get(property);
+        if (subPreference != null) {
+            return subPreference;
         }
+        return (BasePreferencePortable<?>) lookupPortablePreference(portablePreference.getPojoClass()).get(property);
     }
 
     private List<BasePreferencePortable> getAnnotatedChildren(String parentIdentifier) {
@@ -541,8 +529,8 @@ public class PreferenceBeanStoreImpl implements PreferenceBeanServerStore {
         return preferences.select(portablePreferenceAnnotation);
     }
 
-    <U extends BasePreference<U>, T extends BasePreferencePortable<U>> T lookupPortablePreference(final Class<U> clazz) {
-        return (T) preferences.select(clazz,
-                                      portablePreferenceAnnotation).get();
+    BasePreferencePortable<?> lookupPortablePreference(final Class<?> clazz) {
+        return (BasePreferencePortable<?>) preferences.select((Class<? extends Preference>) clazz,
+                                                              portablePreferenceAnnotation).get();
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -153,6 +154,19 @@ public class PreferenceStorageImpl implements PreferenceStorage {
                             value);
     }
 
+    @Override
+    public <T> void write(final PreferenceScope preferenceScope,
+                          final Map<String, T> valueByKey) {
+        objectStorage.startBatch();
+        try {
+            valueByKey.forEach((key, value) -> write(preferenceScope,
+                                                     key,
+                                                     value));
+        } finally {
+            objectStorage.endBatch();
+        }
+    }
+
     @Override
     public void delete(final PreferenceScope preferenceScope,
                        final String key) {
@@ -124,9 +124,8 @@ public class PreferenceStoreImpl implements PreferenceStore {
     @Override
     public <T> void put(final PreferenceScope scope,
                         final Map<String, T> valueByKey) {
-        valueByKey.forEach((key, value) -> put(scope,
-                                               key,
-                                               value));
+        storage.write(scope,
+                      valueByKey);
     }
 
     @Override
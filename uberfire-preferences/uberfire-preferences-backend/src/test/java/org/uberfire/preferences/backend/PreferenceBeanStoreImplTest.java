@@ -18,7 +18,10 @@ package org.uberfire.preferences.backend;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -171,6 +174,47 @@ public class PreferenceBeanStoreImplTest {
                      loadedMySharedPreference2);
     }
 
+    @Test
+    public void loadCollectionTest() {
+        MyPreference myPreference = new MyPreferencePortableGeneratedImpl();
+        MySharedPreference mySharedPreference = new MySharedPreferencePortableGeneratedImpl();
+
+        final Map<String, Object> values = new HashMap<>();
+        values.put(MyPreference.class.getSimpleName(),
+                   myPreference);
+        values.put(MySharedPreference.class.getSimpleName(),
+                   mySharedPreference);
+        doReturn(values).when(preferenceStore).search(any(PreferenceScopeResolutionStrategyInfo.class),
+                                                      anyCollection());
+
+        final List<BasePreferencePortable<? extends BasePreference<?>>> emptyPreferences = new ArrayList<>();
+        emptyPreferences.add(new MyPreferencePortableGeneratedImpl());
+        emptyPreferences.add(new MySharedPreference2PortableGeneratedImpl());
+
+        final List<BasePreferencePortable<? extends BasePreference<?>>> loadedPreferences = preferenceBeanStoreImpl.load(emptyPreferences);
+
+        verify(preferenceStore).search(scopeInfo,
+                                       new HashSet<>(Arrays.asList(MyPreference.class.getSimpleName(),
+                                                                   MySharedPreference.class.getSimpleName(),
+                                                                   MySharedPreference2.class.getSimpleName())));
+        verify(preferenceStore,
+               never()).get(any(PreferenceScopeResolutionStrategyInfo.class),
+                            anyString());
+
+        assertEquals(2,
+                     loadedPreferences.size());
+        final MyPreferencePortableGeneratedImpl loadedMyPreference = (MyPreferencePortableGeneratedImpl) loadedPreferences.get(0);
+        assertSame(myPreference,
+                   loadedMyPreference);
+        assertSame(mySharedPreference,
+                   loadedMyPreference.mySharedPreference);
+
+        //not stored, so it gets its default value
+        final MySharedPreference2 defaultMySharedPreference2 = new MySharedPreference2PortableGeneratedImpl();
+        assertEquals(defaultMySharedPreference2.defaultValue(defaultMySharedPreference2),
+                     loadedPreferences.get(1));
+    }
+
     @Test
     public void saveTest() {
         final MyPreferencePortableGeneratedImpl myPreference = preferenceBeanStoreImpl.load(new MyPreferencePortableGeneratedImpl());
@@ -178,16 +222,11 @@ public class PreferenceBeanStoreImplTest {
         preferenceBeanStoreImpl.save(myPreference);
 
         verify(preferenceStore,
-               times(2)).put(any(PreferenceScope.class),
-                             anyString(),
-                             any(Object.class));
-
-        verify(preferenceStore).put(eq(scopeInfo.defaultScope()),
-                                    eq(MyPreference.class.getSimpleName()),
-                                    eq(myPreference));
+               never()).put(any(PreferenceScope.class),
+                            anyString(),
+                            any(Object.class));
         verify(preferenceStore).put(eq(scopeInfo.defaultScope()),
-                                    eq(MySharedPreference.class.getSimpleName()),
-                                    eq(myPreference.mySharedPreference));
+                                    eq(expectedValues(myPreference)));
     }
 
     @Test
@@ -202,16 +241,11 @@ public class PreferenceBeanStoreImplTest {
                                      scopeResolutionStrategyInfo);
 
         verify(preferenceStore,
-               times(2)).put(same(scopeResolutionStrategyInfo.defaultScope()),
-                             anyString(),
-                             any(Object.class));
-
-        verify(preferenceStore).put(same(scopeResolutionStrategyInfo.defaultScope()),
-                                    eq(MyPreference.class.getSimpleName()),
-                                    eq(myPreference));
+               never()).put(any(PreferenceScope.class),
+                            anyString(),
+                            any(Object.class));
         verify(preferenceStore).put(same(scopeResolutionStrategyInfo.defaultScope()),
-                                    eq(MySharedPreference.class.getSimpleName()),
-                                    eq(myPreference.mySharedPreference));
+                                    eq(expectedValues(myPreference)));
     }
 
     @Test
@@ -227,41 +261,26 @@ public class PreferenceBeanStoreImplTest {
                                      scope);
 
         verify(preferenceStore,
-               times(2)).put(same(scope),
-                             anyString(),
-                             any(Object.class));
-
-        verify(preferenceStore).put(same(scope),
-                                    eq(MyPreference.class.getSimpleName()),
-                                    eq(myPreference));
+               never()).put(any(PreferenceScope.class),
+                            anyString(),
+                            any(Object.class));
         verify(preferenceStore).put(same(scope),
-                                    eq(MySharedPreference.class.getSimpleName()),
-                                    eq(myPreference.mySharedPreference));
+                                    eq(expectedValues(myPreference)));
     }
 
     @Test
     public void saveCollectionTest() {
         final List<BasePreferencePortable<? extends BasePreference<?>>> preferencesToSave = getRootPortablePreferences();
         final MyPreference myPreference = (MyPreference) preferencesToSave.get(0);
-        final MySharedPreference2 mySharedPreference2 = (MySharedPreference2) preferencesToSave.get(1);
 
         preferenceBeanStoreImpl.save(preferencesToSave);
 
         verify(preferenceStore,
-               times(2)).put(eq(scopeInfo.defaultScope()),
-                             anyString(),
-                             any(Object.class));
-
-        verify(preferenceStore).put(scopeInfo.defaultScope(),
-                                    MyPreference.class.getSimpleName(),
-                                    myPreference);
-        verify(preferenceStore).put(scopeInfo.defaultScope(),
-                                    MySharedPreference.class.getSimpleName(),
-                                    myPreference.mySharedPreference);
-        verify(preferenceStore,
-               never()).put(eq(scopeInfo.defaultScope()),
-                            eq(MySharedPreference2.class.getSimpleName()),
-                            same(mySharedPreference2));
+               never()).put(any(PreferenceScope.class),
+                            anyString(),
+                            any(Object.class));
+        verify(preferenceStore).put(eq(scopeInfo.defaultScope()),
+                                    eq(expectedValues(myPreference)));
     }
 
     @Test
@@ -271,26 +290,16 @@ public class PreferenceBeanStoreImplTest {
 
         final List<BasePreferencePortable<? extends BasePreference<?>>> preferencesToSave = getRootPortablePreferences();
         final MyPreference myPreference = (MyPreference) preferencesToSave.get(0);
-        final MySharedPreference2 mySharedPreference2 = (MySharedPreference2) preferencesToSave.get(1);
 
         preferenceBeanStoreImpl.save(preferencesToSave,
                                      scopeResolutionStrategyInfo);
 
         verify(preferenceStore,
-               times(2)).put(eq(scopeResolutionStrategyInfo.defaultScope()),
-                             anyString(),
-                             any(Object.class));
-
-        verify(preferenceStore).put(scopeResolutionStrategyInfo.defaultScope(),
-                                    MyPreference.class.getSimpleName(),
-                                    myPreference);
-        verify(preferenceStore).put(scopeResolutionStrategyInfo.defaultScope(),
-                                    MySharedPreference.class.getSimpleName(),
-                                    myPreference.mySharedPreference);
-        verify(preferenceStore,
-               never()).put(eq(scopeResolutionStrategyInfo.defaultScope()),
-                            eq(MySharedPreference2.class.getSimpleName()),
-                            same(mySharedPreference2));
+               never()).put(any(PreferenceScope.class),
+                            anyString(),
+                            any(Object.class));
+        verify(preferenceStore).put(same(scopeResolutionStrategyInfo.defaultScope()),
+                                    eq(expectedValues(myPreference)));
     }
 
     @Test
@@ -301,26 +310,16 @@ public class PreferenceBeanStoreImplTest {
 
         final List<BasePreferencePortable<? extends BasePreference<?>>> preferencesToSave = getRootPortablePreferences();
         final MyPreference myPreference = (MyPreference) preferencesToSave.get(0);
-        final MySharedPreference2 mySharedPreference2 = (MySharedPreference2) preferencesToSave.get(1);
 
         preferenceBeanStoreImpl.save(preferencesToSave,
                                      scope);
 
         verify(preferenceStore,
-               times(2)).put(same(scope),
-                             anyString(),
-                             any(Object.class));
-
-        verify(preferenceStore).put(same(scope),
-                                    eq(MyPreference.class.getSimpleName()),
-                                    eq(myPreference));
+               never()).put(any(PreferenceScope.class),
+                            anyString(),
+                            any(Object.class));
         verify(preferenceStore).put(same(scope),
-                                    eq(MySharedPreference.class.getSimpleName()),
-                                    eq(myPreference.mySharedPreference));
-        verify(preferenceStore,
-               never()).put(same(scope),
-                            eq(MySharedPreference2.class.getSimpleName()),
-                            same(mySharedPreference2));
+                                    eq(expectedValues(myPreference)));
     }
 
     @Test
@@ -379,6 +378,15 @@ public class PreferenceBeanStoreImplTest {
                      firstElementSecondChildFirstChildFirstChild.getChildren().size());
     }
 
+    private Map<String, Object> expectedValues(final MyPreference myPreference) {
+        final Map<String, Object> values = new HashMap<>();
+        values.put(MyPreference.class.getSimpleName(),
+                   myPreference);
+        values.put(MySharedPreference.class.getSimpleName(),
+                   myPreference.mySharedPreference);
+        return values;
+    }
+
     private List<BasePreferencePortable<? extends BasePreference<?>>> getRootPortablePreferences() {
         final MyPreferencePortableGeneratedImpl myPreference = preferenceBeanStoreImpl.load(new MyPreferencePortableGeneratedImpl());
         final MySharedPreference2PortableGeneratedImpl mySharedPreference2 = preferenceBeanStoreImpl.load(new MySharedPreference2PortableGeneratedImpl());
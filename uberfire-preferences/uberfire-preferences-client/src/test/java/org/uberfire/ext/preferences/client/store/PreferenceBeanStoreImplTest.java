@@ -168,6 +168,11 @@ public class PreferenceBeanStoreImplTest {
             return null;
         }
 
+        @Override
+        public Map<String, Boolean> getSubPreferences() {
+            return null;
+        }
+
         @Override
         public Map<String, PropertyFormType> getPropertiesTypes() {
             return null;
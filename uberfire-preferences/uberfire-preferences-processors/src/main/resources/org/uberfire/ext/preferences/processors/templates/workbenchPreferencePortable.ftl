@@ -88,7 +88,7 @@ public class ${targetClassName} extends ${sourceClassName} implements BasePrefer
 
     @Override
     public void set( String property, Object value ) {
-    <#list simpleProperties as property>
+    <#list properties as property>
         if ( property.equals( "${property.getFieldName()}" ) ) {
         <#if property.isPrivateAccess()>
             set${property.getCapitalizedFieldName()}( (${property.getTypeFullName()}) value );
@@ -104,7 +104,7 @@ public class ${targetClassName} extends ${sourceClassName} implements BasePrefer
 
     @Override
     public Object get( String property ) {
-    <#list simpleProperties as property>
+    <#list properties as property>
         if ( property.equals( "${property.getFieldName()}" ) ) {
             return ${property.getFieldAccessorCommand()};
         } else
@@ -114,6 +114,17 @@ public class ${targetClassName} extends ${sourceClassName} implements BasePrefer
         }
     }
 
+    @Override
+    public Map<String, Boolean> getSubPreferences() {
+        Map<String, Boolean> subPreferences = new HashMap<>();
+
+    <#list subPreferences as subPreference>
+        subPreferences.put( "${subPreference.getFieldName()}", ${subPreference.isShared()?c} );
+    </#list>
+
+        return subPreferences;
+    }
+
     @Override
     public Map<String, PropertyFormType> getPropertiesTypes() {
         Map<String, PropertyFormType> propertiesTypes = new HashMap<>();
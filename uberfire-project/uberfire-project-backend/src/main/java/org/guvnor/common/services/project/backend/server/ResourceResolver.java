@@ -16,7 +16,6 @@
 package org.guvnor.common.services.project.backend.server;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -500,15 +499,8 @@ public abstract class ResourceResolver<T extends Project>
     }
 
     protected ConfigGroup findProjectConfig(final Path projectRoot) {
-        final Collection<ConfigGroup> groups = configurationService.getConfiguration(ConfigType.PROJECT);
-        if (groups != null) {
-            for (ConfigGroup groupConfig : groups) {
-                if (groupConfig.getName().equals(projectRoot.toURI())) {
-                    return groupConfig;
-                }
-            }
-        }
-        return null;
+        return configurationService.getConfiguration(ConfigType.PROJECT,
+                                                     projectRoot.toURI());
     }
 
     protected Package makePackage(final Project project,
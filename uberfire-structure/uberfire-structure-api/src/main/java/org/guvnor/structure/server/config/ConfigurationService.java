@@ -27,6 +27,13 @@ public interface ConfigurationService {
 
     List<ConfigGroup> getConfiguration(final ConfigType type);
 
+    /**
+     * Finds a config group by type and name without going through every group of the type.
+     * @return null if there is none with that name
+     */
+    ConfigGroup getConfiguration(final ConfigType type,
+                                 final String name);
+
     boolean addConfiguration(final ConfigGroup configGroup);
 
     boolean updateConfiguration(final ConfigGroup configGroup);
@@ -16,13 +16,17 @@
 package org.guvnor.structure.backend.config;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -70,6 +74,7 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     private static final Logger logger = LoggerFactory.getLogger(ConfigurationServiceImpl.class);
 
     private static final String MONITOR_DISABLED = "org.uberfire.sys.repo.monitor.disabled";
+    private static final String LOAD_THREADS = "org.uberfire.sys.repo.load.threads";
     //    private static final String MONITOR_CHECK_INTERVAL = "org.uberfire.sys.repo.monitor.interval";
     // mainly for windows as *NIX is based on POSIX but escape always to keep it consistent
     private static final String INVALID_FILENAME_CHARS = "[\\,/,:,*,?,\",<,>,|]";
@@ -81,7 +86,7 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     private User identity;
 
     //Cache of ConfigGroups to avoid reloading them from file
-    private final Map<ConfigType, List<ConfigGroup>> configuration = new ConcurrentHashMap<ConfigType, List<ConfigGroup>>();
+    private final Map<ConfigType, ConfigGroups> configuration = new ConcurrentHashMap<ConfigType, ConfigGroups>();
     private AtomicLong localLastModifiedValue = new AtomicLong(-1);
 
     private IOService ioService;
@@ -93,6 +98,9 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 
+    //reads config files in parallel, threads are only started on the first load
+    private final ExecutorService loadExecutorService = newLoadExecutorService();
+
     private final Set<Future<?>> jobs = new CopyOnWriteArraySet<Future<?>>();
 
     private ConfigServiceWatchServiceExecutor executor = null;
@@ -125,6 +133,20 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         this.fs = fs;
     }
 
+    private static ExecutorService newLoadExecutorService() {
+        final int threads = Integer.getInteger(LOAD_THREADS,
+                                               Math.min(4,
+                                                        Runtime.getRuntime().availableProcessors()));
+        return Executors.newFixedThreadPool(Math.max(1,
+                                                     threads),
+                                            runnable -> {
+                                                final Thread thread = new Thread(runnable,
+                                                                                 "config-loader");
+                                                thread.setDaemon(true);
+                                                return thread;
+                                            });
+    }
+
     @PostConstruct
     public void setup() {
         Path defaultRoot = null;
@@ -141,6 +163,8 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
         systemRepository.setRoot(convert(defaultRoot));
 
+        loadConfiguration();
+
         // enable monitor by default
         if (System.getProperty(MONITOR_DISABLED) == null) {
             watchService = fs.newWatchService();
@@ -173,6 +197,7 @@ public class ConfigurationServiceImpl implements ConfigurationService,
                 job.cancel(true);
             }
         }
+        loadExecutorService.shutdown();
         executorService.shutdown(); // Disable new tasks from being submitted
         try {
             // Wait a while for existing tasks to terminate
@@ -205,43 +230,215 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
     @Override
     public List<ConfigGroup> getConfiguration(final ConfigType type) {
-        if (configuration.containsKey(type)) {
-            return configuration.get(type);
-        }
-        final List<ConfigGroup> configGroups = new ArrayList<ConfigGroup>();
-        final DirectoryStream<Path> foundConfigs = ioService.newDirectoryStream(ioService.get(systemRepository.getUri()),
-                                                                                new DirectoryStream.Filter<Path>() {
-                                                                                    @Override
-                                                                                    public boolean accept(final Path entry) throws IOException {
-                                                                                        if (!Files.isDirectory(entry) &&
-                                                                                                !entry.getFileName().toString().startsWith(".") &&
-                                                                                                entry.getFileName().toString().endsWith(type.getExt())) {
-                                                                                            return true;
-                                                                                        }
-                                                                                        return false;
-                                                                                    }
-                                                                                }
-        );
-        //Only load and cache if a file was found!
-        final Iterator<Path> it = foundConfigs.iterator();
-        if (it.hasNext()) {
-            while (it.hasNext()) {
-                final String content = ioService.readAllString(it.next());
-                final ConfigGroup configGroup = marshaller.unmarshall(content);
-                configGroups.add(configGroup);
+        final ConfigGroups configGroups = getConfigGroups(type);
+        if (configGroups == null) {
+            return new ArrayList<ConfigGroup>();
+        }
+        return new ArrayList<ConfigGroup>(configGroups.byFileName.values());
+    }
+
+    @Override
+    public ConfigGroup getConfiguration(final ConfigType type,
+                                        final String name) {
+        final ConfigGroups configGroups = getConfigGroups(type);
+        if (configGroups == null) {
+            return null;
+        }
+        //file names are unique, names only once sanitized
+        final ConfigGroup configGroup = configGroups.byFileName.get(toFileName(name,
+                                                                               type));
+        if (configGroup != null && name.equals(configGroup.getName())) {
+            return configGroup;
+        }
+        for (final ConfigGroup candidate : configGroups.byFileName.values()) {
+            if (name.equals(candidate.getName())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cached ConfigGroups of a type, reloading the files changed since they were read.
+     * @return null when there are no files of that type
+     */
+    private ConfigGroups getConfigGroups(final ConfigType type) {
+        ConfigGroups configGroups = configuration.get(type);
+        if (configGroups == null) {
+            configGroups = loadConfiguration(type);
+            if (configGroups == null) {
+                return null;
             }
+        }
+        if (!configGroups.staleFileNames.isEmpty()) {
+            reloadStaleFiles(configGroups);
+        }
+        return configGroups;
+    }
+
+    /**
+     * Loads every config file of the system repository, in parallel.
+     */
+    private synchronized void loadConfiguration() {
+        final Map<ConfigType, ConfigGroups> loaded = loadConfigGroups(listConfigFiles(null));
+        loaded.forEach((type, configGroups) -> configuration.putIfAbsent(type,
+                                                                         configGroups));
+    }
+
+    /**
+     * Loads the config files of a type, in parallel. Only cached if a file was found.
+     */
+    private synchronized ConfigGroups loadConfiguration(final ConfigType type) {
+        final ConfigGroups cached = configuration.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        final ConfigGroups configGroups = loadConfigGroups(listConfigFiles(type)).get(type);
+        if (configGroups != null) {
             configuration.put(type,
                               configGroups);
         }
         return configGroups;
     }
 
+    private List<Path> listConfigFiles(final ConfigType type) {
+        final List<Path> configFiles = new ArrayList<Path>();
+        try (final DirectoryStream<Path> foundConfigs = ioService.newDirectoryStream(ioService.get(systemRepository.getUri()),
+                                                                                     new DirectoryStream.Filter<Path>() {
+                                                                                         @Override
+                                                                                         public boolean accept(final Path entry) throws IOException {
+                                                                                             if (!Files.isDirectory(entry) &&
+                                                                                                     !entry.getFileName().toString().startsWith(".")) {
+                                                                                                 final ConfigType entryType = getConfigType(entry.getFileName().toString());
+                                                                                                 return entryType != null && (type == null || type == entryType);
+                                                                                             }
+                                                                                             return false;
+                                                                                         }
+                                                                                     }
+        )) {
+            for (final Path path : foundConfigs) {
+                configFiles.add(path);
+            }
+        }
+        return configFiles;
+    }
+
+    private Map<ConfigType, ConfigGroups> loadConfigGroups(final List<Path> configFiles) {
+        final Map<ConfigType, ConfigGroups> loaded = new EnumMap<ConfigType, ConfigGroups>(ConfigType.class);
+        final Map<String, Future<ConfigGroup>> readsByFileName = new LinkedHashMap<String, Future<ConfigGroup>>();
+        try {
+            for (final Path configFile : configFiles) {
+                readsByFileName.put(configFile.getFileName().toString(),
+                                    loadExecutorService.submit(() -> readConfigGroup(configFile)));
+            }
+            for (final Map.Entry<String, Future<ConfigGroup>> read : readsByFileName.entrySet()) {
+                loaded.computeIfAbsent(getConfigType(read.getKey()),
+                                       t -> new ConfigGroups()).byFileName.put(read.getKey(),
+                                                                               waitFor(read.getValue()));
+            }
+        } catch (RuntimeException e) {
+            readsByFileName.values().forEach(read -> read.cancel(true));
+            throw e;
+        }
+        return loaded;
+    }
+
+    private ConfigGroup waitFor(final Future<ConfigGroup> read) {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading the configuration",
+                                       e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void reloadStaleFiles(final ConfigGroups configGroups) {
+        synchronized (configGroups) {
+            for (final String fileName : new ArrayList<String>(configGroups.staleFileNames)) {
+                //removed first, so a change arriving while reading marks it stale again
+                configGroups.staleFileNames.remove(fileName);
+                final Path filePath = ioService.get(systemRepository.getUri()).resolve(fileName);
+                if (ioService.exists(filePath)) {
+                    configGroups.byFileName.put(fileName,
+                                                readConfigGroup(filePath));
+                } else {
+                    configGroups.byFileName.remove(fileName);
+                }
+            }
+        }
+    }
+
+    private ConfigGroup readConfigGroup(final Path path) {
+        final String content = ioService.readAllString(path);
+        return marshaller.unmarshall(content);
+    }
+
+    /**
+     * Marks a config file as changed, it is reloaded on the next access to its type.
+     */
+    synchronized void invalidate(final String fileName) {
+        final ConfigType type = getConfigType(fileName);
+        if (type == null) {
+            return;
+        }
+        final ConfigGroups configGroups = configuration.get(type);
+        if (configGroups != null) {
+            configGroups.staleFileNames.add(fileName);
+        }
+    }
+
+    /**
+     * Marks the config files changed by the events.
+     */
+    void invalidate(final Collection<WatchEvent<?>> events) {
+        for (final WatchEvent<?> event : events) {
+            final Object context = event.context();
+            if (!(context instanceof WatchContext)) {
+                invalidateAll();
+                return;
+            }
+            invalidate(((WatchContext) context).getPath());
+            invalidate(((WatchContext) context).getOldPath());
+        }
+    }
+
+    private void invalidate(final Path path) {
+        if (path != null && path.getFileName() != null) {
+            invalidate(path.getFileName().toString());
+        }
+    }
+
+    private synchronized void invalidateAll() {
+        configuration.clear();
+    }
+
+    private ConfigType getConfigType(final String fileName) {
+        for (final ConfigType type : ConfigType.values()) {
+            if (fileName.endsWith(type.getExt())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private String toFileName(final String name,
+                              final ConfigType type) {
+        return name.replaceAll(INVALID_FILENAME_CHARS,
+                               "_") + type.getExt();
+    }
+
     @Override
     public boolean addConfiguration(final ConfigGroup configGroup) {
-        String filename = configGroup.getName().replaceAll(INVALID_FILENAME_CHARS,
-                                                           "_");
+        final String filename = toFileName(configGroup.getName(),
+                                           configGroup.getType());
 
-        final Path filePath = ioService.get(systemRepository.getUri()).resolve(filename + configGroup.getType().getExt());
+        final Path filePath = ioService.get(systemRepository.getUri()).resolve(filename);
         // avoid duplicated writes to not cause cyclic cluster sync
         if (ioService.exists(filePath)) {
             return true;
@@ -262,17 +459,18 @@ public class ConfigurationServiceImpl implements ConfigurationService,
             ioService.endBatch();
         }
         //Invalidate cache if a new item has been created; otherwise cached value is stale
-        configuration.remove(configGroup.getType());
+        invalidateCreated(filename,
+                          configGroup.getType());
 
         return true;
     }
 
     @Override
     public boolean updateConfiguration(ConfigGroup configGroup) {
-        String filename = configGroup.getName().replaceAll(INVALID_FILENAME_CHARS,
-                                                           "_");
+        final String filename = toFileName(configGroup.getName(),
+                                           configGroup.getType());
 
-        final Path filePath = ioService.get(systemRepository.getUri()).resolve(filename + configGroup.getType().getExt());
+        final Path filePath = ioService.get(systemRepository.getUri()).resolve(filename);
 
         final CommentedOption commentedOption = new CommentedOption(getIdentityName(),
                                                                     "Updated config " + filePath.getFileName());
@@ -288,20 +486,21 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         } finally {
             ioService.endBatch();
         }
-        //Invalidate cache if a new item has been created; otherwise cached value is stale
-        configuration.remove(configGroup.getType());
+        //Invalidate cached value, otherwise it is stale
+        invalidateCreated(filename,
+                          configGroup.getType());
 
         return true;
     }
 
     @Override
     public boolean removeConfiguration(final ConfigGroup configGroup) {
+        final String filename = toFileName(configGroup.getName(),
+                                           configGroup.getType());
 
         //Invalidate cache if an item has been removed; otherwise cached value is stale
-        configuration.remove(configGroup.getType());
-        String filename = configGroup.getName().replaceAll(INVALID_FILENAME_CHARS,
-                                                           "_");
-        final Path filePath = ioService.get(systemRepository.getUri()).resolve(filename + configGroup.getType().getExt());
+        invalidate(filename);
+        final Path filePath = ioService.get(systemRepository.getUri()).resolve(filename);
 
         // avoid duplicated writes to not cause cyclic cluster sync
         if (!ioService.exists(filePath)) {
@@ -323,6 +522,16 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         return result;
     }
 
+    /**
+     * Invalidates a file that may have just been created: a type without files isn't cached yet.
+     */
+    private synchronized void invalidateCreated(final String fileName,
+                                                final ConfigType type) {
+        if (configuration.containsKey(type)) {
+            invalidate(fileName);
+        }
+    }
+
     protected String getIdentityName() {
         try {
             return identity.getIdentifier();
@@ -353,8 +562,7 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     @Override
     public void callback(long value) {
         localLastModifiedValue.set(value);
-        // invalidate cached values as system repo has changed
-        configuration.clear();
+        // cached values of the changed files were already invalidated from the watch events
     }
 
     private class CheckConfigurationUpdates implements AsyncConfigWatchService {
@@ -384,6 +592,8 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
                     final List<WatchEvent<?>> events = wk.pollEvents();
 
+                    invalidate(events);
+
                     boolean markerFileModified = false;
                     for (final WatchEvent<?> event : events) {
                         final WatchContext context = (WatchContext) event.context();
@@ -431,6 +641,17 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         }
     }
 
+    /**
+     * ConfigGroups of one type, by the name of the file they were read from.
+     */
+    private static class ConfigGroups {
+
+        //sorted like the files of the repository
+        private final Map<String, ConfigGroup> byFileName = new ConcurrentSkipListMap<String, ConfigGroup>();
+        //files changed since they were read, reloaded on the next access
+        private final Set<String> staleFileNames = ConcurrentHashMap.newKeySet();
+    }
+
     protected ConfigServiceWatchServiceExecutor getWatchServiceExecutor() {
         if (executor == null) {
             ConfigServiceWatchServiceExecutor _executor = null;
@@ -390,15 +390,8 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
     }
 
     protected ConfigGroup findGroupConfig(final String name) {
-        final Collection<ConfigGroup> groups = configurationService.getConfiguration(ConfigType.ORGANIZATIONAL_UNIT);
-        if (groups != null) {
-            for (ConfigGroup groupConfig : groups) {
-                if (groupConfig.getName().equals(name)) {
-                    return groupConfig;
-                }
-            }
-        }
-        return null;
+        return configurationService.getConfiguration(ConfigType.ORGANIZATIONAL_UNIT,
+                                                     name);
     }
 
     @Override
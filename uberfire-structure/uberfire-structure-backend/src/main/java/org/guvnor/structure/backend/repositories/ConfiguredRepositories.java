@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
@@ -51,6 +52,8 @@ public class ConfiguredRepositories {
 
     private Map<String, Repository> repositoriesByAlias = new HashMap<>();
     private Map<Path, Repository> repositoriesByBranchRoot = new HashMap<>();
+    //filled on lookup, converting every root on each lookup is too costly
+    private Map<FileSystem, Repository> repositoriesByFileSystem = new ConcurrentHashMap<>();
 
     public ConfiguredRepositories() {
     }
@@ -69,6 +72,7 @@ public class ConfiguredRepositories {
     public void loadRepositories() {
         repositoriesByAlias.clear();
         repositoriesByBranchRoot.clear();
+        repositoriesByFileSystem.clear();
 
         final List<ConfigGroup> repoConfigs = configurationService.getConfiguration(REPOSITORY);
         if (!(repoConfigs == null || repoConfigs.isEmpty())) {
@@ -102,8 +106,15 @@ public class ConfiguredRepositories {
             return systemRepository;
         }
 
+        final Repository cached = repositoriesByFileSystem.get(fs);
+        if (cached != null) {
+            return cached;
+        }
+
         for (final Repository repository : repositoriesByAlias.values()) {
             if (convert(repository.getRoot()).getFileSystem().equals(fs)) {
+                repositoriesByFileSystem.put(fs,
+                                             repository);
                 return repository;
             }
         }
@@ -133,6 +144,7 @@ public class ConfiguredRepositories {
     public void add(final Repository repository) {
         repositoriesByAlias.put(repository.getAlias(),
                                 repository);
+        repositoriesByFileSystem.values().removeIf(cached -> cached.getAlias().equals(repository.getAlias()));
 
         if (repository instanceof GitRepository &&
                 repository.getBranches() != null) {
@@ -153,6 +165,7 @@ public class ConfiguredRepositories {
     public Repository remove(final String alias) {
 
         final Repository removed = repositoriesByAlias.remove(alias);
+        repositoriesByFileSystem.values().removeIf(cached -> cached.getAlias().equals(alias));
 
         removeFromRootByAlias(alias);
 
@@ -248,15 +248,8 @@ public class RepositoryServiceImpl implements RepositoryService {
     }
 
     protected ConfigGroup findRepositoryConfig(final String alias) {
-        final Collection<ConfigGroup> groups = configurationService.getConfiguration(ConfigType.REPOSITORY);
-        if (groups != null) {
-            for (ConfigGroup groupConfig : groups) {
-                if (groupConfig.getName().equals(alias)) {
-                    return groupConfig;
-                }
-            }
-        }
-        return null;
+        return configurationService.getConfiguration(ConfigType.REPOSITORY,
+                                                     alias);
     }
 
     @Override
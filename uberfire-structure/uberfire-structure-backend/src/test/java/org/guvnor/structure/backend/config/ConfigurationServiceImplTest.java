@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.config;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.WatchContext;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.Paths;
+import org.uberfire.java.nio.file.StandardWatchEventKind;
+import org.uberfire.java.nio.file.WatchEvent;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigurationServiceImplTest {
+
+    private static final String ROOT = "file:///config/";
+
+    @Mock
+    private Repository systemRepository;
+
+    @Mock
+    private IOService ioService;
+
+    @Mock
+    private DirectoryStream<Path> directoryStream;
+
+    private final ConfigGroupMarshaller marshaller = new ConfigGroupMarshaller();
+
+    private final Path root = Paths.get(URI.create(ROOT));
+    private final Path repo1 = Paths.get(URI.create(ROOT + "repo1.repository"));
+    private final Path repo2 = Paths.get(URI.create(ROOT + "repo2.repository"));
+
+    private ConfigurationServiceImpl configurationService;
+
+    @Before
+    public void setup() {
+        when(systemRepository.getUri()).thenReturn(ROOT);
+        when(ioService.get(ROOT)).thenReturn(root);
+        when(ioService.newDirectoryStream(eq(root),
+                                          any(DirectoryStream.Filter.class))).thenReturn(directoryStream);
+        when(directoryStream.iterator()).thenAnswer(invocation -> Arrays.asList(repo1,
+                                                                                 repo2).iterator());
+        when(ioService.exists(any(Path.class))).thenReturn(true);
+        store(repo1,
+              "repo1",
+              "v1");
+        store(repo2,
+              "repo2",
+              "v1");
+
+        configurationService = new ConfigurationServiceImpl(systemRepository,
+                                                            marshaller,
+                                                            null,
+                                                            ioService,
+                                                            null,
+                                                            null,
+                                                            null,
+                                                            null);
+    }
+
+    @After
+    public void tearDown() {
+        configurationService.shutdown();
+    }
+
+    @Test
+    public void configurationIsLoadedOnce() {
+        assertEquals(2,
+                     configurationService.getConfiguration(ConfigType.REPOSITORY).size());
+        assertEquals(2,
+                     configurationService.getConfiguration(ConfigType.REPOSITORY).size());
+
+        verify(ioService,
+               times(1)).newDirectoryStream(eq(root),
+                                            any(DirectoryStream.Filter.class));
+        verify(ioService,
+               times(1)).readAllString(repo1);
+        verify(ioService,
+               times(1)).readAllString(repo2);
+    }
+
+    @Test
+    public void onlyChangedFilesAreReloaded() {
+        configurationService.getConfiguration(ConfigType.REPOSITORY);
+
+        store(repo2,
+              "repo2",
+              "v2");
+        configurationService.invalidate(Collections.singletonList(event(repo2)));
+
+        final ConfigGroup reloaded = configurationService.getConfiguration(ConfigType.REPOSITORY,
+                                                                           "repo2");
+        assertEquals("v2",
+                     reloaded.getDescription());
+        verify(ioService,
+               times(1)).readAllString(repo1);
+        verify(ioService,
+               times(2)).readAllString(repo2);
+    }
+
+    @Test
+    public void deletedFilesAreDropped() {
+        configurationService.getConfiguration(ConfigType.REPOSITORY);
+
+        when(ioService.exists(repo2)).thenReturn(false);
+        configurationService.invalidate(Collections.singletonList(event(repo2)));
+
+        final List<ConfigGroup> configGroups = configurationService.getConfiguration(ConfigType.REPOSITORY);
+        assertEquals(1,
+                     configGroups.size());
+        assertEquals("repo1",
+                     configGroups.get(0).getName());
+        assertNull(configurationService.getConfiguration(ConfigType.REPOSITORY,
+                                                         "repo2"));
+    }
+
+    @Test
+    public void filesAreReadByTheServiceThreads() {
+        final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+        when(ioService.readAllString(any(Path.class))).thenAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            final ConfigGroup configGroup = new ConfigGroup();
+            configGroup.setName(((Path) invocation.getArguments()[0]).getFileName().toString());
+            configGroup.setType(ConfigType.REPOSITORY);
+            return marshaller.marshall(configGroup);
+        });
+
+        assertEquals(2,
+                     configurationService.getConfiguration(ConfigType.REPOSITORY).size());
+        assertEquals(Collections.singleton("config-loader"),
+                     threadNames);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readFailuresAreRethrown() {
+        when(ioService.readAllString(repo2)).thenThrow(new IllegalStateException("broken"));
+
+        configurationService.getConfiguration(ConfigType.REPOSITORY);
+    }
+
+    private void store(final Path path,
+                       final String name,
+                       final String description) {
+        final ConfigGroup configGroup = new ConfigGroup();
+        configGroup.setName(name);
+        configGroup.setDescription(description);
+        configGroup.setType(ConfigType.REPOSITORY);
+        when(ioService.readAllString(path)).thenReturn(marshaller.marshall(configGroup));
+    }
+
+    private WatchEvent<?> event(final Path path) {
+        final WatchContext context = mock(WatchContext.class);
+        when(context.getPath()).thenReturn(path);
+        final WatchEvent<Object> event = mock(WatchEvent.class);
+        when(event.kind()).thenReturn((WatchEvent.Kind) StandardWatchEventKind.ENTRY_MODIFY);
+        when(event.context()).thenReturn(context);
+        return event;
+    }
+}